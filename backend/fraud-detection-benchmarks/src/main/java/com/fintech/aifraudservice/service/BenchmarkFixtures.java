@@ -0,0 +1,539 @@
+package com.fintech.aifraudservice.service;
+
+import com.fintech.aifraudservice.model.ProfileMembership.Dimension;
+import com.fintech.aifraudservice.model.TransactionAnalysis;
+import com.fintech.aifraudservice.model.UserBehaviorProfile;
+import com.fintech.aifraudservice.repository.TransactionAnalysisRepository;
+import com.fintech.aifraudservice.repository.UserBehaviorProfileRepository;
+import com.github.benmanes.caffeine.cache.Ticker;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.io.IOException;
+import java.io.Writer;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.math.BigDecimal;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import org.springframework.util.ReflectionUtils;
+import weka.classifiers.functions.Logistic;
+import weka.core.DenseInstance;
+import weka.core.Instances;
+
+/**
+ * Synthetic users, profiles and transactions for the benchmarks, and a {@link
+ * FraudDetectionServiceImpl} wired to in-memory stand-ins instead of the database and Kafka.
+ * Pipeline metrics stay on, with percentile histograms, as they are in production.
+ *
+ * <p>Profile sizes follow what the profile updater keeps for an established customer: a couple of
+ * countries and payment methods, a handful of cities and devices, a few dozen IPs and merchants,
+ * and about 30 transactions in the last day for the velocity windows. Roughly one request in five
+ * uses a value the user has not been seen with, and one user in ten has no profile yet. IP
+ * addresses resolve against {@value #IP_RANGES} IPv4 ranges spread over the public address space,
+ * merchant aggregates are looked up among {@value #MERCHANTS} tracked merchants, and card BINs
+ * resolve against {@value #BIN_RANGES} 8-digit BIN ranges covering every BIN the requests use. The
+ * account linkage graph holds {@value #LINKAGE_EDGES} edges, and one request in 20 comes from a
+ * device shared with a dozen other accounts.
+ */
+final class BenchmarkFixtures {
+
+  static final int USERS = 10_000;
+  static final int REQUESTS = 4_096;
+  static final int IP_RANGES = 65_536;
+  static final int MERCHANTS = 100_000;
+  static final int BIN_RANGES = 262_144;
+  static final int LINKAGE_EDGES = 2_000_000;
+
+  private static final String[] COUNTRIES = {"US", "CA", "GB", "FR", "DE", "BR", "IN", "XX"};
+  private static final String[] CATEGORIES = {
+    "grocery",
+    "fuel",
+    "travel",
+    "electronics",
+    "restaurants",
+    "gambling",
+    "pharmacy",
+    "apparel",
+    "utilities",
+    "entertainment",
+    "education",
+    "insurance",
+    "subscriptions",
+    "marketplace"
+  };
+  private static final String[] PAYMENT_METHODS = {"CARD", "WALLET", "BANK_TRANSFER", "ACH"};
+
+  final Map<Long, UserBehaviorProfile> profiles = new HashMap<>();
+  final Map<Long, List<Object[]>> recentAmounts = new HashMap<>();
+  final TransactionAnalysisRequest[] requests = new TransactionAnalysisRequest[REQUESTS];
+
+  private final Random random;
+
+  BenchmarkFixtures(long seed) {
+    this.random = new Random(seed);
+    LocalDateTime now = LocalDateTime.now();
+    for (long userId = 1; userId <= USERS; userId++) {
+      if (random.nextInt(10) != 0) {
+        profiles.put(userId, profile(userId));
+      }
+      List<Object[]> amounts = new ArrayList<>();
+      for (int i = 20 + random.nextInt(20); i > 0; i--) {
+        amounts.add(new Object[] {now.minusMinutes(random.nextInt(24 * 60)), amount(80), (long) i});
+      }
+      recentAmounts.put(userId, amounts);
+    }
+    for (int i = 0; i < REQUESTS; i++) {
+      requests[i] = request(i, 1 + random.nextInt(USERS));
+    }
+  }
+
+  /** Compiled and mapped from a CSV file, as in production */
+  IpGeoLocator ipGeoLocator() throws IOException {
+    Path dir = Files.createTempDirectory("bench-geo");
+    Path csv = dir.resolve("ranges.csv");
+    long span = (223L << 24) / IP_RANGES;
+    try (Writer out = Files.newBufferedWriter(csv)) {
+      for (int i = 0; i < IP_RANGES; i++) {
+        long start = (1L << 24) + i * span;
+        out.write(
+            IpAddresses.format(start)
+                + ","
+                + IpAddresses.format(start + span - 1)
+                + ","
+                + COUNTRIES[i % COUNTRIES.length]
+                + ",geo-city-"
+                + (i % 500)
+                + "\n");
+      }
+    }
+    IpGeoLocator locator = new IpGeoLocator();
+    set(locator, "location", csv.toString());
+    locator.init();
+    // Deleted in reverse order of creation when the fork exits
+    dir.toFile().deleteOnExit();
+    csv.toFile().deleteOnExit();
+    csv.resolveSibling(csv.getFileName() + ".bin").toFile().deleteOnExit();
+    return locator;
+  }
+
+  /** Loaded from a CSV file, as in production, with one range in 50 prepaid */
+  BinRiskIndex binRiskIndex() throws IOException {
+    Path dir = Files.createTempDirectory("bench-bin");
+    Path csv = dir.resolve("bins.csv");
+    // 8-digit ranges over 40000000-49999999, where every 6-digit Visa BIN of the requests falls
+    int span = 10_000_000 / BIN_RANGES;
+    String[] tiers = {"LOW", "LOW", "LOW", "MEDIUM", "HIGH"};
+    try (Writer out = Files.newBufferedWriter(csv)) {
+      for (int i = 0; i < BIN_RANGES; i++) {
+        int start = 40_000_000 + i * span;
+        int end = i == BIN_RANGES - 1 ? 49_999_999 : start + span - 1;
+        out.write(
+            start
+                + ","
+                + end
+                + ","
+                + COUNTRIES[i % COUNTRIES.length]
+                + ",VISA,"
+                + (i % 50 == 0)
+                + ","
+                + tiers[i % tiers.length]
+                + "\n");
+      }
+    }
+    BinRiskIndex index = new BinRiskIndex();
+    set(index, "location", csv.toString());
+    index.init();
+    dir.toFile().deleteOnExit();
+    csv.toFile().deleteOnExit();
+    return index;
+  }
+
+  /**
+   * Every request's device, IP address and card linked to its user, a ring of accounts behind one
+   * request device in 20, and other users' identifiers up to {@value #LINKAGE_EDGES} edges
+   */
+  LinkageGraphIndex linkageGraphIndex() {
+    LinkageGraphIndex index = new LinkageGraphIndex(null, "30d", 20_000_000, 64);
+    LocalDateTime now = LocalDateTime.now();
+    TransactionAnalysis analysis = new TransactionAnalysis();
+    for (TransactionAnalysisRequest request : requests) {
+      analysis.setUserId(request.getUserId());
+      analysis.setDeviceFingerprint(request.getDeviceFingerprint());
+      analysis.setIpAddress(request.getIpAddress());
+      analysis.setCreatedAt(now.minusMinutes(random.nextInt(30 * 24 * 60)));
+      index.onAnalysisSaved(request, analysis);
+      if (random.nextInt(20) == 0) {
+        analysis.setIpAddress(null);
+        for (int i = 0; i < 12; i++) {
+          analysis.setUserId(1L + random.nextInt(USERS));
+          index.onAnalysisSaved(null, analysis);
+        }
+      }
+    }
+    for (long i = 0; index.edges() < LINKAGE_EDGES; i++) {
+      long userId = 1 + random.nextInt(USERS);
+      analysis.setUserId(userId);
+      analysis.setDeviceFingerprint("device-other-" + i);
+      analysis.setIpAddress(IpAddresses.of(userId, 100 + (int) (i % 1_000)));
+      analysis.setCreatedAt(now.minusMinutes(random.nextInt(30 * 24 * 60)));
+      index.onAnalysisSaved(null, analysis);
+    }
+    return index;
+  }
+
+  /**
+   * Two weeks of activity for every merchant the requests use, about one analysis in 25 declined,
+   * and a single analysis each for the other merchants
+   */
+  MerchantRiskIndex merchantRiskIndex() {
+    MerchantRiskIndex index = new MerchantRiskIndex(null, "7d", MERCHANTS);
+    LocalDateTime now = LocalDateTime.now();
+    TransactionAnalysis analysis = new TransactionAnalysis();
+    for (TransactionAnalysisRequest request : requests) {
+      analysis.setMerchantId(request.getMerchantId());
+      for (int i = 0; i < 20; i++) {
+        analysis.setCreatedAt(now.minusMinutes(random.nextInt(14 * 24 * 60)));
+        analysis.setFraudStatus(
+            random.nextInt(25) == 0
+                ? TransactionAnalysis.FraudStatus.DECLINED
+                : TransactionAnalysis.FraudStatus.APPROVED);
+        index.onAnalysisSaved(null, analysis);
+      }
+    }
+    analysis.setFraudStatus(TransactionAnalysis.FraudStatus.APPROVED);
+    for (int i = 0; index.trackedMerchants() < MERCHANTS; i++) {
+      analysis.setMerchantId("merchant-other-" + i);
+      analysis.setCreatedAt(now.minusMinutes(random.nextInt(14 * 24 * 60)));
+      index.onAnalysisSaved(null, analysis);
+    }
+    return index;
+  }
+
+  /** The service with in-memory repositories, no Kafka, and an optional trained model */
+  FraudDetectionServiceImpl service(boolean withModel) throws Exception {
+    TransactionAnalysisRepository transactionAnalysisRepository = transactionAnalysisRepository();
+    SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    FraudPipelineMetrics fraudPipelineMetrics = new FraudPipelineMetrics();
+    set(fraudPipelineMetrics, "meterRegistry", meterRegistry);
+    set(fraudPipelineMetrics, "percentileHistograms", true);
+    fraudPipelineMetrics.init();
+    FraudModelService fraudModelService = new FraudModelService();
+    set(fraudModelService, "meterRegistry", meterRegistry);
+    set(fraudModelService, "modelPath", "");
+    set(fraudModelService, "modelVersion", "v1.0");
+    set(fraudModelService, "blendWeight", 0.3);
+    fraudModelService.init();
+    if (withModel) {
+      fraudModelService.publish(trainModel());
+    }
+
+    FraudDetectionServiceImpl service = new FraudDetectionServiceImpl();
+    set(service, "transactionAnalysisRepository", transactionAnalysisRepository);
+    set(service, "userBehaviorProfileRepository", userBehaviorProfileRepository());
+    // Local tier only, as in dev; the repository stand-in serves its misses
+    set(
+        service,
+        "userBehaviorProfileCache",
+        new TwoTierCache(
+            "userBehaviorProfiles",
+            100_000,
+            Duration.ofMinutes(5),
+            null,
+            null,
+            Long::valueOf,
+            Duration.ofSeconds(30),
+            meterRegistry,
+            Ticker.systemTicker()));
+    set(
+        service,
+        "velocityWindowAggregator",
+        new VelocityWindowAggregator(transactionAnalysisRepository, 1_000_000L));
+    set(service, "transactionAnalysisPublisher", new DiscardingPublisher());
+    set(service, "writeBehindAnalysisWriter", new WriteBehindAnalysisWriter());
+    set(service, "fraudRuleEngine", new DefaultRuleEngine());
+    set(service, "fraudModelService", fraudModelService);
+    set(service, "fraudPipelineMetrics", fraudPipelineMetrics);
+    // No shadow candidates, the default deployment
+    set(service, "shadowScoring", new ShadowScoring());
+    set(service, "ipGeoLocator", ipGeoLocator());
+    set(service, "merchantRiskIndex", merchantRiskIndex());
+    set(service, "binRiskIndex", binRiskIndex());
+    set(service, "linkageGraphIndex", linkageGraphIndex());
+    set(service, "scoringBudget", scoringBudget(fraudPipelineMetrics));
+    AnalysisDeduplicator analysisDeduplicator = new AnalysisDeduplicator();
+    set(analysisDeduplicator, "transactionAnalysisRepository", transactionAnalysisRepository);
+    set(analysisDeduplicator, "meterRegistry", meterRegistry);
+    set(analysisDeduplicator, "recentIds", 50_000L);
+    set(analysisDeduplicator, "ttl", "15m");
+    set(analysisDeduplicator, "databaseCheck", true);
+    analysisDeduplicator.init();
+    set(service, "analysisDeduplicator", analysisDeduplicator);
+    return service;
+  }
+
+  /** The default budget; profile cache misses go through a lookup pool as in production */
+  private static ScoringBudget scoringBudget(FraudPipelineMetrics fraudPipelineMetrics) {
+    ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+    executor.setCorePoolSize(16);
+    executor.setMaxPoolSize(16);
+    executor.setQueueCapacity(256);
+    executor.setDaemon(true);
+    executor.initialize();
+    ScoringBudget budget = new ScoringBudget();
+    set(budget, "fraudPipelineMetrics", fraudPipelineMetrics);
+    set(budget, "fraudLookupExecutor", executor);
+    set(budget, "budget", "50ms");
+    budget.init();
+    return budget;
+  }
+
+  /** Logistic model fitted to the rule score of synthetic transactions, as a retrain would be */
+  private FraudModel trainModel() throws Exception {
+    Instances training = FraudModel.header(REQUESTS);
+    double[] row = new double[FraudModel.ATTRIBUTE_COUNT];
+    for (TransactionAnalysisRequest request : requests) {
+      FraudFeatureVector features =
+          FraudFeatureVector.of(
+              request,
+              profiles.get(request.getUserId()),
+              VelocitySnapshot.EMPTY,
+              FraudRuleSet.DEFAULTS);
+      FraudModel.describe(row, features);
+      row[FraudModel.CLASS_INDEX] =
+          FraudRuleSet.DEFAULTS.riskScore(features) > 0.45 ? FraudModel.FRAUD_CLASS : 0;
+      training.add(new DenseInstance(1.0, row.clone()));
+    }
+    Logistic classifier = new Logistic();
+    classifier.buildClassifier(training);
+    return new FraudModel("bench", classifier);
+  }
+
+  private UserBehaviorProfile profile(long userId) {
+    UserBehaviorProfile profile = new UserBehaviorProfile();
+    profile.setUserId(userId);
+    BigDecimal average = amount(80);
+    profile.setAvgTransactionAmount(average);
+    profile.setMaxTransactionAmount(average.multiply(BigDecimal.valueOf(4 + random.nextInt(8))));
+    profile.setMinTransactionAmount(BigDecimal.ONE);
+    profile.setDailyTransactionCount(5 + random.nextInt(25));
+    profile.setTotalTransactions(200L + random.nextInt(5_000));
+    LocalTime start = LocalTime.of(6 + random.nextInt(4), 0);
+    profile.setTypicalStartTime(start);
+    profile.setTypicalEndTime(start.plusHours(12 + random.nextInt(4)));
+
+    Map<String, Map<String, Double>> frequencyCounts = new HashMap<>();
+    known(profile, frequencyCounts, Dimension.COUNTRY, pick(COUNTRIES, 1 + random.nextInt(3)));
+    known(profile, frequencyCounts, Dimension.CITY, values("city", userId, 3 + random.nextInt(4)));
+    known(
+        profile,
+        frequencyCounts,
+        Dimension.DEVICE,
+        values("device", userId, 2 + random.nextInt(3)));
+    Set<String> ips = new LinkedHashSet<>();
+    for (int i = 10 + random.nextInt(20); i > 0; i--) {
+      ips.add(IpAddresses.of(userId, i));
+    }
+    known(profile, frequencyCounts, Dimension.IP, ips);
+    known(
+        profile,
+        frequencyCounts,
+        Dimension.MERCHANT,
+        values("merchant", userId, 20 + random.nextInt(40)));
+    known(profile, frequencyCounts, Dimension.CATEGORY, pick(CATEGORIES, 8 + random.nextInt(6)));
+    known(
+        profile,
+        frequencyCounts,
+        Dimension.PAYMENT_METHOD,
+        pick(PAYMENT_METHODS, 2 + random.nextInt(2)));
+    profile.setFrequencyCounts(frequencyCounts);
+    for (int day = 1; day <= 7; day++) {
+      if (random.nextInt(4) != 0) {
+        profile.getMembership().addActiveDay(day);
+      }
+    }
+    return profile;
+  }
+
+  private void known(
+      UserBehaviorProfile profile,
+      Map<String, Map<String, Double>> frequencyCounts,
+      Dimension dimension,
+      Set<String> values) {
+    profile.getMembership().set(dimension, values);
+    Map<String, Double> counts = new HashMap<>();
+    for (String value : values) {
+      counts.put(value, 1.0 + random.nextInt(50));
+    }
+    frequencyCounts.put(dimension.key(), counts);
+  }
+
+  private TransactionAnalysisRequest request(int index, long userId) {
+    boolean unusual = random.nextInt(5) == 0;
+    long profileUser = unusual ? 1 + random.nextInt(USERS) : userId;
+    TransactionAnalysisRequest request = new TransactionAnalysisRequest();
+    request.setTransactionId("bench-" + index);
+    request.setUserId(userId);
+    request.setAmount(amount(unusual ? 900 : 80));
+    request.setCurrency("USD");
+    request.setTransactionType("PURCHASE");
+    request.setPaymentMethod(PAYMENT_METHODS[random.nextInt(2)]);
+    request.setMerchantId("merchant-" + profileUser + "-" + random.nextInt(30));
+    request.setMerchantCategory(CATEGORIES[random.nextInt(CATEGORIES.length)]);
+    request.setLocationCountry(COUNTRIES[random.nextInt(unusual ? COUNTRIES.length : 2)]);
+    request.setLocationCity("city-" + profileUser + "-" + random.nextInt(4));
+    request.setDeviceFingerprint("device-" + profileUser + "-" + random.nextInt(3));
+    request.setIpAddress(IpAddresses.of(profileUser, 1 + random.nextInt(15)));
+    request.setUserAgent("Mozilla/5.0 (iPhone; CPU iPhone OS 17_4 like Mac OS X)");
+    request.setSessionId("session-" + random.nextInt(1_000_000));
+    request.setCardBin("4" + (10_000 + random.nextInt(90_000)));
+    request.setCardLast4(String.format("%04d", random.nextInt(10_000)));
+    request.setCardType("VISA");
+    request.setTransactionTime(LocalDateTime.now().minusMinutes(random.nextInt(24 * 60)));
+    return request;
+  }
+
+  private BigDecimal amount(int typical) {
+    double value = Math.max(1.0, typical * Math.exp(random.nextGaussian() * 0.8));
+    return BigDecimal.valueOf(Math.round(value * 100), 2);
+  }
+
+  private Set<String> pick(String[] values, int count) {
+    Set<String> picked = new LinkedHashSet<>();
+    while (picked.size() < Math.min(count, values.length)) {
+      picked.add(values[random.nextInt(values.length)]);
+    }
+    return picked;
+  }
+
+  private static Set<String> values(String prefix, long userId, int count) {
+    Set<String> values = new LinkedHashSet<>();
+    for (int i = 0; i < count; i++) {
+      values.add(prefix + "-" + userId + "-" + i);
+    }
+    return values;
+  }
+
+  /**
+   * Assigns ids to saved analyses without keeping them, so every transaction id is new to it, and
+   * serves velocity seeds from memory
+   */
+  private TransactionAnalysisRepository transactionAnalysisRepository() {
+    AtomicLong ids = new AtomicLong();
+    return inMemory(
+        TransactionAnalysisRepository.class,
+        Map.of(
+            "save",
+            args -> {
+              TransactionAnalysis analysis = (TransactionAnalysis) args[0];
+              analysis.setId(ids.incrementAndGet());
+              return analysis;
+            },
+            "findByTransactionId",
+            args -> Optional.empty(),
+            "findUserTransactionAmountsSince",
+            args -> recentAmounts.getOrDefault((Long) args[0], List.of())));
+  }
+
+  private UserBehaviorProfileRepository userBehaviorProfileRepository() {
+    return inMemory(
+        UserBehaviorProfileRepository.class,
+        Map.of("findByUserId", args -> Optional.ofNullable(profiles.get((Long) args[0]))));
+  }
+
+  @FunctionalInterface
+  private interface Handler {
+    Object invoke(Object[] args);
+  }
+
+  /**
+   * A repository answering the named methods from memory. Every name must be a method of the
+   * repository, so a renamed method fails the fixture when it is built rather than mid-run; any
+   * other repository method fails when called.
+   */
+  private static <T> T inMemory(Class<T> repository, Map<String, Handler> handlers) {
+    Map<Method, Handler> dispatch = new HashMap<>();
+    for (Map.Entry<String, Handler> handler : handlers.entrySet()) {
+      List<Method> methods =
+          Arrays.stream(repository.getMethods())
+              .filter(method -> method.getName().equals(handler.getKey()))
+              .toList();
+      if (methods.isEmpty()) {
+        throw new IllegalArgumentException(
+            repository.getSimpleName() + " has no method " + handler.getKey());
+      }
+      methods.forEach(method -> dispatch.put(method, handler.getValue()));
+    }
+    return repository.cast(
+        Proxy.newProxyInstance(
+            repository.getClassLoader(),
+            new Class<?>[] {repository},
+            (proxy, method, args) -> {
+              Handler handler = dispatch.get(method);
+              if (handler != null) {
+                return handler.invoke(args);
+              }
+              return switch (method.getName()) {
+                case "toString" -> "in-memory " + repository.getSimpleName();
+                case "hashCode" -> System.identityHashCode(proxy);
+                case "equals" -> proxy == args[0];
+                default -> throw new IllegalStateException(
+                    "In-memory " + repository.getSimpleName() + " does not back " + method);
+              };
+            }));
+  }
+
+  private static void set(Object target, String name, Object value) {
+    Field field = ReflectionUtils.findField(target.getClass(), name);
+    if (field == null) {
+      throw new IllegalStateException(target.getClass().getSimpleName() + " has no " + name);
+    }
+    ReflectionUtils.makeAccessible(field);
+    ReflectionUtils.setField(field, target, value);
+  }
+
+  /** Dotted IPv4 addresses; each user's addresses are stable and spread over the ranges */
+  private static final class IpAddresses {
+    static String of(long userId, int index) {
+      long mixed = (userId * 0x9E3779B97F4A7C15L + index * 0xC2B2AE3D27D4EB4FL) >>> 32;
+      return format((1L << 24) + mixed % (223L << 24));
+    }
+
+    static String format(long address) {
+      return ((address >>> 24) & 0xFF)
+          + "."
+          + ((address >>> 16) & 0xFF)
+          + "."
+          + ((address >>> 8) & 0xFF)
+          + "."
+          + (address & 0xFF);
+    }
+  }
+
+  /** Stands in for the Kafka-backed publisher; listeners and the results topic are out of scope */
+  private static final class DiscardingPublisher extends TransactionAnalysisPublisher {
+    @Override
+    public void analysisSaved(TransactionAnalysisRequest request, TransactionAnalysis analysis) {}
+  }
+
+  /** Serves the built-in defaults without reading rule properties or files */
+  private static final class DefaultRuleEngine extends FraudRuleEngine {
+    @Override
+    public FraudRuleSet current() {
+      return FraudRuleSet.DEFAULTS;
+    }
+  }
+}
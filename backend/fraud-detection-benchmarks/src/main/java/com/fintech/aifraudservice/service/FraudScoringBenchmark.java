@@ -0,0 +1,162 @@
+package com.fintech.aifraudservice.service;
+
+import com.fintech.aifraudservice.model.TransactionAnalysis;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Latency of the single-transaction scoring path: the full {@code analyzeTransaction} of a new and
+ * of a retried transaction, the real-time score, context creation, each per-signal score, the
+ * indicator map, the IP range lookup, the merchant aggregate lookup, the card BIN lookup and the
+ * account linkage lookup. {@code scoring} selects rules only or rules blended with a trained
+ * logistic model.
+ *
+ * <p>Each invocation takes the next of {@value BenchmarkFixtures#REQUESTS} pre-built requests, so
+ * profile and velocity lookups spread over many users instead of hitting one hot entry.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(
+    value = 2,
+    jvmArgsAppend = {"-Xms1g", "-Xmx1g"})
+public class FraudScoringBenchmark {
+
+  @Param({"rules", "model"})
+  public String scoring;
+
+  private FraudDetectionServiceImpl service;
+  private IpGeoLocator ipGeoLocator;
+  private MerchantRiskIndex merchantRiskIndex;
+  private BinRiskIndex binRiskIndex;
+  private LinkageGraphIndex linkageGraphIndex;
+  private TransactionAnalysisRequest[] requests;
+  private FraudScoringContext[] contexts;
+  private TransactionAnalysis[] analyses;
+
+  /** Position in the request ring, one per benchmark thread */
+  @State(Scope.Thread)
+  public static class Cursor {
+    private static final AtomicLong TRANSACTIONS = new AtomicLong();
+
+    private int next;
+
+    int next() {
+      int index = next;
+      next = (index + 1) & (BenchmarkFixtures.REQUESTS - 1);
+      return index;
+    }
+
+    String transactionId() {
+      return "bench-tx-" + TRANSACTIONS.incrementAndGet();
+    }
+  }
+
+  @Setup(Level.Trial)
+  public void setUp() throws Exception {
+    BenchmarkFixtures fixtures = new BenchmarkFixtures(42);
+    service = fixtures.service("model".equals(scoring));
+    ipGeoLocator = fixtures.ipGeoLocator();
+    merchantRiskIndex = fixtures.merchantRiskIndex();
+    binRiskIndex = fixtures.binRiskIndex();
+    linkageGraphIndex = fixtures.linkageGraphIndex();
+    requests = fixtures.requests;
+    contexts = new FraudScoringContext[requests.length];
+    analyses = new TransactionAnalysis[requests.length];
+    for (int i = 0; i < requests.length; i++) {
+      // Also seeds every user's velocity window, which a warm service would already hold
+      contexts[i] = service.createScoringContext(requests[i]);
+      analyses[i] = service.scoreTransaction(contexts[i]);
+    }
+  }
+
+  @Benchmark
+  public TransactionAnalysis analyzeTransaction(Cursor cursor) {
+    // A new transaction id every time, so each call is scored rather than answered as a retry
+    TransactionAnalysisRequest request = requests[cursor.next()];
+    request.setTransactionId(cursor.transactionId());
+    return service.analyzeTransaction(request);
+  }
+
+  @Benchmark
+  public TransactionAnalysis analyzeRetriedTransaction(Cursor cursor) {
+    // Past the first pass over the ring every id repeats and comes from the recent index
+    return service.analyzeTransaction(requests[cursor.next()]);
+  }
+
+  @Benchmark
+  public Double calculateRealTimeFraudScore(Cursor cursor) {
+    return service.calculateRealTimeFraudScore(requests[cursor.next()]);
+  }
+
+  @Benchmark
+  public FraudScoringContext createScoringContext(Cursor cursor) {
+    return service.createScoringContext(requests[cursor.next()]);
+  }
+
+  @Benchmark
+  public TransactionAnalysis scoreTransaction(Cursor cursor) {
+    return service.scoreTransaction(contexts[cursor.next()]);
+  }
+
+  @Benchmark
+  public Double calculateVelocityScore(Cursor cursor) {
+    return service.calculateVelocityScore(contexts[cursor.next()]);
+  }
+
+  @Benchmark
+  public Double calculateBehavioralScore(Cursor cursor) {
+    return service.calculateBehavioralScore(contexts[cursor.next()]);
+  }
+
+  @Benchmark
+  public Double calculateGeolocationScore(Cursor cursor) {
+    return service.calculateGeolocationScore(contexts[cursor.next()]);
+  }
+
+  @Benchmark
+  public Double calculateDeviceScore(Cursor cursor) {
+    return service.calculateDeviceScore(contexts[cursor.next()]);
+  }
+
+  @Benchmark
+  public Map<String, String> generateFraudIndicators(Cursor cursor) {
+    int index = cursor.next();
+    return FraudDetectionServiceImpl.generateFraudIndicators(requests[index], analyses[index]);
+  }
+
+  @Benchmark
+  public IpRangeTable.IpLocation locateIpAddress(Cursor cursor) {
+    return ipGeoLocator.locate(requests[cursor.next()].getIpAddress());
+  }
+
+  @Benchmark
+  public MerchantRiskSnapshot merchantRiskSnapshot(Cursor cursor) {
+    return merchantRiskIndex.snapshot(requests[cursor.next()].getMerchantId());
+  }
+
+  @Benchmark
+  public BinRangeTable.BinInfo findCardBin(Cursor cursor) {
+    return binRiskIndex.find(requests[cursor.next()].getCardBin());
+  }
+
+  @Benchmark
+  public LinkageSnapshot linkageSnapshot(Cursor cursor) {
+    return linkageGraphIndex.snapshot(requests[cursor.next()]);
+  }
+}
@@ -0,0 +1,59 @@
+package com.fintech.aifraudservice.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+
+/**
+ * JSON binding of {@link TransactionAnalysisRequest} with an {@link ObjectMapper} configured the
+ * way Spring Boot configures the one behind {@code /analyze} and the Kafka ingestion consumer.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(2)
+public class RequestJsonBenchmark {
+
+  private ObjectWriter writer;
+  private ObjectReader reader;
+  private TransactionAnalysisRequest[] requests;
+  private byte[][] payloads;
+
+  @Setup(Level.Trial)
+  public void setUp() throws Exception {
+    ObjectMapper objectMapper = Jackson2ObjectMapperBuilder.json().build();
+    writer = objectMapper.writerFor(TransactionAnalysisRequest.class);
+    reader = objectMapper.readerFor(TransactionAnalysisRequest.class);
+    requests = new BenchmarkFixtures(42).requests;
+    payloads = new byte[requests.length][];
+    for (int i = 0; i < requests.length; i++) {
+      payloads[i] = writer.writeValueAsBytes(requests[i]);
+    }
+  }
+
+  @Benchmark
+  public byte[] serialize(FraudScoringBenchmark.Cursor cursor) throws Exception {
+    return writer.writeValueAsBytes(requests[cursor.next()]);
+  }
+
+  @Benchmark
+  public TransactionAnalysisRequest deserialize(FraudScoringBenchmark.Cursor cursor)
+      throws Exception {
+    return reader.readValue(payloads[cursor.next()]);
+  }
+}
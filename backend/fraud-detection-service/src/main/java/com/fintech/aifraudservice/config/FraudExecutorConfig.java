@@ -0,0 +1,83 @@
+package com.fintech.aifraudservice.config;
+
+import java.util.concurrent.ThreadPoolExecutor;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+
+@Configuration
+public class FraudExecutorConfig {
+
+  /**
+   * Bounded pool for batch and stream scoring. When the queue is full the submitting thread runs
+   * the task itself, which throttles producers instead of dropping work.
+   */
+  @Bean(name = "fraudScoringExecutor")
+  public ThreadPoolTaskExecutor fraudScoringExecutor(
+      @Value("${fraud.detection.batch.threads:8}") int threads,
+      @Value("${fraud.detection.batch.queue-capacity:1000}") int queueCapacity) {
+    ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+    executor.setCorePoolSize(threads);
+    executor.setMaxPoolSize(threads);
+    executor.setQueueCapacity(queueCapacity);
+    executor.setThreadNamePrefix("fraud-scoring-");
+    executor.setRejectedExecutionHandler(new ThreadPoolExecutor.CallerRunsPolicy());
+    executor.setWaitForTasksToCompleteOnShutdown(true);
+    return executor;
+  }
+
+  /**
+   * Single low-priority thread for model training, kept apart from the scoring pool so a training
+   * run never takes a scoring thread. One run at a time; the trainer rejects overlapping runs.
+   */
+  @Bean(name = "fraudTrainingExecutor")
+  public ThreadPoolTaskExecutor fraudTrainingExecutor() {
+    ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+    executor.setCorePoolSize(1);
+    executor.setMaxPoolSize(1);
+    executor.setQueueCapacity(1);
+    executor.setThreadNamePrefix("fraud-training-");
+    executor.setThreadPriority(Thread.MIN_PRIORITY);
+    executor.setDaemon(true);
+    return executor;
+  }
+
+  /**
+   * Pool for feature lookups that can block on Redis or the database, awaited by scoring threads
+   * only until their latency budget runs out. A full queue rejects the lookup and the feature is
+   * scored with its conservative default, so stalled dependencies do not pile up waiting work.
+   */
+  @Bean(name = "fraudLookupExecutor")
+  public ThreadPoolTaskExecutor fraudLookupExecutor(
+      @Value("${fraud.detection.scoring.lookup-threads:16}") int threads,
+      @Value("${fraud.detection.scoring.lookup-queue-capacity:256}") int queueCapacity) {
+    ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+    executor.setCorePoolSize(threads);
+    executor.setMaxPoolSize(threads);
+    executor.setQueueCapacity(queueCapacity);
+    executor.setThreadNamePrefix("fraud-lookup-");
+    executor.setDaemon(true);
+    executor.setRejectedExecutionHandler(new ThreadPoolExecutor.AbortPolicy());
+    return executor;
+  }
+
+  /**
+   * Small low-priority pool for shadow scoring. A full queue rejects the task and the shadow
+   * comparison is skipped, so candidate models never slow down or block production scoring.
+   */
+  @Bean(name = "fraudShadowExecutor")
+  public ThreadPoolTaskExecutor fraudShadowExecutor(
+      @Value("${fraud.detection.shadow.threads:2}") int threads,
+      @Value("${fraud.detection.shadow.queue-capacity:256}") int queueCapacity) {
+    ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+    executor.setCorePoolSize(threads);
+    executor.setMaxPoolSize(threads);
+    executor.setQueueCapacity(queueCapacity);
+    executor.setThreadNamePrefix("fraud-shadow-");
+    executor.setThreadPriority(Thread.MIN_PRIORITY);
+    executor.setDaemon(true);
+    executor.setRejectedExecutionHandler(new ThreadPoolExecutor.AbortPolicy());
+    return executor;
+  }
+}
@@ -0,0 +1,87 @@
+package com.fintech.aifraudservice.config;
+
+import com.fintech.aifraudservice.service.TransactionAnalysisRequest;
+import java.util.Map;
+import org.apache.kafka.clients.consumer.ConsumerConfig;
+import org.apache.kafka.common.serialization.StringDeserializer;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.kafka.KafkaProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.kafka.config.ConcurrentKafkaListenerContainerFactory;
+import org.springframework.kafka.core.ConsumerFactory;
+import org.springframework.kafka.core.DefaultKafkaConsumerFactory;
+import org.springframework.kafka.core.KafkaTemplate;
+import org.springframework.kafka.listener.ContainerProperties;
+import org.springframework.kafka.listener.DeadLetterPublishingRecoverer;
+import org.springframework.kafka.listener.DefaultErrorHandler;
+import org.springframework.kafka.support.serializer.ErrorHandlingDeserializer;
+import org.springframework.kafka.support.serializer.JsonDeserializer;
+import org.springframework.util.backoff.FixedBackOff;
+
+/**
+ * Consumer side of the transaction ingestion pipeline. Records are delivered to the listener in
+ * micro-batches of up to {@code max-poll-records}; offsets are committed manually once a batch has
+ * been scored and persisted. Because the listener thread does not poll again until the batch is
+ * done, the fetch rate follows scoring throughput, and {@code concurrency} bounds the number of
+ * batches in flight.
+ */
+@Configuration
+public class KafkaIngestionConfig {
+
+  @Value("${fraud.detection.ingest.concurrency:3}")
+  private int concurrency;
+
+  @Value("${fraud.detection.ingest.max-poll-records:500}")
+  private int maxPollRecords;
+
+  @Value("${fraud.detection.ingest.max-poll-interval-ms:300000}")
+  private int maxPollIntervalMs;
+
+  @Value("${fraud.detection.ingest.retry.backoff-ms:1000}")
+  private long retryBackoffMs;
+
+  @Value("${fraud.detection.ingest.retry.max-attempts:5}")
+  private long retryMaxAttempts;
+
+  @Bean
+  public ConsumerFactory<String, TransactionAnalysisRequest> transactionEventConsumerFactory(
+      KafkaProperties kafkaProperties) {
+    Map<String, Object> props = kafkaProperties.buildConsumerProperties(null);
+    props.put(ConsumerConfig.ENABLE_AUTO_COMMIT_CONFIG, false);
+    props.put(ConsumerConfig.MAX_POLL_RECORDS_CONFIG, maxPollRecords);
+    props.put(ConsumerConfig.MAX_POLL_INTERVAL_MS_CONFIG, maxPollIntervalMs);
+
+    // Producers are not required to send type headers; undecodable records surface as nulls
+    props.put(ConsumerConfig.KEY_DESERIALIZER_CLASS_CONFIG, ErrorHandlingDeserializer.class);
+    props.put(ConsumerConfig.VALUE_DESERIALIZER_CLASS_CONFIG, ErrorHandlingDeserializer.class);
+    props.put(ErrorHandlingDeserializer.KEY_DESERIALIZER_CLASS, StringDeserializer.class);
+    props.put(ErrorHandlingDeserializer.VALUE_DESERIALIZER_CLASS, JsonDeserializer.class);
+    props.put(JsonDeserializer.VALUE_DEFAULT_TYPE, TransactionAnalysisRequest.class.getName());
+    props.put(JsonDeserializer.USE_TYPE_INFO_HEADERS, false);
+    props.putIfAbsent(JsonDeserializer.TRUSTED_PACKAGES, "*");
+    return new DefaultKafkaConsumerFactory<>(props);
+  }
+
+  @Bean
+  public ConcurrentKafkaListenerContainerFactory<String, TransactionAnalysisRequest>
+      transactionBatchListenerFactory(
+          ConsumerFactory<String, TransactionAnalysisRequest> transactionEventConsumerFactory,
+          KafkaTemplate<String, Object> kafkaTemplate) {
+    ConcurrentKafkaListenerContainerFactory<String, TransactionAnalysisRequest> factory =
+        new ConcurrentKafkaListenerContainerFactory<>();
+    factory.setConsumerFactory(transactionEventConsumerFactory);
+    factory.setBatchListener(true);
+    factory.setConcurrency(concurrency);
+    factory.getContainerProperties().setAckMode(ContainerProperties.AckMode.MANUAL);
+
+    // The listener names the first record that failed; the records before it are committed and
+    // the batch is redelivered from it. Rows that were already persisted are skipped as
+    // duplicates, and a record that keeps failing goes to <topic>.DLT on its own.
+    factory.setCommonErrorHandler(
+        new DefaultErrorHandler(
+            new DeadLetterPublishingRecoverer(kafkaTemplate),
+            new FixedBackOff(retryBackoffMs, retryMaxAttempts)));
+    return factory;
+  }
+}
@@ -0,0 +1,115 @@
+package com.fintech.aifraudservice.config;
+
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import com.fintech.aifraudservice.service.TwoTierCache;
+import com.fintech.aifraudservice.service.UserBehaviorProfileUpdater;
+import com.github.benmanes.caffeine.cache.Ticker;
+import io.micrometer.core.instrument.MeterRegistry;
+import java.nio.charset.StandardCharsets;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.convert.DurationStyle;
+import org.springframework.cache.Cache;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.data.redis.cache.RedisCacheConfiguration;
+import org.springframework.data.redis.cache.RedisCacheManager;
+import org.springframework.data.redis.connection.RedisConnectionFactory;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.listener.ChannelTopic;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+import org.springframework.data.redis.serializer.GenericJackson2JsonRedisSerializer;
+import org.springframework.data.redis.serializer.RedisSerializationContext.SerializationPair;
+
+/**
+ * The behavior profile cache: a bounded local tier in front of Redis, with evictions broadcast to
+ * the other instances over Redis pub/sub. With {@code
+ * fraud.detection.profile-cache.remote.enabled=false} only the local tier is used.
+ *
+ * <p>The cache is a bean of its own rather than a {@code CacheManager}, so any manager Spring Boot
+ * auto-configures for other caches is left in place; its Redis tier is built privately for the same
+ * reason.
+ */
+@Configuration
+@Slf4j
+public class ProfileCacheConfig {
+
+  @Bean
+  public TwoTierCache userBehaviorProfileCache(
+      MeterRegistry meterRegistry,
+      ObjectProvider<RedisConnectionFactory> connectionFactory,
+      ObjectProvider<StringRedisTemplate> redisTemplate,
+      @Value("${fraud.detection.profile-cache.local.max-size:100000}") long localMaxSize,
+      @Value("${fraud.detection.profile-cache.local.ttl:5m}") String localTtl,
+      @Value("${fraud.detection.profile-cache.remote.enabled:true}") boolean remoteEnabled,
+      @Value("${fraud.detection.profile-cache.remote.ttl:1h}") String remoteTtl,
+      @Value("${fraud.detection.profile-cache.remote.retry-interval:30s}") String retryInterval,
+      @Value("${fraud.detection.profile-cache.channel:fraud:profile-cache:invalidations}")
+          String channel) {
+    Cache remote = null;
+    StringRedisTemplate publisher = null;
+    if (remoteEnabled) {
+      RedisCacheManager redis =
+          RedisCacheManager.builder(connectionFactory.getObject())
+              .cacheDefaults(
+                  RedisCacheConfiguration.defaultCacheConfig()
+                      .entryTtl(DurationStyle.detectAndParse(remoteTtl))
+                      .prefixCacheNameWith("fraud:")
+                      .serializeValuesWith(SerializationPair.fromSerializer(profileSerializer())))
+              .build();
+      redis.afterPropertiesSet();
+      remote = redis.getCache(UserBehaviorProfileUpdater.PROFILE_CACHE);
+      publisher = redisTemplate.getObject();
+    }
+    StringRedisTemplate invalidations = publisher;
+    log.info(
+        "Behavior profile cache: local tier of {} entries for {}, {}",
+        localMaxSize,
+        localTtl,
+        remoteEnabled ? "Redis tier for " + remoteTtl : "no Redis tier");
+    return new TwoTierCache(
+        UserBehaviorProfileUpdater.PROFILE_CACHE,
+        localMaxSize,
+        DurationStyle.detectAndParse(localTtl),
+        remote,
+        invalidations != null ? message -> invalidations.convertAndSend(channel, message) : null,
+        Long::valueOf,
+        DurationStyle.detectAndParse(retryInterval),
+        meterRegistry,
+        Ticker.systemTicker());
+  }
+
+  /** Applies other instances' profile evictions to the local tier */
+  @Bean
+  @ConditionalOnProperty(
+      name = "fraud.detection.profile-cache.remote.enabled",
+      havingValue = "true",
+      matchIfMissing = true)
+  public RedisMessageListenerContainer profileCacheInvalidationListener(
+      RedisConnectionFactory connectionFactory,
+      TwoTierCache userBehaviorProfileCache,
+      @Value("${fraud.detection.profile-cache.channel:fraud:profile-cache:invalidations}")
+          String channel) {
+    RedisMessageListenerContainer container = new RedisMessageListenerContainer();
+    container.setConnectionFactory(connectionFactory);
+    container.addMessageListener(
+        (message, pattern) ->
+            userBehaviorProfileCache.onInvalidation(
+                new String(message.getBody(), StandardCharsets.UTF_8)),
+        new ChannelTopic(channel));
+    return container;
+  }
+
+  /** JSON with type information; unknown properties such as derived getters are ignored on read */
+  static GenericJackson2JsonRedisSerializer profileSerializer() {
+    return new GenericJackson2JsonRedisSerializer()
+        .configure(
+            mapper ->
+                mapper
+                    .registerModule(new JavaTimeModule())
+                    .configure(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES, false));
+  }
+}
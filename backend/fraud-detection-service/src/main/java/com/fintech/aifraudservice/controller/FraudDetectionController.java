@@ -2,15 +2,35 @@ package com.fintech.aifraudservice.controller;
 
 import com.fintech.aifraudservice.model.TransactionAnalysis;
 import com.fintech.aifraudservice.model.UserBehaviorProfile;
+import com.fintech.aifraudservice.service.BatchAnalysisResult;
+import com.fintech.aifraudservice.service.BatchFraudAnalysisService;
+import com.fintech.aifraudservice.service.BinRangeTable;
+import com.fintech.aifraudservice.service.BinRiskIndex;
 import com.fintech.aifraudservice.service.FraudDetectionService;
+import com.fintech.aifraudservice.service.FraudHeavyHitters;
+import com.fintech.aifraudservice.service.FraudModelService;
+import com.fintech.aifraudservice.service.FraudRuleEngine;
+import com.fintech.aifraudservice.service.FraudRuleSet;
+import com.fintech.aifraudservice.service.HeavyHitterSketch;
+import com.fintech.aifraudservice.service.HeavyHitterSketch.HeavyHitter;
+import com.fintech.aifraudservice.service.IpGeoLocator;
+import com.fintech.aifraudservice.service.IpRangeTable;
+import com.fintech.aifraudservice.service.LinkageGraph;
+import com.fintech.aifraudservice.service.LinkageGraphIndex;
+import com.fintech.aifraudservice.service.MerchantRiskIndex;
+import com.fintech.aifraudservice.service.MerchantRiskSnapshot;
+import com.fintech.aifraudservice.service.ReviewQueue;
 import com.fintech.aifraudservice.service.TransactionAnalysisRequest;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.tags.Tag;
+import java.util.Base64;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import jakarta.validation.Valid;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 
@@ -26,6 +46,24 @@ public class FraudDetectionController {
   // Dependency Injection: Use 'final' field for required constructor injection (cleaner than @Autowired)
   private final FraudDetectionService fraudDetectionService;
 
+  private final BatchFraudAnalysisService batchFraudAnalysisService;
+
+  private final FraudRuleEngine fraudRuleEngine;
+
+  private final FraudModelService fraudModelService;
+
+  private final ReviewQueue reviewQueue;
+
+  private final FraudHeavyHitters fraudHeavyHitters;
+
+  private final IpGeoLocator ipGeoLocator;
+
+  private final MerchantRiskIndex merchantRiskIndex;
+
+  private final BinRiskIndex binRiskIndex;
+
+  private final LinkageGraphIndex linkageGraphIndex;
+
   // ----------------------------------------------------------------------------------
   // 1. Transaction Analysis and Scoring
   // ----------------------------------------------------------------------------------
@@ -43,6 +81,22 @@ public class FraudDetectionController {
     return ResponseEntity.ok(analysis);
   }
 
+  @PostMapping("/analyze/batch")
+  @Operation(summary = "Analyze transactions in bulk", description = "Analyzes a list of transactions in one call. Results are returned in input order with per-item errors.")
+  // Items are validated individually so one bad request does not reject the whole batch.
+  public ResponseEntity<List<BatchAnalysisResult>> analyzeTransactionBatch(
+      @RequestBody List<TransactionAnalysisRequest> requests) {
+    log.info("Received batch fraud analysis request with {} transactions", requests.size());
+
+    if (requests.size() > batchFraudAnalysisService.getMaxBatchSize()) {
+      log.warn("Rejected batch of {} transactions, limit is {}", requests.size(),
+          batchFraudAnalysisService.getMaxBatchSize());
+      return ResponseEntity.badRequest().build();
+    }
+
+    return ResponseEntity.ok(batchFraudAnalysisService.analyzeBatch(requests));
+  }
+
   @PostMapping("/score")
   @Operation(summary = "Get real-time fraud score", description = "Calculates a single fraud score and risk level for a transaction.")
   // Optimization: Removed ResponseEntity<Map<String, Object>> wrapper for 200 OK responses, 
@@ -87,6 +141,80 @@ public class FraudDetectionController {
     return fraudDetectionService.getFraudDetectionStats();
   }
 
+  @GetMapping("/heavy-hitters/{dimension}")
+  @Operation(summary = "Get top fraud sources", description = "Returns the approximate top-K merchant categories, countries, merchants, card BINs or IP addresses by declined transactions within a window.")
+  // Answered from in-memory sketches; counts are estimates that never undercount.
+  public ResponseEntity<List<HeavyHitter>> getTopFraudSources(
+      @PathVariable String dimension,
+      @RequestParam(defaultValue = "24h") String window,
+      @RequestParam(defaultValue = "10") int k) {
+
+    try {
+      return ResponseEntity.ok(fraudHeavyHitters.top(FraudHeavyHitters.Dimension.of(dimension), window, k));
+    } catch (IllegalArgumentException e) {
+      log.warn("Rejected heavy-hitter request: {}", e.getMessage());
+      return ResponseEntity.badRequest().build();
+    }
+  }
+
+  @GetMapping(value = "/heavy-hitters/{dimension}/sketch", produces = MediaType.APPLICATION_OCTET_STREAM_VALUE)
+  @Operation(summary = "Export a fraud source sketch", description = "Returns this instance's sketch for one dimension and window, for merging on another instance.")
+  public ResponseEntity<byte[]> getFraudSourceSketch(
+      @PathVariable String dimension,
+      @RequestParam(defaultValue = "24h") String window) {
+
+    try {
+      return ResponseEntity.ok(fraudHeavyHitters.snapshot(FraudHeavyHitters.Dimension.of(dimension), window).toBytes());
+    } catch (IllegalArgumentException e) {
+      log.warn("Rejected heavy-hitter sketch request: {}", e.getMessage());
+      return ResponseEntity.badRequest().build();
+    }
+  }
+
+  @PostMapping("/heavy-hitters/{dimension}/merged")
+  @Operation(summary = "Get cluster-wide top fraud sources", description = "Merges base64 sketches exported by other instances with this instance's sketch and returns the top-K.")
+  // Sketches merge by addition, so the answer is the same as one sketch fed by every instance.
+  public ResponseEntity<List<HeavyHitter>> getMergedTopFraudSources(
+      @PathVariable String dimension,
+      @RequestParam(defaultValue = "24h") String window,
+      @RequestParam(defaultValue = "10") int k,
+      @RequestBody List<String> peerSketches) {
+
+    try {
+      HeavyHitterSketch merged = fraudHeavyHitters.snapshot(FraudHeavyHitters.Dimension.of(dimension), window);
+      for (String peerSketch : peerSketches) {
+        merged.merge(HeavyHitterSketch.fromBytes(Base64.getDecoder().decode(peerSketch)));
+      }
+      return ResponseEntity.ok(merged.top(k));
+    } catch (IllegalArgumentException e) {
+      log.warn("Rejected merged heavy-hitter request: {}", e.getMessage());
+      return ResponseEntity.badRequest().build();
+    }
+  }
+
+  @GetMapping("/merchants/{merchantId}/risk")
+  @Operation(summary = "Get merchant risk aggregates", description = "Returns the decayed volume, declines and confirmed fraud of a merchant that feed its merchant risk score.")
+  // Served from the in-memory merchant aggregates; untracked merchants report zeros.
+  public MerchantRiskSnapshot getMerchantRisk(@PathVariable String merchantId) {
+    return merchantRiskIndex.snapshot(merchantId);
+  }
+
+  @GetMapping("/linkage/{identifier}/{value}")
+  @Operation(summary = "Get accounts sharing an identifier", description = "Returns the accounts recently seen with a device fingerprint (DEVICE), IP address (IP) or card BIN and last four digits joined by '*' (CARD).")
+  // Served from the in-memory linkage graph; the list stops at the per-identifier limit.
+  public Map<String, Object> getLinkedAccounts(
+      @PathVariable LinkageGraph.Identifier identifier,
+      @PathVariable String value) {
+
+    List<Long> accounts = linkageGraphIndex.accounts(identifier, value);
+
+    return Map.of(
+        "identifier", identifier,
+        "accounts", accounts.size(),
+        "userIds", accounts
+    );
+  }
+
   @GetMapping("/high-risk")
   @Operation(summary = "Get high-risk transactions", description = "Retrieves a list of transactions flagged for manual review.")
   // Optimization: Returning List directly.
@@ -95,6 +223,54 @@ public class FraudDetectionController {
     return fraudDetectionService.getHighRiskTransactions(limit);
   }
 
+  @GetMapping("/review-queue")
+  @Operation(summary = "Page through the review queue", description = "Returns high-risk transactions awaiting review, highest risk first. Pass the returned cursor to get the next page.")
+  // Keyset pagination: the cursor is the last item's score and id, so pages stay stable while items are added or reviewed.
+  public ResponseEntity<Map<String, Object>> getReviewQueue(
+      @RequestParam(defaultValue = "50") int limit,
+      @RequestParam(required = false) String cursor) {
+
+    ReviewQueue.Page items;
+    try {
+      items = reviewQueue.page(cursor, limit);
+    } catch (IllegalArgumentException e) {
+      log.warn("Rejected review queue request: {}", e.getMessage());
+      return ResponseEntity.badRequest().build();
+    }
+
+    Map<String, Object> page = new LinkedHashMap<>();
+    page.put("items", items.items());
+    page.put("nextCursor", items.nextCursor());
+    page.put("queueSize", reviewQueue.size());
+    return ResponseEntity.ok(page);
+  }
+
+  @PostMapping("/review-queue/claim")
+  @Operation(summary = "Claim transactions for review", description = "Assigns up to 'limit' of the highest-risk unclaimed transactions to the reviewer.")
+  // Claims are atomic per transaction and expire after the configured TTL, so abandoned work returns to the queue.
+  public List<TransactionAnalysis> claimReviews(
+      @RequestParam String reviewer,
+      @RequestParam(defaultValue = "10") int limit) {
+    return reviewQueue.claim(reviewer, limit);
+  }
+
+  @PostMapping("/review-queue/{transactionId}/release")
+  @Operation(summary = "Release a claimed transaction", description = "Returns a claimed transaction to the review queue.")
+  public ResponseEntity<Map<String, Object>> releaseReview(
+      @PathVariable String transactionId,
+      @RequestParam String reviewer) {
+
+    if (!reviewQueue.release(transactionId, reviewer)) {
+      return ResponseEntity.status(409).body(Map.of(
+          "status", "rejected",
+          "transactionId", transactionId,
+          "message", "Transaction is not claimed by " + reviewer
+      ));
+    }
+
+    return ResponseEntity.ok(Map.of("status", "success", "transactionId", transactionId));
+  }
+
   // ----------------------------------------------------------------------------------
   // 3. Model Management and Feedback
   // ----------------------------------------------------------------------------------
@@ -123,14 +299,83 @@ public class FraudDetectionController {
   // Optimization: Returning Map directly.
   public Map<String, String> retrainModel() {
     
-    fraudDetectionService.retrainFraudModel();
+    boolean started = fraudDetectionService.retrainFraudModel();
 
     return Map.of(
-        "status", "success", 
-        "message", "Model retraining initiated"
+        "status", started ? "success" : "rejected",
+        "message", started ? "Model retraining initiated" : "Model retraining already in progress"
     );
   }
 
+  @PostMapping("/rules/reload")
+  @Operation(summary = "Reload scoring rules", description = "Recompiles the scoring weights, risk thresholds and rules and swaps them in without a restart.")
+  // A rule file that fails to compile leaves the previous rule set active: answer 500 with the error and the live version.
+  public ResponseEntity<Map<String, Object>> reloadRules() {
+
+    try {
+      FraudRuleSet rules = fraudRuleEngine.reload();
+      return ResponseEntity.ok(Map.of(
+          "status", "success",
+          "version", fraudModelService.versionOf(fraudModelService.current(), rules),
+          "rules", rules.getRuleCount()
+      ));
+    } catch (RuntimeException e) {
+      FraudRuleSet active = fraudRuleEngine.current();
+      return ResponseEntity.internalServerError().body(Map.of(
+          "status", "error",
+          "message", String.valueOf(e.getMessage()),
+          "version", fraudModelService.versionOf(fraudModelService.current(), active),
+          "rules", active.getRuleCount()
+      ));
+    }
+  }
+
+  @PostMapping("/geo/reload")
+  @Operation(summary = "Reload IP ranges", description = "Reloads the IP-to-location range file used by geolocation scoring and swaps it in without a restart.")
+  // A file that fails to load leaves the previous table active: answer 500 with the error and the live source.
+  public ResponseEntity<Map<String, Object>> reloadIpRanges() {
+
+    try {
+      IpRangeTable table = ipGeoLocator.reload();
+      return ResponseEntity.ok(Map.of(
+          "status", "success",
+          "source", table.getSource(),
+          "ranges", table.size()
+      ));
+    } catch (RuntimeException e) {
+      IpRangeTable active = ipGeoLocator.current();
+      return ResponseEntity.internalServerError().body(Map.of(
+          "status", "error",
+          "message", String.valueOf(e.getMessage()),
+          "source", active.getSource(),
+          "ranges", active.size()
+      ));
+    }
+  }
+
+  @PostMapping("/bins/reload")
+  @Operation(summary = "Reload card BIN ranges", description = "Reloads the card BIN range file used by card scoring and swaps it in without a restart.")
+  // A file that fails to load leaves the previous table active: answer 500 with the error and the live source.
+  public ResponseEntity<Map<String, Object>> reloadBinRanges() {
+
+    try {
+      BinRangeTable table = binRiskIndex.reload();
+      return ResponseEntity.ok(Map.of(
+          "status", "success",
+          "source", table.getSource(),
+          "ranges", table.size()
+      ));
+    } catch (RuntimeException e) {
+      BinRangeTable active = binRiskIndex.current();
+      return ResponseEntity.internalServerError().body(Map.of(
+          "status", "error",
+          "message", String.valueOf(e.getMessage()),
+          "source", active.getSource(),
+          "ranges", active.size()
+      ));
+    }
+  }
+
   // ----------------------------------------------------------------------------------
   // 4. Health Check
   // ----------------------------------------------------------------------------------
@@ -153,17 +398,9 @@ public class FraudDetectionController {
   /**
    * Helper method to determine the risk level based on the fraud score.
    * @param fraudScore The calculated fraud score (0.0 to 1.0)
-   * @return A string representing the risk level.
+   * @return A string representing the risk level, using the active rule set's thresholds.
    */
   private String determineRiskLevel(Double fraudScore) {
-    if (fraudScore >= 0.8) {
-      return "CRITICAL";
-    } else if (fraudScore >= 0.6) {
-      return "HIGH";
-    } else if (fraudScore >= 0.3) {
-      return "MEDIUM";
-    } else {
-      return "LOW";
-    }
+    return fraudRuleEngine.current().riskLevel(fraudScore).name();
   }
 }
\ No newline at end of file
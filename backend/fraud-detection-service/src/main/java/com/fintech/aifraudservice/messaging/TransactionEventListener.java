@@ -0,0 +1,91 @@
+package com.fintech.aifraudservice.messaging;
+
+import com.fintech.aifraudservice.service.BatchAnalysisResult;
+import com.fintech.aifraudservice.service.BatchFraudAnalysisService;
+import com.fintech.aifraudservice.service.TransactionAnalysisRequest;
+import java.util.ArrayList;
+import java.util.List;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.kafka.annotation.KafkaListener;
+import org.springframework.kafka.listener.BatchListenerFailedException;
+import org.springframework.kafka.support.Acknowledgment;
+import org.springframework.stereotype.Component;
+
+/**
+ * Consumes transaction events in micro-batches and runs them through the batch scoring path.
+ *
+ * <p>Producers key records by userId, so all events of a user land on one partition and are
+ * delivered in order to a single listener thread; {@link BatchFraudAnalysisService} keeps that
+ * order inside each user group. Offsets are acknowledged only after the batch has been persisted.
+ * Invalid events are logged and skipped. A dependency failure, or an event another instance is
+ * still analyzing, fails the batch at the first such record: the records before it are committed
+ * and only the rest is redelivered, so a record that keeps failing goes to the dead-letter topic
+ * alone.
+ */
+@Component
+@Slf4j
+public class TransactionEventListener {
+
+  @Autowired private BatchFraudAnalysisService batchFraudAnalysisService;
+
+  @KafkaListener(
+      id = "transactionIngestion",
+      groupId = "${fraud.detection.ingest.group-id:fraud-detection-ingest}",
+      topics = "${fraud.detection.ingest.topic:transaction-events}",
+      containerFactory = "transactionBatchListenerFactory",
+      autoStartup = "${fraud.detection.ingest.enabled:false}")
+  public void onTransactionEvents(
+      List<ConsumerRecord<String, TransactionAnalysisRequest>> records,
+      Acknowledgment acknowledgment) {
+    List<TransactionAnalysisRequest> requests = new ArrayList<>(records.size());
+    // Position in records of each request
+    int[] recordIndexes = new int[records.size()];
+    for (int i = 0; i < records.size(); i++) {
+      ConsumerRecord<String, TransactionAnalysisRequest> record = records.get(i);
+      if (record.value() == null) {
+        log.warn(
+            "Skipping undecodable transaction event at {}-{}@{}",
+            record.topic(),
+            record.partition(),
+            record.offset());
+        continue;
+      }
+      recordIndexes[requests.size()] = i;
+      requests.add(record.value());
+    }
+
+    if (!requests.isEmpty()) {
+      List<BatchAnalysisResult> results = batchFraudAnalysisService.analyzeBatch(requests);
+      BatchAnalysisResult firstRetryable = null;
+      for (BatchAnalysisResult result : results) {
+        if (result.isRetryable()
+            && (firstRetryable == null || result.getIndex() < firstRetryable.getIndex())) {
+          firstRetryable = result;
+        }
+      }
+      // Records from the first retryable one on are redelivered and logged then
+      int redeliverFrom = firstRetryable != null ? firstRetryable.getIndex() : requests.size();
+      int failed = 0;
+      for (BatchAnalysisResult result : results) {
+        if (!result.isSuccess() && result.getIndex() < redeliverFrom) {
+          failed++;
+          log.warn(
+              "Dropping transaction event {}: {}", result.getTransactionId(), result.getError());
+        }
+      }
+      if (firstRetryable != null) {
+        throw new BatchListenerFailedException(
+            "Transaction "
+                + firstRetryable.getTransactionId()
+                + " could not be processed: "
+                + firstRetryable.getError(),
+            recordIndexes[redeliverFrom]);
+      }
+      log.debug("Ingested {} transaction events ({} rejected)", requests.size(), failed);
+    }
+
+    acknowledgment.acknowledge();
+  }
+}
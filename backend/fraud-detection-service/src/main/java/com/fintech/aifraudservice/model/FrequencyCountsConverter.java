@@ -0,0 +1,44 @@
+package com.fintech.aifraudservice.model;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.persistence.AttributeConverter;
+import jakarta.persistence.Converter;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/** Stores {@link UserBehaviorProfile#getFrequencyCounts()} as a JSON document */
+@Converter
+public class FrequencyCountsConverter
+    implements AttributeConverter<Map<String, Map<String, Double>>, String> {
+
+  private static final ObjectMapper MAPPER = new ObjectMapper();
+
+  private static final TypeReference<LinkedHashMap<String, Map<String, Double>>> TYPE =
+      new TypeReference<>() {};
+
+  @Override
+  public String convertToDatabaseColumn(Map<String, Map<String, Double>> counts) {
+    if (counts == null) {
+      return null;
+    }
+    try {
+      return MAPPER.writeValueAsString(counts);
+    } catch (JsonProcessingException e) {
+      throw new IllegalArgumentException("Cannot serialize frequency counts", e);
+    }
+  }
+
+  @Override
+  public Map<String, Map<String, Double>> convertToEntityAttribute(String json) {
+    if (json == null || json.isBlank()) {
+      return null;
+    }
+    try {
+      return MAPPER.readValue(json, TYPE);
+    } catch (JsonProcessingException e) {
+      throw new IllegalArgumentException("Cannot read frequency counts", e);
+    }
+  }
+}
@@ -0,0 +1,223 @@
+package com.fintech.aifraudservice.model;
+
+import com.fasterxml.jackson.annotation.JsonCreator;
+import com.fasterxml.jackson.annotation.JsonValue;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.Collection;
+import java.util.Set;
+import java.util.TreeSet;
+
+/**
+ * The known-value sets of a {@link UserBehaviorProfile} as 64-bit fingerprints. Each dimension is a
+ * sorted {@code long[]} searched with a binary search, and active days are a seven-bit mask. The
+ * whole structure encodes to a few hundred bytes and is stored in one column.
+ *
+ * <p>Only fingerprints are kept, so values cannot be listed back. The readable values live in
+ * {@link UserBehaviorProfile#getFrequencyCounts()}.
+ */
+public final class ProfileMembership {
+
+  private static final byte FORMAT_VERSION = 1;
+
+  // Value counts are encoded as an unsigned short
+  static final int MAX_VALUES = 0xFFFF;
+
+  private static final long[] EMPTY = new long[0];
+
+  // FNV-1a 64-bit over UTF-8 bytes, finished with the MurmurHash3 fmix64 avalanche
+  private static final long FNV_OFFSET_BASIS = 0xcbf29ce484222325L;
+  private static final long FNV_PRIME = 0x100000001b3L;
+
+  public enum Dimension {
+    COUNTRY("country"),
+    CITY("city"),
+    DEVICE("device"),
+    IP("ip"),
+    MERCHANT("merchant"),
+    CATEGORY("category"),
+    PAYMENT_METHOD("paymentMethod");
+
+    private final String key;
+
+    Dimension(String key) {
+      this.key = key;
+    }
+
+    /** Name of the dimension in the profile's frequency counts */
+    public String key() {
+      return key;
+    }
+  }
+
+  private static final Dimension[] DIMENSIONS = Dimension.values();
+
+  private final long[][] fingerprints = new long[DIMENSIONS.length][];
+
+  // Bit (day - 1) is set for each active ISO day of week, 1 = Monday
+  private int activeDays;
+
+  public ProfileMembership() {
+    Arrays.fill(fingerprints, EMPTY);
+  }
+
+  public boolean contains(Dimension dimension, String value) {
+    if (value == null) {
+      return false;
+    }
+    long[] values = fingerprints[dimension.ordinal()];
+    return values.length > 0 && Arrays.binarySearch(values, fingerprint(value)) >= 0;
+  }
+
+  /** True when the dimension has values and the given one is not among them */
+  public boolean isUnknown(Dimension dimension, String value) {
+    return fingerprints[dimension.ordinal()].length > 0 && !contains(dimension, value);
+  }
+
+  public int size(Dimension dimension) {
+    return fingerprints[dimension.ordinal()].length;
+  }
+
+  /**
+   * Replaces the values of a dimension; null and blank values are ignored. More than {@link
+   * #MAX_VALUES} distinct values are rejected.
+   */
+  public void set(Dimension dimension, Collection<String> values) {
+    long[] encoded = new long[values.size()];
+    int size = 0;
+    for (String value : values) {
+      if (value != null && !value.isBlank()) {
+        encoded[size++] = fingerprint(value);
+      }
+    }
+    Arrays.sort(encoded, 0, size);
+    int unique = 0;
+    for (int i = 0; i < size; i++) {
+      if (unique == 0 || encoded[unique - 1] != encoded[i]) {
+        encoded[unique++] = encoded[i];
+      }
+    }
+    checkSize(dimension, unique);
+    fingerprints[dimension.ordinal()] = unique == 0 ? EMPTY : Arrays.copyOf(encoded, unique);
+  }
+
+  public void add(Dimension dimension, String value) {
+    if (value == null || value.isBlank() || contains(dimension, value)) {
+      return;
+    }
+    long[] values = fingerprints[dimension.ordinal()];
+    checkSize(dimension, values.length + 1);
+    long[] grown = Arrays.copyOf(values, values.length + 1);
+    grown[values.length] = fingerprint(value);
+    Arrays.sort(grown);
+    fingerprints[dimension.ordinal()] = grown;
+  }
+
+  private static void checkSize(Dimension dimension, int size) {
+    if (size > MAX_VALUES) {
+      throw new IllegalArgumentException(
+          "Too many " + dimension.key() + " values: " + size + " > " + MAX_VALUES);
+    }
+  }
+
+  /** Marks an ISO day of week (1 = Monday, 7 = Sunday) as active */
+  public void addActiveDay(int dayOfWeek) {
+    if (dayOfWeek < 1 || dayOfWeek > 7) {
+      throw new IllegalArgumentException("Day of week must be 1-7: " + dayOfWeek);
+    }
+    activeDays |= 1 << (dayOfWeek - 1);
+  }
+
+  public Set<Integer> getActiveDaysOfWeek() {
+    Set<Integer> days = new TreeSet<>();
+    for (int day = 1; day <= 7; day++) {
+      if ((activeDays & (1 << (day - 1))) != 0) {
+        days.add(day);
+      }
+    }
+    return days;
+  }
+
+  public static long fingerprint(String value) {
+    long hash = FNV_OFFSET_BASIS;
+    for (byte b : value.getBytes(StandardCharsets.UTF_8)) {
+      hash ^= b & 0xff;
+      hash *= FNV_PRIME;
+    }
+    hash ^= hash >>> 33;
+    hash *= 0xff51afd7ed558ccdL;
+    hash ^= hash >>> 33;
+    hash *= 0xc4ceb9fe1a85ec53L;
+    hash ^= hash >>> 33;
+    return hash;
+  }
+
+  /**
+   * Layout: format version, active-day mask, dimension count, then per dimension its value count
+   * (unsigned short) followed by the sorted fingerprints.
+   */
+  public byte[] toBytes() {
+    int length = 3;
+    for (long[] values : fingerprints) {
+      length += Short.BYTES + values.length * Long.BYTES;
+    }
+    ByteBuffer buffer = ByteBuffer.allocate(length);
+    buffer.put(FORMAT_VERSION).put((byte) activeDays).put((byte) fingerprints.length);
+    for (long[] values : fingerprints) {
+      buffer.putShort((short) values.length);
+      for (long value : values) {
+        buffer.putLong(value);
+      }
+    }
+    return buffer.array();
+  }
+
+  public static ProfileMembership fromBytes(byte[] bytes) {
+    ByteBuffer buffer = ByteBuffer.wrap(bytes);
+    byte version = buffer.get();
+    if (version != FORMAT_VERSION) {
+      throw new IllegalArgumentException("Unsupported profile membership format: " + version);
+    }
+    ProfileMembership membership = new ProfileMembership();
+    membership.activeDays = buffer.get() & 0x7f;
+    // Dimensions added later are absent from older rows and stay empty
+    int dimensions = Math.min(buffer.get(), DIMENSIONS.length);
+    for (int i = 0; i < dimensions; i++) {
+      long[] values = new long[Short.toUnsignedInt(buffer.getShort())];
+      for (int j = 0; j < values.length; j++) {
+        values[j] = buffer.getLong();
+      }
+      membership.fingerprints[i] = values.length == 0 ? EMPTY : values;
+    }
+    return membership;
+  }
+
+  @JsonValue
+  public String toBase64() {
+    return Base64.getEncoder().encodeToString(toBytes());
+  }
+
+  @JsonCreator
+  public static ProfileMembership fromBase64(String encoded) {
+    return fromBytes(Base64.getDecoder().decode(encoded));
+  }
+
+  @Override
+  public boolean equals(Object o) {
+    if (this == o) {
+      return true;
+    }
+    if (!(o instanceof ProfileMembership)) {
+      return false;
+    }
+    ProfileMembership other = (ProfileMembership) o;
+    return activeDays == other.activeDays && Arrays.deepEquals(fingerprints, other.fingerprints);
+  }
+
+  @Override
+  public int hashCode() {
+    return 31 * activeDays + Arrays.deepHashCode(fingerprints);
+  }
+}
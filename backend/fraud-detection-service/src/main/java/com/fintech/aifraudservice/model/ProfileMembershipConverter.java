@@ -0,0 +1,22 @@
+package com.fintech.aifraudservice.model;
+
+import jakarta.persistence.AttributeConverter;
+import jakarta.persistence.Converter;
+
+/** Stores {@link UserBehaviorProfile#getMembership()} in its binary fingerprint encoding */
+@Converter
+public class ProfileMembershipConverter implements AttributeConverter<ProfileMembership, byte[]> {
+
+  @Override
+  public byte[] convertToDatabaseColumn(ProfileMembership membership) {
+    return membership != null ? membership.toBytes() : null;
+  }
+
+  @Override
+  public ProfileMembership convertToEntityAttribute(byte[] bytes) {
+    if (bytes == null || bytes.length == 0) {
+      return null;
+    }
+    return ProfileMembership.fromBytes(bytes);
+  }
+}
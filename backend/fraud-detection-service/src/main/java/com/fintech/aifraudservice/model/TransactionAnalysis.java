@@ -16,8 +16,16 @@ import lombok.NoArgsConstructor;
 @AllArgsConstructor
 public class TransactionAnalysis {
 
+  public static final String ID_SEQUENCE = "transaction_analyses_seq";
+  public static final int ID_ALLOCATION_SIZE = 50;
+
+  // Pooled sequence ids let Hibernate batch inserts; IDENTITY forces one round trip per row
   @Id
-  @GeneratedValue(strategy = GenerationType.IDENTITY)
+  @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = ID_SEQUENCE)
+  @SequenceGenerator(
+      name = ID_SEQUENCE,
+      sequenceName = ID_SEQUENCE,
+      allocationSize = ID_ALLOCATION_SIZE)
   private Long id;
 
   @Column(name = "transaction_id", nullable = false, unique = true)
@@ -97,6 +105,9 @@ public class TransactionAnalysis {
   @Column(name = "merchant_score")
   private Double merchantScore;
 
+  @Column(name = "card_score")
+  private Double cardScore;
+
   @Column(name = "analysis_duration_ms")
   private Long analysisDurationMs;
 
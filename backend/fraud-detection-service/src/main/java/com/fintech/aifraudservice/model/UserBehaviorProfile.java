@@ -3,7 +3,7 @@ package com.fintech.aifraudservice.model;
 import java.math.BigDecimal;
 import java.time.LocalDateTime;
 import java.time.LocalTime;
-import java.util.Set;
+import java.util.Map;
 import jakarta.persistence.*;
 import lombok.AllArgsConstructor;
 import lombok.Data;
@@ -42,6 +42,22 @@ public class UserBehaviorProfile {
   @Column(name = "monthly_transaction_count")
   private Integer monthlyTransactionCount;
 
+  // Streaming statistics behind the fields above (Welford mean/M2, exponentially decayed counts)
+  @Column(name = "amount_mean")
+  private Double amountMean;
+
+  @Column(name = "amount_m2")
+  private Double amountM2;
+
+  @Column(name = "decayed_daily_count")
+  private Double decayedDailyCount;
+
+  @Column(name = "decayed_weekly_count")
+  private Double decayedWeeklyCount;
+
+  @Column(name = "decayed_monthly_count")
+  private Double decayedMonthlyCount;
+
   // Time patterns
   @Column(name = "typical_start_time")
   private LocalTime typicalStartTime;
@@ -49,51 +65,17 @@ public class UserBehaviorProfile {
   @Column(name = "typical_end_time")
   private LocalTime typicalEndTime;
 
-  @ElementCollection(targetClass = Integer.class, fetch = FetchType.EAGER)
-  @CollectionTable(name = "user_active_days", joinColumns = @JoinColumn(name = "profile_id"))
-  @Column(name = "day_of_week")
-  private Set<Integer> activeDaysOfWeek; // 1-7 (Monday-Sunday)
-
-  // Location patterns
-  @ElementCollection(targetClass = String.class, fetch = FetchType.EAGER)
-  @CollectionTable(name = "user_frequent_countries", joinColumns = @JoinColumn(name = "profile_id"))
-  @Column(name = "country")
-  private Set<String> frequentCountries;
-
-  @ElementCollection(targetClass = String.class, fetch = FetchType.EAGER)
-  @CollectionTable(name = "user_frequent_cities", joinColumns = @JoinColumn(name = "profile_id"))
-  @Column(name = "city")
-  private Set<String> frequentCities;
-
-  // Device patterns
-  @ElementCollection(targetClass = String.class, fetch = FetchType.EAGER)
-  @CollectionTable(name = "user_known_devices", joinColumns = @JoinColumn(name = "profile_id"))
-  @Column(name = "device_fingerprint")
-  private Set<String> knownDevices;
-
-  @ElementCollection(targetClass = String.class, fetch = FetchType.EAGER)
-  @CollectionTable(name = "user_known_ips", joinColumns = @JoinColumn(name = "profile_id"))
-  @Column(name = "ip_address")
-  private Set<String> knownIpAddresses;
-
-  // Merchant patterns
-  @ElementCollection(targetClass = String.class, fetch = FetchType.EAGER)
-  @CollectionTable(name = "user_frequent_merchants", joinColumns = @JoinColumn(name = "profile_id"))
-  @Column(name = "merchant_id")
-  private Set<String> frequentMerchants;
-
-  @ElementCollection(targetClass = String.class, fetch = FetchType.EAGER)
-  @CollectionTable(
-      name = "user_frequent_categories",
-      joinColumns = @JoinColumn(name = "profile_id"))
-  @Column(name = "category")
-  private Set<String> frequentCategories;
-
-  // Payment method patterns
-  @ElementCollection(targetClass = String.class, fetch = FetchType.EAGER)
-  @CollectionTable(name = "user_payment_methods", joinColumns = @JoinColumn(name = "profile_id"))
-  @Column(name = "payment_method")
-  private Set<String> preferredPaymentMethods;
+  // Active days, locations, devices, IPs, merchants, categories and payment methods
+  @Lob
+  @Convert(converter = ProfileMembershipConverter.class)
+  @Column(name = "membership")
+  private ProfileMembership membership = new ProfileMembership();
+
+  // Decayed occurrence counts per dimension and value; the readable source of the membership above
+  @Lob
+  @Convert(converter = FrequencyCountsConverter.class)
+  @Column(name = "frequency_counts")
+  private Map<String, Map<String, Double>> frequencyCounts;
 
   // Risk indicators
   @Column(name = "base_risk_score")
@@ -134,4 +116,12 @@ public class UserBehaviorProfile {
   public void preUpdate() {
     this.profileUpdatedAt = LocalDateTime.now();
   }
+
+  /** Sample standard deviation of transaction amounts; null until two transactions are seen */
+  public Double getAmountStdDev() {
+    if (amountM2 == null || totalTransactions == null || totalTransactions < 2) {
+      return null;
+    }
+    return Math.sqrt(amountM2 / (totalTransactions - 1));
+  }
 }
@@ -0,0 +1,175 @@
+package com.fintech.aifraudservice.repository;
+
+import com.fintech.aifraudservice.model.TransactionAnalysis;
+import com.fintech.aifraudservice.model.TransactionAnalysis.FraudStatus;
+import com.fintech.aifraudservice.model.TransactionAnalysis.RiskLevel;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.function.Consumer;
+import javax.sql.DataSource;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+/**
+ * Streams the creation time, status and risk level of recent analyses through a forward-only,
+ * read-only cursor, for rebuilding in-memory activity counters and sketches without loading rows as
+ * entities.
+ */
+@Repository
+public class AnalysisActivityReader {
+
+  private static final String SELECT_SINCE =
+      "SELECT created_at, fraud_status, risk_level FROM transaction_analyses"
+          + " WHERE created_at >= ?";
+
+  private static final String SELECT_DECLINED_SINCE =
+      "SELECT created_at, merchant_id, merchant_category, location_country, ip_address"
+          + " FROM transaction_analyses WHERE fraud_status = 'DECLINED' AND created_at >= ?";
+
+  private static final String SELECT_MERCHANT_SINCE =
+      "SELECT created_at, merchant_id, fraud_status, reviewed_at FROM transaction_analyses"
+          + " WHERE merchant_id IS NOT NULL AND created_at >= ?";
+
+  private static final String SELECT_LINKAGE_SINCE =
+      "SELECT created_at, user_id, device_fingerprint, ip_address FROM transaction_analyses"
+          + " WHERE (device_fingerprint IS NOT NULL OR ip_address IS NOT NULL) AND created_at >= ?";
+
+  /** Receives one analysis row */
+  @FunctionalInterface
+  public interface ActivityConsumer {
+    void accept(LocalDateTime createdAt, FraudStatus fraudStatus, RiskLevel riskLevel);
+  }
+
+  @Autowired private DataSource dataSource;
+
+  @Autowired private PlatformTransactionManager transactionManager;
+
+  @Value("${fraud.detection.stats.seed-fetch-size:5000}")
+  private int fetchSize;
+
+  /**
+   * Passes every analysis created at or after {@code since} to the consumer.
+   *
+   * @return number of rows read
+   */
+  public long forEachCreatedSince(LocalDateTime since, ActivityConsumer consumer) {
+    long[] count = new long[1];
+    readOnly()
+        .executeWithoutResult(
+            status ->
+                cursor()
+                    .query(
+                        SELECT_SINCE,
+                        rs -> {
+                          consumer.accept(
+                              rs.getTimestamp(1).toLocalDateTime(),
+                              FraudStatus.valueOf(rs.getString(2)),
+                              RiskLevel.valueOf(rs.getString(3)));
+                          count[0]++;
+                        },
+                        Timestamp.valueOf(since)));
+    return count[0];
+  }
+
+  /**
+   * Passes the creation time, merchant, category, country and IP address of every declined analysis
+   * created at or after {@code since} to the consumer. The same instance is reused for every row.
+   *
+   * @return number of rows read
+   */
+  public long forEachDeclinedSince(LocalDateTime since, Consumer<TransactionAnalysis> consumer) {
+    TransactionAnalysis row = new TransactionAnalysis();
+    row.setFraudStatus(FraudStatus.DECLINED);
+    long[] count = new long[1];
+    readOnly()
+        .executeWithoutResult(
+            status ->
+                cursor()
+                    .query(
+                        SELECT_DECLINED_SINCE,
+                        rs -> {
+                          row.setCreatedAt(rs.getTimestamp(1).toLocalDateTime());
+                          row.setMerchantId(rs.getString(2));
+                          row.setMerchantCategory(rs.getString(3));
+                          row.setLocationCountry(rs.getString(4));
+                          row.setIpAddress(rs.getString(5));
+                          consumer.accept(row);
+                          count[0]++;
+                        },
+                        Timestamp.valueOf(since)));
+    return count[0];
+  }
+
+  /**
+   * Passes the creation time, merchant, status and review time of every analysis with a merchant
+   * created at or after {@code since} to the consumer. The same instance is reused for every row.
+   *
+   * @return number of rows read
+   */
+  public long forEachMerchantActivitySince(
+      LocalDateTime since, Consumer<TransactionAnalysis> consumer) {
+    TransactionAnalysis row = new TransactionAnalysis();
+    long[] count = new long[1];
+    readOnly()
+        .executeWithoutResult(
+            status ->
+                cursor()
+                    .query(
+                        SELECT_MERCHANT_SINCE,
+                        rs -> {
+                          row.setCreatedAt(rs.getTimestamp(1).toLocalDateTime());
+                          row.setMerchantId(rs.getString(2));
+                          row.setFraudStatus(FraudStatus.valueOf(rs.getString(3)));
+                          Timestamp reviewedAt = rs.getTimestamp(4);
+                          row.setReviewedAt(
+                              reviewedAt != null ? reviewedAt.toLocalDateTime() : null);
+                          consumer.accept(row);
+                          count[0]++;
+                        },
+                        Timestamp.valueOf(since)));
+    return count[0];
+  }
+
+  /**
+   * Passes the creation time, user, device fingerprint and IP address of every analysis with either
+   * created at or after {@code since} to the consumer. The same instance is reused for every row.
+   *
+   * @return number of rows read
+   */
+  public long forEachLinkageSince(LocalDateTime since, Consumer<TransactionAnalysis> consumer) {
+    TransactionAnalysis row = new TransactionAnalysis();
+    long[] count = new long[1];
+    readOnly()
+        .executeWithoutResult(
+            status ->
+                cursor()
+                    .query(
+                        SELECT_LINKAGE_SINCE,
+                        rs -> {
+                          row.setCreatedAt(rs.getTimestamp(1).toLocalDateTime());
+                          row.setUserId(rs.getLong(2));
+                          row.setDeviceFingerprint(rs.getString(3));
+                          row.setIpAddress(rs.getString(4));
+                          consumer.accept(row);
+                          count[0]++;
+                        },
+                        Timestamp.valueOf(since)));
+    return count[0];
+  }
+
+  private JdbcTemplate cursor() {
+    JdbcTemplate cursor = new JdbcTemplate(dataSource);
+    cursor.setFetchSize(fetchSize);
+    return cursor;
+  }
+
+  private TransactionTemplate readOnly() {
+    TransactionTemplate readOnly = new TransactionTemplate(transactionManager);
+    readOnly.setReadOnly(true);
+    return readOnly;
+  }
+}
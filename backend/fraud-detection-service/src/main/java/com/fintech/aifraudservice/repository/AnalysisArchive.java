@@ -0,0 +1,231 @@
+package com.fintech.aifraudservice.repository;
+
+import com.fintech.aifraudservice.model.TransactionAnalysis;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Repository;
+
+/**
+ * Cold storage of analyses moved out of {@code transaction_analyses}: the {@link
+ * AnalysisArchiveFile} segments in {@code fraud.detection.archive.directory}, one or more per day
+ * of creation. Lookups by user and by creation time read the segments' indexes to skip days and row
+ * groups that cannot match, so only the rows of the requested page are decoded.
+ *
+ * <p>Segments are named by day and id range, so listing them in name order lists them by day. A
+ * segment is written under a temporary name and moved into place; the segment list is then replaced
+ * with a single volatile write, so readers see it completely or not at all. Without a directory the
+ * archive is empty and every lookup reads the table alone.
+ */
+@Repository
+@Slf4j
+public class AnalysisArchive {
+
+  private static final String PREFIX = "analyses-";
+  private static final String SUFFIX = ".fda";
+
+  @Value("${fraud.detection.archive.directory:}")
+  private String directory;
+
+  private volatile List<AnalysisArchiveFile> segments = List.of();
+
+  @PostConstruct
+  void init() {
+    if (directory.isBlank()) {
+      log.info("No analysis archive directory configured, archiving is off");
+      return;
+    }
+    Path root = Path.of(directory);
+    List<AnalysisArchiveFile> opened = new ArrayList<>();
+    try {
+      Files.createDirectories(root);
+      try (DirectoryStream<Path> files = Files.newDirectoryStream(root, PREFIX + "*")) {
+        for (Path file : files) {
+          if (file.toString().endsWith(SUFFIX)) {
+            opened.add(AnalysisArchiveFile.open(file));
+          } else {
+            // Left by an archiving run that did not finish; its rows are still in the table
+            Files.delete(file);
+          }
+        }
+      }
+    } catch (IOException e) {
+      throw new UncheckedIOException("Cannot open analysis archive " + directory, e);
+    }
+    opened.sort(Comparator.comparing(segment -> segment.getPath().getFileName().toString()));
+    segments = List.copyOf(opened);
+    log.info(
+        "Opened {} archived analyses in {} segments from {}",
+        opened.stream().mapToLong(AnalysisArchiveFile::rows).sum(),
+        opened.size(),
+        directory);
+  }
+
+  @PreDestroy
+  void close() {
+    for (AnalysisArchiveFile segment : segments) {
+      try {
+        segment.close();
+      } catch (IOException e) {
+        log.warn("Cannot close archive segment {}: {}", segment.getPath(), e.getMessage());
+      }
+    }
+  }
+
+  public boolean isEnabled() {
+    return !directory.isBlank();
+  }
+
+  public boolean isEmpty() {
+    return segments.isEmpty();
+  }
+
+  /** Where the segment of a day's analyses with ids {@code minId..maxId} goes */
+  public Path segmentPath(LocalDate day, long minId, long maxId) {
+    return Path.of(
+        directory, String.format("%s%s-%019d-%019d%s", PREFIX, day, minId, maxId, SUFFIX));
+  }
+
+  /** Temporary name to write a day's segment under before {@link #publish}ing it */
+  public Path temporaryPath(LocalDate day) {
+    return Path.of(directory, PREFIX + day + ".tmp");
+  }
+
+  /**
+   * Moves a written segment into place and makes it readable. A segment of the same name, left by
+   * an earlier run that stopped before removing its rows from the table, is replaced.
+   */
+  public synchronized void publish(Path written, Path segment) {
+    AnalysisArchiveFile published;
+    try {
+      Files.move(written, segment, StandardCopyOption.ATOMIC_MOVE);
+      published = AnalysisArchiveFile.open(segment);
+    } catch (IOException e) {
+      throw new UncheckedIOException("Cannot publish archive segment " + segment, e);
+    }
+    List<AnalysisArchiveFile> updated = new ArrayList<>(segments.size() + 1);
+    AnalysisArchiveFile replaced = null;
+    for (AnalysisArchiveFile existing : segments) {
+      if (existing.getPath().equals(segment)) {
+        replaced = existing;
+      } else {
+        updated.add(existing);
+      }
+    }
+    updated.add(published);
+    updated.sort(Comparator.comparing(file -> file.getPath().getFileName().toString()));
+    segments = List.copyOf(updated);
+    if (replaced != null) {
+      try {
+        replaced.close();
+      } catch (IOException e) {
+        log.warn("Cannot close replaced archive segment {}: {}", segment, e.getMessage());
+      }
+    }
+  }
+
+  public long countByUserId(long userId) {
+    long count = 0;
+    for (AnalysisArchiveFile segment : segments) {
+      count += segment.countUser(userId);
+    }
+    return count;
+  }
+
+  /** A page of the user's archived analyses, oldest or newest first */
+  public List<TransactionAnalysis> findByUserId(
+      long userId, long offset, int limit, boolean newestFirst) {
+    List<AnalysisArchiveFile> ordered = ordered(newestFirst);
+    List<TransactionAnalysis> page = new ArrayList<>(Math.min(limit, 1024));
+    long skip = offset;
+    for (int i = 0; i < ordered.size() && page.size() < limit; i++) {
+      AnalysisArchiveFile segment = ordered.get(i);
+      int count = segment.countUser(userId);
+      if (skip >= count) {
+        skip -= count;
+        continue;
+      }
+      List<TransactionAnalysis> rows = segment.readUser(userId);
+      if (newestFirst) {
+        Collections.reverse(rows);
+      }
+      int from = (int) skip;
+      int to = Math.min(rows.size(), from + limit - page.size());
+      page.addAll(rows.subList(from, to));
+      skip = 0;
+    }
+    return page;
+  }
+
+  /** Archived analyses created between {@code start} and {@code end}, both inclusive */
+  public long countByDateRange(LocalDateTime start, LocalDateTime end) {
+    long count = 0;
+    for (AnalysisArchiveFile segment : segments) {
+      if (overlaps(segment, start, end)) {
+        count += segment.countBetween(start, end);
+      }
+    }
+    return count;
+  }
+
+  /** A page of the archived analyses created between {@code start} and {@code end} */
+  public List<TransactionAnalysis> findByDateRange(
+      LocalDateTime start, LocalDateTime end, long offset, int limit, boolean newestFirst) {
+    List<AnalysisArchiveFile> ordered = ordered(newestFirst);
+    List<TransactionAnalysis> page = new ArrayList<>(Math.min(limit, 1024));
+    long skip = offset;
+    for (int i = 0; i < ordered.size() && page.size() < limit; i++) {
+      AnalysisArchiveFile segment = ordered.get(i);
+      if (!overlaps(segment, start, end)) {
+        continue;
+      }
+      boolean whole =
+          !segment.firstCreatedAt().isBefore(start) && !segment.lastCreatedAt().isAfter(end);
+      int count = whole ? segment.rows() : -1;
+      if (count >= 0 && skip >= count) {
+        skip -= count;
+        continue;
+      }
+      if (count < 0) {
+        count = segment.countBetween(start, end);
+        if (skip >= count) {
+          skip -= count;
+          continue;
+        }
+      }
+      page.addAll(segment.readBetween(start, end, skip, limit - page.size(), newestFirst));
+      skip = 0;
+    }
+    return page;
+  }
+
+  private List<AnalysisArchiveFile> ordered(boolean newestFirst) {
+    List<AnalysisArchiveFile> current = segments;
+    if (!newestFirst) {
+      return current;
+    }
+    List<AnalysisArchiveFile> reversed = new ArrayList<>(current);
+    Collections.reverse(reversed);
+    return reversed;
+  }
+
+  private static boolean overlaps(
+      AnalysisArchiveFile segment, LocalDateTime start, LocalDateTime end) {
+    return segment.rows() > 0
+        && !segment.lastCreatedAt().isBefore(start)
+        && !segment.firstCreatedAt().isAfter(end);
+  }
+}
@@ -0,0 +1,795 @@
+package com.fintech.aifraudservice.repository;
+
+import com.fintech.aifraudservice.model.TransactionAnalysis;
+import com.fintech.aifraudservice.model.TransactionAnalysis.FraudStatus;
+import com.fintech.aifraudservice.model.TransactionAnalysis.RiskLevel;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataInput;
+import java.io.DataInputStream;
+import java.io.DataOutput;
+import java.io.DataOutputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Predicate;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.Inflater;
+import java.util.zip.InflaterInputStream;
+
+/**
+ * One immutable archive segment of {@link TransactionAnalysis} rows, written in creation order.
+ *
+ * <p>Rows are stored in groups of {@value #GROUP_ROWS}. Each group holds every column as its own
+ * deflate-compressed block, so similar values sit next to each other and compress well; the
+ * creation time and id columns are delta encoded. The footer indexes the groups by creation time
+ * and, for every user, lists the groups holding the user's rows with their counts, so a user lookup
+ * or count only touches those groups and a date range only decodes the groups at its edges. The
+ * user index is searched on disk rather than loaded.
+ *
+ * <p>Layout: the magic number, the groups, then a footer of the row count, the group table (offset,
+ * rows, first and last creation time), the user table (user id, first posting) sorted by user, and
+ * the postings (group, rows); the file ends with the footer offset and the magic number again.
+ * Readers are thread-safe.
+ */
+public final class AnalysisArchiveFile implements Closeable {
+
+  static final int GROUP_ROWS = 4096;
+
+  private static final int MAGIC = 0x46444131; // "FDA1"
+  private static final int TRAILER_BYTES = Long.BYTES + Integer.BYTES;
+  private static final int USER_ENTRY_BYTES = Long.BYTES + Integer.BYTES;
+  private static final int POSTING_BYTES = 2 * Integer.BYTES;
+  private static final long NULL_TIME = Long.MIN_VALUE;
+  private static final RiskLevel[] RISK_LEVELS = RiskLevel.values();
+  private static final FraudStatus[] FRAUD_STATUSES = FraudStatus.values();
+
+  /** Writes and reads one column of a group, given the previous row for delta encoding */
+  private interface Column {
+    void write(DataOutput out, TransactionAnalysis row, TransactionAnalysis previous)
+        throws IOException;
+
+    void read(DataInput in, TransactionAnalysis row, TransactionAnalysis previous)
+        throws IOException;
+  }
+
+  // Creation time first and user second, so counting and filtering decode only the first columns
+  private static final List<Column> COLUMNS =
+      List.of(
+          new Column() {
+            public void write(DataOutput out, TransactionAnalysis row, TransactionAnalysis prev)
+                throws IOException {
+              writeVarLong(out, micros(row.getCreatedAt()) - previousMicros(prev));
+            }
+
+            public void read(DataInput in, TransactionAnalysis row, TransactionAnalysis prev)
+                throws IOException {
+              row.setCreatedAt(time(previousMicros(prev) + readVarLong(in)));
+            }
+          },
+          longColumn(TransactionAnalysis::getUserId, TransactionAnalysis::setUserId),
+          new Column() {
+            public void write(DataOutput out, TransactionAnalysis row, TransactionAnalysis prev)
+                throws IOException {
+              writeVarLong(out, row.getId() - (prev != null ? prev.getId() : 0));
+            }
+
+            public void read(DataInput in, TransactionAnalysis row, TransactionAnalysis prev)
+                throws IOException {
+              row.setId((prev != null ? prev.getId() : 0) + readVarLong(in));
+            }
+          },
+          stringColumn(
+              TransactionAnalysis::getTransactionId, TransactionAnalysis::setTransactionId),
+          new Column() {
+            public void write(DataOutput out, TransactionAnalysis row, TransactionAnalysis prev)
+                throws IOException {
+              writeDecimal(out, row.getAmount());
+            }
+
+            public void read(DataInput in, TransactionAnalysis row, TransactionAnalysis prev)
+                throws IOException {
+              row.setAmount(readDecimal(in));
+            }
+          },
+          stringColumn(TransactionAnalysis::getCurrency, TransactionAnalysis::setCurrency),
+          stringColumn(TransactionAnalysis::getMerchantId, TransactionAnalysis::setMerchantId),
+          stringColumn(
+              TransactionAnalysis::getMerchantCategory, TransactionAnalysis::setMerchantCategory),
+          stringColumn(
+              TransactionAnalysis::getTransactionType, TransactionAnalysis::setTransactionType),
+          stringColumn(
+              TransactionAnalysis::getPaymentMethod, TransactionAnalysis::setPaymentMethod),
+          stringColumn(TransactionAnalysis::getIpAddress, TransactionAnalysis::setIpAddress),
+          stringColumn(
+              TransactionAnalysis::getDeviceFingerprint, TransactionAnalysis::setDeviceFingerprint),
+          stringColumn(
+              TransactionAnalysis::getLocationCountry, TransactionAnalysis::setLocationCountry),
+          stringColumn(TransactionAnalysis::getLocationCity, TransactionAnalysis::setLocationCity),
+          doubleColumn(TransactionAnalysis::getRiskScore, TransactionAnalysis::setRiskScore),
+          new Column() {
+            public void write(DataOutput out, TransactionAnalysis row, TransactionAnalysis prev)
+                throws IOException {
+              out.writeByte(row.getRiskLevel() != null ? row.getRiskLevel().ordinal() : -1);
+              out.writeByte(row.getFraudStatus() != null ? row.getFraudStatus().ordinal() : -1);
+            }
+
+            public void read(DataInput in, TransactionAnalysis row, TransactionAnalysis prev)
+                throws IOException {
+              byte riskLevel = in.readByte();
+              byte fraudStatus = in.readByte();
+              row.setRiskLevel(riskLevel >= 0 ? RISK_LEVELS[riskLevel] : null);
+              row.setFraudStatus(fraudStatus >= 0 ? FRAUD_STATUSES[fraudStatus] : null);
+            }
+          },
+          stringColumn(
+              TransactionAnalysis::getMlModelVersion, TransactionAnalysis::setMlModelVersion),
+          new Column() {
+            public void write(DataOutput out, TransactionAnalysis row, TransactionAnalysis prev)
+                throws IOException {
+              Map<String, String> indicators = row.getFraudIndicators();
+              writeVarLong(out, indicators != null ? indicators.size() : 0);
+              if (indicators != null) {
+                for (Map.Entry<String, String> indicator : indicators.entrySet()) {
+                  writeString(out, indicator.getKey());
+                  writeString(out, indicator.getValue());
+                }
+              }
+            }
+
+            public void read(DataInput in, TransactionAnalysis row, TransactionAnalysis prev)
+                throws IOException {
+              int size = (int) readVarLong(in);
+              Map<String, String> indicators = new HashMap<>(Math.max(4, size * 2));
+              for (int i = 0; i < size; i++) {
+                indicators.put(readString(in), readString(in));
+              }
+              row.setFraudIndicators(indicators);
+            }
+          },
+          doubleColumn(
+              TransactionAnalysis::getVelocityScore, TransactionAnalysis::setVelocityScore),
+          doubleColumn(
+              TransactionAnalysis::getBehavioralScore, TransactionAnalysis::setBehavioralScore),
+          doubleColumn(
+              TransactionAnalysis::getGeolocationScore, TransactionAnalysis::setGeolocationScore),
+          doubleColumn(TransactionAnalysis::getDeviceScore, TransactionAnalysis::setDeviceScore),
+          doubleColumn(
+              TransactionAnalysis::getTimeOfDayScore, TransactionAnalysis::setTimeOfDayScore),
+          doubleColumn(TransactionAnalysis::getAmountScore, TransactionAnalysis::setAmountScore),
+          doubleColumn(
+              TransactionAnalysis::getMerchantScore, TransactionAnalysis::setMerchantScore),
+          doubleColumn(TransactionAnalysis::getCardScore, TransactionAnalysis::setCardScore),
+          longColumn(
+              TransactionAnalysis::getAnalysisDurationMs,
+              TransactionAnalysis::setAnalysisDurationMs),
+          timeColumn(TransactionAnalysis::getUpdatedAt, TransactionAnalysis::setUpdatedAt),
+          stringColumn(TransactionAnalysis::getReviewedBy, TransactionAnalysis::setReviewedBy),
+          timeColumn(TransactionAnalysis::getReviewedAt, TransactionAnalysis::setReviewedAt),
+          stringColumn(TransactionAnalysis::getReviewNotes, TransactionAnalysis::setReviewNotes));
+
+  private static final int CREATED_AT_COLUMNS = 1;
+  private static final int USER_COLUMNS = 2;
+
+  private final Path path;
+  private final FileChannel channel;
+  private final int rows;
+  private final long[] groupOffsets;
+  private final int[] groupRows;
+  private final long[] groupFirstMicros;
+  private final long[] groupLastMicros;
+  private final long footerOffset;
+  private final int users;
+  private final long userTableOffset;
+  private final long postingTableOffset;
+  private final int postings;
+
+  private AnalysisArchiveFile(Path path) throws IOException {
+    this.path = path;
+    this.channel = FileChannel.open(path, StandardOpenOption.READ);
+    try {
+      long size = channel.size();
+      ByteBuffer trailer = read(size - TRAILER_BYTES, TRAILER_BYTES);
+      footerOffset = trailer.getLong();
+      if (trailer.getInt() != MAGIC || read(0, Integer.BYTES).getInt() != MAGIC) {
+        throw new IOException("Not an analysis archive: " + path);
+      }
+      ByteBuffer header = read(footerOffset, 2 * Integer.BYTES);
+      rows = header.getInt();
+      int groups = header.getInt();
+      ByteBuffer groupTable = read(footerOffset + 2 * Integer.BYTES, groups * 28);
+      groupOffsets = new long[groups];
+      groupRows = new int[groups];
+      groupFirstMicros = new long[groups];
+      groupLastMicros = new long[groups];
+      for (int g = 0; g < groups; g++) {
+        groupOffsets[g] = groupTable.getLong();
+        groupRows[g] = groupTable.getInt();
+        groupFirstMicros[g] = groupTable.getLong();
+        groupLastMicros[g] = groupTable.getLong();
+      }
+      long position = footerOffset + 2 * Integer.BYTES + groups * 28L;
+      users = read(position, Integer.BYTES).getInt();
+      userTableOffset = position + Integer.BYTES;
+      position = userTableOffset + (long) users * USER_ENTRY_BYTES;
+      postings = read(position, Integer.BYTES).getInt();
+      postingTableOffset = position + Integer.BYTES;
+    } catch (IOException | RuntimeException e) {
+      channel.close();
+      throw e;
+    }
+  }
+
+  /**
+   * Opens a segment and reads its footer.
+   *
+   * @throws UncheckedIOException when the file cannot be read or is not an archive segment
+   */
+  public static AnalysisArchiveFile open(Path path) {
+    try {
+      return new AnalysisArchiveFile(path);
+    } catch (IOException e) {
+      throw new UncheckedIOException("Cannot open analysis archive " + path, e);
+    }
+  }
+
+  /** Starts a segment at {@code path}; rows must be appended in creation order */
+  public static Writer create(Path path) throws IOException {
+    return new Writer(path);
+  }
+
+  public Path getPath() {
+    return path;
+  }
+
+  public int rows() {
+    return rows;
+  }
+
+  public LocalDateTime firstCreatedAt() {
+    return groupFirstMicros.length > 0 ? time(groupFirstMicros[0]) : null;
+  }
+
+  public LocalDateTime lastCreatedAt() {
+    return groupLastMicros.length > 0 ? time(groupLastMicros[groupLastMicros.length - 1]) : null;
+  }
+
+  /** Number of the user's rows, from the index alone */
+  public int countUser(long userId) {
+    int count = 0;
+    for (long posting : postings(userId)) {
+      count += (int) posting;
+    }
+    return count;
+  }
+
+  /** The user's rows in creation order */
+  public List<TransactionAnalysis> readUser(long userId) {
+    List<TransactionAnalysis> result = new ArrayList<>();
+    for (long posting : postings(userId)) {
+      int group = (int) (posting >>> 32);
+      TransactionAnalysis[] candidates = decode(group, USER_COLUMNS);
+      boolean[] matches = new boolean[candidates.length];
+      for (int i = 0; i < candidates.length; i++) {
+        matches[i] = candidates[i].getUserId() == userId;
+      }
+      TransactionAnalysis[] decoded = decode(group, COLUMNS.size());
+      for (int i = 0; i < decoded.length; i++) {
+        if (matches[i]) {
+          result.add(decoded[i]);
+        }
+      }
+    }
+    return result;
+  }
+
+  /** Number of rows created between {@code start} and {@code end}, both inclusive */
+  public int countBetween(LocalDateTime start, LocalDateTime end) {
+    long from = micros(start);
+    long to = micros(end);
+    int count = 0;
+    for (int g = 0; g < groupRows.length; g++) {
+      if (groupLastMicros[g] < from || groupFirstMicros[g] > to) {
+        continue;
+      }
+      if (groupFirstMicros[g] >= from && groupLastMicros[g] <= to) {
+        count += groupRows[g];
+        continue;
+      }
+      for (TransactionAnalysis row : decode(g, CREATED_AT_COLUMNS)) {
+        long created = micros(row.getCreatedAt());
+        if (created >= from && created <= to) {
+          count++;
+        }
+      }
+    }
+    return count;
+  }
+
+  /**
+   * Rows created between {@code start} and {@code end}, both inclusive, after skipping {@code
+   * offset} of them; in creation order, or newest first.
+   */
+  public List<TransactionAnalysis> readBetween(
+      LocalDateTime start, LocalDateTime end, long offset, int limit, boolean newestFirst) {
+    long from = micros(start);
+    long to = micros(end);
+    Predicate<TransactionAnalysis> inRange =
+        row -> {
+          long created = micros(row.getCreatedAt());
+          return created >= from && created <= to;
+        };
+    List<TransactionAnalysis> result = new ArrayList<>(Math.min(limit, GROUP_ROWS));
+    long skip = offset;
+    for (int i = 0; i < groupRows.length && result.size() < limit; i++) {
+      int g = newestFirst ? groupRows.length - 1 - i : i;
+      if (groupLastMicros[g] < from || groupFirstMicros[g] > to) {
+        continue;
+      }
+      boolean whole = groupFirstMicros[g] >= from && groupLastMicros[g] <= to;
+      if (whole && skip >= groupRows[g]) {
+        skip -= groupRows[g];
+        continue;
+      }
+      TransactionAnalysis[] decoded = decode(g, COLUMNS.size());
+      for (int j = 0; j < decoded.length && result.size() < limit; j++) {
+        TransactionAnalysis row = decoded[newestFirst ? decoded.length - 1 - j : j];
+        if (!inRange.test(row)) {
+          continue;
+        }
+        if (skip > 0) {
+          skip--;
+        } else {
+          result.add(row);
+        }
+      }
+    }
+    return result;
+  }
+
+  /** Every row in creation order */
+  public List<TransactionAnalysis> readAll() {
+    List<TransactionAnalysis> result = new ArrayList<>(rows);
+    for (int g = 0; g < groupRows.length; g++) {
+      result.addAll(Arrays.asList(decode(g, COLUMNS.size())));
+    }
+    return result;
+  }
+
+  @Override
+  public void close() throws IOException {
+    channel.close();
+  }
+
+  /** Postings of the user as {@code group << 32 | rows}; empty when the user has no rows */
+  private long[] postings(long userId) {
+    int low = 0;
+    int high = users - 1;
+    while (low <= high) {
+      int mid = (low + high) >>> 1;
+      ByteBuffer entry = read(userTableOffset + (long) mid * USER_ENTRY_BYTES, USER_ENTRY_BYTES);
+      long user = entry.getLong();
+      if (user < userId) {
+        low = mid + 1;
+      } else if (user > userId) {
+        high = mid - 1;
+      } else {
+        int first = entry.getInt();
+        int next =
+            mid + 1 < users
+                ? read(userTableOffset + (long) (mid + 1) * USER_ENTRY_BYTES + Long.BYTES, 4)
+                    .getInt()
+                : postings;
+        ByteBuffer table =
+            read(postingTableOffset + (long) first * POSTING_BYTES, (next - first) * POSTING_BYTES);
+        long[] result = new long[next - first];
+        for (int i = 0; i < result.length; i++) {
+          result[i] = (long) table.getInt() << 32 | table.getInt();
+        }
+        return result;
+      }
+    }
+    return new long[0];
+  }
+
+  /** The first {@code columns} columns of a group's rows */
+  private TransactionAnalysis[] decode(int group, int columns) {
+    long end = group + 1 < groupOffsets.length ? groupOffsets[group + 1] : footerOffset;
+    ByteBuffer block = read(groupOffsets[group], (int) (end - groupOffsets[group]));
+    TransactionAnalysis[] decoded = new TransactionAnalysis[groupRows[group]];
+    for (int i = 0; i < decoded.length; i++) {
+      decoded[i] = new TransactionAnalysis();
+      decoded[i].setFraudIndicators(new HashMap<>());
+    }
+    Inflater inflater = new Inflater();
+    try {
+      for (int c = 0; c < columns; c++) {
+        int length = block.getInt();
+        inflater.reset();
+        DataInputStream in =
+            new DataInputStream(
+                new InflaterInputStream(
+                    new ByteArrayInputStream(block.array(), block.position(), length), inflater));
+        Column column = COLUMNS.get(c);
+        for (int i = 0; i < decoded.length; i++) {
+          column.read(in, decoded[i], i > 0 ? decoded[i - 1] : null);
+        }
+        block.position(block.position() + length);
+      }
+    } catch (IOException e) {
+      throw new UncheckedIOException("Corrupt analysis archive " + path, e);
+    } finally {
+      inflater.end();
+    }
+    return decoded;
+  }
+
+  private ByteBuffer read(long position, int length) {
+    ByteBuffer buffer = ByteBuffer.allocate(length);
+    try {
+      while (buffer.hasRemaining()) {
+        if (channel.read(buffer, position + buffer.position()) < 0) {
+          throw new IOException("Truncated analysis archive " + path);
+        }
+      }
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+    return buffer.flip();
+  }
+
+  /** Streams rows into a new segment; nothing is readable until {@link #finish} */
+  public static final class Writer implements Closeable {
+    private final FileOutputStream file;
+    private final DataOutputStream out;
+    private final List<TransactionAnalysis> group = new ArrayList<>(GROUP_ROWS);
+    private final Deflater deflater = new Deflater();
+    private final ByteArrayOutputStream columnBytes = new ByteArrayOutputStream();
+    private long position;
+    private int rows;
+    private long lastMicros = Long.MIN_VALUE;
+
+    // Group table
+    private long[] groupOffsets = new long[16];
+    private int[] groupRows = new int[16];
+    private long[] groupFirstMicros = new long[16];
+    private long[] groupLastMicros = new long[16];
+    private int groups;
+
+    // One (user, group << 32 | rows) entry per user and group, sorted by user at the end
+    private long[] postingUsers = new long[1024];
+    private long[] postingValues = new long[1024];
+    private int postings;
+
+    private Writer(Path path) throws IOException {
+      file = new FileOutputStream(path.toFile());
+      out = new DataOutputStream(new BufferedOutputStream(file, 1 << 16));
+      out.writeInt(MAGIC);
+      position = Integer.BYTES;
+    }
+
+    public void append(TransactionAnalysis row) throws IOException {
+      long created = micros(row.getCreatedAt());
+      if (row.getId() == null || row.getUserId() == null || created == NULL_TIME) {
+        throw new IllegalArgumentException("Archived analyses need an id, user and creation time");
+      }
+      if (created < lastMicros) {
+        throw new IllegalArgumentException("Analyses must be archived in creation order");
+      }
+      lastMicros = created;
+      group.add(row);
+      rows++;
+      if (group.size() == GROUP_ROWS) {
+        flushGroup();
+      }
+    }
+
+    public int rows() {
+      return rows;
+    }
+
+    /** Writes the index and footer; the segment is complete once this returns */
+    public void finish() throws IOException {
+      flushGroup();
+      long footerOffset = position;
+      out.writeInt(rows);
+      out.writeInt(groups);
+      for (int g = 0; g < groups; g++) {
+        out.writeLong(groupOffsets[g]);
+        out.writeInt(groupRows[g]);
+        out.writeLong(groupFirstMicros[g]);
+        out.writeLong(groupLastMicros[g]);
+      }
+      int[] order = sortedPostings();
+      int users = 0;
+      for (int i = 0; i < postings; i++) {
+        if (i == 0 || postingUsers[order[i]] != postingUsers[order[i - 1]]) {
+          users++;
+        }
+      }
+      out.writeInt(users);
+      for (int i = 0; i < postings; i++) {
+        if (i == 0 || postingUsers[order[i]] != postingUsers[order[i - 1]]) {
+          out.writeLong(postingUsers[order[i]]);
+          out.writeInt(i);
+        }
+      }
+      out.writeInt(postings);
+      for (int i = 0; i < postings; i++) {
+        out.writeInt((int) (postingValues[order[i]] >>> 32));
+        out.writeInt((int) postingValues[order[i]]);
+      }
+      out.writeLong(footerOffset);
+      out.writeInt(MAGIC);
+      out.flush();
+      file.getFD().sync();
+    }
+
+    @Override
+    public void close() throws IOException {
+      deflater.end();
+      out.close();
+    }
+
+    private void flushGroup() throws IOException {
+      if (group.isEmpty()) {
+        return;
+      }
+      if (groups == groupOffsets.length) {
+        int capacity = groups * 2;
+        groupOffsets = Arrays.copyOf(groupOffsets, capacity);
+        groupRows = Arrays.copyOf(groupRows, capacity);
+        groupFirstMicros = Arrays.copyOf(groupFirstMicros, capacity);
+        groupLastMicros = Arrays.copyOf(groupLastMicros, capacity);
+      }
+      groupOffsets[groups] = position;
+      groupRows[groups] = group.size();
+      groupFirstMicros[groups] = micros(group.get(0).getCreatedAt());
+      groupLastMicros[groups] = micros(group.get(group.size() - 1).getCreatedAt());
+
+      for (Column column : COLUMNS) {
+        columnBytes.reset();
+        deflater.reset();
+        DeflaterOutputStream compressed = new DeflaterOutputStream(columnBytes, deflater);
+        DataOutputStream columnOut = new DataOutputStream(compressed);
+        for (int i = 0; i < group.size(); i++) {
+          column.write(columnOut, group.get(i), i > 0 ? group.get(i - 1) : null);
+        }
+        columnOut.flush();
+        compressed.finish();
+        out.writeInt(columnBytes.size());
+        columnBytes.writeTo(out);
+        position += Integer.BYTES + columnBytes.size();
+      }
+
+      // Rows per user in this group
+      long[] userIds = new long[group.size()];
+      for (int i = 0; i < userIds.length; i++) {
+        userIds[i] = group.get(i).getUserId();
+      }
+      Arrays.sort(userIds);
+      for (int i = 0, run = 1; i < userIds.length; i++, run++) {
+        if (i + 1 == userIds.length || userIds[i + 1] != userIds[i]) {
+          addPosting(userIds[i], (long) groups << 32 | run);
+          run = 0;
+        }
+      }
+      groups++;
+      group.clear();
+    }
+
+    private void addPosting(long userId, long value) {
+      if (postings == postingUsers.length) {
+        postingUsers = Arrays.copyOf(postingUsers, postings * 2);
+        postingValues = Arrays.copyOf(postingValues, postings * 2);
+      }
+      postingUsers[postings] = userId;
+      postingValues[postings] = value;
+      postings++;
+    }
+
+    /** Posting indexes ordered by user, then group; stable merge sort of an index array */
+    private int[] sortedPostings() {
+      int[] order = new int[postings];
+      for (int i = 0; i < postings; i++) {
+        order[i] = i;
+      }
+      int[] scratch = new int[postings];
+      for (int width = 1; width < postings; width *= 2) {
+        for (int from = 0; from < postings - width; from += 2 * width) {
+          int middle = from + width;
+          int to = Math.min(from + 2 * width, postings);
+          int left = from;
+          int right = middle;
+          for (int k = from; k < to; k++) {
+            if (right >= to
+                || (left < middle && postingUsers[order[left]] <= postingUsers[order[right]])) {
+              scratch[k] = order[left++];
+            } else {
+              scratch[k] = order[right++];
+            }
+          }
+          System.arraycopy(scratch, from, order, from, to - from);
+        }
+      }
+      return order;
+    }
+  }
+
+  private interface Getter<T> {
+    T get(TransactionAnalysis row);
+  }
+
+  private interface Setter<T> {
+    void set(TransactionAnalysis row, T value);
+  }
+
+  private static Column stringColumn(Getter<String> getter, Setter<String> setter) {
+    return new Column() {
+      public void write(DataOutput out, TransactionAnalysis row, TransactionAnalysis prev)
+          throws IOException {
+        writeString(out, getter.get(row));
+      }
+
+      public void read(DataInput in, TransactionAnalysis row, TransactionAnalysis prev)
+          throws IOException {
+        setter.set(row, readString(in));
+      }
+    };
+  }
+
+  private static Column doubleColumn(Getter<Double> getter, Setter<Double> setter) {
+    return new Column() {
+      public void write(DataOutput out, TransactionAnalysis row, TransactionAnalysis prev)
+          throws IOException {
+        Double value = getter.get(row);
+        out.writeBoolean(value != null);
+        if (value != null) {
+          out.writeDouble(value);
+        }
+      }
+
+      public void read(DataInput in, TransactionAnalysis row, TransactionAnalysis prev)
+          throws IOException {
+        setter.set(row, in.readBoolean() ? in.readDouble() : null);
+      }
+    };
+  }
+
+  private static Column longColumn(Getter<Long> getter, Setter<Long> setter) {
+    return new Column() {
+      public void write(DataOutput out, TransactionAnalysis row, TransactionAnalysis prev)
+          throws IOException {
+        Long value = getter.get(row);
+        out.writeBoolean(value != null);
+        if (value != null) {
+          writeVarLong(out, value);
+        }
+      }
+
+      public void read(DataInput in, TransactionAnalysis row, TransactionAnalysis prev)
+          throws IOException {
+        setter.set(row, in.readBoolean() ? readVarLong(in) : null);
+      }
+    };
+  }
+
+  private static Column timeColumn(Getter<LocalDateTime> getter, Setter<LocalDateTime> setter) {
+    return new Column() {
+      public void write(DataOutput out, TransactionAnalysis row, TransactionAnalysis prev)
+          throws IOException {
+        LocalDateTime value = getter.get(row);
+        out.writeBoolean(value != null);
+        if (value != null) {
+          writeVarLong(out, micros(value) - micros(row.getCreatedAt()));
+        }
+      }
+
+      public void read(DataInput in, TransactionAnalysis row, TransactionAnalysis prev)
+          throws IOException {
+        // Relative to the creation time, which is decoded first
+        setter.set(
+            row, in.readBoolean() ? time(micros(row.getCreatedAt()) + readVarLong(in)) : null);
+      }
+    };
+  }
+
+  /** Microseconds of a local date-time on the UTC time line, the precision of the column */
+  static long micros(LocalDateTime time) {
+    if (time == null) {
+      return NULL_TIME;
+    }
+    return time.toEpochSecond(ZoneOffset.UTC) * 1_000_000L + time.getNano() / 1_000;
+  }
+
+  static LocalDateTime time(long micros) {
+    return LocalDateTime.ofEpochSecond(
+        Math.floorDiv(micros, 1_000_000L),
+        (int) Math.floorMod(micros, 1_000_000L) * 1_000,
+        ZoneOffset.UTC);
+  }
+
+  private static long previousMicros(TransactionAnalysis previous) {
+    return previous != null ? micros(previous.getCreatedAt()) : 0L;
+  }
+
+  /** Zig-zag variable-length encoding, one to ten bytes */
+  private static void writeVarLong(DataOutput out, long value) throws IOException {
+    long zigzag = (value << 1) ^ (value >> 63);
+    while ((zigzag & ~0x7FL) != 0) {
+      out.writeByte((int) ((zigzag & 0x7F) | 0x80));
+      zigzag >>>= 7;
+    }
+    out.writeByte((int) zigzag);
+  }
+
+  private static long readVarLong(DataInput in) throws IOException {
+    long zigzag = 0;
+    for (int shift = 0; ; shift += 7) {
+      byte b = in.readByte();
+      zigzag |= (long) (b & 0x7F) << shift;
+      if ((b & 0x80) == 0) {
+        break;
+      }
+    }
+    return (zigzag >>> 1) ^ -(zigzag & 1);
+  }
+
+  private static void writeString(DataOutput out, String value) throws IOException {
+    if (value == null) {
+      writeVarLong(out, -1);
+      return;
+    }
+    byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+    writeVarLong(out, bytes.length);
+    out.write(bytes);
+  }
+
+  private static String readString(DataInput in) throws IOException {
+    int length = (int) readVarLong(in);
+    if (length < 0) {
+      return null;
+    }
+    byte[] bytes = new byte[length];
+    in.readFully(bytes);
+    return new String(bytes, StandardCharsets.UTF_8);
+  }
+
+  private static void writeDecimal(DataOutput out, BigDecimal value) throws IOException {
+    if (value == null) {
+      out.writeByte(-1);
+      return;
+    }
+    out.writeByte(value.scale());
+    byte[] unscaled = value.unscaledValue().toByteArray();
+    writeVarLong(out, unscaled.length);
+    out.write(unscaled);
+  }
+
+  private static BigDecimal readDecimal(DataInput in) throws IOException {
+    byte scale = in.readByte();
+    if (scale < 0) {
+      return null;
+    }
+    byte[] unscaled = new byte[(int) readVarLong(in)];
+    in.readFully(unscaled);
+    return new BigDecimal(new BigInteger(unscaled), scale);
+  }
+}
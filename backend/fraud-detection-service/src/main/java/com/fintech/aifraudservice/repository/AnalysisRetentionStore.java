@@ -0,0 +1,193 @@
+package com.fintech.aifraudservice.repository;
+
+import com.fintech.aifraudservice.model.TransactionAnalysis;
+import com.fintech.aifraudservice.model.TransactionAnalysis.FraudStatus;
+import com.fintech.aifraudservice.model.TransactionAnalysis.RiskLevel;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.function.Consumer;
+import javax.sql.DataSource;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+/**
+ * Reads analyses due for the archive out of {@code transaction_analyses} and removes them once
+ * archived. Analyses still {@code UNDER_REVIEW} are never archived; they stay in the table for the
+ * review queue and move out in a later run once decided.
+ *
+ * <p>Rows are streamed with their fraud indicators, in creation order, through a forward-only,
+ * read-only cursor with a bounded fetch size.
+ */
+@Repository
+public class AnalysisRetentionStore {
+
+  private static final String ARCHIVABLE = "fraud_status <> 'UNDER_REVIEW'";
+
+  private static final String SELECT_OLDEST =
+      "SELECT MIN(created_at) FROM transaction_analyses WHERE created_at < ? AND " + ARCHIVABLE;
+
+  private static final String SELECT_BETWEEN =
+      "SELECT ta.id, ta.transaction_id, ta.user_id, ta.amount, ta.currency, ta.merchant_id,"
+          + " ta.merchant_category, ta.transaction_type, ta.payment_method, ta.ip_address,"
+          + " ta.device_fingerprint, ta.location_country, ta.location_city, ta.risk_score,"
+          + " ta.risk_level, ta.fraud_status, ta.ml_model_version, ta.velocity_score,"
+          + " ta.behavioral_score, ta.geolocation_score, ta.device_score, ta.time_of_day_score,"
+          + " ta.amount_score, ta.merchant_score, ta.card_score, ta.analysis_duration_ms,"
+          + " ta.created_at, ta.updated_at, ta.reviewed_by, ta.reviewed_at, ta.review_notes,"
+          + " fi.indicator_name, fi.indicator_value"
+          + " FROM transaction_analyses ta LEFT JOIN fraud_indicators fi ON fi.analysis_id = ta.id"
+          + " WHERE ta.created_at >= ? AND ta.created_at < ? AND ta."
+          + ARCHIVABLE
+          + " ORDER BY ta.created_at, ta.id";
+
+  private static final int DELETE_CHUNK = 500;
+
+  @Autowired private DataSource dataSource;
+
+  @Autowired private PlatformTransactionManager transactionManager;
+
+  @Value("${fraud.detection.archive.fetch-size:1000}")
+  private int fetchSize;
+
+  /** Creation time of the oldest archivable analysis created before {@code before}, or null */
+  public LocalDateTime oldestBefore(LocalDateTime before) {
+    Timestamp oldest =
+        new JdbcTemplate(dataSource)
+            .queryForObject(SELECT_OLDEST, Timestamp.class, Timestamp.valueOf(before));
+    return oldest != null ? oldest.toLocalDateTime() : null;
+  }
+
+  /**
+   * Passes each archivable analysis created in {@code [from, to)} to the consumer, in creation
+   * order, as a new instance holding every column and its indicators.
+   *
+   * @return number of analyses read
+   */
+  public long forEachArchivable(
+      LocalDateTime from, LocalDateTime to, Consumer<TransactionAnalysis> consumer) {
+    JdbcTemplate cursor = new JdbcTemplate(dataSource);
+    cursor.setFetchSize(fetchSize);
+    TransactionTemplate readOnly = new TransactionTemplate(transactionManager);
+    readOnly.setReadOnly(true);
+
+    TransactionAnalysis[] pending = new TransactionAnalysis[1];
+    long[] count = new long[1];
+    // Some drivers only stream inside a transaction
+    readOnly.executeWithoutResult(
+        status ->
+            cursor.query(
+                SELECT_BETWEEN,
+                (ResultSet rs) -> {
+                  long id = rs.getLong(1);
+                  // One row per indicator, consecutive for an analysis
+                  if (pending[0] == null || pending[0].getId() != id) {
+                    if (pending[0] != null) {
+                      consumer.accept(pending[0]);
+                      count[0]++;
+                    }
+                    pending[0] = read(rs);
+                  }
+                  String indicator = rs.getString(32);
+                  if (indicator != null) {
+                    pending[0].getFraudIndicators().put(indicator, rs.getString(33));
+                  }
+                },
+                Timestamp.valueOf(from),
+                Timestamp.valueOf(to)));
+    if (pending[0] != null) {
+      consumer.accept(pending[0]);
+      count[0]++;
+    }
+    return count[0];
+  }
+
+  /**
+   * Deletes the analyses with the first {@code count} of {@code ids}, and their indicators, in one
+   * transaction. Rows are deleted by id rather than by range, so a row decided or added after it
+   * was read is not removed unarchived.
+   *
+   * @return number of analyses deleted
+   */
+  public int deleteArchived(long[] ids, int count) {
+    JdbcTemplate jdbc = new JdbcTemplate(dataSource);
+    Integer deleted =
+        new TransactionTemplate(transactionManager)
+            .execute(
+                status -> {
+                  int rows = 0;
+                  for (int from = 0; from < count; from += DELETE_CHUNK) {
+                    int to = Math.min(count, from + DELETE_CHUNK);
+                    Object[] chunk = new Object[to - from];
+                    for (int i = from; i < to; i++) {
+                      chunk[i - from] = ids[i];
+                    }
+                    String in = String.join(",", Collections.nCopies(chunk.length, "?"));
+                    jdbc.update(
+                        "DELETE FROM fraud_indicators WHERE analysis_id IN (" + in + ")", chunk);
+                    rows +=
+                        jdbc.update(
+                            "DELETE FROM transaction_analyses WHERE id IN (" + in + ")", chunk);
+                  }
+                  return rows;
+                });
+    return deleted != null ? deleted : 0;
+  }
+
+  private static TransactionAnalysis read(ResultSet rs) throws SQLException {
+    TransactionAnalysis row = new TransactionAnalysis();
+    row.setId(rs.getLong(1));
+    row.setTransactionId(rs.getString(2));
+    row.setUserId(rs.getLong(3));
+    row.setAmount(rs.getBigDecimal(4));
+    row.setCurrency(rs.getString(5));
+    row.setMerchantId(rs.getString(6));
+    row.setMerchantCategory(rs.getString(7));
+    row.setTransactionType(rs.getString(8));
+    row.setPaymentMethod(rs.getString(9));
+    row.setIpAddress(rs.getString(10));
+    row.setDeviceFingerprint(rs.getString(11));
+    row.setLocationCountry(rs.getString(12));
+    row.setLocationCity(rs.getString(13));
+    row.setRiskScore(doubleOrNull(rs, 14));
+    String riskLevel = rs.getString(15);
+    row.setRiskLevel(riskLevel != null ? RiskLevel.valueOf(riskLevel) : null);
+    String fraudStatus = rs.getString(16);
+    row.setFraudStatus(fraudStatus != null ? FraudStatus.valueOf(fraudStatus) : null);
+    row.setMlModelVersion(rs.getString(17));
+    row.setVelocityScore(doubleOrNull(rs, 18));
+    row.setBehavioralScore(doubleOrNull(rs, 19));
+    row.setGeolocationScore(doubleOrNull(rs, 20));
+    row.setDeviceScore(doubleOrNull(rs, 21));
+    row.setTimeOfDayScore(doubleOrNull(rs, 22));
+    row.setAmountScore(doubleOrNull(rs, 23));
+    row.setMerchantScore(doubleOrNull(rs, 24));
+    row.setCardScore(doubleOrNull(rs, 25));
+    long duration = rs.getLong(26);
+    row.setAnalysisDurationMs(rs.wasNull() ? null : duration);
+    row.setCreatedAt(timeOrNull(rs, 27));
+    row.setUpdatedAt(timeOrNull(rs, 28));
+    row.setReviewedBy(rs.getString(29));
+    row.setReviewedAt(timeOrNull(rs, 30));
+    row.setReviewNotes(rs.getString(31));
+    row.setFraudIndicators(new HashMap<>());
+    return row;
+  }
+
+  private static Double doubleOrNull(ResultSet rs, int column) throws SQLException {
+    double value = rs.getDouble(column);
+    return rs.wasNull() ? null : value;
+  }
+
+  private static LocalDateTime timeOrNull(ResultSet rs, int column) throws SQLException {
+    Timestamp value = rs.getTimestamp(column);
+    return value != null ? value.toLocalDateTime() : null;
+  }
+}
@@ -0,0 +1,83 @@
+package com.fintech.aifraudservice.repository;
+
+import com.fintech.aifraudservice.model.TransactionAnalysis;
+import com.fintech.aifraudservice.model.TransactionAnalysis.FraudStatus;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.function.Consumer;
+import javax.sql.DataSource;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+/**
+ * Streams analysts' verdicts out of {@code transaction_analyses}: rows reviewed as {@code DECLINED}
+ * (fraud) or {@code FALSE_POSITIVE} (legitimate), newest first. Rows are read through a
+ * forward-only, read-only cursor with a bounded fetch size, so memory does not grow with the table.
+ * MySQL needs {@code useCursorFetch=true} on the connection URL to honour the fetch size.
+ */
+@Repository
+public class ReviewedAnalysisReader {
+
+  private static final String SELECT_REVIEWED =
+      "SELECT amount, velocity_score, behavioral_score, geolocation_score, device_score,"
+          + " amount_score, time_of_day_score, fraud_status FROM transaction_analyses"
+          + " WHERE reviewed_at IS NOT NULL AND fraud_status IN ('DECLINED', 'FALSE_POSITIVE')"
+          + " ORDER BY id DESC";
+
+  @Autowired private DataSource dataSource;
+
+  @Autowired private PlatformTransactionManager transactionManager;
+
+  @Value("${fraud.detection.model.retrain.fetch-size:1000}")
+  private int fetchSize;
+
+  /**
+   * Passes each reviewed row to the consumer. The same {@link TransactionAnalysis} instance is
+   * refilled for every row, holding only the amount, component scores and fraud status; consumers
+   * must copy what they keep.
+   *
+   * @param maxRows most recent rows to read, 0 for all
+   * @return number of rows read
+   */
+  public long forEachReviewed(int maxRows, Consumer<TransactionAnalysis> consumer) {
+    JdbcTemplate cursor = new JdbcTemplate(dataSource);
+    cursor.setFetchSize(fetchSize);
+    cursor.setMaxRows(maxRows);
+    TransactionTemplate readOnly = new TransactionTemplate(transactionManager);
+    readOnly.setReadOnly(true);
+
+    TransactionAnalysis row = new TransactionAnalysis();
+    long[] count = new long[1];
+    // Some drivers only stream inside a transaction
+    readOnly.executeWithoutResult(
+        status ->
+            cursor.query(
+                SELECT_REVIEWED,
+                (ResultSet rs) -> {
+                  fill(row, rs);
+                  consumer.accept(row);
+                  count[0]++;
+                }));
+    return count[0];
+  }
+
+  private static void fill(TransactionAnalysis row, ResultSet rs) throws SQLException {
+    row.setAmount(rs.getBigDecimal(1));
+    row.setVelocityScore(doubleOrNull(rs, 2));
+    row.setBehavioralScore(doubleOrNull(rs, 3));
+    row.setGeolocationScore(doubleOrNull(rs, 4));
+    row.setDeviceScore(doubleOrNull(rs, 5));
+    row.setAmountScore(doubleOrNull(rs, 6));
+    row.setTimeOfDayScore(doubleOrNull(rs, 7));
+    row.setFraudStatus(FraudStatus.valueOf(rs.getString(8)));
+  }
+
+  private static Double doubleOrNull(ResultSet rs, int column) throws SQLException {
+    double value = rs.getDouble(column);
+    return rs.wasNull() ? null : value;
+  }
+}
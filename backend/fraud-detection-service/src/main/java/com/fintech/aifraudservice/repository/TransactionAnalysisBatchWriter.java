@@ -0,0 +1,128 @@
+package com.fintech.aifraudservice.repository;
+
+import com.fintech.aifraudservice.model.TransactionAnalysis;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.NestedExceptionUtils;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.support.TransactionTemplate;
+
+/**
+ * Persists many {@link TransactionAnalysis} rows at once. Ids come from a pooled sequence, so
+ * Hibernate groups the analysis and fraud indicator inserts into JDBC batches of {@code
+ * hibernate.jdbc.batch_size}; the persistence context is flushed and cleared per batch to keep
+ * memory flat for large inputs.
+ */
+@Repository
+@Slf4j
+public class TransactionAnalysisBatchWriter {
+
+  private static final int IN_CLAUSE_CHUNK = 500;
+
+  @PersistenceContext private EntityManager entityManager;
+
+  @Autowired private NamedParameterJdbcTemplate namedParameterJdbcTemplate;
+
+  @Autowired private TransactionTemplate transactionTemplate;
+
+  @Value("${spring.jpa.properties.hibernate.jdbc.batch_size:50}")
+  private int jdbcBatchSize;
+
+  /**
+   * Inserts all analyses and assigns their generated ids. The whole list is written in one
+   * transaction; if that fails the rows are retried one by one so a single bad row does not sink
+   * the batch.
+   *
+   * @return per-row error messages in input order, {@code null} for rows that were persisted
+   */
+  public List<String> insertAll(List<TransactionAnalysis> analyses) {
+    String[] errors = new String[analyses.size()];
+    if (analyses.isEmpty()) {
+      return Arrays.asList(errors);
+    }
+    try {
+      transactionTemplate.executeWithoutResult(status -> insertBatch(analyses));
+    } catch (RuntimeException e) {
+      log.warn(
+          "Batch insert of {} analyses failed, retrying row by row: {}",
+          analyses.size(),
+          NestedExceptionUtils.getMostSpecificCause(e).getMessage());
+      analyses.forEach(TransactionAnalysisBatchWriter::resetForRetry);
+      for (int i = 0; i < analyses.size(); i++) {
+        List<TransactionAnalysis> single = List.of(analyses.get(i));
+        try {
+          transactionTemplate.executeWithoutResult(status -> insertBatch(single));
+        } catch (RuntimeException rowError) {
+          resetForRetry(analyses.get(i));
+          errors[i] =
+              "Persistence failed: "
+                  + NestedExceptionUtils.getMostSpecificCause(rowError).getMessage();
+        }
+      }
+    }
+    return Arrays.asList(errors);
+  }
+
+  /** Transaction ids from the given collection that already have a stored analysis */
+  public Set<String> findExistingTransactionIds(List<String> transactionIds) {
+    Set<String> existing = new HashSet<>();
+    for (int from = 0; from < transactionIds.size(); from += IN_CLAUSE_CHUNK) {
+      List<String> chunk =
+          transactionIds.subList(from, Math.min(from + IN_CLAUSE_CHUNK, transactionIds.size()));
+      existing.addAll(
+          namedParameterJdbcTemplate.queryForList(
+              "SELECT transaction_id FROM transaction_analyses WHERE transaction_id IN (:ids)",
+              Map.of("ids", chunk),
+              String.class));
+    }
+    return existing;
+  }
+
+  /** The stored analyses, with their fraud indicators, of those transaction ids that have one */
+  public Map<String, TransactionAnalysis> findExisting(List<String> transactionIds) {
+    Map<String, TransactionAnalysis> existing = new HashMap<>();
+    for (int from = 0; from < transactionIds.size(); from += IN_CLAUSE_CHUNK) {
+      List<String> chunk =
+          transactionIds.subList(from, Math.min(from + IN_CLAUSE_CHUNK, transactionIds.size()));
+      entityManager
+          .createQuery(
+              "SELECT DISTINCT a FROM TransactionAnalysis a LEFT JOIN FETCH a.fraudIndicators"
+                  + " WHERE a.transactionId IN :ids",
+              TransactionAnalysis.class)
+          .setParameter("ids", chunk)
+          .getResultList()
+          .forEach(analysis -> existing.put(analysis.getTransactionId(), analysis));
+    }
+    return existing;
+  }
+
+  private void insertBatch(List<TransactionAnalysis> analyses) {
+    for (int i = 0; i < analyses.size(); i++) {
+      entityManager.persist(analyses.get(i));
+      if ((i + 1) % jdbcBatchSize == 0) {
+        entityManager.flush();
+        entityManager.clear();
+      }
+    }
+    entityManager.flush();
+    entityManager.clear();
+  }
+
+  /** Detaches a row from a rolled back attempt so it can be persisted again */
+  private static void resetForRetry(TransactionAnalysis analysis) {
+    analysis.setId(null);
+    if (analysis.getFraudIndicators() != null) {
+      analysis.setFraudIndicators(new HashMap<>(analysis.getFraudIndicators()));
+    }
+  }
+}
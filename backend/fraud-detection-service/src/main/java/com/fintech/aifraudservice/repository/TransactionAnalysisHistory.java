@@ -0,0 +1,23 @@
+package com.fintech.aifraudservice.repository;
+
+import com.fintech.aifraudservice.model.TransactionAnalysis;
+import java.time.LocalDateTime;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
+
+/**
+ * Historical lookups that read both {@code transaction_analyses} and the {@link AnalysisArchive}.
+ *
+ * <p>Archived analyses are older than every row in the table, so a page is the table's rows
+ * followed by the archive's, newest first, or the archive's followed by the table's when sorted by
+ * {@code createdAt} ascending. The sort only orders the table's rows; archived rows are always in
+ * creation order.
+ */
+public interface TransactionAnalysisHistory {
+
+  Page<TransactionAnalysis> findByUserId(Long userId, Pageable pageable);
+
+  /** Analyses created between {@code startDate} and {@code endDate}, both inclusive */
+  Page<TransactionAnalysis> findByDateRange(
+      LocalDateTime startDate, LocalDateTime endDate, Pageable pageable);
+}
@@ -0,0 +1,108 @@
+package com.fintech.aifraudservice.repository;
+
+import com.fintech.aifraudservice.model.TransactionAnalysis;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import jakarta.persistence.TypedQuery;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Consumer;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageImpl;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.jpa.repository.query.QueryUtils;
+
+/**
+ * Pages over the table followed by, or following, the archive; see {@link
+ * TransactionAnalysisHistory}
+ */
+class TransactionAnalysisHistoryImpl implements TransactionAnalysisHistory {
+
+  private static final String BY_USER = " FROM TransactionAnalysis ta WHERE ta.userId = :userId";
+
+  private static final String BY_DATE_RANGE =
+      " FROM TransactionAnalysis ta WHERE ta.createdAt BETWEEN :startDate AND :endDate";
+
+  @PersistenceContext private EntityManager entityManager;
+
+  @Autowired private AnalysisArchive analysisArchive;
+
+  /** One source of a combined page */
+  private interface Source {
+    List<TransactionAnalysis> read(long offset, int limit);
+  }
+
+  /** Archive lookup in either order */
+  private interface ArchiveSource {
+    List<TransactionAnalysis> read(long offset, int limit, boolean newestFirst);
+  }
+
+  @Override
+  public Page<TransactionAnalysis> findByUserId(Long userId, Pageable pageable) {
+    Consumer<TypedQuery<?>> parameters = query -> query.setParameter("userId", userId);
+    return page(
+        pageable,
+        count(BY_USER, parameters),
+        table(BY_USER, parameters, pageable.getSort()),
+        analysisArchive.isEmpty() ? 0 : analysisArchive.countByUserId(userId),
+        (offset, limit, newestFirst) ->
+            analysisArchive.findByUserId(userId, offset, limit, newestFirst));
+  }
+
+  @Override
+  public Page<TransactionAnalysis> findByDateRange(
+      LocalDateTime startDate, LocalDateTime endDate, Pageable pageable) {
+    Consumer<TypedQuery<?>> parameters =
+        query -> query.setParameter("startDate", startDate).setParameter("endDate", endDate);
+    return page(
+        pageable,
+        count(BY_DATE_RANGE, parameters),
+        table(BY_DATE_RANGE, parameters, pageable.getSort()),
+        analysisArchive.isEmpty() ? 0 : analysisArchive.countByDateRange(startDate, endDate),
+        (offset, limit, newestFirst) ->
+            analysisArchive.findByDateRange(startDate, endDate, offset, limit, newestFirst));
+  }
+
+  private Page<TransactionAnalysis> page(
+      Pageable pageable, long tableTotal, Source table, long archiveTotal, ArchiveSource archive) {
+    long total = tableTotal + archiveTotal;
+    long offset = pageable.isPaged() ? pageable.getOffset() : 0;
+    int limit =
+        pageable.isPaged() ? pageable.getPageSize() : (int) Math.min(total, Integer.MAX_VALUE);
+
+    Sort.Order created = pageable.getSort().getOrderFor("createdAt");
+    boolean archiveFirst = created != null && created.isAscending();
+    Source first = archiveFirst ? (from, count) -> archive.read(from, count, false) : table;
+    Source second = archiveFirst ? table : (from, count) -> archive.read(from, count, true);
+    long firstTotal = archiveFirst ? archiveTotal : tableTotal;
+    long secondTotal = archiveFirst ? tableTotal : archiveTotal;
+
+    List<TransactionAnalysis> content = new ArrayList<>(Math.min(limit, 1024));
+    if (offset < firstTotal && limit > 0) {
+      content.addAll(first.read(offset, (int) Math.min(limit, firstTotal - offset)));
+    }
+    if (content.size() < limit && secondTotal > 0) {
+      content.addAll(second.read(Math.max(0, offset - firstTotal), limit - content.size()));
+    }
+    return new PageImpl<>(content, pageable, total);
+  }
+
+  private long count(String from, Consumer<TypedQuery<?>> parameters) {
+    TypedQuery<Long> query = entityManager.createQuery("SELECT COUNT(ta)" + from, Long.class);
+    parameters.accept(query);
+    return query.getSingleResult();
+  }
+
+  private Source table(String from, Consumer<TypedQuery<?>> parameters, Sort sort) {
+    String select = QueryUtils.applySorting("SELECT ta" + from, sort, "ta");
+    return (offset, limit) -> {
+      TypedQuery<TransactionAnalysis> query =
+          entityManager.createQuery(select, TransactionAnalysis.class);
+      parameters.accept(query);
+      return query.setFirstResult((int) offset).setMaxResults(limit).getResultList();
+    };
+  }
+}
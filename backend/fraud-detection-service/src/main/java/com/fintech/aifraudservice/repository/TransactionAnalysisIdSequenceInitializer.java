@@ -0,0 +1,57 @@
+package com.fintech.aifraudservice.repository;
+
+import com.fintech.aifraudservice.model.TransactionAnalysis;
+import jakarta.persistence.EntityManagerFactory;
+import lombok.extern.slf4j.Slf4j;
+import org.hibernate.dialect.Dialect;
+import org.hibernate.engine.spi.SessionFactoryImplementor;
+import org.springframework.beans.factory.InitializingBean;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+/**
+ * Moves the analysis id sequence past the ids already stored. Tables created while ids were
+ * IDENTITY-generated start the new sequence at 1, which would collide with existing rows. Databases
+ * without native sequences (MySQL) use Hibernate's single-row {@code next_val} table instead.
+ */
+@Component
+@Slf4j
+public class TransactionAnalysisIdSequenceInitializer implements InitializingBean {
+
+  @Autowired private EntityManagerFactory entityManagerFactory;
+
+  @Autowired private JdbcTemplate jdbcTemplate;
+
+  @Override
+  public void afterPropertiesSet() {
+    Long maxId =
+        jdbcTemplate.queryForObject(
+            "SELECT COALESCE(MAX(id), 0) FROM transaction_analyses", Long.class);
+    if (maxId == null || maxId == 0) {
+      return;
+    }
+    // The pooled optimizer hands out the block ending at the sequence value
+    long floor = maxId + TransactionAnalysis.ID_ALLOCATION_SIZE + 1;
+    String sequence = TransactionAnalysis.ID_SEQUENCE;
+
+    Dialect dialect =
+        entityManagerFactory.unwrap(SessionFactoryImplementor.class).getJdbcServices().getDialect();
+    if (dialect.getSequenceSupport().supportsSequences()) {
+      Long next =
+          jdbcTemplate.queryForObject(
+              dialect.getSequenceSupport().getSequenceNextValString(sequence), Long.class);
+      if (next != null && next < floor) {
+        jdbcTemplate.execute("ALTER SEQUENCE " + sequence + " RESTART WITH " + floor);
+        log.info("Advanced {} from {} to {}", sequence, next, floor);
+      }
+    } else {
+      int updated =
+          jdbcTemplate.update(
+              "UPDATE " + sequence + " SET next_val = ? WHERE next_val < ?", floor, floor);
+      if (updated > 0) {
+        log.info("Advanced {} to {}", sequence, floor);
+      }
+    }
+  }
+}
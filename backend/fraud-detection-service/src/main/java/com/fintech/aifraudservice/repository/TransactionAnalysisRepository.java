@@ -12,13 +12,17 @@ import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+/**
+ * Analyses in {@code transaction_analyses}. {@link TransactionAnalysisHistory#findByUserId} and
+ * {@link TransactionAnalysisHistory#findByDateRange} also read the {@link AnalysisArchive}; every
+ * other query sees the table alone.
+ */
 @Repository
-public interface TransactionAnalysisRepository extends JpaRepository<TransactionAnalysis, Long> {
+public interface TransactionAnalysisRepository
+    extends JpaRepository<TransactionAnalysis, Long>, TransactionAnalysisHistory {
 
   Optional<TransactionAnalysis> findByTransactionId(String transactionId);
 
-  Page<TransactionAnalysis> findByUserId(Long userId, Pageable pageable);
-
   Page<TransactionAnalysis> findByRiskLevel(
       TransactionAnalysis.RiskLevel riskLevel, Pageable pageable);
 
@@ -30,6 +34,12 @@ public interface TransactionAnalysisRepository extends JpaRepository<Transaction
   List<TransactionAnalysis> findUserTransactionsSince(
       @Param("userId") Long userId, @Param("since") LocalDateTime since);
 
+  @Query(
+      "SELECT ta.createdAt, ta.amount, ta.id FROM TransactionAnalysis ta WHERE ta.userId = :userId"
+          + " AND ta.createdAt >= :since")
+  List<Object[]> findUserTransactionAmountsSince(
+      @Param("userId") Long userId, @Param("since") LocalDateTime since);
+
   @Query(
       "SELECT COUNT(ta) FROM TransactionAnalysis ta WHERE ta.userId = :userId AND ta.createdAt >="
           + " :since")
@@ -55,28 +65,11 @@ public interface TransactionAnalysisRepository extends JpaRepository<Transaction
           + " ta.createdAt >= :since")
   Long countHighRiskTransactionsSince(@Param("since") LocalDateTime since);
 
+  /** Id, transaction id and risk score of every high-risk analysis awaiting review */
   @Query(
-      "SELECT ta FROM TransactionAnalysis ta WHERE ta.riskLevel IN ('HIGH', 'CRITICAL') AND"
-          + " ta.fraudStatus = 'UNDER_REVIEW' ORDER BY ta.riskScore DESC")
-  List<TransactionAnalysis> findHighRiskTransactions(@Param("limit") int limit);
-
-  @Query("SELECT ta FROM TransactionAnalysis ta WHERE ta.createdAt BETWEEN :startDate AND :endDate")
-  Page<TransactionAnalysis> findByDateRange(
-      @Param("startDate") LocalDateTime startDate,
-      @Param("endDate") LocalDateTime endDate,
-      Pageable pageable);
-
-  @Query(
-      "SELECT ta.merchantCategory, COUNT(ta) as count FROM TransactionAnalysis ta WHERE"
-          + " ta.fraudStatus = 'DECLINED' AND ta.createdAt >= :since GROUP BY ta.merchantCategory"
-          + " ORDER BY count DESC")
-  List<Object[]> findTopFraudMerchantCategories(@Param("since") LocalDateTime since);
-
-  @Query(
-      "SELECT ta.locationCountry, COUNT(ta) as count FROM TransactionAnalysis ta WHERE"
-          + " ta.fraudStatus = 'DECLINED' AND ta.createdAt >= :since GROUP BY ta.locationCountry"
-          + " ORDER BY count DESC")
-  List<Object[]> findTopFraudCountries(@Param("since") LocalDateTime since);
+      "SELECT ta.id, ta.transactionId, ta.riskScore FROM TransactionAnalysis ta WHERE"
+          + " ta.riskLevel IN ('HIGH', 'CRITICAL') AND ta.fraudStatus = 'UNDER_REVIEW'")
+  List<Object[]> findReviewQueueEntries();
 
   @Query("SELECT AVG(ta.riskScore) FROM TransactionAnalysis ta WHERE ta.userId = :userId")
   Double getAverageRiskScoreForUser(@Param("userId") Long userId);
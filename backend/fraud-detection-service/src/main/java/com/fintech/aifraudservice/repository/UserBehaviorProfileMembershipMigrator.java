@@ -0,0 +1,189 @@
+package com.fintech.aifraudservice.repository;
+
+import com.fintech.aifraudservice.model.FrequencyCountsConverter;
+import com.fintech.aifraudservice.model.ProfileMembership;
+import com.fintech.aifraudservice.model.ProfileMembership.Dimension;
+import java.sql.DatabaseMetaData;
+import java.sql.ResultSet;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.InitializingBean;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.DependsOn;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.stereotype.Component;
+
+/**
+ * Fills the {@code membership} column of profiles written before it existed, when their values
+ * lived in one element-collection table per dimension. Profiles are migrated in id order, a chunk
+ * at a time, with one read per legacy table and one batched UPDATE per chunk. Migrated profiles are
+ * no longer picked up, so the check is cheap once done. The legacy tables are left in place and can
+ * be dropped afterwards.
+ *
+ * <p>The membership is rebuilt from {@code frequency_counts} on every profile update, so each
+ * migrated value is also seeded there with a count of one; otherwise the first transaction after
+ * the migration would leave only its own values known. Profiles migrated before the counts were
+ * seeded have a membership but no counts and are picked up again.
+ */
+@Component
+@DependsOn("entityManagerFactory")
+@Slf4j
+public class UserBehaviorProfileMembershipMigrator implements InitializingBean {
+
+  static final String ACTIVE_DAYS_TABLE = "user_active_days";
+
+  private static final FrequencyCountsConverter FREQUENCY_COUNTS = new FrequencyCountsConverter();
+
+  // Legacy table and value column of every fingerprinted dimension
+  static final Map<Dimension, String[]> LEGACY_TABLES = new LinkedHashMap<>();
+
+  static {
+    LEGACY_TABLES.put(Dimension.COUNTRY, new String[] {"user_frequent_countries", "country"});
+    LEGACY_TABLES.put(Dimension.CITY, new String[] {"user_frequent_cities", "city"});
+    LEGACY_TABLES.put(Dimension.DEVICE, new String[] {"user_known_devices", "device_fingerprint"});
+    LEGACY_TABLES.put(Dimension.IP, new String[] {"user_known_ips", "ip_address"});
+    LEGACY_TABLES.put(Dimension.MERCHANT, new String[] {"user_frequent_merchants", "merchant_id"});
+    LEGACY_TABLES.put(Dimension.CATEGORY, new String[] {"user_frequent_categories", "category"});
+    LEGACY_TABLES.put(
+        Dimension.PAYMENT_METHOD, new String[] {"user_payment_methods", "payment_method"});
+  }
+
+  @Autowired private JdbcTemplate jdbcTemplate;
+
+  @Autowired private NamedParameterJdbcTemplate namedParameterJdbcTemplate;
+
+  @Value("${fraud.detection.profile.migrate-legacy-sets:true}")
+  private boolean enabled;
+
+  @Value("${fraud.detection.profile.migration-chunk-size:500}")
+  private int chunkSize;
+
+  @Override
+  public void afterPropertiesSet() {
+    if (!enabled) {
+      return;
+    }
+    Map<String, Boolean> existing = new HashMap<>();
+    existing.put(ACTIVE_DAYS_TABLE, tableExists(ACTIVE_DAYS_TABLE));
+    LEGACY_TABLES.values().forEach(table -> existing.put(table[0], tableExists(table[0])));
+    if (!existing.containsValue(true)) {
+      return;
+    }
+    long startTime = System.currentTimeMillis();
+    int migrated = migrate(existing);
+    if (migrated > 0) {
+      log.info(
+          "Migrated {} behavior profiles to fingerprint membership in {} ms",
+          migrated,
+          System.currentTimeMillis() - startTime);
+    }
+  }
+
+  int migrate(Map<String, Boolean> existing) {
+    int migrated = 0;
+    long lastId = 0;
+    while (true) {
+      List<Long> ids =
+          jdbcTemplate.queryForList(
+              "SELECT id FROM user_behavior_profiles"
+                  + " WHERE (membership IS NULL OR frequency_counts IS NULL) AND id > ?"
+                  + " ORDER BY id LIMIT ?",
+              Long.class,
+              lastId,
+              chunkSize);
+      if (ids.isEmpty()) {
+        return migrated;
+      }
+      Map<Long, ProfileMembership> memberships = new LinkedHashMap<>();
+      Map<Long, Map<String, Map<String, Double>>> counts = new HashMap<>();
+      ids.forEach(
+          id -> {
+            memberships.put(id, new ProfileMembership());
+            counts.put(id, new LinkedHashMap<>());
+          });
+      Map<String, Object> params = Map.of("ids", ids);
+
+      if (existing.getOrDefault(ACTIVE_DAYS_TABLE, false)) {
+        namedParameterJdbcTemplate.query(
+            "SELECT profile_id, day_of_week FROM "
+                + ACTIVE_DAYS_TABLE
+                + " WHERE profile_id IN (:ids)",
+            params,
+            (ResultSet rs) -> {
+              int day = rs.getInt(2);
+              if (day >= 1 && day <= 7) {
+                memberships.get(rs.getLong(1)).addActiveDay(day);
+              }
+            });
+      }
+      for (Map.Entry<Dimension, String[]> entry : LEGACY_TABLES.entrySet()) {
+        String table = entry.getValue()[0];
+        if (!existing.getOrDefault(table, false)) {
+          continue;
+        }
+        Map<Long, List<String>> values = new HashMap<>();
+        namedParameterJdbcTemplate.query(
+            "SELECT profile_id, "
+                + entry.getValue()[1]
+                + " FROM "
+                + table
+                + " WHERE profile_id IN (:ids)",
+            params,
+            (ResultSet rs) -> {
+              values.computeIfAbsent(rs.getLong(1), id -> new ArrayList<>()).add(rs.getString(2));
+            });
+        values.forEach(
+            (id, list) -> {
+              memberships.get(id).set(entry.getKey(), list);
+              Map<String, Double> seeded = new LinkedHashMap<>();
+              list.forEach(value -> seeded.put(value, 1.0));
+              counts.get(id).put(entry.getKey().key(), seeded);
+            });
+      }
+
+      List<Object[]> updates = new ArrayList<>(memberships.size());
+      memberships.forEach(
+          (id, membership) ->
+              updates.add(
+                  new Object[] {
+                    membership.toBytes(),
+                    FREQUENCY_COUNTS.convertToDatabaseColumn(counts.get(id)),
+                    id
+                  }));
+      // A membership or counts written by the updater in the meantime is kept
+      jdbcTemplate.batchUpdate(
+          "UPDATE user_behavior_profiles SET membership = COALESCE(membership, ?),"
+              + " frequency_counts = COALESCE(frequency_counts, ?) WHERE id = ?",
+          updates);
+      migrated += ids.size();
+      lastId = ids.get(ids.size() - 1);
+    }
+  }
+
+  private boolean tableExists(String table) {
+    Boolean exists =
+        jdbcTemplate.execute(
+            (ConnectionCallback<Boolean>)
+                connection -> {
+                  DatabaseMetaData metaData = connection.getMetaData();
+                  for (String name : Set.of(table, table.toUpperCase())) {
+                    try (ResultSet tables =
+                        metaData.getTables(connection.getCatalog(), null, name, null)) {
+                      if (tables.next()) {
+                        return true;
+                      }
+                    }
+                  }
+                  return false;
+                });
+    return Boolean.TRUE.equals(exists);
+  }
+}
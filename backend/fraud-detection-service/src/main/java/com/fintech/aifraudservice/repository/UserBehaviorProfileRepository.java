@@ -2,6 +2,7 @@ package com.fintech.aifraudservice.repository;
 
 import com.fintech.aifraudservice.model.UserBehaviorProfile;
 import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 import org.springframework.data.jpa.repository.JpaRepository;
@@ -14,6 +15,8 @@ public interface UserBehaviorProfileRepository extends JpaRepository<UserBehavio
 
   Optional<UserBehaviorProfile> findByUserId(Long userId);
 
+  List<UserBehaviorProfile> findByUserIdIn(Collection<Long> userIds);
+
   @Query("SELECT ubp FROM UserBehaviorProfile ubp WHERE ubp.baseRiskScore > :threshold")
   List<UserBehaviorProfile> findHighRiskUsers(@Param("threshold") Double threshold);
 
@@ -0,0 +1,153 @@
+package com.fintech.aifraudservice.service;
+
+import com.fintech.aifraudservice.repository.AnalysisArchive;
+import com.fintech.aifraudservice.repository.AnalysisArchiveFile;
+import com.fintech.aifraudservice.repository.AnalysisRetentionStore;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.Arrays;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.convert.DurationStyle;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+/**
+ * Moves analyses older than {@code fraud.detection.archive.after} out of {@code
+ * transaction_analyses} into the {@link AnalysisArchive}, one day of creation at a time, so the hot
+ * table only holds recent rows. Runs every {@code interval-ms} when an archive directory is set.
+ *
+ * <p>A day is streamed into a new segment, which is synced and published before the archived rows
+ * are deleted from the table by id. A run that stops in between leaves the rows in the table and a
+ * segment named by their id range; the next run writes the same segment again and replaces it, so
+ * rows are not lost, and are only archived twice if some of that day's rows were decided in
+ * between.
+ */
+@Component
+@Slf4j
+public class AnalysisArchiver {
+
+  @Autowired private AnalysisRetentionStore analysisRetentionStore;
+
+  @Autowired private AnalysisArchive analysisArchive;
+
+  @Autowired private MeterRegistry meterRegistry;
+
+  @Value("${fraud.detection.archive.after:180d}")
+  private String after;
+
+  private Duration age;
+
+  private Counter archivedAnalyses;
+
+  @PostConstruct
+  void init() {
+    age = DurationStyle.detectAndParse(after);
+    if (age.isNegative() || age.isZero()) {
+      throw new IllegalStateException("Archive age must be positive: " + after);
+    }
+    archivedAnalyses =
+        Counter.builder("fraud.analysis.archived")
+            .description("Analyses moved out of the table into the archive")
+            .register(meterRegistry);
+  }
+
+  /**
+   * Archives every whole day of analyses created before the archive age.
+   *
+   * @return number of analyses archived
+   */
+  @Scheduled(
+      fixedDelayString = "${fraud.detection.archive.interval-ms:3600000}",
+      initialDelayString = "${fraud.detection.archive.interval-ms:3600000}")
+  public synchronized long archiveExpired() {
+    if (!analysisArchive.isEnabled()) {
+      return 0;
+    }
+    LocalDateTime cutoff = LocalDateTime.now().minus(age).toLocalDate().atStartOfDay();
+    long archived = 0;
+    try {
+      LocalDateTime oldest = analysisRetentionStore.oldestBefore(cutoff);
+      while (oldest != null) {
+        int moved = archiveDay(oldest.toLocalDate());
+        if (moved == 0) {
+          // Nothing left to delete, the rows went since the query; the next run picks up the rest
+          break;
+        }
+        archived += moved;
+        oldest = analysisRetentionStore.oldestBefore(cutoff);
+      }
+    } catch (RuntimeException e) {
+      log.error("Archiving analyses before {} failed: {}", cutoff, e.getMessage(), e);
+    }
+    if (archived > 0) {
+      log.info("Archived {} analyses created before {}", archived, cutoff);
+    }
+    return archived;
+  }
+
+  private int archiveDay(LocalDate day) {
+    LocalDateTime from = day.atStartOfDay();
+    LocalDateTime to = day.plusDays(1).atStartOfDay();
+    Path written = analysisArchive.temporaryPath(day);
+    // Ids of the archived rows, grown as the day is read
+    long[][] ids = {new long[1024]};
+    int[] rows = new int[1];
+    try (AnalysisArchiveFile.Writer writer = AnalysisArchiveFile.create(written)) {
+      analysisRetentionStore.forEachArchivable(
+          from,
+          to,
+          row -> {
+            try {
+              writer.append(row);
+            } catch (IOException e) {
+              throw new UncheckedIOException(e);
+            }
+            if (rows[0] == ids[0].length) {
+              ids[0] = Arrays.copyOf(ids[0], rows[0] * 2);
+            }
+            ids[0][rows[0]++] = row.getId();
+          });
+      writer.finish();
+    } catch (IOException e) {
+      deleteQuietly(written);
+      throw new UncheckedIOException("Cannot write archive segment for " + day, e);
+    } catch (RuntimeException e) {
+      deleteQuietly(written);
+      throw e;
+    }
+    if (rows[0] == 0) {
+      deleteQuietly(written);
+      return 0;
+    }
+
+    long minId = Long.MAX_VALUE;
+    long maxId = Long.MIN_VALUE;
+    for (int i = 0; i < rows[0]; i++) {
+      minId = Math.min(minId, ids[0][i]);
+      maxId = Math.max(maxId, ids[0][i]);
+    }
+    analysisArchive.publish(written, analysisArchive.segmentPath(day, minId, maxId));
+    int deleted = analysisRetentionStore.deleteArchived(ids[0], rows[0]);
+    archivedAnalyses.increment(deleted);
+    log.debug("Archived {} analyses created on {}", deleted, day);
+    return deleted;
+  }
+
+  private static void deleteQuietly(Path path) {
+    try {
+      Files.deleteIfExists(path);
+    } catch (IOException e) {
+      log.warn("Cannot delete {}: {}", path, e.getMessage());
+    }
+  }
+}
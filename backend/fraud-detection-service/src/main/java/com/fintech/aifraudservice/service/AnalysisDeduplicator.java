@@ -0,0 +1,208 @@
+package com.fintech.aifraudservice.service;
+
+import com.fintech.aifraudservice.model.TransactionAnalysis;
+import com.fintech.aifraudservice.repository.TransactionAnalysisRepository;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.convert.DurationStyle;
+import org.springframework.stereotype.Component;
+
+/**
+ * Makes single analyses idempotent by transaction id, so a client retry gets the analysis already
+ * made instead of being scored again and failing on the unique {@code transaction_id} constraint.
+ *
+ * <p>A repeated id is answered from, in order: a bounded index of recent analyses ({@code
+ * fraud.detection.idempotency.recent-ids} entries, each kept for {@code ttl}), the analysis of the
+ * same id currently in flight, whose result concurrent duplicates wait for instead of scoring it
+ * themselves, and finally the stored row. Only the first request for an id is scored. A failed
+ * analysis is not remembered; its waiters see the same failure and a later retry scores afresh.
+ *
+ * <p>The batch path {@link #claim}s its ids instead, so a batch item already analyzed here is
+ * answered with its {@link #recentAnalysis} and one in flight is not scored again, and a single
+ * analysis of an id a batch is scoring waits for the batch. Analyses queued for write-behind are in
+ * the recent index from the moment they are returned.
+ *
+ * <p>Duplicates are coalesced per instance. Two instances receiving the same id at the same moment
+ * can still both score it, and the unique constraint rejects the second row.
+ */
+@Component
+@Slf4j
+public class AnalysisDeduplicator {
+
+  /** What {@link #claim} found for a transaction id */
+  public enum Claim {
+    /** Now in flight for the caller, which must {@link #complete} or {@link #release} it */
+    CLAIMED,
+    /** Recently analyzed */
+    ANALYZED,
+    /** Being analyzed by another request */
+    IN_FLIGHT
+  }
+
+  @Autowired private TransactionAnalysisRepository transactionAnalysisRepository;
+
+  @Autowired private MeterRegistry meterRegistry;
+
+  @Value("${fraud.detection.idempotency.recent-ids:50000}")
+  private long recentIds;
+
+  @Value("${fraud.detection.idempotency.ttl:15m}")
+  private String ttl;
+
+  @Value("${fraud.detection.idempotency.database-check:true}")
+  private boolean databaseCheck;
+
+  private final Map<String, CompletableFuture<TransactionAnalysis>> inFlight =
+      new ConcurrentHashMap<>();
+
+  private Cache<String, TransactionAnalysis> recent;
+
+  private Counter recentDuplicates;
+  private Counter inFlightDuplicates;
+  private Counter storedDuplicates;
+
+  @PostConstruct
+  void init() {
+    recent =
+        Caffeine.newBuilder()
+            .maximumSize(recentIds)
+            .expireAfterWrite(DurationStyle.detectAndParse(ttl))
+            .build();
+    recentDuplicates = counter("recent");
+    inFlightDuplicates = counter("in_flight");
+    storedDuplicates = counter("database");
+  }
+
+  /**
+   * The analysis of the transaction id, made by {@code analyze} only if no other request for the id
+   * has made or is making one.
+   */
+  public TransactionAnalysis analyzeOnce(
+      String transactionId, Supplier<TransactionAnalysis> analyze) {
+    if (transactionId == null) {
+      return analyze.get();
+    }
+    TransactionAnalysis analysis = recent.getIfPresent(transactionId);
+    if (analysis != null) {
+      recentDuplicates.increment();
+      return analysis;
+    }
+
+    CompletableFuture<TransactionAnalysis> mine = new CompletableFuture<>();
+    CompletableFuture<TransactionAnalysis> running = inFlight.putIfAbsent(transactionId, mine);
+    if (running != null) {
+      inFlightDuplicates.increment();
+      log.info("Transaction {} is already being analyzed, waiting for it", transactionId);
+      return await(running);
+    }
+    try {
+      // The previous analysis of the id may have finished since the check above
+      analysis = recent.getIfPresent(transactionId);
+      if (analysis == null) {
+        analysis = stored(transactionId);
+      }
+      if (analysis == null) {
+        analysis = analyze.get();
+      }
+      // Remembered before leaving in-flight, so no duplicate falls between the two
+      recent.put(transactionId, analysis);
+      mine.complete(analysis);
+      return analysis;
+    } catch (RuntimeException e) {
+      mine.completeExceptionally(e);
+      throw e;
+    } finally {
+      inFlight.remove(transactionId, mine);
+    }
+  }
+
+  /**
+   * Marks a transaction id as in flight for an analysis made outside {@link #analyzeOnce}, unless
+   * it was recently analyzed or is already in flight. Neither waits nor checks the database; the
+   * caller does that for all its ids at once.
+   */
+  public Claim claim(String transactionId) {
+    if (recent.getIfPresent(transactionId) != null) {
+      recentDuplicates.increment();
+      return Claim.ANALYZED;
+    }
+    CompletableFuture<TransactionAnalysis> mine = new CompletableFuture<>();
+    if (inFlight.putIfAbsent(transactionId, mine) != null) {
+      inFlightDuplicates.increment();
+      return Claim.IN_FLIGHT;
+    }
+    // The previous analysis of the id may have finished since the check above
+    TransactionAnalysis analysis = recent.getIfPresent(transactionId);
+    if (analysis != null) {
+      inFlight.remove(transactionId, mine);
+      mine.complete(analysis);
+      recentDuplicates.increment();
+      return Claim.ANALYZED;
+    }
+    return Claim.CLAIMED;
+  }
+
+  /** The recent analysis of a transaction id, or {@code null} once it has been evicted */
+  public TransactionAnalysis recentAnalysis(String transactionId) {
+    return recent.getIfPresent(transactionId);
+  }
+
+  /** Remembers the analysis of a {@link Claim#CLAIMED} id and hands it to requests waiting on it */
+  public void complete(String transactionId, TransactionAnalysis analysis) {
+    recent.put(transactionId, analysis);
+    CompletableFuture<TransactionAnalysis> claimed = inFlight.remove(transactionId);
+    if (claimed != null) {
+      claimed.complete(analysis);
+    }
+  }
+
+  /** Gives up a {@link Claim#CLAIMED} id without an analysis; requests waiting on it fail */
+  public void release(String transactionId, RuntimeException failure) {
+    CompletableFuture<TransactionAnalysis> claimed = inFlight.remove(transactionId);
+    if (claimed != null) {
+      claimed.completeExceptionally(failure);
+    }
+  }
+
+  private TransactionAnalysis stored(String transactionId) {
+    if (!databaseCheck) {
+      return null;
+    }
+    TransactionAnalysis analysis =
+        transactionAnalysisRepository.findByTransactionId(transactionId).orElse(null);
+    if (analysis != null) {
+      storedDuplicates.increment();
+      log.info("Transaction {} was already analyzed, returning the stored analysis", transactionId);
+    }
+    return analysis;
+  }
+
+  private static TransactionAnalysis await(CompletableFuture<TransactionAnalysis> running) {
+    try {
+      return running.join();
+    } catch (CompletionException e) {
+      if (e.getCause() instanceof RuntimeException cause) {
+        throw cause;
+      }
+      throw e;
+    }
+  }
+
+  private Counter counter(String source) {
+    return Counter.builder("fraud.analysis.duplicates")
+        .description("Repeated transaction ids answered without scoring them again")
+        .tag("source", source)
+        .register(meterRegistry);
+  }
+}
@@ -0,0 +1,44 @@
+package com.fintech.aifraudservice.service;
+
+import com.fintech.aifraudservice.model.TransactionAnalysis;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Outcome of one item of a batch analysis; exactly one of analysis and error is set. Retryable
+ * failures are caused by unavailable dependencies rather than by the request itself.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class BatchAnalysisResult {
+
+  private int index;
+
+  private String transactionId;
+
+  private TransactionAnalysis analysis;
+
+  private String error;
+
+  private boolean retryable;
+
+  public static BatchAnalysisResult success(
+      int index, String transactionId, TransactionAnalysis analysis) {
+    return new BatchAnalysisResult(index, transactionId, analysis, null, false);
+  }
+
+  public static BatchAnalysisResult failure(int index, String transactionId, String error) {
+    return new BatchAnalysisResult(index, transactionId, null, error, false);
+  }
+
+  public static BatchAnalysisResult retryableFailure(
+      int index, String transactionId, String error) {
+    return new BatchAnalysisResult(index, transactionId, null, error, true);
+  }
+
+  public boolean isSuccess() {
+    return error == null;
+  }
+}
@@ -0,0 +1,339 @@
+package com.fintech.aifraudservice.service;
+
+import com.fintech.aifraudservice.model.TransactionAnalysis;
+import com.fintech.aifraudservice.model.UserBehaviorProfile;
+import com.fintech.aifraudservice.repository.TransactionAnalysisBatchWriter;
+import jakarta.validation.ConstraintViolation;
+import jakarta.validation.Validator;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.stream.Collectors;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.task.TaskExecutor;
+import org.springframework.stereotype.Service;
+
+/**
+ * Scores many transactions in one call. Requests are grouped by user so each behavior profile and
+ * velocity window is resolved once per group, within the {@link ScoringBudget}; groups are scored
+ * in parallel on the bounded scoring executor while requests of the same user stay in input order.
+ * All analyses are then written with JDBC batching and results are returned in input order with
+ * per-item errors.
+ *
+ * <p>Transaction ids already stored or recently analyzed through {@link AnalysisDeduplicator} are
+ * answered with that analysis instead of being scored twice, as a single analysis would be; ids in
+ * flight there fail as retryable. The rest are claimed there until their result is known, so single
+ * analyses of the same ids wait for the batch.
+ */
+@Service
+@Slf4j
+public class BatchFraudAnalysisService {
+
+  @Autowired private FraudDetectionService fraudDetectionService;
+
+  @Autowired private VelocityWindowAggregator velocityWindowAggregator;
+
+  @Autowired private TransactionAnalysisBatchWriter transactionAnalysisBatchWriter;
+
+  @Autowired private TransactionAnalysisPublisher transactionAnalysisPublisher;
+
+  @Autowired private AnalysisDeduplicator analysisDeduplicator;
+
+  @Autowired private FraudRuleEngine fraudRuleEngine;
+
+  @Autowired private FraudModelService fraudModelService;
+
+  @Autowired private IpGeoLocator ipGeoLocator;
+
+  @Autowired private MerchantRiskIndex merchantRiskIndex;
+
+  @Autowired private BinRiskIndex binRiskIndex;
+
+  @Autowired private LinkageGraphIndex linkageGraphIndex;
+
+  @Autowired private ScoringBudget scoringBudget;
+
+  @Autowired private Validator validator;
+
+  @Autowired
+  @Qualifier("fraudScoringExecutor")
+  private TaskExecutor fraudScoringExecutor;
+
+  @Value("${fraud.detection.batch.max-size:5000}")
+  private int maxBatchSize;
+
+  public int getMaxBatchSize() {
+    return maxBatchSize;
+  }
+
+  public List<BatchAnalysisResult> analyzeBatch(List<TransactionAnalysisRequest> requests) {
+    long startTime = System.currentTimeMillis();
+    BatchAnalysisResult[] results = new BatchAnalysisResult[requests.size()];
+
+    // Validate and group by user, keeping input order inside each group
+    Map<Long, List<Integer>> groups = new LinkedHashMap<>();
+    Set<String> seenTransactionIds = new HashSet<>();
+    for (int i = 0; i < requests.size(); i++) {
+      TransactionAnalysisRequest request = requests.get(i);
+      String error = validate(request);
+      if (error == null && !seenTransactionIds.add(request.getTransactionId())) {
+        error = "Duplicate transactionId in batch";
+      }
+      if (error != null) {
+        results[i] = BatchAnalysisResult.failure(i, transactionIdOf(request), error);
+        continue;
+      }
+      groups.computeIfAbsent(request.getUserId(), id -> new ArrayList<>()).add(i);
+    }
+
+    // Already analyzed transactions get their stored analysis rather than failing the insert
+    Map<String, TransactionAnalysis> existing =
+        transactionAnalysisBatchWriter.findExisting(new ArrayList<>(seenTransactionIds));
+    if (!existing.isEmpty()) {
+      for (List<Integer> indexes : groups.values()) {
+        indexes.removeIf(
+            i -> {
+              String transactionId = requests.get(i).getTransactionId();
+              TransactionAnalysis analysis = existing.get(transactionId);
+              if (analysis != null) {
+                results[i] = BatchAnalysisResult.success(i, transactionId, analysis);
+                return true;
+              }
+              return false;
+            });
+      }
+    }
+
+    // Then those analyzed or in flight on this instance, claiming the others
+    List<Integer> claimed = new ArrayList<>();
+    for (List<Integer> indexes : groups.values()) {
+      indexes.removeIf(
+          i -> {
+            String transactionId = requests.get(i).getTransactionId();
+            switch (analysisDeduplicator.claim(transactionId)) {
+              case ANALYZED -> {
+                TransactionAnalysis analysis = analysisDeduplicator.recentAnalysis(transactionId);
+                results[i] =
+                    analysis != null
+                        ? BatchAnalysisResult.success(i, transactionId, analysis)
+                        // Evicted since the claim; a retry finds it stored or scores it
+                        : BatchAnalysisResult.retryableFailure(
+                            i, transactionId, "Transaction was analyzed concurrently");
+                return true;
+              }
+              case IN_FLIGHT -> {
+                results[i] =
+                    BatchAnalysisResult.retryableFailure(
+                        i, transactionId, "Transaction is already being analyzed");
+                return true;
+              }
+              default -> {
+                claimed.add(i);
+                return false;
+              }
+            }
+          });
+    }
+    try {
+      scoreAndPersist(requests, groups, results);
+    } finally {
+      for (int i : claimed) {
+        String transactionId = requests.get(i).getTransactionId();
+        if (results[i] != null && results[i].isSuccess()) {
+          analysisDeduplicator.complete(transactionId, results[i].getAnalysis());
+        } else {
+          analysisDeduplicator.release(
+              transactionId,
+              new IllegalStateException(
+                  "Batch analysis of transaction "
+                      + transactionId
+                      + " failed: "
+                      + (results[i] != null ? results[i].getError() : "batch aborted")));
+        }
+      }
+    }
+
+    log.info(
+        "Batch fraud analysis of {} transactions for {} users completed in {} ms",
+        requests.size(),
+        groups.size(),
+        System.currentTimeMillis() - startTime);
+    return Arrays.asList(results);
+  }
+
+  private void scoreAndPersist(
+      List<TransactionAnalysisRequest> requests,
+      Map<Long, List<Integer>> groups,
+      BatchAnalysisResult[] results) {
+    TransactionAnalysis[] scored = new TransactionAnalysis[requests.size()];
+
+    // Score each user group in parallel
+    List<CompletableFuture<Void>> futures = new ArrayList<>(groups.size());
+    for (Map.Entry<Long, List<Integer>> group : groups.entrySet()) {
+      if (group.getValue().isEmpty()) {
+        continue;
+      }
+      futures.add(
+          CompletableFuture.runAsync(
+              () -> scoreGroup(group.getKey(), group.getValue(), requests, scored, results),
+              fraudScoringExecutor));
+    }
+    CompletableFuture.allOf(futures.toArray(new CompletableFuture<?>[0])).join();
+
+    // Persist everything that scored successfully in one batch
+    List<Integer> persistIndexes = new ArrayList<>();
+    List<TransactionAnalysis> toPersist = new ArrayList<>();
+    for (int i = 0; i < scored.length; i++) {
+      if (scored[i] != null) {
+        persistIndexes.add(i);
+        toPersist.add(scored[i]);
+      }
+    }
+    List<String> persistErrors = transactionAnalysisBatchWriter.insertAll(toPersist);
+
+    for (int j = 0; j < persistIndexes.size(); j++) {
+      int i = persistIndexes.get(j);
+      TransactionAnalysisRequest request = requests.get(i);
+      TransactionAnalysis analysis = toPersist.get(j);
+      if (persistErrors.get(j) != null) {
+        results[i] =
+            BatchAnalysisResult.retryableFailure(
+                i, request.getTransactionId(), persistErrors.get(j));
+        continue;
+      }
+      transactionAnalysisPublisher.analysisSaved(request, analysis);
+      results[i] = BatchAnalysisResult.success(i, request.getTransactionId(), analysis);
+    }
+  }
+
+  private void scoreGroup(
+      Long userId,
+      List<Integer> indexes,
+      List<TransactionAnalysisRequest> requests,
+      TransactionAnalysis[] scored,
+      BatchAnalysisResult[] results) {
+    // The user's lookups share one deadline, as in a single analysis; a missed or failed one is
+    // scored conservatively for each of the user's transactions instead of stalling the group
+    ScoringBudget.Deadline groupDeadline = scoringBudget.start();
+    UserBehaviorProfile profile =
+        groupDeadline.await(
+            ScoringBudget.Feature.PROFILE,
+            () -> fraudDetectionService.getUserBehaviorProfile(userId),
+            null);
+    VelocitySnapshot velocity = velocityWindowAggregator.cached(userId);
+    if (velocity == null) {
+      velocity =
+          groupDeadline.await(
+              ScoringBudget.Feature.VELOCITY,
+              () -> velocityWindowAggregator.snapshot(userId),
+              VelocitySnapshot.EMPTY);
+    }
+    int groupDegraded = groupDeadline.degraded();
+
+    FraudRuleSet rules = fraudRuleEngine.current();
+    FraudModel model = fraudModelService.current();
+    FraudScoringContext[] contexts = new FraudScoringContext[indexes.size()];
+    List<FraudFeatureVector> features = new ArrayList<>(contexts.length);
+    for (int j = 0; j < contexts.length; j++) {
+      int i = indexes.get(j);
+      TransactionAnalysisRequest request = requests.get(i);
+      try {
+        // In-memory lookups, degraded per transaction like those of a single analysis
+        ScoringBudget.Deadline deadline = scoringBudget.start();
+        IpRangeTable.IpLocation ipLocation =
+            deadline.call(
+                ScoringBudget.Feature.IP_LOCATION,
+                () -> ipGeoLocator.locate(request.getIpAddress()),
+                null);
+        MerchantRiskSnapshot merchantRisk =
+            deadline.call(
+                ScoringBudget.Feature.MERCHANT,
+                () -> merchantRiskIndex.snapshot(request.getMerchantId()),
+                MerchantRiskSnapshot.EMPTY);
+        BinRangeTable.BinInfo bin =
+            deadline.call(
+                ScoringBudget.Feature.BIN, () -> binRiskIndex.find(request.getCardBin()), null);
+        LinkageSnapshot linkage =
+            deadline.call(
+                ScoringBudget.Feature.LINKAGE,
+                () -> linkageGraphIndex.snapshot(request),
+                LinkageSnapshot.EMPTY);
+        contexts[j] =
+            new FraudScoringContext(
+                userId,
+                request,
+                profile,
+                velocity,
+                rules,
+                model,
+                ipLocation,
+                merchantRisk,
+                bin,
+                linkage,
+                groupDegraded | deadline.degraded());
+        features.add(contexts[j].getFeatures());
+        // Later transactions of the same user see the earlier ones, as with sequential calls
+        velocity = velocity.plus(request.getAmount());
+      } catch (Exception e) {
+        scoringFailed(i, request, e, results);
+      }
+    }
+
+    // One classifier call for the whole group instead of one per transaction
+    if (model != null && !features.isEmpty()) {
+      double[] probabilities = fraudModelService.fraudProbabilities(model, features);
+      int k = 0;
+      for (FraudScoringContext context : contexts) {
+        if (context != null) {
+          context.setModelProbability(probabilities[k++]);
+        }
+      }
+    }
+
+    for (int j = 0; j < contexts.length; j++) {
+      if (contexts[j] == null) {
+        continue;
+      }
+      int i = indexes.get(j);
+      try {
+        scored[i] = fraudDetectionService.scoreTransaction(contexts[j]);
+      } catch (Exception e) {
+        scoringFailed(i, requests.get(i), e, results);
+      }
+    }
+  }
+
+  private static void scoringFailed(
+      int index, TransactionAnalysisRequest request, Exception e, BatchAnalysisResult[] results) {
+    log.error("Error scoring transaction {}: {}", request.getTransactionId(), e.getMessage());
+    results[index] =
+        BatchAnalysisResult.failure(
+            index, request.getTransactionId(), "Scoring failed: " + e.getMessage());
+  }
+
+  private String validate(TransactionAnalysisRequest request) {
+    if (request == null) {
+      return "Request is required";
+    }
+    Set<ConstraintViolation<TransactionAnalysisRequest>> violations = validator.validate(request);
+    if (violations.isEmpty()) {
+      return null;
+    }
+    return violations.stream()
+        .map(v -> v.getPropertyPath() + ": " + v.getMessage())
+        .sorted()
+        .collect(Collectors.joining("; "));
+  }
+
+  private static String transactionIdOf(TransactionAnalysisRequest request) {
+    return request != null ? request.getTransactionId() : null;
+  }
+}
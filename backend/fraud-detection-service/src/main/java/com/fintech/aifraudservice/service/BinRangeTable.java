@@ -0,0 +1,234 @@
+package com.fintech.aifraudservice.service;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Card BIN (issuer identification number) ranges mapped to the issuer's country, card type, a
+ * prepaid flag and a risk tier. BINs are compared as 8-digit numbers: a 6-digit range start is
+ * padded with zeros and a 6-digit end with nines, so 6- and 8-digit ranges can be mixed. Ranges are
+ * held in two sorted {@code int} arrays plus a parallel index into the distinct {@link BinInfo}
+ * values, about 12 bytes per range, and a lookup parses the BIN in place and binary searches them
+ * without allocating. Instances are immutable and thread-safe.
+ *
+ * <p>Loaded by {@link #load} from CSV lines of {@code start,end,country,cardType,prepaid,riskTier},
+ * where prepaid is {@code true} or {@code false} and the tier is one of {@link RiskTier}; the type,
+ * prepaid and tier fields may be empty. Fields may be quoted, {@code #} starts a comment line, and
+ * ranges must not overlap.
+ */
+public final class BinRangeTable implements RangeTable {
+
+  static final int KEY_DIGITS = 8;
+
+  private static final int MIN_BIN_DIGITS = 6;
+
+  /** Unresolved BINs, an empty table or input that is not a BIN */
+  public static final BinRangeTable EMPTY =
+      new BinRangeTable(new int[0], new int[0], new int[0], new BinInfo[0], "empty");
+
+  private final int[] starts;
+  private final int[] ends;
+  private final int[] infoIndex;
+  private final BinInfo[] infos;
+  private final String source;
+
+  /** Issuer-assigned risk of a BIN range */
+  public enum RiskTier {
+    LOW,
+    MEDIUM,
+    HIGH
+  }
+
+  /** What the issuer's range says about a card; card type is null when the source has none */
+  public record BinInfo(
+      String issuerCountry, String cardType, boolean prepaid, RiskTier riskTier) {}
+
+  private BinRangeTable(int[] starts, int[] ends, int[] infoIndex, BinInfo[] infos, String source) {
+    this.starts = starts;
+    this.ends = ends;
+    this.infoIndex = infoIndex;
+    this.infos = infos;
+    this.source = source;
+  }
+
+  /**
+   * Reads a BIN range file.
+   *
+   * @throws IllegalArgumentException when a line does not parse or ranges overlap
+   * @throws UncheckedIOException when the file cannot be read
+   */
+  public static BinRangeTable load(Path csv) {
+    List<int[]> ranges = new ArrayList<>();
+    Map<BinInfo, Integer> infoIndex = new HashMap<>();
+    List<BinInfo> infos = new ArrayList<>();
+    try (BufferedReader reader = Files.newBufferedReader(csv, StandardCharsets.UTF_8)) {
+      String line;
+      int number = 0;
+      while ((line = reader.readLine()) != null) {
+        number++;
+        String[] fields = RangeCsv.fields(line);
+        if (fields == null) {
+          continue;
+        }
+        if (fields.length < 3) {
+          throw new IllegalArgumentException(csv + ":" + number + ": expected start,end,country");
+        }
+        String startBin = RangeCsv.unquote(fields[0]);
+        String endBin = RangeCsv.unquote(fields[1]);
+        int start = rangeKey(startBin, '0');
+        int end = rangeKey(endBin, '9');
+        if (start < 0 || end < 0) {
+          throw new IllegalArgumentException(
+              csv + ":" + number + ": not a BIN range: " + startBin + "," + endBin);
+        }
+        if (end < start) {
+          throw new IllegalArgumentException(csv + ":" + number + ": range ends before start");
+        }
+        String country = RangeCsv.unquote(fields[2]).toUpperCase(Locale.ROOT);
+        if (country.isEmpty()) {
+          throw new IllegalArgumentException(csv + ":" + number + ": missing country");
+        }
+        String cardType =
+            fields.length > 3 ? RangeCsv.unquote(fields[3]).toUpperCase(Locale.ROOT) : "";
+        String prepaid = fields.length > 4 ? RangeCsv.unquote(fields[4]) : "";
+        String tier = fields.length > 5 ? RangeCsv.unquote(fields[5]) : "";
+        BinInfo info;
+        try {
+          info =
+              new BinInfo(
+                  country,
+                  cardType.isEmpty() ? null : cardType,
+                  Boolean.parseBoolean(prepaid),
+                  tier.isEmpty() ? RiskTier.LOW : RiskTier.valueOf(tier.toUpperCase(Locale.ROOT)));
+        } catch (IllegalArgumentException e) {
+          throw new IllegalArgumentException(csv + ":" + number + ": unknown risk tier " + tier);
+        }
+        int index =
+            infoIndex.computeIfAbsent(
+                info,
+                i -> {
+                  infos.add(i);
+                  return infos.size() - 1;
+                });
+        ranges.add(new int[] {start, end, index});
+      }
+    } catch (IOException e) {
+      throw new UncheckedIOException("Cannot read BIN range file " + csv, e);
+    }
+
+    ranges.sort((a, b) -> Integer.compare(a[0], b[0]));
+    int[] starts = new int[ranges.size()];
+    int[] ends = new int[ranges.size()];
+    int[] index = new int[ranges.size()];
+    for (int i = 0; i < ranges.size(); i++) {
+      int[] range = ranges.get(i);
+      if (i > 0 && range[0] <= ends[i - 1]) {
+        throw new IllegalArgumentException(
+            "Overlapping BIN ranges in " + csv + " at " + format(range[0]));
+      }
+      starts[i] = range[0];
+      ends[i] = range[1];
+      index[i] = range[2];
+    }
+    return new BinRangeTable(
+        starts, ends, index, infos.toArray(BinInfo[]::new), csv.toAbsolutePath().toString());
+  }
+
+  /**
+   * Range of a card BIN or card number prefix of at least six digits; only the first eight count.
+   *
+   * @return null when the BIN is not covered or not a BIN
+   */
+  public BinInfo find(String bin) {
+    if (bin == null || starts.length == 0) {
+      return null;
+    }
+    int key = binKey(bin);
+    if (key < 0) {
+      return null;
+    }
+    // Last range starting at or below the key
+    int low = 0;
+    int high = starts.length - 1;
+    int match = -1;
+    while (low <= high) {
+      int mid = (low + high) >>> 1;
+      if (starts[mid] <= key) {
+        match = mid;
+        low = mid + 1;
+      } else {
+        high = mid - 1;
+      }
+    }
+    if (match < 0 || key > ends[match]) {
+      return null;
+    }
+    return infos[infoIndex[match]];
+  }
+
+  @Override
+  public int size() {
+    return starts.length;
+  }
+
+  @Override
+  public String getSource() {
+    return source;
+  }
+
+  /** The first eight digits of a BIN, zero-padded; -1 when it is not 6 or more digits */
+  static int binKey(CharSequence bin) {
+    int length = bin.length();
+    if (length < MIN_BIN_DIGITS) {
+      return -1;
+    }
+    int key = 0;
+    for (int i = 0; i < length; i++) {
+      char c = bin.charAt(i);
+      if (c < '0' || c > '9') {
+        return -1;
+      }
+      if (i < KEY_DIGITS) {
+        key = key * 10 + (c - '0');
+      }
+    }
+    for (int i = length; i < KEY_DIGITS; i++) {
+      key *= 10;
+    }
+    return key;
+  }
+
+  /** A range bound of six to eight digits padded to eight with {@code pad}; -1 otherwise */
+  private static int rangeKey(String bound, char pad) {
+    if (bound.length() < MIN_BIN_DIGITS || bound.length() > KEY_DIGITS) {
+      return -1;
+    }
+    int key = 0;
+    for (int i = 0; i < KEY_DIGITS; i++) {
+      char c = i < bound.length() ? bound.charAt(i) : pad;
+      if (c < '0' || c > '9') {
+        return -1;
+      }
+      key = key * 10 + (c - '0');
+    }
+    return key;
+  }
+
+  private static String format(int key) {
+    char[] digits = new char[KEY_DIGITS];
+    Arrays.fill(digits, '0');
+    String value = Integer.toString(key);
+    value.getChars(0, value.length(), digits, KEY_DIGITS - value.length());
+    return new String(digits);
+  }
+}
@@ -0,0 +1,62 @@
+package com.fintech.aifraudservice.service;
+
+import com.fintech.aifraudservice.service.BinRangeTable.BinInfo;
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+/**
+ * Resolves card BINs to the issuer's country, card type, prepaid flag and risk tier from the range
+ * file at {@code fraud.detection.bin.location}, for the card component of the risk score.
+ *
+ * <p>The file is polled for changes and can also be reloaded on demand through a {@link
+ * ReloadableRangeFile}, as IP range tables are; a file that fails to load is logged and the
+ * previous table stays active. Without a file every BIN is unresolved and scores are unchanged.
+ */
+@Component
+@Slf4j
+public class BinRiskIndex {
+
+  @Value("${fraud.detection.bin.location:}")
+  private String location;
+
+  private final ReloadableRangeFile<BinRangeTable> ranges =
+      new ReloadableRangeFile<>("BIN", BinRangeTable.EMPTY, BinRangeTable::load);
+
+  @PostConstruct
+  void init() {
+    if (location.isBlank()) {
+      log.info("No BIN range file configured, BIN risk is off");
+    }
+    ranges.init(location);
+  }
+
+  /** Range of the BIN, or {@code null} when it is unknown or not a BIN */
+  public BinInfo find(String cardBin) {
+    return ranges.current().find(cardBin);
+  }
+
+  public BinRangeTable current() {
+    return ranges.current();
+  }
+
+  /**
+   * Reloads the range file and publishes the new table.
+   *
+   * @return the newly published table
+   * @throws IllegalArgumentException when the file does not parse
+   * @throws IllegalStateException when no file is configured or it cannot be read; either way the
+   *     previous table stays active
+   */
+  public BinRangeTable reload() {
+    return ranges.reload();
+  }
+
+  /** Reloads when the range file changed since it was last read */
+  @Scheduled(fixedDelayString = "${fraud.detection.bin.refresh-interval-ms:60000}")
+  public void reloadIfChanged() {
+    ranges.reloadIfChanged();
+  }
+}
@@ -10,6 +10,9 @@ public interface FraudDetectionService {
   /** Analyze a transaction for fraud indicators */
   TransactionAnalysis analyzeTransaction(TransactionAnalysisRequest request);
 
+  /** Score a transaction from a resolved context without persisting it */
+  TransactionAnalysis scoreTransaction(FraudScoringContext context);
+
   /** Get real-time fraud score for a transaction */
   Double calculateRealTimeFraudScore(TransactionAnalysisRequest request);
 
@@ -19,8 +22,8 @@ public interface FraudDetectionService {
   /** Get user behavior profile */
   UserBehaviorProfile getUserBehaviorProfile(Long userId);
 
-  /** Retrain fraud detection model */
-  void retrainFraudModel();
+  /** Starts a background retraining run; false when one is already running */
+  boolean retrainFraudModel();
 
   /** Get fraud detection statistics */
   Map<String, Object> getFraudDetectionStats();
@@ -42,4 +45,19 @@ public interface FraudDetectionService {
 
   /** Calculate device risk score */
   Double calculateDeviceScore(Long userId, TransactionAnalysisRequest request);
+
+  /** Resolve the profile and velocity features shared by all scorers for one request */
+  FraudScoringContext createScoringContext(TransactionAnalysisRequest request);
+
+  /** Calculate velocity score from a resolved scoring context */
+  Double calculateVelocityScore(FraudScoringContext context);
+
+  /** Calculate behavioral anomaly score from a resolved scoring context */
+  Double calculateBehavioralScore(FraudScoringContext context);
+
+  /** Calculate geolocation risk score from a resolved scoring context */
+  Double calculateGeolocationScore(FraudScoringContext context);
+
+  /** Calculate device risk score from a resolved scoring context */
+  Double calculateDeviceScore(FraudScoringContext context);
 }
@@ -4,18 +4,14 @@ import com.fintech.aifraudservice.model.TransactionAnalysis;
 import com.fintech.aifraudservice.model.UserBehaviorProfile;
 import com.fintech.aifraudservice.repository.TransactionAnalysisRepository;
 import com.fintech.aifraudservice.repository.UserBehaviorProfileRepository;
-import java.math.BigDecimal;
 import java.time.LocalDateTime;
-import java.time.LocalTime;
 import java.util.*;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.cache.annotation.Cacheable;
-import org.springframework.kafka.core.KafkaTemplate;
+import org.springframework.cache.Cache;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Propagation;
 import org.springframework.transaction.annotation.Transactional;
-import weka.classifiers.Classifier;
-import weka.core.Instances;
 
 @Service
 @Slf4j
@@ -26,409 +22,370 @@ public class FraudDetectionServiceImpl implements FraudDetectionService {
 
   @Autowired private UserBehaviorProfileRepository userBehaviorProfileRepository;
 
-  @Autowired private KafkaTemplate<String, Object> kafkaTemplate;
+  @Autowired private TwoTierCache userBehaviorProfileCache;
 
-  private Classifier fraudDetectionModel;
-  private Instances modelDataset;
+  @Autowired private VelocityWindowAggregator velocityWindowAggregator;
 
-  // ML Model weights for different risk factors
-  private static final double VELOCITY_WEIGHT = 0.25;
-  private static final double BEHAVIORAL_WEIGHT = 0.20;
-  private static final double GEOLOCATION_WEIGHT = 0.15;
-  private static final double DEVICE_WEIGHT = 0.15;
-  private static final double AMOUNT_WEIGHT = 0.15;
-  private static final double TIME_WEIGHT = 0.10;
+  @Autowired private TransactionAnalysisPublisher transactionAnalysisPublisher;
 
-  @Override
-  public TransactionAnalysis analyzeTransaction(TransactionAnalysisRequest request) {
-    long startTime = System.currentTimeMillis();
+  @Autowired private WriteBehindAnalysisWriter writeBehindAnalysisWriter;
 
-    try {
-      log.info("Starting fraud analysis for transaction: {}", request.getTransactionId());
-
-      // Calculate individual risk scores
-      Double velocityScore = calculateVelocityScore(request.getUserId(), request);
-      Double behavioralScore = calculateBehavioralScore(request.getUserId(), request);
-      Double geolocationScore = calculateGeolocationScore(request.getUserId(), request);
-      Double deviceScore = calculateDeviceScore(request.getUserId(), request);
-      Double amountScore = calculateAmountScore(request.getUserId(), request);
-      Double timeScore = calculateTimeOfDayScore(request.getUserId(), request);
-
-      // Calculate overall risk score
-      Double overallRiskScore =
-          calculateOverallRiskScore(
-              velocityScore,
-              behavioralScore,
-              geolocationScore,
-              deviceScore,
-              amountScore,
-              timeScore);
-
-      // Determine risk level
-      TransactionAnalysis.RiskLevel riskLevel = determineRiskLevel(overallRiskScore);
-
-      // Create analysis record
-      TransactionAnalysis analysis = new TransactionAnalysis();
-      analysis.setTransactionId(request.getTransactionId());
-      analysis.setUserId(request.getUserId());
-      analysis.setAmount(request.getAmount());
-      analysis.setCurrency(request.getCurrency());
-      analysis.setMerchantId(request.getMerchantId());
-      analysis.setMerchantCategory(request.getMerchantCategory());
-      analysis.setTransactionType(request.getTransactionType());
-      analysis.setPaymentMethod(request.getPaymentMethod());
-      analysis.setIpAddress(request.getIpAddress());
-      analysis.setDeviceFingerprint(request.getDeviceFingerprint());
-      analysis.setLocationCountry(request.getLocationCountry());
-      analysis.setLocationCity(request.getLocationCity());
-      analysis.setRiskScore(overallRiskScore);
-      analysis.setRiskLevel(riskLevel);
-      analysis.setVelocityScore(velocityScore);
-      analysis.setBehavioralScore(behavioralScore);
-      analysis.setGeolocationScore(geolocationScore);
-      analysis.setDeviceScore(deviceScore);
-      analysis.setAmountScore(amountScore);
-      analysis.setTimeOfDayScore(timeScore);
-      analysis.setMlModelVersion("v1.0");
-      analysis.setAnalysisDurationMs(System.currentTimeMillis() - startTime);
-
-      // Set fraud indicators
-      Map<String, String> indicators = generateFraudIndicators(request, analysis);
-      analysis.setFraudIndicators(indicators);
-
-      // Determine fraud status based on risk level
-      if (riskLevel == TransactionAnalysis.RiskLevel.CRITICAL) {
-        analysis.setFraudStatus(TransactionAnalysis.FraudStatus.DECLINED);
-      } else if (riskLevel == TransactionAnalysis.RiskLevel.HIGH) {
-        analysis.setFraudStatus(TransactionAnalysis.FraudStatus.UNDER_REVIEW);
-      } else {
-        analysis.setFraudStatus(TransactionAnalysis.FraudStatus.APPROVED);
-      }
+  @Autowired private UserBehaviorProfileUpdater userBehaviorProfileUpdater;
 
-      // Save analysis
-      analysis = transactionAnalysisRepository.save(analysis);
+  @Autowired private FraudRuleEngine fraudRuleEngine;
 
-      // Update user behavior profile asynchronously
-      updateUserBehaviorProfile(request, analysis);
+  @Autowired private FraudModelService fraudModelService;
 
-      // Send to Kafka for real-time processing
-      kafkaTemplate.send("fraud-analysis-results", analysis);
+  @Autowired private FraudModelTrainer fraudModelTrainer;
 
-      log.info(
-          "Fraud analysis completed for transaction: {} with risk score: {} and level: {}",
-          request.getTransactionId(),
-          overallRiskScore,
-          riskLevel);
+  @Autowired private FraudStatsCounters fraudStatsCounters;
+
+  @Autowired private ReviewQueue reviewQueue;
+
+  @Autowired private FraudPipelineMetrics fraudPipelineMetrics;
+
+  @Autowired private ShadowScoring shadowScoring;
+
+  @Autowired private IpGeoLocator ipGeoLocator;
+
+  @Autowired private MerchantRiskIndex merchantRiskIndex;
+
+  @Autowired private BinRiskIndex binRiskIndex;
 
-      return analysis;
+  @Autowired private LinkageGraphIndex linkageGraphIndex;
 
+  @Autowired private ScoringBudget scoringBudget;
+
+  @Autowired private AnalysisDeduplicator analysisDeduplicator;
+
+  @Override
+  // Outside a transaction, so a coalesced duplicate waits without holding a connection and, unless
+  // writes are behind, is handed an analysis whose row has been committed
+  @Transactional(propagation = Propagation.NOT_SUPPORTED)
+  public TransactionAnalysis analyzeTransaction(TransactionAnalysisRequest request) {
+    long start = System.nanoTime();
+    try {
+      // A repeated transaction id gets the analysis already made for it
+      return analysisDeduplicator.analyzeOnce(request.getTransactionId(), () -> analyze(request));
     } catch (Exception e) {
       log.error(
           "Error analyzing transaction {}: {}", request.getTransactionId(), e.getMessage(), e);
       throw new RuntimeException("Fraud analysis failed", e);
+    } finally {
+      fraudPipelineMetrics.request(FraudPipelineMetrics.Operation.ANALYZE, start);
     }
   }
 
-  @Override
-  public Double calculateRealTimeFraudScore(TransactionAnalysisRequest request) {
-    try {
-      Double velocityScore = calculateVelocityScore(request.getUserId(), request);
-      Double behavioralScore = calculateBehavioralScore(request.getUserId(), request);
-      Double geolocationScore = calculateGeolocationScore(request.getUserId(), request);
-      Double deviceScore = calculateDeviceScore(request.getUserId(), request);
-      Double amountScore = calculateAmountScore(request.getUserId(), request);
-      Double timeScore = calculateTimeOfDayScore(request.getUserId(), request);
-
-      return calculateOverallRiskScore(
-          velocityScore, behavioralScore, geolocationScore, deviceScore, amountScore, timeScore);
-    } catch (Exception e) {
-      log.error("Error calculating real-time fraud score: {}", e.getMessage(), e);
-      return 0.5; // Default medium risk
-    }
-  }
+  private TransactionAnalysis analyze(TransactionAnalysisRequest request) {
+    log.info("Starting fraud analysis for transaction: {}", request.getTransactionId());
 
-  @Override
-  public Double calculateVelocityScore(Long userId, TransactionAnalysisRequest request) {
-    try {
-      LocalDateTime now = LocalDateTime.now();
-      LocalDateTime oneHourAgo = now.minusHours(1);
-      LocalDateTime oneDayAgo = now.minusDays(1);
-
-      // Count transactions in last hour and day
-      Long transactionsLastHour =
-          transactionAnalysisRepository.countUserTransactionsSince(userId, oneHourAgo);
-      Long transactionsLastDay =
-          transactionAnalysisRepository.countUserTransactionsSince(userId, oneDayAgo);
-
-      // Calculate total amount in last hour and day
-      BigDecimal amountLastHour =
-          transactionAnalysisRepository.sumUserTransactionAmountSince(userId, oneHourAgo);
-      BigDecimal amountLastDay =
-          transactionAnalysisRepository.sumUserTransactionAmountSince(userId, oneDayAgo);
-
-      if (amountLastHour == null) amountLastHour = BigDecimal.ZERO;
-      if (amountLastDay == null) amountLastDay = BigDecimal.ZERO;
-
-      // Get user's normal velocity patterns
-      UserBehaviorProfile profile = getUserBehaviorProfile(userId);
-
-      double velocityScore = 0.0;
-
-      // Check transaction count velocity
-      if (profile != null && profile.getDailyTransactionCount() != null) {
-        double normalDailyCount = profile.getDailyTransactionCount();
-        double normalHourlyCount = normalDailyCount / 24.0;
-
-        if (transactionsLastHour > normalHourlyCount * 3) {
-          velocityScore += 0.4; // High transaction frequency
-        } else if (transactionsLastHour > normalHourlyCount * 2) {
-          velocityScore += 0.2; // Medium transaction frequency
-        }
-
-        if (transactionsLastDay > normalDailyCount * 2) {
-          velocityScore += 0.3; // High daily transaction count
-        }
-      } else {
-        // No profile available, use general thresholds
-        if (transactionsLastHour > 5) velocityScore += 0.4;
-        if (transactionsLastDay > 20) velocityScore += 0.3;
-      }
-
-      // Check amount velocity
-      if (profile != null && profile.getAvgTransactionAmount() != null) {
-        BigDecimal normalDailyAmount =
-            profile
-                .getAvgTransactionAmount()
-                .multiply(
-                    BigDecimal.valueOf(
-                        profile.getDailyTransactionCount() != null
-                            ? profile.getDailyTransactionCount()
-                            : 5));
-
-        if (amountLastDay.compareTo(normalDailyAmount.multiply(BigDecimal.valueOf(3))) > 0) {
-          velocityScore += 0.3; // High amount velocity
-        }
-      }
-
-      return Math.min(velocityScore, 1.0);
+    // Resolve profile and velocity once for all scorers
+    FraudScoringContext context = createScoringContext(request);
+    TransactionAnalysis analysis = scoreTransaction(context);
 
-    } catch (Exception e) {
-      log.error("Error calculating velocity score for user {}: {}", userId, e.getMessage());
-      return 0.0;
+    // In write-behind mode the flusher stores the row and runs the post-persist steps
+    long persistStart = System.nanoTime();
+    if (writeBehindAnalysisWriter.submit(request, analysis)) {
+      fraudPipelineMetrics.stage(FraudPipelineMetrics.Stage.ENQUEUE, persistStart);
+    } else {
+      // Save analysis
+      analysis = transactionAnalysisRepository.save(analysis);
+      fraudPipelineMetrics.stage(FraudPipelineMetrics.Stage.PERSIST, persistStart);
+
+      // Refresh behavior profile and in-memory indexes, send to Kafka for real-time processing
+      transactionAnalysisPublisher.analysisSaved(request, analysis);
     }
+
+    log.info(
+        "Fraud analysis completed for transaction: {} with risk score: {} and level: {}",
+        request.getTransactionId(),
+        analysis.getRiskScore(),
+        analysis.getRiskLevel());
+
+    return analysis;
   }
 
   @Override
-  public Double calculateBehavioralScore(Long userId, TransactionAnalysisRequest request) {
-    try {
-      UserBehaviorProfile profile = getUserBehaviorProfile(userId);
-      if (profile == null) {
-        return 0.3; // Medium risk for new users
-      }
-
-      double behavioralScore = 0.0;
-
-      // Check amount deviation
-      if (profile.getAvgTransactionAmount() != null) {
-        BigDecimal avgAmount = profile.getAvgTransactionAmount();
-        BigDecimal currentAmount = request.getAmount();
-
-        double ratio = currentAmount.divide(avgAmount, 2, BigDecimal.ROUND_HALF_UP).doubleValue();
-
-        if (ratio > 10) {
-          behavioralScore += 0.4; // Very high amount compared to normal
-        } else if (ratio > 5) {
-          behavioralScore += 0.2; // High amount compared to normal
-        }
-      }
-
-      // Check merchant category deviation
-      if (profile.getFrequentCategories() != null && !profile.getFrequentCategories().isEmpty()) {
-        if (!profile.getFrequentCategories().contains(request.getMerchantCategory())) {
-          behavioralScore += 0.2; // New merchant category
-        }
-      }
-
-      // Check payment method deviation
-      if (profile.getPreferredPaymentMethods() != null
-          && !profile.getPreferredPaymentMethods().isEmpty()) {
-        if (!profile.getPreferredPaymentMethods().contains(request.getPaymentMethod())) {
-          behavioralScore += 0.15; // New payment method
-        }
-      }
-
-      // Check time pattern deviation
-      LocalTime currentTime = request.getTransactionTime().toLocalTime();
-      if (profile.getTypicalStartTime() != null && profile.getTypicalEndTime() != null) {
-        LocalTime startTime = profile.getTypicalStartTime();
-        LocalTime endTime = profile.getTypicalEndTime();
-
-        if (currentTime.isBefore(startTime) || currentTime.isAfter(endTime)) {
-          behavioralScore += 0.25; // Transaction outside normal hours
-        }
-      }
-
-      return Math.min(behavioralScore, 1.0);
+  @Transactional(propagation = Propagation.SUPPORTS)
+  public TransactionAnalysis scoreTransaction(FraudScoringContext context) {
+    TransactionAnalysisRequest request = context.getRequest();
+    FraudFeatureVector features = context.getFeatures();
+    FraudRuleSet rules = context.getRules();
+    long stageStart = System.nanoTime();
+
+    // Calculate individual risk scores
+    double velocityScore = FraudScoringKernel.velocityScore(features);
+    double behavioralScore = FraudScoringKernel.behavioralScore(features);
+    double geolocationScore = FraudScoringKernel.geolocationScore(features);
+    double deviceScore = FraudScoringKernel.deviceScore(features);
+    double amountScore = FraudScoringKernel.amountScore(features);
+    double timeScore = FraudScoringKernel.timeOfDayScore(features);
+    double merchantScore = FraudScoringKernel.merchantScore(features);
+    double cardScore = FraudScoringKernel.cardScore(features);
+
+    // Calculate overall risk score
+    double overallRiskScore =
+        rules.riskScore(
+            velocityScore,
+            behavioralScore,
+            geolocationScore,
+            deviceScore,
+            amountScore,
+            timeScore,
+            merchantScore,
+            cardScore,
+            features.ruleAdjustment);
+    fraudPipelineMetrics.stage(FraudPipelineMetrics.Stage.SCORING, stageStart);
+
+    // Blend in the model's fraud probability, computed here unless a batch call already did
+    double modelProbability =
+        context.isModelProbabilityResolved()
+            ? context.getModelProbability()
+            : fraudModelService.fraudProbability(context.getModel(), features);
+    overallRiskScore = fraudModelService.blend(overallRiskScore, modelProbability);
+
+    // Determine risk level
+    TransactionAnalysis.RiskLevel riskLevel = rules.riskLevel(overallRiskScore);
+
+    // Create analysis record
+    TransactionAnalysis analysis = new TransactionAnalysis();
+    analysis.setTransactionId(request.getTransactionId());
+    analysis.setUserId(request.getUserId());
+    analysis.setAmount(request.getAmount());
+    analysis.setCurrency(request.getCurrency());
+    analysis.setMerchantId(request.getMerchantId());
+    analysis.setMerchantCategory(request.getMerchantCategory());
+    analysis.setTransactionType(request.getTransactionType());
+    analysis.setPaymentMethod(request.getPaymentMethod());
+    analysis.setIpAddress(request.getIpAddress());
+    analysis.setDeviceFingerprint(request.getDeviceFingerprint());
+    analysis.setLocationCountry(request.getLocationCountry());
+    analysis.setLocationCity(request.getLocationCity());
+    analysis.setRiskScore(overallRiskScore);
+    analysis.setRiskLevel(riskLevel);
+    analysis.setVelocityScore(velocityScore);
+    analysis.setBehavioralScore(behavioralScore);
+    analysis.setGeolocationScore(geolocationScore);
+    analysis.setDeviceScore(deviceScore);
+    analysis.setAmountScore(amountScore);
+    analysis.setTimeOfDayScore(timeScore);
+    analysis.setMerchantScore(merchantScore);
+    analysis.setCardScore(cardScore);
+    analysis.setMlModelVersion(fraudModelService.versionOf(context.getModel(), rules));
+
+    // Set fraud indicators
+    stageStart = System.nanoTime();
+    Map<String, String> indicators = generateFraudIndicators(request, analysis);
+    if (modelProbability > 0.5) {
+      indicators.put("ML_MODEL_RISK", "Fraud model probability is " + modelProbability);
+    }
+    if (features.ipCountryMismatch) {
+      indicators.put(
+          "IP_LOCATION_MISMATCH",
+          "IP address is in "
+              + context.getIpLocation().country()
+              + ", transaction claims "
+              + request.getLocationCountry());
+    }
+    if (features.binCountryMismatch) {
+      indicators.put(
+          "BIN_COUNTRY_MISMATCH",
+          "Card issued in "
+              + context.getBin().issuerCountry()
+              + ", transaction from "
+              + (context.getIpLocation() != null
+                  ? context.getIpLocation().country()
+                  : request.getLocationCountry()));
+    }
+    if (context.isDegraded()) {
+      indicators.put(
+          "DEGRADED_FEATURES",
+          "Scored with conservative defaults for "
+              + ScoringBudget.describe(context.getDegradedFeatures()));
+    }
+    if (features.linkedAccounts >= 3) {
+      indicators.put(
+          "LINKED_ACCOUNTS",
+          "Device, IP address or card shared with " + features.linkedAccounts + " other accounts");
+    }
+    analysis.setFraudIndicators(indicators);
+    fraudPipelineMetrics.stage(FraudPipelineMetrics.Stage.INDICATORS, stageStart);
 
-    } catch (Exception e) {
-      log.error("Error calculating behavioral score for user {}: {}", userId, e.getMessage());
-      return 0.0;
+    // Determine fraud status based on risk level
+    analysis.setFraudStatus(decision(riskLevel));
+
+    // Everything up to the stored row; persistence and publishing are timed separately
+    analysis.setAnalysisDurationMs(System.currentTimeMillis() - context.getStartTimeMillis());
+    fraudPipelineMetrics.outcome(riskLevel, analysis.getFraudStatus());
+
+    // Candidate rules and models score the same features off this thread
+    shadowScoring.submit(
+        context, overallRiskScore, modelProbability, riskLevel, analysis.getFraudStatus());
+    return analysis;
+  }
+
+  /** Fraud status assigned at scoring time for a risk level */
+  static TransactionAnalysis.FraudStatus decision(TransactionAnalysis.RiskLevel riskLevel) {
+    if (riskLevel == TransactionAnalysis.RiskLevel.CRITICAL) {
+      return TransactionAnalysis.FraudStatus.DECLINED;
+    } else if (riskLevel == TransactionAnalysis.RiskLevel.HIGH) {
+      return TransactionAnalysis.FraudStatus.UNDER_REVIEW;
+    } else {
+      return TransactionAnalysis.FraudStatus.APPROVED;
     }
   }
 
   @Override
-  public Double calculateGeolocationScore(Long userId, TransactionAnalysisRequest request) {
+  public Double calculateRealTimeFraudScore(TransactionAnalysisRequest request) {
+    long start = System.nanoTime();
     try {
-      UserBehaviorProfile profile = getUserBehaviorProfile(userId);
-      if (profile == null) {
-        return 0.2; // Low-medium risk for new users
-      }
-
-      double geoScore = 0.0;
-
-      // Check country deviation
-      if (profile.getFrequentCountries() != null && !profile.getFrequentCountries().isEmpty()) {
-        if (!profile.getFrequentCountries().contains(request.getLocationCountry())) {
-          geoScore += 0.5; // New country
-        }
-      }
-
-      // Check city deviation
-      if (profile.getFrequentCities() != null && !profile.getFrequentCities().isEmpty()) {
-        if (!profile.getFrequentCities().contains(request.getLocationCity())) {
-          geoScore += 0.3; // New city
-        }
-      }
-
-      // Check for high-risk countries (this would be configurable)
-      Set<String> highRiskCountries = Set.of("XX", "YY", "ZZ"); // Example
-      if (highRiskCountries.contains(request.getLocationCountry())) {
-        geoScore += 0.4; // High-risk country
-      }
-
-      return Math.min(geoScore, 1.0);
-
+      FraudScoringContext context = createScoringContext(request);
+      return fraudModelService.blend(
+          context.getRules().riskScore(context.getFeatures()),
+          fraudModelService.fraudProbability(context.getModel(), context.getFeatures()));
     } catch (Exception e) {
-      log.error("Error calculating geolocation score for user {}: {}", userId, e.getMessage());
-      return 0.0;
+      log.error("Error calculating real-time fraud score: {}", e.getMessage(), e);
+      return 0.5; // Default medium risk
+    } finally {
+      fraudPipelineMetrics.request(FraudPipelineMetrics.Operation.SCORE, start);
     }
   }
 
   @Override
-  public Double calculateDeviceScore(Long userId, TransactionAnalysisRequest request) {
-    try {
-      UserBehaviorProfile profile = getUserBehaviorProfile(userId);
-      if (profile == null) {
-        return 0.2; // Low-medium risk for new users
-      }
-
-      double deviceScore = 0.0;
-
-      // Check device fingerprint
-      if (profile.getKnownDevices() != null && !profile.getKnownDevices().isEmpty()) {
-        if (!profile.getKnownDevices().contains(request.getDeviceFingerprint())) {
-          deviceScore += 0.4; // New device
-        }
-      }
+  public FraudScoringContext createScoringContext(TransactionAnalysisRequest request) {
+    return createScoringContext(request.getUserId(), request);
+  }
 
-      // Check IP address
-      if (profile.getKnownIpAddresses() != null && !profile.getKnownIpAddresses().isEmpty()) {
-        if (!profile.getKnownIpAddresses().contains(request.getIpAddress())) {
-          deviceScore += 0.3; // New IP address
-        }
-      }
+  private FraudScoringContext createScoringContext(
+      Long userId, TransactionAnalysisRequest request) {
+    // Every lookup below shares one deadline; a missed or failed one is scored conservatively
+    ScoringBudget.Deadline deadline = scoringBudget.start();
+    long start = System.nanoTime();
+    UserBehaviorProfile profile = lookupProfile(userId, deadline);
+    fraudPipelineMetrics.profileLookup(start, profile != null);
+
+    start = System.nanoTime();
+    VelocitySnapshot velocity = lookupVelocity(userId, deadline);
+    fraudPipelineMetrics.stage(FraudPipelineMetrics.Stage.VELOCITY, start);
+
+    start = System.nanoTime();
+    // Binary search of the memory-mapped range table, no allocation
+    IpRangeTable.IpLocation ipLocation =
+        deadline.call(
+            ScoringBudget.Feature.IP_LOCATION,
+            () -> ipGeoLocator.locate(request.getIpAddress()),
+            null);
+    fraudPipelineMetrics.stage(FraudPipelineMetrics.Stage.GEO, start);
+
+    start = System.nanoTime();
+    // One hash lookup in the bounded merchant aggregates
+    MerchantRiskSnapshot merchantRisk =
+        deadline.call(
+            ScoringBudget.Feature.MERCHANT,
+            () -> merchantRiskIndex.snapshot(request.getMerchantId()),
+            MerchantRiskSnapshot.EMPTY);
+    fraudPipelineMetrics.stage(FraudPipelineMetrics.Stage.MERCHANT, start);
+
+    start = System.nanoTime();
+    // Binary search of the in-memory BIN ranges, no allocation
+    BinRangeTable.BinInfo bin =
+        deadline.call(
+            ScoringBudget.Feature.BIN, () -> binRiskIndex.find(request.getCardBin()), null);
+    fraudPipelineMetrics.stage(FraudPipelineMetrics.Stage.BIN, start);
+
+    start = System.nanoTime();
+    // Bounded adjacency walks in the in-memory account linkage graph
+    LinkageSnapshot linkage =
+        deadline.call(
+            ScoringBudget.Feature.LINKAGE,
+            () -> linkageGraphIndex.snapshot(request),
+            LinkageSnapshot.EMPTY);
+    fraudPipelineMetrics.stage(FraudPipelineMetrics.Stage.LINKAGE, start);
+
+    return new FraudScoringContext(
+        userId,
+        request,
+        profile,
+        velocity,
+        fraudRuleEngine.current(),
+        fraudModelService.current(),
+        ipLocation,
+        merchantRisk,
+        bin,
+        linkage,
+        deadline.degraded());
+  }
 
-      return Math.min(deviceScore, 1.0);
+  /**
+   * The velocity from the user's in-memory sliding windows on this thread, otherwise seeded from
+   * the database on the lookup pool within the scoring budget.
+   */
+  private VelocitySnapshot lookupVelocity(Long userId, ScoringBudget.Deadline deadline) {
+    VelocitySnapshot cached = velocityWindowAggregator.cached(userId);
+    if (cached != null) {
+      return cached;
+    }
+    // A degraded velocity is scored with the conservative default, not as no activity
+    return deadline.await(
+        ScoringBudget.Feature.VELOCITY,
+        () -> velocityWindowAggregator.snapshot(userId),
+        VelocitySnapshot.EMPTY);
+  }
 
-    } catch (Exception e) {
-      log.error("Error calculating device score for user {}: {}", userId, e.getMessage());
-      return 0.0;
+  /**
+   * The profile from the local cache tier on this thread, otherwise from Redis or the database on
+   * the lookup pool within the scoring budget.
+   */
+  private UserBehaviorProfile lookupProfile(Long userId, ScoringBudget.Deadline deadline) {
+    Cache.ValueWrapper cached = userBehaviorProfileCache.getLocal(userId);
+    if (cached != null) {
+      return (UserBehaviorProfile) cached.get();
     }
+    return deadline.await(
+        ScoringBudget.Feature.PROFILE, () -> getUserBehaviorProfile(userId), null);
   }
 
-  private Double calculateAmountScore(Long userId, TransactionAnalysisRequest request) {
-    try {
-      UserBehaviorProfile profile = getUserBehaviorProfile(userId);
-      if (profile == null) {
-        // For new users, check against general thresholds
-        BigDecimal amount = request.getAmount();
-        if (amount.compareTo(BigDecimal.valueOf(10000)) > 0) {
-          return 0.8; // Very high amount
-        } else if (amount.compareTo(BigDecimal.valueOf(5000)) > 0) {
-          return 0.5; // High amount
-        } else if (amount.compareTo(BigDecimal.valueOf(1000)) > 0) {
-          return 0.2; // Medium amount
-        }
-        return 0.0;
-      }
-
-      BigDecimal maxAmount = profile.getMaxTransactionAmount();
-      BigDecimal avgAmount = profile.getAvgTransactionAmount();
-      BigDecimal currentAmount = request.getAmount();
-
-      if (maxAmount != null
-          && currentAmount.compareTo(maxAmount.multiply(BigDecimal.valueOf(2))) > 0) {
-        return 0.8; // Much higher than historical max
-      } else if (maxAmount != null && currentAmount.compareTo(maxAmount) > 0) {
-        return 0.5; // Higher than historical max
-      } else if (avgAmount != null
-          && currentAmount.compareTo(avgAmount.multiply(BigDecimal.valueOf(5))) > 0) {
-        return 0.4; // Much higher than average
-      }
-
-      return 0.0;
+  @Override
+  public Double calculateVelocityScore(Long userId, TransactionAnalysisRequest request) {
+    return calculateVelocityScore(createScoringContext(userId, request));
+  }
 
-    } catch (Exception e) {
-      log.error("Error calculating amount score for user {}: {}", userId, e.getMessage());
-      return 0.0;
-    }
+  @Override
+  public Double calculateVelocityScore(FraudScoringContext context) {
+    return FraudScoringKernel.velocityScore(context.getFeatures());
   }
 
-  private Double calculateTimeOfDayScore(Long userId, TransactionAnalysisRequest request) {
-    try {
-      LocalTime currentTime = request.getTransactionTime().toLocalTime();
+  @Override
+  public Double calculateBehavioralScore(Long userId, TransactionAnalysisRequest request) {
+    return calculateBehavioralScore(createScoringContext(userId, request));
+  }
 
-      // High-risk hours (late night/early morning)
-      if (currentTime.isAfter(LocalTime.of(23, 0)) || currentTime.isBefore(LocalTime.of(6, 0))) {
-        return 0.3;
-      }
+  @Override
+  public Double calculateBehavioralScore(FraudScoringContext context) {
+    return FraudScoringKernel.behavioralScore(context.getFeatures());
+  }
 
-      return 0.0;
+  @Override
+  public Double calculateGeolocationScore(Long userId, TransactionAnalysisRequest request) {
+    return calculateGeolocationScore(createScoringContext(userId, request));
+  }
 
-    } catch (Exception e) {
-      log.error("Error calculating time score for user {}: {}", userId, e.getMessage());
-      return 0.0;
-    }
+  @Override
+  public Double calculateGeolocationScore(FraudScoringContext context) {
+    return FraudScoringKernel.geolocationScore(context.getFeatures());
   }
 
-  private Double calculateOverallRiskScore(
-      Double velocityScore,
-      Double behavioralScore,
-      Double geolocationScore,
-      Double deviceScore,
-      Double amountScore,
-      Double timeScore) {
-    return (velocityScore * VELOCITY_WEIGHT)
-        + (behavioralScore * BEHAVIORAL_WEIGHT)
-        + (geolocationScore * GEOLOCATION_WEIGHT)
-        + (deviceScore * DEVICE_WEIGHT)
-        + (amountScore * AMOUNT_WEIGHT)
-        + (timeScore * TIME_WEIGHT);
+  @Override
+  public Double calculateDeviceScore(Long userId, TransactionAnalysisRequest request) {
+    return calculateDeviceScore(createScoringContext(userId, request));
   }
 
-  private TransactionAnalysis.RiskLevel determineRiskLevel(Double riskScore) {
-    if (riskScore >= 0.8) {
-      return TransactionAnalysis.RiskLevel.CRITICAL;
-    } else if (riskScore >= 0.6) {
-      return TransactionAnalysis.RiskLevel.HIGH;
-    } else if (riskScore >= 0.3) {
-      return TransactionAnalysis.RiskLevel.MEDIUM;
-    } else {
-      return TransactionAnalysis.RiskLevel.LOW;
-    }
+  @Override
+  public Double calculateDeviceScore(FraudScoringContext context) {
+    return FraudScoringKernel.deviceScore(context.getFeatures());
   }
 
-  private Map<String, String> generateFraudIndicators(
+  static Map<String, String> generateFraudIndicators(
       TransactionAnalysisRequest request, TransactionAnalysis analysis) {
     Map<String, String> indicators = new HashMap<>();
 
@@ -456,53 +413,48 @@ public class FraudDetectionServiceImpl implements FraudDetectionService {
       indicators.put("TIME_RISK", "Transaction at unusual time");
     }
 
+    if (analysis.getMerchantScore() != null && analysis.getMerchantScore() > 0.5) {
+      indicators.put("MERCHANT_RISK", "Merchant has a high recent decline or fraud rate");
+    }
+
+    if (analysis.getCardScore() != null && analysis.getCardScore() > 0.5) {
+      indicators.put("CARD_BIN_RISK", "Card BIN is high-risk or prepaid");
+    }
+
     return indicators;
   }
 
   @Override
-  @Cacheable(value = "userBehaviorProfiles", key = "#userId")
   public UserBehaviorProfile getUserBehaviorProfile(Long userId) {
-    return userBehaviorProfileRepository.findByUserId(userId).orElse(null);
+    // Through the cache directly: an annotation would be skipped on calls from this class
+    return userBehaviorProfileCache.get(
+        userId, () -> userBehaviorProfileRepository.findByUserId(userId).orElse(null));
   }
 
   @Override
   public void updateUserBehaviorProfile(
       TransactionAnalysisRequest request, TransactionAnalysis analysis) {
-    // This would be implemented to update user behavior patterns
-    // Implementation would be complex and involve statistical analysis
-    log.info("Updating behavior profile for user: {}", request.getUserId());
+    // Coalesced per user and written by the updater's next flush
+    userBehaviorProfileUpdater.record(request, analysis);
   }
 
   @Override
-  public void retrainFraudModel() {
-    // Implementation for retraining the ML model
+  public boolean retrainFraudModel() {
     log.info("Retraining fraud detection model");
+    return fraudModelTrainer.retrain();
   }
 
   @Override
+  @Transactional(propagation = Propagation.SUPPORTS)
   public Map<String, Object> getFraudDetectionStats() {
-    Map<String, Object> stats = new HashMap<>();
-
-    LocalDateTime last24Hours = LocalDateTime.now().minusDays(1);
-
-    Long totalTransactions = transactionAnalysisRepository.countTransactionsSince(last24Hours);
-    Long fraudTransactions = transactionAnalysisRepository.countFraudTransactionsSince(last24Hours);
-    Long highRiskTransactions =
-        transactionAnalysisRepository.countHighRiskTransactionsSince(last24Hours);
-
-    stats.put("totalTransactions24h", totalTransactions);
-    stats.put("fraudTransactions24h", fraudTransactions);
-    stats.put("highRiskTransactions24h", highRiskTransactions);
-    stats.put(
-        "fraudRate24h",
-        totalTransactions > 0 ? (fraudTransactions.doubleValue() / totalTransactions) * 100 : 0);
-
-    return stats;
+    // Served from the rolling in-memory counters, no count queries
+    return fraudStatsCounters.stats();
   }
 
   @Override
   public List<TransactionAnalysis> getHighRiskTransactions(int limit) {
-    return transactionAnalysisRepository.findHighRiskTransactions(limit);
+    // Walks the in-memory review index and loads only the returned rows
+    return reviewQueue.top(limit);
   }
 
   @Override
@@ -513,6 +465,7 @@ public class FraudDetectionServiceImpl implements FraudDetectionService {
 
     if (analysisOpt.isPresent()) {
       TransactionAnalysis analysis = analysisOpt.get();
+      TransactionAnalysis.FraudStatus previousStatus = analysis.getFraudStatus();
       analysis.setFraudStatus(
           isFraud
               ? TransactionAnalysis.FraudStatus.DECLINED
@@ -522,6 +475,7 @@ public class FraudDetectionServiceImpl implements FraudDetectionService {
       analysis.setReviewNotes(notes);
 
       transactionAnalysisRepository.save(analysis);
+      transactionAnalysisPublisher.analysisReviewed(analysis, previousStatus);
 
       log.info(
           "Transaction {} marked as {} by {}",
@@ -0,0 +1,320 @@
+package com.fintech.aifraudservice.service;
+
+import com.fintech.aifraudservice.model.ProfileMembership;
+import com.fintech.aifraudservice.model.ProfileMembership.Dimension;
+import com.fintech.aifraudservice.model.UserBehaviorProfile;
+import com.fintech.aifraudservice.service.BinRangeTable.BinInfo;
+import com.fintech.aifraudservice.service.IpRangeTable.IpLocation;
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.time.LocalDateTime;
+
+/**
+ * Flat primitive view of everything {@link FraudScoringKernel} reads for one transaction. Lookups
+ * against the behavior profile membership are resolved to flags and money is held as fixed-point
+ * longs, so scoring itself does no hashing, boxing or {@code BigDecimal} arithmetic.
+ *
+ * <p>Instances are mutable and can be reused with {@link #load}.
+ */
+public final class FraudFeatureVector {
+
+  /** Money is stored in units of 1/10,000, enough for every ISO 4217 minor unit */
+  static final int AMOUNT_SCALE = 4;
+
+  static final long UNITS_PER_MAJOR = 10_000L;
+
+  // Transaction
+  boolean amountPresent;
+  long amountUnits;
+  boolean timePresent;
+  long timeOfDayNanos;
+  boolean countryPresent;
+  boolean highRiskCountry;
+
+  // Sum of the rule set's adjustments matching the transaction
+  double ruleAdjustment;
+
+  // Location of the IP address; the flags are only set when it resolved
+  boolean ipLocated;
+  boolean ipCountryMismatch;
+  boolean ipCityMismatch;
+  boolean ipHighRiskCountry;
+
+  // Card BIN range; the other fields are only set when it resolved
+  boolean binResolved;
+  int binRiskTier;
+  boolean binPrepaid;
+  // Issuer country differs from the IP address's country, or the claimed one without an IP location
+  boolean binCountryMismatch;
+
+  // Other accounts recently seen with the device, IP address and card, and distinct across them
+  int deviceAccounts;
+  int ipAccounts;
+  int cardAccounts;
+  int linkedAccounts;
+
+  // Decayed merchant aggregates; all zero when the merchant is not tracked
+  double merchantVolume;
+  double merchantDeclines;
+  double merchantConfirmedFraud;
+
+  // Velocity windows
+  long transactionsLastHour;
+  long transactionsLastDay;
+  long amountLastDayUnits;
+
+  // Bit set of ScoringBudget.Feature lookups that failed or missed the budget; set after loading
+  int degraded;
+
+  // Behavior profile; the remaining fields are only meaningful when hasProfile is set
+  boolean hasProfile;
+  boolean hasDailyCount;
+  int dailyCount;
+  boolean hasAvgAmount;
+  long avgAmountUnits;
+  boolean hasMaxAmount;
+  long maxAmountUnits;
+  boolean hasTypicalHours;
+  long typicalStartNanos;
+  long typicalEndNanos;
+
+  // Set when the profile has values for the dimension and the transaction's value is not among them
+  boolean categoryUnknown;
+  boolean paymentMethodUnknown;
+  boolean countryUnknown;
+  boolean cityUnknown;
+  boolean deviceUnknown;
+  boolean ipUnknown;
+
+  public static FraudFeatureVector of(
+      TransactionAnalysisRequest request,
+      UserBehaviorProfile profile,
+      VelocitySnapshot velocity,
+      FraudRuleSet rules) {
+    return of(
+        request,
+        profile,
+        velocity,
+        rules,
+        null,
+        MerchantRiskSnapshot.EMPTY,
+        null,
+        LinkageSnapshot.EMPTY);
+  }
+
+  public static FraudFeatureVector of(
+      TransactionAnalysisRequest request,
+      UserBehaviorProfile profile,
+      VelocitySnapshot velocity,
+      FraudRuleSet rules,
+      IpLocation ipLocation,
+      MerchantRiskSnapshot merchant,
+      BinInfo bin,
+      LinkageSnapshot linkage) {
+    FraudFeatureVector features = new FraudFeatureVector();
+    features.load(request, profile, velocity, rules, ipLocation, merchant, bin, linkage);
+    return features;
+  }
+
+  public void load(
+      TransactionAnalysisRequest request,
+      UserBehaviorProfile profile,
+      VelocitySnapshot velocity,
+      FraudRuleSet rules) {
+    load(
+        request,
+        profile,
+        velocity,
+        rules,
+        null,
+        MerchantRiskSnapshot.EMPTY,
+        null,
+        LinkageSnapshot.EMPTY);
+  }
+
+  /**
+   * Overwrites every field from the given transaction, profile, velocity, rule set, IP location,
+   * merchant aggregates, BIN range and account linkage; the location and range are null when they
+   * did not resolve
+   */
+  public void load(
+      TransactionAnalysisRequest request,
+      UserBehaviorProfile profile,
+      VelocitySnapshot velocity,
+      FraudRuleSet rules,
+      IpLocation ipLocation,
+      MerchantRiskSnapshot merchant,
+      BinInfo bin,
+      LinkageSnapshot linkage) {
+    degraded = 0;
+    BigDecimal amount = request.getAmount();
+    amountPresent = amount != null;
+    amountUnits = toUnits(amount);
+    LocalDateTime time = request.getTransactionTime();
+    timePresent = time != null;
+    timeOfDayNanos = time != null ? time.toLocalTime().toNanoOfDay() : 0L;
+    String country = request.getLocationCountry();
+    countryPresent = country != null;
+    highRiskCountry = rules.isHighRiskCountry(country);
+    ruleAdjustment = rules.adjustment(request);
+    loadIpLocation(request, ipLocation, rules);
+    loadBin(request, ipLocation, bin);
+
+    LinkageSnapshot linked = linkage != null ? linkage : LinkageSnapshot.EMPTY;
+    deviceAccounts = linked.getDeviceAccounts();
+    ipAccounts = linked.getIpAccounts();
+    cardAccounts = linked.getCardAccounts();
+    linkedAccounts = linked.getLinkedAccounts();
+
+    MerchantRiskSnapshot aggregates = merchant != null ? merchant : MerchantRiskSnapshot.EMPTY;
+    merchantVolume = aggregates.getVolume();
+    merchantDeclines = aggregates.getDeclines();
+    merchantConfirmedFraud = aggregates.getConfirmedFraud();
+
+    VelocitySnapshot window = velocity != null ? velocity : VelocitySnapshot.EMPTY;
+    transactionsLastHour = window.getTransactionsLastHour();
+    transactionsLastDay = window.getTransactionsLastDay();
+    amountLastDayUnits = window.getAmountLastDayCents() * (UNITS_PER_MAJOR / 100);
+
+    hasProfile = profile != null;
+    if (!hasProfile) {
+      resetProfileFeatures();
+      return;
+    }
+    hasDailyCount = profile.getDailyTransactionCount() != null;
+    dailyCount = hasDailyCount ? profile.getDailyTransactionCount() : 0;
+    hasAvgAmount = profile.getAvgTransactionAmount() != null;
+    avgAmountUnits = toUnits(profile.getAvgTransactionAmount());
+    hasMaxAmount = profile.getMaxTransactionAmount() != null;
+    maxAmountUnits = toUnits(profile.getMaxTransactionAmount());
+    hasTypicalHours = profile.getTypicalStartTime() != null && profile.getTypicalEndTime() != null;
+    typicalStartNanos = hasTypicalHours ? profile.getTypicalStartTime().toNanoOfDay() : 0L;
+    typicalEndNanos = hasTypicalHours ? profile.getTypicalEndTime().toNanoOfDay() : 0L;
+
+    ProfileMembership membership = profile.getMembership();
+    if (membership == null) {
+      resetMembershipFeatures();
+      return;
+    }
+    categoryUnknown = membership.isUnknown(Dimension.CATEGORY, request.getMerchantCategory());
+    paymentMethodUnknown =
+        membership.isUnknown(Dimension.PAYMENT_METHOD, request.getPaymentMethod());
+    countryUnknown = membership.isUnknown(Dimension.COUNTRY, country);
+    cityUnknown = membership.isUnknown(Dimension.CITY, request.getLocationCity());
+    deviceUnknown = membership.isUnknown(Dimension.DEVICE, request.getDeviceFingerprint());
+    ipUnknown = membership.isUnknown(Dimension.IP, request.getIpAddress());
+  }
+
+  /**
+   * A copy whose rule-dependent features, the high-risk country flags and the rule adjustment, come
+   * from another rule set. Profile, velocity, IP, BIN, linkage and merchant features are kept as
+   * they were resolved.
+   */
+  FraudFeatureVector withRules(
+      TransactionAnalysisRequest request, IpLocation ipLocation, FraudRuleSet rules) {
+    FraudFeatureVector copy = new FraudFeatureVector();
+    copy.amountPresent = amountPresent;
+    copy.amountUnits = amountUnits;
+    copy.timePresent = timePresent;
+    copy.timeOfDayNanos = timeOfDayNanos;
+    copy.countryPresent = countryPresent;
+    copy.highRiskCountry = rules.isHighRiskCountry(request.getLocationCountry());
+    copy.ruleAdjustment = rules.adjustment(request);
+    copy.loadIpLocation(request, ipLocation, rules);
+    copy.binResolved = binResolved;
+    copy.binRiskTier = binRiskTier;
+    copy.binPrepaid = binPrepaid;
+    copy.binCountryMismatch = binCountryMismatch;
+    copy.deviceAccounts = deviceAccounts;
+    copy.ipAccounts = ipAccounts;
+    copy.cardAccounts = cardAccounts;
+    copy.linkedAccounts = linkedAccounts;
+    copy.merchantVolume = merchantVolume;
+    copy.merchantDeclines = merchantDeclines;
+    copy.merchantConfirmedFraud = merchantConfirmedFraud;
+    copy.transactionsLastHour = transactionsLastHour;
+    copy.transactionsLastDay = transactionsLastDay;
+    copy.amountLastDayUnits = amountLastDayUnits;
+    copy.degraded = degraded;
+    copy.hasProfile = hasProfile;
+    copy.hasDailyCount = hasDailyCount;
+    copy.dailyCount = dailyCount;
+    copy.hasAvgAmount = hasAvgAmount;
+    copy.avgAmountUnits = avgAmountUnits;
+    copy.hasMaxAmount = hasMaxAmount;
+    copy.maxAmountUnits = maxAmountUnits;
+    copy.hasTypicalHours = hasTypicalHours;
+    copy.typicalStartNanos = typicalStartNanos;
+    copy.typicalEndNanos = typicalEndNanos;
+    copy.categoryUnknown = categoryUnknown;
+    copy.paymentMethodUnknown = paymentMethodUnknown;
+    copy.countryUnknown = countryUnknown;
+    copy.cityUnknown = cityUnknown;
+    copy.deviceUnknown = deviceUnknown;
+    copy.ipUnknown = ipUnknown;
+    return copy;
+  }
+
+  private void loadIpLocation(
+      TransactionAnalysisRequest request, IpLocation ipLocation, FraudRuleSet rules) {
+    ipLocated = ipLocation != null;
+    if (!ipLocated) {
+      ipCountryMismatch = false;
+      ipCityMismatch = false;
+      ipHighRiskCountry = false;
+      return;
+    }
+    String country = request.getLocationCountry();
+    String city = request.getLocationCity();
+    ipCountryMismatch = country != null && !country.equalsIgnoreCase(ipLocation.country());
+    ipCityMismatch =
+        !ipCountryMismatch
+            && city != null
+            && ipLocation.city() != null
+            && !city.equalsIgnoreCase(ipLocation.city());
+    ipHighRiskCountry = rules.isHighRiskCountry(ipLocation.country());
+  }
+
+  private void loadBin(TransactionAnalysisRequest request, IpLocation ipLocation, BinInfo bin) {
+    binResolved = bin != null;
+    if (!binResolved) {
+      binRiskTier = 0;
+      binPrepaid = false;
+      binCountryMismatch = false;
+      return;
+    }
+    binRiskTier = bin.riskTier().ordinal();
+    binPrepaid = bin.prepaid();
+    String country = ipLocation != null ? ipLocation.country() : request.getLocationCountry();
+    binCountryMismatch = country != null && !country.equalsIgnoreCase(bin.issuerCountry());
+  }
+
+  private void resetProfileFeatures() {
+    hasDailyCount = false;
+    dailyCount = 0;
+    hasAvgAmount = false;
+    avgAmountUnits = 0L;
+    hasMaxAmount = false;
+    maxAmountUnits = 0L;
+    hasTypicalHours = false;
+    typicalStartNanos = 0L;
+    typicalEndNanos = 0L;
+    resetMembershipFeatures();
+  }
+
+  private void resetMembershipFeatures() {
+    categoryUnknown = false;
+    paymentMethodUnknown = false;
+    countryUnknown = false;
+    cityUnknown = false;
+    deviceUnknown = false;
+    ipUnknown = false;
+  }
+
+  static long toUnits(BigDecimal amount) {
+    if (amount == null) {
+      return 0L;
+    }
+    return amount.setScale(AMOUNT_SCALE, RoundingMode.HALF_UP).unscaledValue().longValue();
+  }
+}
@@ -0,0 +1,250 @@
+package com.fintech.aifraudservice.service;
+
+import com.fintech.aifraudservice.model.TransactionAnalysis;
+import com.fintech.aifraudservice.model.TransactionAnalysis.FraudStatus;
+import com.fintech.aifraudservice.repository.AnalysisActivityReader;
+import com.fintech.aifraudservice.service.HeavyHitterSketch.HeavyHitter;
+import jakarta.annotation.PostConstruct;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.function.BiFunction;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.convert.DurationStyle;
+import org.springframework.context.annotation.DependsOn;
+import org.springframework.stereotype.Component;
+
+/**
+ * Approximate top-K of declined analyses by merchant category, country, merchant, card BIN and IP
+ * address over the windows in {@code fraud.detection.heavy-hitters.windows}, replacing GROUP BY
+ * scans of declined rows.
+ *
+ * <p>Each window is a ring of 12 buckets plus the current one; every bucket holds one {@link
+ * HeavyHitterSketch} per dimension, recycled when the ring comes back around. A query merges the
+ * live buckets of one window, so its cost depends on the sketch size and not on traffic. Because
+ * sketches merge by addition, {@link #snapshot} can be shipped to another instance and combined
+ * there for a cluster-wide answer.
+ *
+ * <p>Sketches are rebuilt from {@code transaction_analyses} at startup and follow scoring-time
+ * declines and reviewer verdicts. Card BINs are not stored with the analysis, so they only count
+ * transactions declined while this instance was running.
+ */
+@Component
+@DependsOn("entityManagerFactory")
+@Slf4j
+public class FraudHeavyHitters implements TransactionAnalysisListener {
+
+  private static final int BUCKETS = 12;
+  private static final int SLOTS = BUCKETS + 1;
+
+  /** Attribute of a declined transaction that is ranked */
+  public enum Dimension {
+    MERCHANT_CATEGORY((request, analysis) -> analysis.getMerchantCategory()),
+    COUNTRY((request, analysis) -> analysis.getLocationCountry()),
+    MERCHANT((request, analysis) -> analysis.getMerchantId()),
+    CARD_BIN((request, analysis) -> request != null ? request.getCardBin() : null),
+    IP_ADDRESS((request, analysis) -> analysis.getIpAddress());
+
+    private final BiFunction<TransactionAnalysisRequest, TransactionAnalysis, String> key;
+
+    Dimension(BiFunction<TransactionAnalysisRequest, TransactionAnalysis, String> key) {
+      this.key = key;
+    }
+
+    /** Accepts {@code merchant-category}, {@code MERCHANT_CATEGORY} and the like */
+    public static Dimension of(String name) {
+      return valueOf(name.trim().toUpperCase(Locale.ROOT).replace('-', '_'));
+    }
+  }
+
+  private final AnalysisActivityReader analysisActivityReader;
+  private final Clock clock;
+  private final HeavyHitterSketch shape;
+  private final Window[] windows;
+
+  @Autowired
+  public FraudHeavyHitters(
+      AnalysisActivityReader analysisActivityReader,
+      @Value("${fraud.detection.heavy-hitters.windows:1h,24h,7d}") String windows,
+      @Value("${fraud.detection.heavy-hitters.width:1024}") int width,
+      @Value("${fraud.detection.heavy-hitters.depth:4}") int depth,
+      @Value("${fraud.detection.heavy-hitters.capacity:64}") int capacity) {
+    this(analysisActivityReader, windows, width, depth, capacity, Clock.systemDefaultZone());
+  }
+
+  FraudHeavyHitters(
+      AnalysisActivityReader analysisActivityReader,
+      String windows,
+      int width,
+      int depth,
+      int capacity,
+      Clock clock) {
+    this.analysisActivityReader = analysisActivityReader;
+    this.clock = clock;
+    this.shape = new HeavyHitterSketch(width, depth, capacity);
+    this.windows =
+        Arrays.stream(windows.split(","))
+            .map(String::trim)
+            .filter(label -> !label.isEmpty())
+            .map(label -> new Window(label, DurationStyle.detectAndParse(label)))
+            .toArray(Window[]::new);
+    if (this.windows.length == 0) {
+      throw new IllegalArgumentException("At least one heavy-hitter window is required");
+    }
+  }
+
+  @PostConstruct
+  void seed() {
+    long now = clock.millis();
+    long longest = Arrays.stream(windows).mapToLong(w -> w.bucketMillis * SLOTS).max().getAsLong();
+    long rows =
+        analysisActivityReader.forEachDeclinedSince(
+            toLocalDateTime(now - longest), analysis -> record(null, analysis, 1, now));
+    log.info("Seeded fraud heavy-hitter sketches from {} declined analyses", rows);
+  }
+
+  @Override
+  public void onAnalysisSaved(TransactionAnalysisRequest request, TransactionAnalysis analysis) {
+    if (analysis.getFraudStatus() == FraudStatus.DECLINED) {
+      record(request, analysis, 1, clock.millis());
+    }
+  }
+
+  @Override
+  public void onAnalysisReviewed(TransactionAnalysis analysis, FraudStatus previousStatus) {
+    boolean declined = analysis.getFraudStatus() == FraudStatus.DECLINED;
+    if (declined != (previousStatus == FraudStatus.DECLINED)) {
+      record(null, analysis, declined ? 1 : -1, clock.millis());
+    }
+  }
+
+  /**
+   * The {@code k} most declined keys of a dimension within the window.
+   *
+   * @throws IllegalArgumentException when the window is not configured
+   */
+  public List<HeavyHitter> top(Dimension dimension, String window, int k) {
+    return snapshot(dimension, window).top(k);
+  }
+
+  /** Estimated declines of one key within the window */
+  public long estimate(Dimension dimension, String window, String key) {
+    return snapshot(dimension, window).estimate(key);
+  }
+
+  /**
+   * A detached sketch of the window, safe to serialize or merge with sketches from other instances.
+   *
+   * @throws IllegalArgumentException when the window is not configured
+   */
+  public HeavyHitterSketch snapshot(Dimension dimension, String window) {
+    return window(window).snapshot(dimension, shape.emptyCopy(), clock.millis());
+  }
+
+  /** Configured window labels */
+  public List<String> windows() {
+    return Arrays.stream(windows).map(w -> w.label).toList();
+  }
+
+  private void record(
+      TransactionAnalysisRequest request, TransactionAnalysis analysis, int delta, long now) {
+    long timestamp = toEpochMillis(analysis.getCreatedAt(), now);
+    for (Dimension dimension : Dimension.values()) {
+      String key = dimension.key.apply(request, analysis);
+      if (key == null || key.isBlank()) {
+        continue;
+      }
+      for (Window window : windows) {
+        window.add(dimension, key, timestamp, delta, now);
+      }
+    }
+  }
+
+  private Window window(String label) {
+    for (Window window : windows) {
+      if (window.label.equalsIgnoreCase(label)) {
+        return window;
+      }
+    }
+    throw new IllegalArgumentException("Unknown heavy-hitter window: " + label);
+  }
+
+  private static long toEpochMillis(LocalDateTime dateTime, long now) {
+    if (dateTime == null) {
+      return now;
+    }
+    return dateTime.atZone(ZoneId.systemDefault()).toInstant().toEpochMilli();
+  }
+
+  private static LocalDateTime toLocalDateTime(long epochMillis) {
+    return LocalDateTime.ofInstant(Instant.ofEpochMilli(epochMillis), ZoneId.systemDefault());
+  }
+
+  /** One sketch per dimension and bucket; a bucket is allocated on its first write */
+  private final class Window {
+    private final String label;
+    private final long bucketMillis;
+    private final Bucket[][] buckets = new Bucket[Dimension.values().length][SLOTS];
+
+    Window(String label, Duration length) {
+      if (length.compareTo(Duration.ofMinutes(1)) < 0) {
+        throw new IllegalArgumentException(
+            "Heavy-hitter window must be at least one minute: " + label);
+      }
+      this.label = label;
+      this.bucketMillis = length.toMillis() / BUCKETS;
+      for (Bucket[] ring : buckets) {
+        Arrays.setAll(ring, slot -> new Bucket());
+      }
+    }
+
+    void add(Dimension dimension, String key, long timestamp, int delta, long now) {
+      long current = now / bucketMillis;
+      long bucket = Math.min(timestamp / bucketMillis, current);
+      if (bucket <= current - SLOTS) {
+        return; // older than the window
+      }
+      Bucket slot = buckets[dimension.ordinal()][(int) (bucket % SLOTS)];
+      synchronized (slot) {
+        if (slot.stamp < bucket) {
+          if (delta < 0) {
+            return; // the counted row has already left the window
+          }
+          if (slot.sketch == null) {
+            slot.sketch = shape.emptyCopy();
+          } else {
+            slot.sketch.clear();
+          }
+          slot.stamp = bucket;
+        } else if (slot.stamp > bucket) {
+          return; // slot already holds a newer bucket
+        }
+        slot.sketch.add(key, delta);
+      }
+    }
+
+    HeavyHitterSketch snapshot(Dimension dimension, HeavyHitterSketch into, long now) {
+      long current = now / bucketMillis;
+      for (Bucket slot : buckets[dimension.ordinal()]) {
+        synchronized (slot) {
+          if (slot.sketch != null && slot.stamp > current - SLOTS && slot.stamp <= current) {
+            into.merge(slot.sketch);
+          }
+        }
+      }
+      return into;
+    }
+  }
+
+  private static final class Bucket {
+    private long stamp = Long.MIN_VALUE;
+    private HeavyHitterSketch sketch;
+  }
+}
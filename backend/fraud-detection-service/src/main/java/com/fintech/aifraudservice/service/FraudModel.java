@@ -0,0 +1,211 @@
+package com.fintech.aifraudservice.service;
+
+import com.fintech.aifraudservice.model.TransactionAnalysis;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import weka.classifiers.AbstractClassifier;
+import weka.classifiers.Classifier;
+import weka.core.Attribute;
+import weka.core.BatchPredictor;
+import weka.core.DenseInstance;
+import weka.core.Instances;
+import weka.core.Utils;
+
+/**
+ * A trained Weka classifier with the attribute header it was trained on. The header is fixed by
+ * {@link #header(int)}: the six component scores, the log amount and a nominal legitimate/fraud
+ * class. Both live scoring and training build rows from it.
+ *
+ * <p>Scoring threads each work on their own copy of the classifier and a reused row buffer, so
+ * inference takes no locks and builds no per-call schema objects. Weka classifiers are not
+ * guaranteed to be thread-safe. The copies live in one thread-local shared by all models, holding
+ * those of the last {@value #SCRATCH_SLOTS} models the thread scored; a thread drops its copy of a
+ * {@link #retire retired} model when it copies the one replacing it, rather than keeping copies of
+ * every model it ever scored. Instances are immutable once published.
+ */
+public final class FraudModel {
+
+  public static final String LEGITIMATE = "legitimate";
+  public static final String FRAUD = "fraud";
+
+  static final int ATTRIBUTE_COUNT = 8;
+  static final int CLASS_INDEX = ATTRIBUTE_COUNT - 1;
+  static final int FRAUD_CLASS = 1;
+
+  /** Models a thread keeps a copy of: production and the shadow candidates it scores alongside */
+  static final int SCRATCH_SLOTS = 4;
+
+  /** The thread's copies, most recently used first */
+  private static final ThreadLocal<Scratch[]> SCRATCH =
+      ThreadLocal.withInitial(() -> new Scratch[SCRATCH_SLOTS]);
+
+  private final String version;
+  private final Classifier classifier;
+  private final Instances header;
+
+  private volatile boolean retired;
+
+  public FraudModel(String version, Classifier classifier) {
+    this.version = version;
+    this.classifier = classifier;
+    this.header = header(0);
+  }
+
+  public String getVersion() {
+    return version;
+  }
+
+  public Classifier getClassifier() {
+    return classifier;
+  }
+
+  /** Empty dataset with the model's attributes, the class attribute last */
+  public static Instances header(int capacity) {
+    ArrayList<Attribute> attributes = new ArrayList<>(ATTRIBUTE_COUNT);
+    attributes.add(new Attribute("velocity_score"));
+    attributes.add(new Attribute("behavioral_score"));
+    attributes.add(new Attribute("geolocation_score"));
+    attributes.add(new Attribute("device_score"));
+    attributes.add(new Attribute("amount_score"));
+    attributes.add(new Attribute("time_of_day_score"));
+    attributes.add(new Attribute("log_amount"));
+    attributes.add(new Attribute("risk_class", List.of(LEGITIMATE, FRAUD)));
+    Instances instances = new Instances("fraud_analyses", attributes, capacity);
+    instances.setClassIndex(CLASS_INDEX);
+    return instances;
+  }
+
+  /** Writes the features of a live transaction into a row; the class stays missing */
+  static void describe(double[] row, FraudFeatureVector f) {
+    row[0] = FraudScoringKernel.velocityScore(f);
+    row[1] = FraudScoringKernel.behavioralScore(f);
+    row[2] = FraudScoringKernel.geolocationScore(f);
+    row[3] = FraudScoringKernel.deviceScore(f);
+    row[4] = FraudScoringKernel.amountScore(f);
+    row[5] = FraudScoringKernel.timeOfDayScore(f);
+    row[6] =
+        f.amountPresent
+            ? Math.log1p(Math.max(0.0, (double) f.amountUnits / FraudFeatureVector.UNITS_PER_MAJOR))
+            : Utils.missingValue();
+    row[CLASS_INDEX] = Utils.missingValue();
+  }
+
+  /** Writes the features of a stored analysis into a row; the class stays missing */
+  static void describe(double[] row, TransactionAnalysis analysis) {
+    row[0] = valueOf(analysis.getVelocityScore());
+    row[1] = valueOf(analysis.getBehavioralScore());
+    row[2] = valueOf(analysis.getGeolocationScore());
+    row[3] = valueOf(analysis.getDeviceScore());
+    row[4] = valueOf(analysis.getAmountScore());
+    row[5] = valueOf(analysis.getTimeOfDayScore());
+    row[6] =
+        analysis.getAmount() != null
+            ? Math.log1p(Math.max(0.0, analysis.getAmount().doubleValue()))
+            : Utils.missingValue();
+    row[CLASS_INDEX] = Utils.missingValue();
+  }
+
+  /**
+   * Probability that the transaction is fraud.
+   *
+   * @throws Exception when the classifier fails
+   */
+  public double fraudProbability(FraudFeatureVector features) throws Exception {
+    Scratch local = scratch();
+    describe(local.row, features);
+    return local.classifier.distributionForInstance(local.instance)[FRAUD_CLASS];
+  }
+
+  /**
+   * Fraud probabilities for many transactions in one call. Classifiers with an efficient batch
+   * implementation get the whole set at once.
+   *
+   * @throws Exception when the classifier fails
+   */
+  public double[] fraudProbabilities(List<FraudFeatureVector> features) throws Exception {
+    double[] probabilities = new double[features.size()];
+    if (features.isEmpty()) {
+      return probabilities;
+    }
+    Scratch local = scratch();
+    if (local.classifier instanceof BatchPredictor
+        && ((BatchPredictor) local.classifier).implementsMoreEfficientBatchPrediction()) {
+      Instances batch = new Instances(header, features.size());
+      for (FraudFeatureVector f : features) {
+        double[] row = new double[ATTRIBUTE_COUNT];
+        describe(row, f);
+        batch.add(new DenseInstance(1.0, row));
+      }
+      double[][] distributions =
+          ((BatchPredictor) local.classifier).distributionsForInstances(batch);
+      for (int i = 0; i < distributions.length; i++) {
+        probabilities[i] = distributions[i][FRAUD_CLASS];
+      }
+      return probabilities;
+    }
+    for (int i = 0; i < probabilities.length; i++) {
+      describe(local.row, features.get(i));
+      probabilities[i] = local.classifier.distributionForInstance(local.instance)[FRAUD_CLASS];
+    }
+    return probabilities;
+  }
+
+  /** Marks the model replaced, so threads drop their copies of it the next time they copy one */
+  void retire() {
+    retired = true;
+  }
+
+  /** This thread's copy of the model, made on first use */
+  private Scratch scratch() {
+    Scratch[] slots = SCRATCH.get();
+    for (int i = 0; i < slots.length && slots[i] != null; i++) {
+      if (slots[i].model == this) {
+        Scratch local = slots[i];
+        System.arraycopy(slots, 0, slots, 1, i);
+        slots[0] = local;
+        return local;
+      }
+    }
+    // Copies of replaced models go first, then the least recently used one if no slot is free
+    Scratch local = newScratch();
+    int kept = 0;
+    for (Scratch slot : slots) {
+      if (slot != null && !slot.model.retired) {
+        slots[kept++] = slot;
+      }
+    }
+    Arrays.fill(slots, kept, slots.length, null);
+    System.arraycopy(slots, 0, slots, 1, Math.min(kept, slots.length - 1));
+    slots[0] = local;
+    return local;
+  }
+
+  private Scratch newScratch() {
+    try {
+      return new Scratch(this, AbstractClassifier.makeCopy(classifier), header);
+    } catch (Exception e) {
+      throw new IllegalStateException("Cannot copy fraud model " + version, e);
+    }
+  }
+
+  private static double valueOf(Double value) {
+    return value != null ? value : Utils.missingValue();
+  }
+
+  /** One thread's classifier copy of a model and the row buffer its reused instance reads from */
+  private static final class Scratch {
+    private final FraudModel model;
+    private final Classifier classifier;
+    private final double[] row = new double[ATTRIBUTE_COUNT];
+    private final DenseInstance instance;
+
+    private Scratch(FraudModel model, Classifier classifier, Instances header) {
+      this.model = model;
+      this.classifier = classifier;
+      // DenseInstance keeps a reference to the array, so rewriting the row updates the instance
+      this.instance = new DenseInstance(1.0, row);
+      this.instance.setDataset(header);
+    }
+  }
+}
@@ -0,0 +1,239 @@
+package com.fintech.aifraudservice.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import weka.classifiers.Classifier;
+import weka.core.Instances;
+import weka.core.SerializationHelper;
+
+/**
+ * Holds the active {@link FraudModel} and blends its fraud probability into the rule-based risk
+ * score. The model is read from {@code fraud.detection.model.path} at startup; without a model file
+ * scoring is rule-only and unchanged. Retrained models are written back to that path and published
+ * with a single volatile write, so an analysis uses one model from start to end.
+ *
+ * <p>The blended score is {@code (1 - blend-weight) * ruleScore + blend-weight * probability}. An
+ * inference failure is counted and logged, and the transaction keeps its rule score.
+ */
+@Component
+@Slf4j
+public class FraudModelService {
+
+  @Autowired private MeterRegistry meterRegistry;
+
+  @Value("${fraud.detection.model.path:}")
+  private String modelPath;
+
+  @Value("${fraud.detection.model.version:v1.0}")
+  private String modelVersion;
+
+  @Value("${fraud.detection.model.blend-weight:0.3}")
+  private double blendWeight;
+
+  private static final Pattern RETRAINED_VERSION = Pattern.compile("(.+)-r(\\d+)");
+
+  private volatile FraudModel current;
+
+  private Timer singleInference;
+  private Timer batchInference;
+  private Counter inferenceErrors;
+
+  @PostConstruct
+  void init() {
+    if (blendWeight < 0 || blendWeight > 1) {
+      throw new IllegalStateException("Model blend weight must be within [0, 1]: " + blendWeight);
+    }
+    singleInference =
+        Timer.builder("fraud.model.inference")
+            .description("Fraud model inference latency")
+            .tag("mode", "single")
+            .register(meterRegistry);
+    batchInference =
+        Timer.builder("fraud.model.inference")
+            .description("Fraud model inference latency")
+            .tag("mode", "batch")
+            .register(meterRegistry);
+    inferenceErrors = meterRegistry.counter("fraud.model.inference.errors");
+
+    if (modelPath.isBlank() || !Files.exists(Path.of(modelPath))) {
+      log.info("No fraud model at '{}', scoring with rules only", modelPath);
+      return;
+    }
+    // A model that cannot be used is a deployment error, not something to run without
+    current = load(Path.of(modelPath), modelVersion);
+    log.info("Loaded fraud model {} from {}", current.getVersion(), modelPath);
+  }
+
+  /** The active model, or {@code null} when scoring is rule-only */
+  public FraudModel current() {
+    return current;
+  }
+
+  /** Replaces the active model; scoring already in progress finishes with the previous one */
+  public void publish(FraudModel model) {
+    FraudModel previous = current;
+    current = model;
+    if (previous != null && previous != model) {
+      previous.retire();
+    }
+    log.info(
+        "Fraud model {} replaced by {}",
+        previous != null ? previous.getVersion() : "none",
+        model.getVersion());
+  }
+
+  /**
+   * Writes the model to {@code fraud.detection.model.path}, replacing the previous file atomically
+   * so a restart never reads a half-written model. Does nothing when no path is configured.
+   *
+   * @throws IOException when the file cannot be written
+   */
+  public void save(FraudModel model) throws IOException {
+    if (modelPath.isBlank()) {
+      return;
+    }
+    Path target = Path.of(modelPath).toAbsolutePath();
+    Files.createDirectories(target.getParent());
+    Path temp = Files.createTempFile(target.getParent(), target.getFileName().toString(), ".tmp");
+    try {
+      SerializationHelper.writeAll(
+          temp.toString(),
+          new Object[] {model.getClassifier(), FraudModel.header(0), model.getVersion()});
+      Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    } catch (Exception e) {
+      Files.deleteIfExists(temp);
+      throw e instanceof IOException io ? io : new IOException(e);
+    }
+  }
+
+  /** Version for a model trained to replace the active one: {@code v1.0} becomes {@code v1.0-r1} */
+  public String nextVersion() {
+    String version = current != null ? current.getVersion() : modelVersion;
+    Matcher matcher = RETRAINED_VERSION.matcher(version);
+    if (matcher.matches()) {
+      return matcher.group(1) + "-r" + (Long.parseLong(matcher.group(2)) + 1);
+    }
+    return version + "-r1";
+  }
+
+  /** Model and rule versions recorded on each analysis */
+  public String versionOf(FraudModel model, FraudRuleSet rules) {
+    return (model != null ? model.getVersion() : modelVersion) + "+" + rules.getVersion();
+  }
+
+  /**
+   * Reads a classifier written by {@link SerializationHelper}. When the file also carries the
+   * training header, as Weka's own tools write it, the header must match {@link
+   * FraudModel#header(int)}. A version stored after the header, as {@link #save} writes it, takes
+   * precedence over the given one.
+   *
+   * @throws IllegalStateException when the file cannot be read or does not fit the feature schema
+   */
+  public static FraudModel load(Path path, String version) {
+    Object[] objects;
+    try {
+      objects = SerializationHelper.readAll(path.toString());
+    } catch (Exception e) {
+      throw new IllegalStateException("Cannot read fraud model " + path, e);
+    }
+    if (objects.length == 0 || !(objects[0] instanceof Classifier)) {
+      throw new IllegalStateException("No classifier in fraud model " + path);
+    }
+    if (objects.length > 1 && objects[1] instanceof Instances header) {
+      String mismatch = FraudModel.header(0).equalHeadersMsg(header);
+      if (mismatch != null) {
+        throw new IllegalStateException(
+            "Fraud model " + path + " has other attributes: " + mismatch);
+      }
+    }
+    if (objects.length > 2 && objects[2] instanceof String stored) {
+      version = stored;
+    }
+    return new FraudModel(version, (Classifier) objects[0]);
+  }
+
+  /**
+   * Fraud probability of one transaction.
+   *
+   * @return {@code NaN} when there is no model or inference failed
+   */
+  public double fraudProbability(FraudModel model, FraudFeatureVector features) {
+    if (model == null) {
+      return Double.NaN;
+    }
+    long start = System.nanoTime();
+    try {
+      return model.fraudProbability(features);
+    } catch (Exception e) {
+      inferenceErrors.increment();
+      log.warn("Fraud model {} inference failed: {}", model.getVersion(), e.getMessage());
+      return Double.NaN;
+    } finally {
+      singleInference.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+    }
+  }
+
+  /**
+   * Fraud probabilities of many transactions in one classifier call, for the batch and stream
+   * paths.
+   *
+   * @return one probability per input, all {@code NaN} when there is no model or inference failed
+   */
+  public double[] fraudProbabilities(FraudModel model, List<FraudFeatureVector> features) {
+    if (model == null) {
+      return nanArray(features.size());
+    }
+    long start = System.nanoTime();
+    try {
+      return model.fraudProbabilities(features);
+    } catch (Exception e) {
+      inferenceErrors.increment();
+      log.warn(
+          "Fraud model {} batch inference of {} transactions failed: {}",
+          model.getVersion(),
+          features.size(),
+          e.getMessage());
+      return nanArray(features.size());
+    } finally {
+      batchInference.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+    }
+  }
+
+  /** Rule score blended with the model probability; the rule score when there is none */
+  public double blend(double ruleScore, double fraudProbability) {
+    return blend(ruleScore, fraudProbability, blendWeight);
+  }
+
+  /** {@link #blend(double, double)} with another weight, for shadow candidates */
+  public static double blend(double ruleScore, double fraudProbability, double blendWeight) {
+    if (Double.isNaN(fraudProbability)) {
+      return ruleScore;
+    }
+    return (1 - blendWeight) * ruleScore + blendWeight * fraudProbability;
+  }
+
+  public double getBlendWeight() {
+    return blendWeight;
+  }
+
+  private static double[] nanArray(int size) {
+    double[] values = new double[size];
+    Arrays.fill(values, Double.NaN);
+    return values;
+  }
+}
@@ -0,0 +1,245 @@
+package com.fintech.aifraudservice.service;
+
+import com.fintech.aifraudservice.model.TransactionAnalysis.FraudStatus;
+import com.fintech.aifraudservice.repository.ReviewedAnalysisReader;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import java.lang.management.ManagementFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.task.TaskExecutor;
+import org.springframework.core.task.TaskRejectedException;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import weka.classifiers.AbstractClassifier;
+import weka.classifiers.Classifier;
+import weka.classifiers.UpdateableClassifier;
+import weka.core.DenseInstance;
+import weka.core.Instances;
+import weka.core.Utils;
+
+/**
+ * Retrains the fraud model from reviewed transactions, on {@code
+ * fraud.detection.model.retrain.schedule} and on demand. Reviewed rows are streamed from the
+ * database; an {@link UpdateableClassifier} learns them one at a time in constant memory, any other
+ * classifier is built from a compact in-memory dataset of at most {@code max-samples} rows. Runs
+ * happen one at a time on the low-priority training executor.
+ *
+ * <p>A model is only published when each class has at least {@code min-samples-per-class} rows; it
+ * gets the next version, is saved to the model path and then replaces the active model.
+ */
+@Component
+@Slf4j
+public class FraudModelTrainer {
+
+  @Autowired private ReviewedAnalysisReader reviewedAnalysisReader;
+
+  @Autowired private FraudModelService fraudModelService;
+
+  @Autowired private MeterRegistry meterRegistry;
+
+  @Autowired
+  @Qualifier("fraudTrainingExecutor")
+  private TaskExecutor fraudTrainingExecutor;
+
+  @Value("${fraud.detection.model.retrain.enabled:true}")
+  private boolean scheduleEnabled;
+
+  @Value("${fraud.detection.model.retrain.classifier:weka.classifiers.functions.Logistic}")
+  private String classifierName;
+
+  @Value("${fraud.detection.model.retrain.classifier-options:}")
+  private String classifierOptions;
+
+  @Value("${fraud.detection.model.retrain.min-samples-per-class:50}")
+  private int minSamplesPerClass;
+
+  @Value("${fraud.detection.model.retrain.max-samples:1000000}")
+  private int maxSamples;
+
+  private final AtomicBoolean running = new AtomicBoolean();
+
+  private Timer trainingTimer;
+  private DistributionSummary trainingAllocation;
+  private Counter trainingFailures;
+
+  @PostConstruct
+  void init() {
+    trainingTimer =
+        Timer.builder("fraud.model.training")
+            .description("Fraud model retraining duration")
+            .register(meterRegistry);
+    trainingAllocation =
+        DistributionSummary.builder("fraud.model.training.allocated")
+            .description("Heap allocated by one fraud model retraining")
+            .baseUnit("bytes")
+            .register(meterRegistry);
+    trainingFailures = meterRegistry.counter("fraud.model.training.failures");
+  }
+
+  @Scheduled(cron = "${fraud.detection.model.retrain.schedule:0 0 2 * * ?}")
+  public void scheduledRetrain() {
+    if (scheduleEnabled) {
+      retrain();
+    }
+  }
+
+  /**
+   * Starts a retraining run in the background.
+   *
+   * @return {@code false} when a run is already in progress
+   */
+  public boolean retrain() {
+    if (!running.compareAndSet(false, true)) {
+      return false;
+    }
+    try {
+      fraudTrainingExecutor.execute(
+          () -> {
+            try {
+              train();
+            } catch (Exception e) {
+              trainingFailures.increment();
+              log.error("Fraud model retraining failed: {}", e.getMessage(), e);
+            } finally {
+              running.set(false);
+            }
+          });
+    } catch (TaskRejectedException e) {
+      running.set(false);
+      return false;
+    }
+    return true;
+  }
+
+  public boolean isRunning() {
+    return running.get();
+  }
+
+  /** Trains on the calling thread and publishes the model if there is enough labelled data */
+  TrainingReport train() throws Exception {
+    long start = System.nanoTime();
+    long allocatedBefore = allocatedBytes();
+
+    Classifier classifier =
+        AbstractClassifier.forName(classifierName, Utils.splitOptions(classifierOptions));
+    UpdateableClassifier updateable = classifier instanceof UpdateableClassifier u ? u : null;
+    Instances training = FraudModel.header(updateable != null ? 0 : 1024);
+    if (updateable != null) {
+      classifier.buildClassifier(training);
+    }
+
+    double[] row = new double[FraudModel.ATTRIBUTE_COUNT];
+    DenseInstance instance = new DenseInstance(1.0, row);
+    instance.setDataset(training);
+    long[] classCounts = new long[2];
+    long samples =
+        reviewedAnalysisReader.forEachReviewed(
+            maxSamples,
+            analysis -> {
+              FraudModel.describe(row, analysis);
+              int label =
+                  analysis.getFraudStatus() == FraudStatus.DECLINED ? FraudModel.FRAUD_CLASS : 0;
+              row[FraudModel.CLASS_INDEX] = label;
+              classCounts[label]++;
+              try {
+                if (updateable != null) {
+                  updateable.updateClassifier(instance);
+                } else {
+                  // Instances.add copies the row, so the buffer can be refilled
+                  training.add(instance);
+                }
+              } catch (Exception e) {
+                throw new IllegalStateException("Cannot train on reviewed transaction", e);
+              }
+            });
+
+    long fraud = classCounts[FraudModel.FRAUD_CLASS];
+    long legitimate = classCounts[0];
+    if (fraud < minSamplesPerClass || legitimate < minSamplesPerClass) {
+      log.info(
+          "Skipping fraud model retraining: {} fraud and {} legitimate reviews, {} of each needed",
+          fraud,
+          legitimate,
+          minSamplesPerClass);
+      return report(null, samples, fraud, legitimate, start, allocatedBefore);
+    }
+    if (updateable == null) {
+      classifier.buildClassifier(training);
+    }
+
+    FraudModel model = new FraudModel(fraudModelService.nextVersion(), classifier);
+    fraudModelService.save(model);
+    fraudModelService.publish(model);
+    return report(model.getVersion(), samples, fraud, legitimate, start, allocatedBefore);
+  }
+
+  private TrainingReport report(
+      String version,
+      long samples,
+      long fraud,
+      long legitimate,
+      long startNanos,
+      long allocatedBefore) {
+    long durationNanos = System.nanoTime() - startNanos;
+    long allocated = allocatedBefore < 0 ? -1 : allocatedBytes() - allocatedBefore;
+    trainingTimer.record(durationNanos, TimeUnit.NANOSECONDS);
+    if (allocated >= 0) {
+      trainingAllocation.record(allocated);
+    }
+    TrainingReport report =
+        new TrainingReport(
+            version,
+            samples,
+            fraud,
+            legitimate,
+            TimeUnit.NANOSECONDS.toMillis(durationNanos),
+            allocated);
+    log.info(
+        "Fraud model training on {} reviews ({} fraud) took {} ms and allocated {} KB; published"
+            + " {}",
+        samples,
+        fraud,
+        report.getDurationMs(),
+        allocated / 1024,
+        version != null ? version : "nothing");
+    return report;
+  }
+
+  /** Bytes allocated so far by the calling thread, -1 when the JVM does not track it */
+  private static long allocatedBytes() {
+    if (ManagementFactory.getThreadMXBean() instanceof com.sun.management.ThreadMXBean threads
+        && threads.isThreadAllocatedMemorySupported()
+        && threads.isThreadAllocatedMemoryEnabled()) {
+      return threads.getThreadAllocatedBytes(Thread.currentThread().getId());
+    }
+    return -1;
+  }
+
+  /** Outcome of one training run; version is null when no model was published */
+  @Getter
+  @AllArgsConstructor
+  public static class TrainingReport {
+
+    private final String version;
+
+    private final long samples;
+
+    private final long fraudSamples;
+
+    private final long legitimateSamples;
+
+    private final long durationMs;
+
+    private final long allocatedBytes;
+  }
+}
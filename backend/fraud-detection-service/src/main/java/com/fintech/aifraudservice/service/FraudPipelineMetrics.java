@@ -0,0 +1,170 @@
+package com.fintech.aifraudservice.service;
+
+import com.fintech.aifraudservice.model.TransactionAnalysis.FraudStatus;
+import com.fintech.aifraudservice.model.TransactionAnalysis.RiskLevel;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.util.ClassUtils;
+
+/**
+ * Latency and outcome meters of the analysis pipeline:
+ *
+ * <ul>
+ *   <li>{@code fraud.analysis.stage{stage}}: velocity, geo (IP location), merchant (merchant
+ *       aggregates), bin (card BIN range), linkage (accounts sharing the device, IP or card),
+ *       scoring, indicators, persist (synchronous save) and enqueue (write-behind hand-off)
+ *   <li>{@code fraud.analysis.request{operation}}: end-to-end time of analyze and real-time score
+ *   <li>{@code fraud.profile.lookup{result}}: profile reads, found or absent
+ *   <li>{@code fraud.analysis.listener{listener}}: post-persist listeners such as the profile
+ *       update
+ *   <li>{@code fraud.kafka.publish{result}}: send to broker acknowledgement of analysis results
+ *   <li>{@code fraud.analysis.outcomes{risk_level, status}}: scored analyses
+ *   <li>{@code fraud.scoring.degraded{feature}}: feature lookups that failed or missed the scoring
+ *       budget and were scored with conservative defaults
+ * </ul>
+ *
+ * <p>Every meter is registered up front and callers pass a {@link System#nanoTime()} start, so a
+ * recording is one clock read and a lock-free histogram update with no allocation or tag lookup.
+ * Percentile histograms can be turned off with {@code
+ * fraud.detection.metrics.percentile-histograms=false}.
+ */
+@Component
+public class FraudPipelineMetrics {
+
+  /** Timed step of a single analysis */
+  public enum Stage {
+    VELOCITY,
+    GEO,
+    MERCHANT,
+    BIN,
+    LINKAGE,
+    SCORING,
+    INDICATORS,
+    PERSIST,
+    ENQUEUE;
+
+    final String tag = name().toLowerCase(Locale.ROOT);
+  }
+
+  /** Entry point whose total time is recorded */
+  public enum Operation {
+    ANALYZE,
+    SCORE;
+
+    final String tag = name().toLowerCase(Locale.ROOT);
+  }
+
+  @Autowired private MeterRegistry meterRegistry;
+
+  @Value("${fraud.detection.metrics.percentile-histograms:true}")
+  private boolean percentileHistograms;
+
+  private final Timer[] stages = new Timer[Stage.values().length];
+  private final Timer[] requests = new Timer[Operation.values().length];
+  private final Counter[][] outcomes =
+      new Counter[RiskLevel.values().length][FraudStatus.values().length];
+  private final Counter[] degraded = new Counter[ScoringBudget.Feature.values().length];
+  private final Map<String, Timer> listeners = new ConcurrentHashMap<>();
+  private Timer profileFound;
+  private Timer profileAbsent;
+  private Timer publishSucceeded;
+  private Timer publishFailed;
+
+  @PostConstruct
+  void init() {
+    for (Stage stage : Stage.values()) {
+      stages[stage.ordinal()] =
+          timer("fraud.analysis.stage", "Latency of one fraud analysis stage", "stage", stage.tag);
+    }
+    for (Operation operation : Operation.values()) {
+      requests[operation.ordinal()] =
+          timer(
+              "fraud.analysis.request",
+              "End-to-end fraud analysis latency",
+              "operation",
+              operation.tag);
+    }
+    profileFound = timer("fraud.profile.lookup", "Behavior profile lookups", "result", "found");
+    profileAbsent = timer("fraud.profile.lookup", "Behavior profile lookups", "result", "absent");
+    publishSucceeded =
+        timer(
+            "fraud.kafka.publish", "Analysis result send to acknowledgement", "result", "success");
+    publishFailed =
+        timer(
+            "fraud.kafka.publish", "Analysis result send to acknowledgement", "result", "failure");
+    for (RiskLevel riskLevel : RiskLevel.values()) {
+      for (FraudStatus status : FraudStatus.values()) {
+        outcomes[riskLevel.ordinal()][status.ordinal()] =
+            Counter.builder("fraud.analysis.outcomes")
+                .description("Scored analyses by risk level and fraud status")
+                .tag("risk_level", riskLevel.name())
+                .tag("status", status.name())
+                .register(meterRegistry);
+      }
+    }
+    for (ScoringBudget.Feature feature : ScoringBudget.Feature.values()) {
+      degraded[feature.ordinal()] =
+          Counter.builder("fraud.scoring.degraded")
+              .description("Feature lookups replaced by conservative defaults")
+              .tag("feature", feature.name().toLowerCase(Locale.ROOT))
+              .register(meterRegistry);
+    }
+  }
+
+  public void stage(Stage stage, long startNanos) {
+    record(stages[stage.ordinal()], startNanos);
+  }
+
+  public void request(Operation operation, long startNanos) {
+    record(requests[operation.ordinal()], startNanos);
+  }
+
+  public void profileLookup(long startNanos, boolean found) {
+    record(found ? profileFound : profileAbsent, startNanos);
+  }
+
+  public void published(long startNanos, boolean succeeded) {
+    record(succeeded ? publishSucceeded : publishFailed, startNanos);
+  }
+
+  public void listener(TransactionAnalysisListener listener, long startNanos) {
+    record(
+        listeners.computeIfAbsent(
+            ClassUtils.getUserClass(listener).getSimpleName(),
+            name ->
+                timer(
+                    "fraud.analysis.listener", "Post-persist listener latency", "listener", name)),
+        startNanos);
+  }
+
+  public void outcome(RiskLevel riskLevel, FraudStatus status) {
+    if (riskLevel != null && status != null) {
+      outcomes[riskLevel.ordinal()][status.ordinal()].increment();
+    }
+  }
+
+  public void degraded(ScoringBudget.Feature feature) {
+    degraded[feature.ordinal()].increment();
+  }
+
+  private Timer timer(String name, String description, String tagKey, String tagValue) {
+    return Timer.builder(name)
+        .description(description)
+        .tag(tagKey, tagValue)
+        .publishPercentileHistogram(percentileHistograms)
+        .register(meterRegistry);
+  }
+
+  private static void record(Timer timer, long startNanos) {
+    timer.record(System.nanoTime() - startNanos, TimeUnit.NANOSECONDS);
+  }
+}
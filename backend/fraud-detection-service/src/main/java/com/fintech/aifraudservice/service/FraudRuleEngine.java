@@ -0,0 +1,173 @@
+package com.fintech.aifraudservice.service;
+
+import jakarta.annotation.PostConstruct;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.Properties;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+/**
+ * Holds the active {@link FraudRuleSet}. The set is compiled from the {@code fraud.detection.*}
+ * properties and, when {@code fraud.detection.rules.location} names a file, from that file on top.
+ * The file is polled for changes and can also be reloaded on demand. A new set is compiled off to
+ * the side and published with a single volatile write, so scoring threads never see a partial
+ * configuration and never wait. A file that fails to compile is logged and the previous set stays
+ * active.
+ */
+@Component
+@Slf4j
+public class FraudRuleEngine {
+
+  @Value("${fraud.detection.rules.location:}")
+  private String location;
+
+  @Value("${fraud.detection.weights.velocity:0.25}")
+  private String velocityWeight;
+
+  @Value("${fraud.detection.weights.behavioral:0.20}")
+  private String behavioralWeight;
+
+  @Value("${fraud.detection.weights.geolocation:0.15}")
+  private String geolocationWeight;
+
+  @Value("${fraud.detection.weights.device:0.15}")
+  private String deviceWeight;
+
+  @Value("${fraud.detection.weights.amount:0.15}")
+  private String amountWeight;
+
+  @Value("${fraud.detection.weights.time:0.10}")
+  private String timeWeight;
+
+  @Value("${fraud.detection.weights.merchant:0.10}")
+  private String merchantWeight;
+
+  @Value("${fraud.detection.weights.card:0.10}")
+  private String cardWeight;
+
+  @Value("${fraud.detection.threshold.medium:0.3}")
+  private String mediumThreshold;
+
+  @Value("${fraud.detection.threshold.high:0.6}")
+  private String highThreshold;
+
+  @Value("${fraud.detection.threshold.critical:0.8}")
+  private String criticalThreshold;
+
+  @Value("${fraud.detection.high-risk-countries:XX,YY,ZZ}")
+  private String highRiskCountries;
+
+  private volatile FraudRuleSet current = FraudRuleSet.DEFAULTS;
+
+  private FileTime loadedModifiedTime;
+
+  @PostConstruct
+  void init() {
+    // An unusable configuration at startup is a deployment error, not something to run without
+    current = compile();
+    log.info(
+        "Loaded fraud rule set {} with {} rules", current.getVersion(), current.getRuleCount());
+  }
+
+  public FraudRuleSet current() {
+    return current;
+  }
+
+  /**
+   * Recompiles and publishes the rule set.
+   *
+   * @return the newly published rule set
+   * @throws IllegalArgumentException when the configuration does not compile
+   * @throws IllegalStateException when the rule file cannot be read; either way the previous rule
+   *     set stays active
+   */
+  public synchronized FraudRuleSet reload() {
+    FraudRuleSet reloaded;
+    try {
+      reloaded = compile();
+    } catch (RuntimeException e) {
+      log.error(
+          "Keeping fraud rule set {}, reload failed: {}", current.getVersion(), e.getMessage());
+      throw e;
+    }
+    if (!reloaded.getVersion().equals(current.getVersion())) {
+      log.info(
+          "Fraud rule set {} replaced by {} with {} rules",
+          current.getVersion(),
+          reloaded.getVersion(),
+          reloaded.getRuleCount());
+    }
+    current = reloaded;
+    return reloaded;
+  }
+
+  /** Reloads when the rule file changed since it was last read */
+  @Scheduled(fixedDelayString = "${fraud.detection.rules.refresh-interval-ms:30000}")
+  public synchronized void reloadIfChanged() {
+    if (location.isBlank()) {
+      return;
+    }
+    try {
+      FileTime modified = Files.getLastModifiedTime(Path.of(location));
+      if (!modified.equals(loadedModifiedTime)) {
+        reload();
+      }
+    } catch (IOException e) {
+      log.warn("Cannot check fraud rule file {}: {}", location, e.getMessage());
+    } catch (RuntimeException e) {
+      // Already logged by reload(); the previous rule set stays active until the file is fixed
+    }
+  }
+
+  /**
+   * Compiles the configured properties and rule file with {@code overrides} on top, without
+   * publishing the result. Shadow candidates are described this way, as changes to production.
+   *
+   * @throws IllegalArgumentException when the result does not compile
+   * @throws IllegalStateException when the rule file cannot be read
+   */
+  public synchronized FraudRuleSet compileWith(Properties overrides) {
+    Properties properties = properties(false);
+    properties.putAll(overrides);
+    return FraudRuleSet.compile(properties);
+  }
+
+  private FraudRuleSet compile() {
+    return FraudRuleSet.compile(properties(true));
+  }
+
+  private Properties properties(boolean publishing) {
+    Properties properties = new Properties();
+    properties.setProperty("weights.velocity", velocityWeight);
+    properties.setProperty("weights.behavioral", behavioralWeight);
+    properties.setProperty("weights.geolocation", geolocationWeight);
+    properties.setProperty("weights.device", deviceWeight);
+    properties.setProperty("weights.amount", amountWeight);
+    properties.setProperty("weights.time", timeWeight);
+    properties.setProperty("weights.merchant", merchantWeight);
+    properties.setProperty("weights.card", cardWeight);
+    properties.setProperty("threshold.medium", mediumThreshold);
+    properties.setProperty("threshold.high", highThreshold);
+    properties.setProperty("threshold.critical", criticalThreshold);
+    properties.setProperty("high-risk-countries", highRiskCountries);
+    if (!location.isBlank()) {
+      Path path = Path.of(location);
+      try (InputStream in = Files.newInputStream(path)) {
+        // Remembered even if the file does not compile, so a bad file is reported once
+        if (publishing) {
+          loadedModifiedTime = Files.getLastModifiedTime(path);
+        }
+        properties.load(in);
+      } catch (IOException e) {
+        throw new IllegalStateException("Cannot read fraud rule file " + location, e);
+      }
+    }
+    return properties;
+  }
+}
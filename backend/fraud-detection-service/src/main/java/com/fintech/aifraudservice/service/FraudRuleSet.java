@@ -0,0 +1,395 @@
+package com.fintech.aifraudservice.service;
+
+import com.fintech.aifraudservice.model.TransactionAnalysis.RiskLevel;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.HexFormat;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * Weights, risk-level cutoffs, the high-risk country list and per-value score adjustments, compiled
+ * into an immutable evaluator. Adjustment rules are grouped into one hash map per request
+ * attribute, so a transaction costs one lookup per attribute however many rules are configured.
+ *
+ * <p>Compiled from flat properties (keys relative to {@code fraud.detection.}):
+ *
+ * <pre>
+ * version=2024-06-01             # optional; a content hash is used otherwise
+ * weights.velocity=0.25          # also behavioral, geolocation, device, amount, time, merchant, card
+ * threshold.medium=0.3           # also high, critical
+ * high-risk-countries=XX,YY,ZZ
+ * rule.country.NG=0.10           # added to the weighted score, result clamped to [0, 1]
+ * rule.category.GAMBLING=0.05    # also paymentMethod, transactionType, currency, merchant
+ * </pre>
+ *
+ * <p>Weights are relative: the weighted score is divided by the sum of the weights of the
+ * components that have data, so it stays within [0, 1] whichever weights are overridden. The
+ * merchant and card components only count for merchants with tracked activity and cards with a BIN
+ * range (or a degraded lookup of either); without them the six original weights, which add up to
+ * one, score as they always did.
+ */
+public final class FraudRuleSet {
+
+  public static final String VERSION_PREFIX = "rules-";
+
+  public enum Attribute {
+    COUNTRY("country", TransactionAnalysisRequest::getLocationCountry),
+    CATEGORY("category", TransactionAnalysisRequest::getMerchantCategory),
+    PAYMENT_METHOD("paymentMethod", TransactionAnalysisRequest::getPaymentMethod),
+    TRANSACTION_TYPE("transactionType", TransactionAnalysisRequest::getTransactionType),
+    CURRENCY("currency", TransactionAnalysisRequest::getCurrency),
+    MERCHANT("merchant", TransactionAnalysisRequest::getMerchantId);
+
+    private final String key;
+    private final Function<TransactionAnalysisRequest, String> value;
+
+    Attribute(String key, Function<TransactionAnalysisRequest, String> value) {
+      this.key = key;
+      this.value = value;
+    }
+  }
+
+  private static final Attribute[] ATTRIBUTES = Attribute.values();
+
+  private static final int MERCHANT_DATA = 1;
+  private static final int CARD_DATA = 2;
+
+  private static final Map<String, String> DEFAULT_PROPERTIES =
+      Map.ofEntries(
+          Map.entry("weights.velocity", "0.25"),
+          Map.entry("weights.behavioral", "0.20"),
+          Map.entry("weights.geolocation", "0.15"),
+          Map.entry("weights.device", "0.15"),
+          Map.entry("weights.amount", "0.15"),
+          Map.entry("weights.time", "0.10"),
+          Map.entry("weights.merchant", "0.10"),
+          Map.entry("weights.card", "0.10"),
+          Map.entry("threshold.medium", "0.3"),
+          Map.entry("threshold.high", "0.6"),
+          Map.entry("threshold.critical", "0.8"),
+          Map.entry("high-risk-countries", "XX,YY,ZZ"));
+
+  /**
+   * The built-in configuration, identical to the scores before rules were configurable for
+   * merchants without tracked risk and cards without a BIN range
+   */
+  public static final FraudRuleSet DEFAULTS = compile(new Properties());
+
+  private final String version;
+
+  private final double velocityWeight;
+  private final double behavioralWeight;
+  private final double geolocationWeight;
+  private final double deviceWeight;
+  private final double amountWeight;
+  private final double timeWeight;
+  private final double merchantWeight;
+  private final double cardWeight;
+
+  // Reciprocal of the sum of the weights with data, indexed by MERCHANT_DATA and CARD_DATA bits
+  private final double[] weightScales = new double[4];
+
+  private final double mediumThreshold;
+  private final double highThreshold;
+  private final double criticalThreshold;
+
+  private final Set<String> highRiskCountries;
+
+  // Indexed by Attribute ordinal; null when the attribute has no rules
+  private final Map<String, Double>[] adjustments;
+
+  private final int ruleCount;
+
+  private FraudRuleSet(Map<String, String> properties) {
+    for (String key : properties.keySet()) {
+      if (!DEFAULT_PROPERTIES.containsKey(key)
+          && !key.equals("version")
+          && !key.startsWith("rule.")) {
+        throw new IllegalArgumentException("Unknown rule property: " + key);
+      }
+    }
+    double velocity = weight(properties, "velocity");
+    double behavioral = weight(properties, "behavioral");
+    double geolocation = weight(properties, "geolocation");
+    double device = weight(properties, "device");
+    double amount = weight(properties, "amount");
+    double time = weight(properties, "time");
+    double merchant = weight(properties, "merchant");
+    double card = weight(properties, "card");
+    double base = velocity + behavioral + geolocation + device + amount + time;
+    if (base <= 0) {
+      // Requests without merchant or card data would have nothing to weigh
+      throw new IllegalArgumentException(
+          "At least one weight other than merchant and card must be positive");
+    }
+    velocityWeight = velocity;
+    behavioralWeight = behavioral;
+    geolocationWeight = geolocation;
+    deviceWeight = device;
+    amountWeight = amount;
+    timeWeight = time;
+    merchantWeight = merchant;
+    cardWeight = card;
+    weightScales[0] = 1.0 / base;
+    weightScales[MERCHANT_DATA] = 1.0 / (base + merchant);
+    weightScales[CARD_DATA] = 1.0 / (base + card);
+    weightScales[MERCHANT_DATA | CARD_DATA] = 1.0 / (base + merchant + card);
+
+    mediumThreshold = number(properties, "threshold.medium");
+    highThreshold = number(properties, "threshold.high");
+    criticalThreshold = number(properties, "threshold.critical");
+    if (mediumThreshold < 0
+        || mediumThreshold > highThreshold
+        || highThreshold > criticalThreshold
+        || criticalThreshold > 1) {
+      throw new IllegalArgumentException(
+          String.format(
+              "Risk thresholds must satisfy 0 <= medium <= high <= critical <= 1, got %s/%s/%s",
+              mediumThreshold, highThreshold, criticalThreshold));
+    }
+
+    highRiskCountries =
+        Arrays.stream(properties.get("high-risk-countries").split(","))
+            .map(String::trim)
+            .filter(country -> !country.isEmpty())
+            .collect(Collectors.toUnmodifiableSet());
+
+    Map<Attribute, Map<String, Double>> rules = new EnumMap<>(Attribute.class);
+    int count = 0;
+    for (Map.Entry<String, String> entry : properties.entrySet()) {
+      if (!entry.getKey().startsWith("rule.")) {
+        continue;
+      }
+      String[] parts = entry.getKey().split("\\.", 3);
+      Attribute attribute =
+          parts.length == 3
+              ? Arrays.stream(ATTRIBUTES)
+                  .filter(candidate -> candidate.key.equals(parts[1]))
+                  .findFirst()
+                  .orElse(null)
+              : null;
+      if (attribute == null || parts[2].isEmpty()) {
+        throw new IllegalArgumentException("Unknown rule: " + entry.getKey());
+      }
+      rules
+          .computeIfAbsent(attribute, a -> new HashMap<>())
+          .put(parts[2], number(properties, entry.getKey()));
+      count++;
+    }
+    // An array rather than a list keeps the per-request lookup a plain index; it only ever holds
+    // Map<String, Double>, which is what makes the unchecked generic array creation safe
+    @SuppressWarnings({"rawtypes", "unchecked"})
+    Map<String, Double>[] compiled = new Map[ATTRIBUTES.length];
+    rules.forEach((attribute, values) -> compiled[attribute.ordinal()] = Map.copyOf(values));
+    adjustments = compiled;
+    ruleCount = count;
+
+    String explicitVersion = properties.get("version");
+    version =
+        explicitVersion != null && !explicitVersion.isBlank()
+            ? VERSION_PREFIX + explicitVersion.trim()
+            : VERSION_PREFIX + contentHash(properties);
+  }
+
+  /**
+   * Compiles a rule set from the given properties over the built-in defaults.
+   *
+   * @throws IllegalArgumentException when a value does not parse or the thresholds are inconsistent
+   */
+  public static FraudRuleSet compile(Properties overrides) {
+    Map<String, String> properties = new TreeMap<>(DEFAULT_PROPERTIES);
+    overrides.stringPropertyNames().forEach(key -> properties.put(key, overrides.getProperty(key)));
+    return new FraudRuleSet(properties);
+  }
+
+  public String getVersion() {
+    return version;
+  }
+
+  public int getRuleCount() {
+    return ruleCount;
+  }
+
+  public boolean isHighRiskCountry(String country) {
+    return country != null && highRiskCountries.contains(country);
+  }
+
+  /** Sum of the adjustments matching the request, one lookup per attribute */
+  public double adjustment(TransactionAnalysisRequest request) {
+    double total = 0.0;
+    for (int i = 0; i < ATTRIBUTES.length; i++) {
+      Map<String, Double> values = adjustments[i];
+      if (values == null) {
+        continue;
+      }
+      String value = ATTRIBUTES[i].value.apply(request);
+      if (value != null) {
+        Double delta = values.get(value);
+        if (delta != null) {
+          total += delta;
+        }
+      }
+    }
+    return total;
+  }
+
+  /** Weighted score with data for all eight components */
+  public double overallRiskScore(
+      double velocityScore,
+      double behavioralScore,
+      double geolocationScore,
+      double deviceScore,
+      double amountScore,
+      double timeScore,
+      double merchantScore,
+      double cardScore) {
+    return overallRiskScore(
+        velocityScore,
+        behavioralScore,
+        geolocationScore,
+        deviceScore,
+        amountScore,
+        timeScore,
+        merchantScore,
+        cardScore,
+        true,
+        true);
+  }
+
+  /**
+   * Weighted score over the components that have data. Without merchant (or card) data that score
+   * and its weight are left out, rather than counting as a zero that would dilute the others.
+   */
+  public double overallRiskScore(
+      double velocityScore,
+      double behavioralScore,
+      double geolocationScore,
+      double deviceScore,
+      double amountScore,
+      double timeScore,
+      double merchantScore,
+      double cardScore,
+      boolean merchantData,
+      boolean cardData) {
+    double score =
+        (velocityScore * velocityWeight)
+            + (behavioralScore * behavioralWeight)
+            + (geolocationScore * geolocationWeight)
+            + (deviceScore * deviceWeight)
+            + (amountScore * amountWeight)
+            + (timeScore * timeWeight);
+    int present = 0;
+    if (merchantData) {
+      score += merchantScore * merchantWeight;
+      present |= MERCHANT_DATA;
+    }
+    if (cardData) {
+      score += cardScore * cardWeight;
+      present |= CARD_DATA;
+    }
+    return score * weightScales[present];
+  }
+
+  /** Weighted score with data for all eight components plus the rule adjustment, within [0, 1] */
+  public double riskScore(
+      double velocityScore,
+      double behavioralScore,
+      double geolocationScore,
+      double deviceScore,
+      double amountScore,
+      double timeScore,
+      double merchantScore,
+      double cardScore,
+      double adjustment) {
+    return clamp(
+        overallRiskScore(
+                velocityScore,
+                behavioralScore,
+                geolocationScore,
+                deviceScore,
+                amountScore,
+                timeScore,
+                merchantScore,
+                cardScore)
+            + adjustment);
+  }
+
+  /** Weighted risk score of the kernel components that have data plus the rule adjustment */
+  public double riskScore(FraudFeatureVector f) {
+    return clamp(
+        overallRiskScore(
+                FraudScoringKernel.velocityScore(f),
+                FraudScoringKernel.behavioralScore(f),
+                FraudScoringKernel.geolocationScore(f),
+                FraudScoringKernel.deviceScore(f),
+                FraudScoringKernel.amountScore(f),
+                FraudScoringKernel.timeOfDayScore(f),
+                FraudScoringKernel.merchantScore(f),
+                FraudScoringKernel.cardScore(f),
+                FraudScoringKernel.hasMerchantData(f),
+                FraudScoringKernel.hasCardData(f))
+            + f.ruleAdjustment);
+  }
+
+  private static double clamp(double score) {
+    return Math.max(0.0, Math.min(1.0, score));
+  }
+
+  public RiskLevel riskLevel(double riskScore) {
+    if (riskScore >= criticalThreshold) {
+      return RiskLevel.CRITICAL;
+    } else if (riskScore >= highThreshold) {
+      return RiskLevel.HIGH;
+    } else if (riskScore >= mediumThreshold) {
+      return RiskLevel.MEDIUM;
+    } else {
+      return RiskLevel.LOW;
+    }
+  }
+
+  private static double weight(Map<String, String> properties, String name) {
+    double weight = number(properties, "weights." + name);
+    if (weight < 0) {
+      throw new IllegalArgumentException("Weight " + name + " must not be negative: " + weight);
+    }
+    return weight;
+  }
+
+  private static double number(Map<String, String> properties, String key) {
+    String value = properties.get(key);
+    try {
+      double number = Double.parseDouble(value.trim());
+      if (!Double.isFinite(number)) {
+        throw new NumberFormatException("not finite");
+      }
+      return number;
+    } catch (NumberFormatException e) {
+      throw new IllegalArgumentException("Invalid value for " + key + ": " + value, e);
+    }
+  }
+
+  private static String contentHash(Map<String, String> properties) {
+    try {
+      MessageDigest digest = MessageDigest.getInstance("SHA-256");
+      // Sorted keys give the same hash for the same configuration
+      properties.forEach(
+          (key, value) -> {
+            if (!key.equals("version")) {
+              digest.update((key + '=' + value.trim() + '\n').getBytes(StandardCharsets.UTF_8));
+            }
+          });
+      return HexFormat.of().formatHex(digest.digest(), 0, 4);
+    } catch (NoSuchAlgorithmException e) {
+      throw new IllegalStateException("SHA-256 not available", e);
+    }
+  }
+}
@@ -0,0 +1,161 @@
+package com.fintech.aifraudservice.service;
+
+import com.fintech.aifraudservice.model.UserBehaviorProfile;
+import com.fintech.aifraudservice.service.BinRangeTable.BinInfo;
+import com.fintech.aifraudservice.service.IpRangeTable.IpLocation;
+import lombok.Getter;
+
+/**
+ * Features resolved once per analysis and shared by every scorer, so the behavior profile, the
+ * velocity windows, the merchant aggregates and the account linkage are looked up a single time per
+ * transaction.
+ */
+@Getter
+public class FraudScoringContext {
+
+  private final Long userId;
+  private final TransactionAnalysisRequest request;
+
+  /** Null when the user has no behavior profile yet */
+  private final UserBehaviorProfile profile;
+
+  private final VelocitySnapshot velocity;
+
+  /** Rule set active when the analysis started, used for all of its scoring */
+  private final FraudRuleSet rules;
+
+  /** Model active when the analysis started; null when scoring is rule-only */
+  private final FraudModel model;
+
+  /** Location of the IP address; null when it did not resolve */
+  private final IpLocation ipLocation;
+
+  /** Aggregates of the request's merchant; empty when it is not tracked */
+  private final MerchantRiskSnapshot merchantRisk;
+
+  /** Range of the card BIN; null when it did not resolve */
+  private final BinInfo bin;
+
+  /** Other accounts sharing the request's device, IP address or card */
+  private final LinkageSnapshot linkage;
+
+  /** Bit set of the lookups that failed or missed the scoring budget, see {@link ScoringBudget} */
+  private final int degradedFeatures;
+
+  /** Primitive features consumed by {@link FraudScoringKernel} */
+  private final FraudFeatureVector features;
+
+  /** Fraud probability computed ahead of scoring by a batch classification, NaN otherwise */
+  private double modelProbability = Double.NaN;
+
+  private boolean modelProbabilityResolved;
+
+  private final long startTimeMillis = System.currentTimeMillis();
+
+  public FraudScoringContext(
+      Long userId,
+      TransactionAnalysisRequest request,
+      UserBehaviorProfile profile,
+      VelocitySnapshot velocity,
+      FraudRuleSet rules) {
+    this(userId, request, profile, velocity, rules, null);
+  }
+
+  public FraudScoringContext(
+      Long userId,
+      TransactionAnalysisRequest request,
+      UserBehaviorProfile profile,
+      VelocitySnapshot velocity,
+      FraudRuleSet rules,
+      FraudModel model) {
+    this(
+        userId,
+        request,
+        profile,
+        velocity,
+        rules,
+        model,
+        null,
+        MerchantRiskSnapshot.EMPTY,
+        null,
+        LinkageSnapshot.EMPTY);
+  }
+
+  public FraudScoringContext(
+      Long userId,
+      TransactionAnalysisRequest request,
+      UserBehaviorProfile profile,
+      VelocitySnapshot velocity,
+      FraudRuleSet rules,
+      FraudModel model,
+      IpLocation ipLocation,
+      MerchantRiskSnapshot merchantRisk,
+      BinInfo bin,
+      LinkageSnapshot linkage) {
+    this(
+        userId,
+        request,
+        profile,
+        velocity,
+        rules,
+        model,
+        ipLocation,
+        merchantRisk,
+        bin,
+        linkage,
+        0);
+  }
+
+  public FraudScoringContext(
+      Long userId,
+      TransactionAnalysisRequest request,
+      UserBehaviorProfile profile,
+      VelocitySnapshot velocity,
+      FraudRuleSet rules,
+      FraudModel model,
+      IpLocation ipLocation,
+      MerchantRiskSnapshot merchantRisk,
+      BinInfo bin,
+      LinkageSnapshot linkage,
+      int degradedFeatures) {
+    this.userId = userId;
+    this.request = request;
+    this.profile = profile;
+    this.velocity = velocity != null ? velocity : VelocitySnapshot.EMPTY;
+    this.rules = rules != null ? rules : FraudRuleSet.DEFAULTS;
+    this.model = model;
+    this.ipLocation = ipLocation;
+    this.merchantRisk = merchantRisk != null ? merchantRisk : MerchantRiskSnapshot.EMPTY;
+    this.bin = bin;
+    this.linkage = linkage != null ? linkage : LinkageSnapshot.EMPTY;
+    this.features =
+        FraudFeatureVector.of(
+            request,
+            profile,
+            this.velocity,
+            this.rules,
+            ipLocation,
+            this.merchantRisk,
+            bin,
+            this.linkage);
+    this.degradedFeatures = degradedFeatures;
+    this.features.degraded = degradedFeatures;
+  }
+
+  public boolean isModelProbabilityResolved() {
+    return modelProbabilityResolved;
+  }
+
+  void setModelProbability(double modelProbability) {
+    this.modelProbability = modelProbability;
+    this.modelProbabilityResolved = true;
+  }
+
+  public boolean hasProfile() {
+    return profile != null;
+  }
+
+  public boolean isDegraded() {
+    return degradedFeatures != 0;
+  }
+}
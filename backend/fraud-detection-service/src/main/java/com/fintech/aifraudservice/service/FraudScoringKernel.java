@@ -0,0 +1,307 @@
+package com.fintech.aifraudservice.service;
+
+import java.time.LocalTime;
+
+/**
+ * The component risk scores over a {@link FraudFeatureVector}; {@link FraudRuleSet} weighs them
+ * into the overall score. Every method is a pure function of primitive fields and allocates
+ * nothing. Thresholds are precomputed constants and money comparisons are exact fixed-point long
+ * arithmetic.
+ *
+ * <p>Scores match the original profile/BigDecimal implementation, including its failure modes.
+ * Where that code threw and fell back to 0.0 (missing amount or transaction time, a zero average
+ * amount, a missing country checked against the high-risk list), the kernel returns 0.0 for the
+ * same inputs. The IP location terms of the geolocation score are zero when the address did not
+ * resolve, which is always the case without an IP range file, the merchant score is zero for
+ * merchants without tracked activity, and the card score is zero for BINs without a range; the rule
+ * set leaves those two out of the weighting then. Shared devices, IP addresses and cards only add
+ * to the device score when other accounts use them.
+ *
+ * <p>A feature whose lookup was degraded by the {@link ScoringBudget} is not treated as absent,
+ * which would lower the score. Its term takes a fixed conservative value instead, about what a
+ * suspicious but not damning reading of that feature would add. A degraded profile is scored as a
+ * new user's, with the stricter amount thresholds and baseline risk that come with it.
+ */
+public final class FraudScoringKernel {
+
+  private static final long UNITS = FraudFeatureVector.UNITS_PER_MAJOR;
+
+  // Amount thresholds for users without a profile
+  private static final long NEW_USER_VERY_HIGH_AMOUNT = 10_000 * UNITS;
+  private static final long NEW_USER_HIGH_AMOUNT = 5_000 * UNITS;
+  private static final long NEW_USER_MEDIUM_AMOUNT = 1_000 * UNITS;
+
+  // amount / average rounded half-up to two decimals exceeds 10 (or 5) exactly when
+  // amount * 1000 >= average * 10005 (or 5005)
+  private static final long RATIO_SCALE = 1_000L;
+  private static final long RATIO_VERY_HIGH = 10_005L;
+  private static final long RATIO_HIGH = 5_005L;
+
+  // High-risk hours (late night/early morning)
+  private static final long LATE_NIGHT_NANOS = LocalTime.of(23, 0).toNanoOfDay();
+  private static final long EARLY_MORNING_NANOS = LocalTime.of(6, 0).toNanoOfDay();
+
+  // Analyses added to every merchant's volume before taking rates, so that a handful of declines at
+  // a new merchant does not read as a high decline rate
+  private static final double MERCHANT_PRIOR_VOLUME = 20.0;
+
+  // Card score of each BinRangeTable.RiskTier, by ordinal
+  private static final double[] BIN_TIER_SCORES = {0.0, 0.3, 0.6};
+
+  // Other accounts on the same device, IP address or card before the device score rises. IPs are
+  // shared by carrier NAT and offices, a card by few legitimate accounts.
+  private static final int SHARED_DEVICE_ACCOUNTS = 3;
+  private static final int DEVICE_RING_ACCOUNTS = 10;
+  private static final int SHARED_IP_ACCOUNTS = 10;
+  private static final int IP_RING_ACCOUNTS = 25;
+  private static final int CARD_RING_ACCOUNTS = 3;
+
+  // Terms of features that could not be looked up within the budget
+  private static final double DEGRADED_VELOCITY_SCORE = 0.4;
+  private static final double DEGRADED_IP_LOCATION_SCORE = 0.3;
+  private static final double DEGRADED_MERCHANT_SCORE = 0.3;
+  private static final double DEGRADED_CARD_SCORE = 0.3;
+  private static final double DEGRADED_LINKAGE_SCORE = 0.3;
+
+  private FraudScoringKernel() {}
+
+  public static double velocityScore(FraudFeatureVector f) {
+    if (isDegraded(f, ScoringBudget.Feature.VELOCITY)) {
+      return DEGRADED_VELOCITY_SCORE; // As for a burst of transactions in the last hour
+    }
+    double velocityScore = 0.0;
+
+    // Check transaction count velocity
+    if (f.hasProfile && f.hasDailyCount) {
+      double normalDailyCount = f.dailyCount;
+      double normalHourlyCount = normalDailyCount / 24.0;
+
+      if (f.transactionsLastHour > normalHourlyCount * 3) {
+        velocityScore += 0.4;
+      } else if (f.transactionsLastHour > normalHourlyCount * 2) {
+        velocityScore += 0.2;
+      }
+
+      if (f.transactionsLastDay > normalDailyCount * 2) {
+        velocityScore += 0.3;
+      }
+    } else {
+      // No profile available, use general thresholds
+      if (f.transactionsLastHour > 5) velocityScore += 0.4;
+      if (f.transactionsLastDay > 20) velocityScore += 0.3;
+    }
+
+    // Check amount velocity against three times the normal daily amount
+    if (f.hasProfile && f.hasAvgAmount) {
+      long normalDailyCount = f.hasDailyCount ? f.dailyCount : 5;
+      if (f.amountLastDayUnits > f.avgAmountUnits * normalDailyCount * 3) {
+        velocityScore += 0.3;
+      }
+    }
+
+    return Math.min(velocityScore, 1.0);
+  }
+
+  public static double behavioralScore(FraudFeatureVector f) {
+    if (!f.hasProfile) {
+      return 0.3; // Medium risk for new users
+    }
+
+    double behavioralScore = 0.0;
+
+    // Check amount deviation
+    if (f.hasAvgAmount) {
+      if (!f.amountPresent || f.avgAmountUnits == 0) {
+        return 0.0;
+      }
+      long scaledAmount = f.amountUnits * RATIO_SCALE;
+      if (scaledAmount >= f.avgAmountUnits * RATIO_VERY_HIGH) {
+        behavioralScore += 0.4;
+      } else if (scaledAmount >= f.avgAmountUnits * RATIO_HIGH) {
+        behavioralScore += 0.2;
+      }
+    }
+
+    if (f.categoryUnknown) {
+      behavioralScore += 0.2;
+    }
+    if (f.paymentMethodUnknown) {
+      behavioralScore += 0.15;
+    }
+
+    // Check time pattern deviation
+    if (!f.timePresent) {
+      return 0.0;
+    }
+    if (f.hasTypicalHours
+        && (f.timeOfDayNanos < f.typicalStartNanos || f.timeOfDayNanos > f.typicalEndNanos)) {
+      behavioralScore += 0.25;
+    }
+
+    return Math.min(behavioralScore, 1.0);
+  }
+
+  public static double geolocationScore(FraudFeatureVector f) {
+    double ipScore = ipLocationScore(f);
+    if (!f.hasProfile) {
+      return Math.min(0.2 + ipScore, 1.0); // Low-medium risk for new users
+    }
+
+    double geoScore = ipScore;
+    if (f.countryUnknown) {
+      geoScore += 0.5;
+    }
+    if (f.cityUnknown) {
+      geoScore += 0.3;
+    }
+    if (!f.countryPresent) {
+      return Math.min(ipScore, 1.0);
+    }
+    if (f.highRiskCountry) {
+      geoScore += 0.4;
+    }
+    return Math.min(geoScore, 1.0);
+  }
+
+  /** Claimed location checked against the IP address's location */
+  static double ipLocationScore(FraudFeatureVector f) {
+    if (isDegraded(f, ScoringBudget.Feature.IP_LOCATION)) {
+      return DEGRADED_IP_LOCATION_SCORE; // As for a country mismatch
+    }
+    if (!f.ipLocated) {
+      return 0.0;
+    }
+    double ipScore = 0.0;
+    if (f.ipCountryMismatch) {
+      ipScore += 0.3;
+    } else if (f.ipCityMismatch) {
+      ipScore += 0.1;
+    }
+    // Counted once when the claimed country is already on the list
+    if (f.ipHighRiskCountry && !f.highRiskCountry) {
+      ipScore += 0.4;
+    }
+    return ipScore;
+  }
+
+  public static double deviceScore(FraudFeatureVector f) {
+    double deviceScore = 0.0;
+    if (!f.hasProfile) {
+      deviceScore = 0.2; // Low-medium risk for new users
+    } else {
+      if (f.deviceUnknown) {
+        deviceScore += 0.4;
+      }
+      if (f.ipUnknown) {
+        deviceScore += 0.3;
+      }
+    }
+    return Math.min(deviceScore + sharedIdentifierScore(f), 1.0);
+  }
+
+  /** Risk of the device, IP address and card being used by other accounts, as fraud rings do */
+  static double sharedIdentifierScore(FraudFeatureVector f) {
+    if (isDegraded(f, ScoringBudget.Feature.LINKAGE)) {
+      return DEGRADED_LINKAGE_SCORE; // As for a device shared with a few accounts
+    }
+    double sharedScore = 0.0;
+    if (f.deviceAccounts >= DEVICE_RING_ACCOUNTS) {
+      sharedScore += 0.6;
+    } else if (f.deviceAccounts >= SHARED_DEVICE_ACCOUNTS) {
+      sharedScore += 0.3;
+    }
+    if (f.ipAccounts >= IP_RING_ACCOUNTS) {
+      sharedScore += 0.2;
+    } else if (f.ipAccounts >= SHARED_IP_ACCOUNTS) {
+      sharedScore += 0.1;
+    }
+    if (f.cardAccounts >= CARD_RING_ACCOUNTS) {
+      sharedScore += 0.5;
+    } else if (f.cardAccounts > 0) {
+      sharedScore += 0.2;
+    }
+    return sharedScore;
+  }
+
+  public static double amountScore(FraudFeatureVector f) {
+    if (!f.amountPresent) {
+      return 0.0;
+    }
+    long amount = f.amountUnits;
+    if (!f.hasProfile) {
+      if (amount > NEW_USER_VERY_HIGH_AMOUNT) {
+        return 0.8;
+      } else if (amount > NEW_USER_HIGH_AMOUNT) {
+        return 0.5;
+      } else if (amount > NEW_USER_MEDIUM_AMOUNT) {
+        return 0.2;
+      }
+      return 0.0;
+    }
+
+    if (f.hasMaxAmount && amount > f.maxAmountUnits * 2) {
+      return 0.8; // Much higher than historical max
+    } else if (f.hasMaxAmount && amount > f.maxAmountUnits) {
+      return 0.5; // Higher than historical max
+    } else if (f.hasAvgAmount && amount > f.avgAmountUnits * 5) {
+      return 0.4; // Much higher than average
+    }
+    return 0.0;
+  }
+
+  public static double timeOfDayScore(FraudFeatureVector f) {
+    if (!f.timePresent) {
+      return 0.0;
+    }
+    if (f.timeOfDayNanos > LATE_NIGHT_NANOS || f.timeOfDayNanos < EARLY_MORNING_NANOS) {
+      return 0.3;
+    }
+    return 0.0;
+  }
+
+  public static double cardScore(FraudFeatureVector f) {
+    if (isDegraded(f, ScoringBudget.Feature.BIN)) {
+      return DEGRADED_CARD_SCORE; // As for a medium-risk range
+    }
+    if (!f.binResolved) {
+      return 0.0;
+    }
+    double cardScore = BIN_TIER_SCORES[f.binRiskTier];
+    if (f.binPrepaid) {
+      cardScore += 0.2;
+    }
+    // Card issued in one country, used from another
+    if (f.binCountryMismatch) {
+      cardScore += 0.3;
+    }
+    return Math.min(cardScore, 1.0);
+  }
+
+  public static double merchantScore(FraudFeatureVector f) {
+    if (isDegraded(f, ScoringBudget.Feature.MERCHANT)) {
+      return DEGRADED_MERCHANT_SCORE;
+    }
+    if (f.merchantVolume <= 0.0) {
+      return 0.0;
+    }
+    double volume = f.merchantVolume + MERCHANT_PRIOR_VOLUME;
+    double declineRate = f.merchantDeclines / volume;
+    double confirmedFraudRate = f.merchantConfirmedFraud / volume;
+    // Confirmed fraud weighs double: declines include the scorer's own mistakes
+    return Math.min(declineRate * 2.0 + confirmedFraudRate * 4.0, 1.0);
+  }
+
+  /** Whether the merchant has tracked activity or its lookup was degraded */
+  public static boolean hasMerchantData(FraudFeatureVector f) {
+    return f.merchantVolume > 0.0 || isDegraded(f, ScoringBudget.Feature.MERCHANT);
+  }
+
+  /** Whether the card BIN resolved to a range or its lookup was degraded */
+  public static boolean hasCardData(FraudFeatureVector f) {
+    return f.binResolved || isDegraded(f, ScoringBudget.Feature.BIN);
+  }
+
+  static boolean isDegraded(FraudFeatureVector f, ScoringBudget.Feature feature) {
+    return (f.degraded & feature.bit) != 0;
+  }
+}
@@ -0,0 +1,210 @@
+package com.fintech.aifraudservice.service;
+
+import com.fintech.aifraudservice.model.TransactionAnalysis;
+import com.fintech.aifraudservice.model.TransactionAnalysis.FraudStatus;
+import com.fintech.aifraudservice.model.TransactionAnalysis.RiskLevel;
+import com.fintech.aifraudservice.repository.AnalysisActivityReader;
+import jakarta.annotation.PostConstruct;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLongArray;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.convert.DurationStyle;
+import org.springframework.context.annotation.DependsOn;
+import org.springframework.stereotype.Component;
+
+/**
+ * Rolling counts of total, declined and high-risk analyses over the windows listed in {@code
+ * fraud.detection.stats.windows} (default {@code 1h,24h,7d}), so statistics are served from memory
+ * instead of counting rows.
+ *
+ * <p>Each window is a ring of 60 buckets of one sixtieth of the window (one minute for 1h) plus the
+ * current bucket. A slot packs its bucket number and count into one {@code long} updated by
+ * compare-and-set, so writers never lock and a stale slot is recycled by the first write of its new
+ * bucket. Reads sum a fixed 61 slots per window. A window may include up to one extra bucket of
+ * older activity.
+ *
+ * <p>Counters are rebuilt from {@code transaction_analyses} at startup, follow every persisted
+ * analysis, and move declined counts when a reviewer changes a verdict.
+ */
+@Component
+@DependsOn("entityManagerFactory")
+@Slf4j
+public class FraudStatsCounters implements TransactionAnalysisListener {
+
+  private static final int BUCKETS = 60;
+  private static final int SLOTS = BUCKETS + 1;
+  private static final long COUNT_MASK = 0xFFFF_FFFFL;
+
+  private final AnalysisActivityReader analysisActivityReader;
+  private final Clock clock;
+  private final Window[] windows;
+
+  @Autowired
+  public FraudStatsCounters(
+      AnalysisActivityReader analysisActivityReader,
+      @Value("${fraud.detection.stats.windows:1h,24h,7d}") String windows) {
+    this(analysisActivityReader, windows, Clock.systemDefaultZone());
+  }
+
+  FraudStatsCounters(AnalysisActivityReader analysisActivityReader, String windows, Clock clock) {
+    this.analysisActivityReader = analysisActivityReader;
+    this.clock = clock;
+    this.windows =
+        Arrays.stream(windows.split(","))
+            .map(String::trim)
+            .filter(label -> !label.isEmpty())
+            .map(label -> new Window(label, DurationStyle.detectAndParse(label)))
+            .toArray(Window[]::new);
+    if (this.windows.length == 0) {
+      throw new IllegalArgumentException("At least one stats window is required");
+    }
+  }
+
+  @PostConstruct
+  void seed() {
+    long now = clock.millis();
+    long longest = Arrays.stream(windows).mapToLong(w -> w.bucketMillis * SLOTS).max().getAsLong();
+    long rows =
+        analysisActivityReader.forEachCreatedSince(
+            toLocalDateTime(now - longest),
+            (createdAt, fraudStatus, riskLevel) ->
+                record(toEpochMillis(createdAt), fraudStatus, riskLevel, now));
+    log.info("Seeded fraud statistics counters from {} analyses", rows);
+  }
+
+  @Override
+  public void onAnalysisSaved(TransactionAnalysisRequest request, TransactionAnalysis analysis) {
+    record(
+        toEpochMillis(analysis.getCreatedAt()),
+        analysis.getFraudStatus(),
+        analysis.getRiskLevel(),
+        clock.millis());
+  }
+
+  @Override
+  public void onAnalysisReviewed(TransactionAnalysis analysis, FraudStatus previousStatus) {
+    boolean declined = analysis.getFraudStatus() == FraudStatus.DECLINED;
+    if (declined == (previousStatus == FraudStatus.DECLINED)) {
+      return;
+    }
+    long timestamp = toEpochMillis(analysis.getCreatedAt());
+    long now = clock.millis();
+    for (Window window : windows) {
+      window.add(window.declined, timestamp, declined ? 1 : -1, now);
+    }
+  }
+
+  /**
+   * Counts per window, keyed as before with the window label appended: {@code
+   * totalTransactions24h}, {@code fraudTransactions24h}, {@code highRiskTransactions24h} and {@code
+   * fraudRate24h} (percent).
+   */
+  public Map<String, Object> stats() {
+    long now = clock.millis();
+    Map<String, Object> stats = new LinkedHashMap<>();
+    for (Window window : windows) {
+      long total = window.sum(window.total, now);
+      long fraud = window.sum(window.declined, now);
+      stats.put("totalTransactions" + window.label, total);
+      stats.put("fraudTransactions" + window.label, fraud);
+      stats.put("highRiskTransactions" + window.label, window.sum(window.highRisk, now));
+      stats.put("fraudRate" + window.label, total > 0 ? ((double) fraud / total) * 100 : 0);
+    }
+    return stats;
+  }
+
+  private void record(long timestamp, FraudStatus fraudStatus, RiskLevel riskLevel, long now) {
+    boolean declined = fraudStatus == FraudStatus.DECLINED;
+    boolean highRisk = riskLevel == RiskLevel.HIGH || riskLevel == RiskLevel.CRITICAL;
+    for (Window window : windows) {
+      window.add(window.total, timestamp, 1, now);
+      if (declined) {
+        window.add(window.declined, timestamp, 1, now);
+      }
+      if (highRisk) {
+        window.add(window.highRisk, timestamp, 1, now);
+      }
+    }
+  }
+
+  private long toEpochMillis(LocalDateTime dateTime) {
+    if (dateTime == null) {
+      return clock.millis();
+    }
+    return dateTime.atZone(ZoneId.systemDefault()).toInstant().toEpochMilli();
+  }
+
+  private static LocalDateTime toLocalDateTime(long epochMillis) {
+    return LocalDateTime.ofInstant(Instant.ofEpochMilli(epochMillis), ZoneId.systemDefault());
+  }
+
+  /** Rings of one window; slot value is {@code bucket << 32 | count} */
+  private static final class Window {
+    private final String label;
+    private final long bucketMillis;
+    private final AtomicLongArray total = new AtomicLongArray(SLOTS);
+    private final AtomicLongArray declined = new AtomicLongArray(SLOTS);
+    private final AtomicLongArray highRisk = new AtomicLongArray(SLOTS);
+
+    Window(String label, Duration length) {
+      if (length.compareTo(Duration.ofMinutes(1)) < 0) {
+        throw new IllegalArgumentException("Stats window must be at least one minute: " + label);
+      }
+      this.label = label;
+      this.bucketMillis = length.toMillis() / BUCKETS;
+    }
+
+    void add(AtomicLongArray ring, long timestamp, int delta, long now) {
+      long current = now / bucketMillis;
+      long bucket = Math.min(timestamp / bucketMillis, current);
+      if (bucket <= current - SLOTS) {
+        return; // older than the window
+      }
+      int slot = (int) (bucket % SLOTS);
+      while (true) {
+        long value = ring.get(slot);
+        long stamp = value >>> 32;
+        long updated;
+        if (stamp == bucket) {
+          long count = (value & COUNT_MASK) + delta;
+          if (count < 0) {
+            return;
+          }
+          updated = (bucket << 32) | count;
+        } else if (stamp < bucket) {
+          if (delta < 0) {
+            return; // the counted row has already left the window
+          }
+          updated = (bucket << 32) | delta;
+        } else {
+          return; // slot already holds a newer bucket
+        }
+        if (ring.compareAndSet(slot, value, updated)) {
+          return;
+        }
+      }
+    }
+
+    long sum(AtomicLongArray ring, long now) {
+      long current = now / bucketMillis;
+      long sum = 0;
+      for (int slot = 0; slot < SLOTS; slot++) {
+        long value = ring.get(slot);
+        long stamp = value >>> 32;
+        if (stamp > current - SLOTS && stamp <= current) {
+          sum += value & COUNT_MASK;
+        }
+      }
+      return sum;
+    }
+  }
+}
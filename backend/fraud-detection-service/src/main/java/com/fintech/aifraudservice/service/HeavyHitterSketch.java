@@ -0,0 +1,241 @@
+package com.fintech.aifraudservice.service;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Approximate occurrence counts of string keys: a Count-Min sketch answers point estimates and a
+ * Space-Saving summary keeps the {@code capacity} most frequent keys for top-K.
+ *
+ * <p>Estimates never undercount a key that was only ever added. Sketches with the same shape merge
+ * by adding counters, so sketches from different time buckets or different service instances
+ * combine into one; hashing depends only on {@link String#hashCode()}, which is the same on every
+ * JVM. Negative updates are subtracted from the Count-Min counters and from the key's summary entry
+ * if it is monitored. Not thread-safe.
+ */
+public final class HeavyHitterSketch {
+
+  private static final int FORMAT_VERSION = 1;
+  private static final int MAX_WIDTH = 1 << 16;
+  private static final int MAX_DEPTH = 16;
+
+  private final int width;
+  private final int depth;
+  private final int capacity;
+  private final long[] cells;
+  private final Map<String, Long> monitored;
+  private long total;
+
+  /** One key of a top-K answer with its estimated count */
+  public record HeavyHitter(String key, long count) {}
+
+  /**
+   * @param width Count-Min counters per row, a power of two
+   * @param depth Count-Min rows (independent hashes)
+   * @param capacity keys tracked by the Space-Saving summary
+   */
+  public HeavyHitterSketch(int width, int depth, int capacity) {
+    if (width <= 0 || width > MAX_WIDTH || Integer.bitCount(width) != 1) {
+      throw new IllegalArgumentException(
+          "Sketch width must be a power of two up to 65536: " + width);
+    }
+    if (depth <= 0 || depth > MAX_DEPTH) {
+      throw new IllegalArgumentException("Sketch depth must be between 1 and 16: " + depth);
+    }
+    if (capacity <= 0 || capacity > width) {
+      throw new IllegalArgumentException(
+          "Sketch capacity must be between 1 and the width: " + capacity);
+    }
+    this.width = width;
+    this.depth = depth;
+    this.capacity = capacity;
+    this.cells = new long[width * depth];
+    this.monitored = new HashMap<>(capacity * 2);
+  }
+
+  public void add(String key, long delta) {
+    if (key == null || delta == 0) {
+      return;
+    }
+    int hash = key.hashCode();
+    for (int row = 0; row < depth; row++) {
+      cells[row * width + index(hash, row)] += delta;
+    }
+    total += delta;
+    if (delta < 0) {
+      monitored.computeIfPresent(key, (k, count) -> count + delta > 0 ? count + delta : null);
+      return;
+    }
+    Long count = monitored.get(key);
+    if (count != null) {
+      monitored.put(key, count + delta);
+    } else if (monitored.size() < capacity) {
+      monitored.put(key, delta);
+    } else {
+      // Space-Saving: the newcomer replaces the smallest entry and inherits its count
+      Map.Entry<String, Long> smallest = null;
+      for (Map.Entry<String, Long> entry : monitored.entrySet()) {
+        if (smallest == null || entry.getValue() < smallest.getValue()) {
+          smallest = entry;
+        }
+      }
+      long floor = smallest.getValue();
+      monitored.remove(smallest.getKey());
+      monitored.put(key, floor + delta);
+    }
+  }
+
+  /** Estimated count of the key, an upper bound when only positive updates were made */
+  public long estimate(String key) {
+    if (key == null) {
+      return 0;
+    }
+    int hash = key.hashCode();
+    long estimate = Long.MAX_VALUE;
+    for (int row = 0; row < depth; row++) {
+      estimate = Math.min(estimate, cells[row * width + index(hash, row)]);
+    }
+    return Math.max(0, estimate);
+  }
+
+  /** The {@code k} most frequent monitored keys, highest count first */
+  public List<HeavyHitter> top(int k) {
+    List<HeavyHitter> hitters = new ArrayList<>(monitored.size());
+    for (Map.Entry<String, Long> entry : monitored.entrySet()) {
+      // Both structures overcount; the smaller of the two is the tighter bound
+      long count = Math.min(entry.getValue(), estimate(entry.getKey()));
+      if (count > 0) {
+        hitters.add(new HeavyHitter(entry.getKey(), count));
+      }
+    }
+    hitters.sort(
+        Comparator.comparingLong(HeavyHitter::count).reversed().thenComparing(HeavyHitter::key));
+    return hitters.size() > k ? new ArrayList<>(hitters.subList(0, Math.max(0, k))) : hitters;
+  }
+
+  /** Sum of all updates */
+  public long total() {
+    return total;
+  }
+
+  public boolean isEmpty() {
+    return total == 0 && monitored.isEmpty();
+  }
+
+  /**
+   * Adds another sketch of the same shape into this one. Monitored keys of both are re-ranked by
+   * the merged Count-Min estimate and the top {@code capacity} are kept.
+   *
+   * @throws IllegalArgumentException when the shapes differ
+   */
+  public void merge(HeavyHitterSketch other) {
+    if (other.width != width || other.depth != depth || other.capacity != capacity) {
+      throw new IllegalArgumentException(
+          "Cannot merge a " + other.shape() + " sketch into a " + shape() + " sketch");
+    }
+    for (int i = 0; i < cells.length; i++) {
+      cells[i] += other.cells[i];
+    }
+    total += other.total;
+    if (other.monitored.isEmpty()) {
+      return;
+    }
+    Set<String> candidates = new HashSet<>(monitored.keySet());
+    candidates.addAll(other.monitored.keySet());
+    monitored.clear();
+    candidates.stream()
+        .map(key -> new HeavyHitter(key, estimate(key)))
+        .filter(hitter -> hitter.count() > 0)
+        .sorted(Comparator.comparingLong(HeavyHitter::count).reversed())
+        .limit(capacity)
+        .forEach(hitter -> monitored.put(hitter.key(), hitter.count()));
+  }
+
+  public void clear() {
+    Arrays.fill(cells, 0);
+    monitored.clear();
+    total = 0;
+  }
+
+  /** An empty sketch with the same shape */
+  public HeavyHitterSketch emptyCopy() {
+    return new HeavyHitterSketch(width, depth, capacity);
+  }
+
+  /** Compact binary form exchanged between instances */
+  public byte[] toBytes() {
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream(cells.length * Long.BYTES + 64);
+    try (DataOutputStream out = new DataOutputStream(bytes)) {
+      out.writeInt(FORMAT_VERSION);
+      out.writeInt(width);
+      out.writeInt(depth);
+      out.writeInt(capacity);
+      out.writeLong(total);
+      for (long cell : cells) {
+        out.writeLong(cell);
+      }
+      out.writeInt(monitored.size());
+      for (Map.Entry<String, Long> entry : monitored.entrySet()) {
+        out.writeUTF(entry.getKey());
+        out.writeLong(entry.getValue());
+      }
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+    return bytes.toByteArray();
+  }
+
+  /**
+   * @throws IllegalArgumentException when the bytes are not a sketch written by {@link #toBytes()}
+   */
+  public static HeavyHitterSketch fromBytes(byte[] bytes) {
+    try (DataInputStream in = new DataInputStream(new ByteArrayInputStream(bytes))) {
+      int version = in.readInt();
+      if (version != FORMAT_VERSION) {
+        throw new IllegalArgumentException("Unsupported sketch format: " + version);
+      }
+      HeavyHitterSketch sketch = new HeavyHitterSketch(in.readInt(), in.readInt(), in.readInt());
+      sketch.total = in.readLong();
+      for (int i = 0; i < sketch.cells.length; i++) {
+        sketch.cells[i] = in.readLong();
+      }
+      int size = in.readInt();
+      if (size < 0 || size > sketch.capacity) {
+        throw new IllegalArgumentException("Corrupt sketch summary size: " + size);
+      }
+      for (int i = 0; i < size; i++) {
+        sketch.monitored.put(in.readUTF(), in.readLong());
+      }
+      return sketch;
+    } catch (IOException e) {
+      throw new IllegalArgumentException("Truncated or corrupt sketch", e);
+    }
+  }
+
+  private int index(int hash, int row) {
+    // 64-bit finalizer over the key hash and row number; identical on every instance
+    long h = hash * 0x9E3779B97F4A7C15L + (row + 1) * 0xC2B2AE3D27D4EB4FL;
+    h ^= h >>> 33;
+    h *= 0xFF51AFD7ED558CCDL;
+    h ^= h >>> 33;
+    h *= 0xC4CEB9FE1A85EC53L;
+    h ^= h >>> 33;
+    return (int) h & (width - 1);
+  }
+
+  private String shape() {
+    return width + "x" + depth + "/" + capacity;
+  }
+}
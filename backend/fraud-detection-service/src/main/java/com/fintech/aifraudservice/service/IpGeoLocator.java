@@ -0,0 +1,76 @@
+package com.fintech.aifraudservice.service;
+
+import com.fintech.aifraudservice.service.IpRangeTable.IpLocation;
+import jakarta.annotation.PostConstruct;
+import java.nio.file.Path;
+import java.util.Locale;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+/**
+ * Resolves IP addresses to a country and city from the range file at {@code
+ * fraud.detection.geo.location}, so geolocation scoring does not rely on the client's claimed
+ * location alone. A {@code .csv} file is compiled into a binary {@link IpRangeTable} next to it
+ * ({@code <file>.bin}) and that table is memory-mapped; any other file is mapped as an already
+ * compiled table.
+ *
+ * <p>The file is polled for changes and can also be reloaded on demand through a {@link
+ * ReloadableRangeFile}; a file that fails to load is logged and the previous table stays active.
+ * Without a file every address is unresolved and scores are unchanged.
+ */
+@Component
+@Slf4j
+public class IpGeoLocator {
+
+  @Value("${fraud.detection.geo.location:}")
+  private String location;
+
+  private final ReloadableRangeFile<IpRangeTable> ranges =
+      new ReloadableRangeFile<>("IP", IpRangeTable.EMPTY, IpGeoLocator::load);
+
+  @PostConstruct
+  void init() {
+    if (location.isBlank()) {
+      log.info("No IP range file configured, IP geolocation is off");
+    }
+    ranges.init(location);
+  }
+
+  /** Location of the address, or {@code null} when it is unknown or not an address */
+  public IpLocation locate(String ipAddress) {
+    return ranges.current().find(ipAddress);
+  }
+
+  public IpRangeTable current() {
+    return ranges.current();
+  }
+
+  /**
+   * Reloads the range file and publishes the new table.
+   *
+   * @return the newly published table
+   * @throws IllegalArgumentException when the file does not parse
+   * @throws IllegalStateException when no file is configured or it cannot be read; either way the
+   *     previous table stays active
+   */
+  public IpRangeTable reload() {
+    return ranges.reload();
+  }
+
+  /** Reloads when the range file changed since it was last read */
+  @Scheduled(fixedDelayString = "${fraud.detection.geo.refresh-interval-ms:60000}")
+  public void reloadIfChanged() {
+    ranges.reloadIfChanged();
+  }
+
+  private static IpRangeTable load(Path path) {
+    if (!path.getFileName().toString().toLowerCase(Locale.ROOT).endsWith(".csv")) {
+      return IpRangeTable.open(path);
+    }
+    Path compiled = path.resolveSibling(path.getFileName() + ".bin");
+    IpRangeTable.compile(path, compiled);
+    return IpRangeTable.open(compiled);
+  }
+}
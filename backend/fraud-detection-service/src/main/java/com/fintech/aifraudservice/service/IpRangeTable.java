@@ -0,0 +1,497 @@
+package com.fintech.aifraudservice.service;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.BufferedReader;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * IPv4 and IPv6 address ranges mapped to a country and city, held in a memory-mapped file of
+ * fixed-width records sorted by range start. A lookup parses the address in place and binary
+ * searches the mapped records, so it allocates nothing and returns one of the shared {@link
+ * IpLocation} instances built when the table was opened. Instances are immutable and thread-safe.
+ *
+ * <p>The binary file is written by {@link #compile} from CSV lines of {@code start,end,country} or
+ * {@code start,end,country,city}, where start and end are addresses of the same family. Fields may
+ * be quoted, {@code #} starts a comment line, and ranges must not overlap. Layout, big-endian:
+ *
+ * <pre>
+ * header     magic "IPGR", version, IPv4 count, IPv6 count, location count, 12 bytes reserved
+ * IPv4       int start, int end, int location                         (12 bytes each)
+ * IPv6       long start high/low, long end high/low, int location     (36 bytes each)
+ * locations  modified UTF-8 country and city, in location order
+ * </pre>
+ */
+public final class IpRangeTable implements RangeTable {
+
+  private static final int MAGIC = 0x49504752;
+  private static final int FORMAT_VERSION = 1;
+  private static final int HEADER_BYTES = 32;
+  private static final int V4_RECORD = 12;
+  private static final int V6_RECORD = 36;
+
+  // Per-thread parse buffer, so IPv6 lookups allocate nothing
+  private static final ThreadLocal<long[]> IPV6_SCRATCH =
+      ThreadLocal.withInitial(() -> new long[2]);
+
+  /** Unresolved addresses, an empty table or input that is not an address */
+  public static final IpRangeTable EMPTY = new IpRangeTable(null, 0, 0, new IpLocation[0], "empty");
+
+  private final MappedByteBuffer buffer;
+  private final int v4Count;
+  private final int v6Count;
+  private final int v6Offset;
+  private final IpLocation[] locations;
+  private final String source;
+
+  /** Location of a range; city is null when the source has none */
+  public record IpLocation(String country, String city) {}
+
+  private IpRangeTable(
+      MappedByteBuffer buffer, int v4Count, int v6Count, IpLocation[] locations, String source) {
+    this.buffer = buffer;
+    this.v4Count = v4Count;
+    this.v6Count = v6Count;
+    this.v6Offset = HEADER_BYTES + v4Count * V4_RECORD;
+    this.locations = locations;
+    this.source = source;
+  }
+
+  /**
+   * Maps a file written by {@link #compile}.
+   *
+   * @throws IllegalArgumentException when the file is not a range table or is truncated
+   * @throws UncheckedIOException when the file cannot be read
+   */
+  public static IpRangeTable open(Path file) {
+    try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+      long size = channel.size();
+      if (size < HEADER_BYTES || size > Integer.MAX_VALUE) {
+        throw new IllegalArgumentException("Not an IP range table: " + file);
+      }
+      MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+      if (buffer.getInt(0) != MAGIC || buffer.getInt(4) != FORMAT_VERSION) {
+        throw new IllegalArgumentException("Not an IP range table of version 1: " + file);
+      }
+      int v4Count = buffer.getInt(8);
+      int v6Count = buffer.getInt(12);
+      int locationCount = buffer.getInt(16);
+      long locationsOffset = HEADER_BYTES + (long) v4Count * V4_RECORD + (long) v6Count * V6_RECORD;
+      if (v4Count < 0 || v6Count < 0 || locationCount < 0 || locationsOffset > size) {
+        throw new IllegalArgumentException("Corrupt IP range table header: " + file);
+      }
+
+      // Locations are read once onto the heap; lookups hand out these instances
+      IpLocation[] locations = new IpLocation[locationCount];
+      channel.position(locationsOffset);
+      DataInputStream in =
+          new DataInputStream(new BufferedInputStream(Channels.newInputStream(channel)));
+      for (int i = 0; i < locationCount; i++) {
+        String country = in.readUTF();
+        String city = in.readUTF();
+        locations[i] = new IpLocation(country, city.isEmpty() ? null : city);
+      }
+      IpRangeTable table = new IpRangeTable(buffer, v4Count, v6Count, locations, file.toString());
+      table.validateLocations();
+      return table;
+    } catch (EOFException e) {
+      throw new IllegalArgumentException("Truncated IP range table: " + file, e);
+    } catch (IOException e) {
+      throw new UncheckedIOException("Cannot map IP range table " + file, e);
+    }
+  }
+
+  /**
+   * Compiles a CSV range file into the binary form read by {@link #open}. The output is written to
+   * a temporary file and moved into place, so a table mapped from the previous file stays valid.
+   *
+   * @return the number of ranges written
+   * @throws IllegalArgumentException when a line does not parse or ranges overlap
+   * @throws UncheckedIOException when a file cannot be read or written
+   */
+  public static int compile(Path csv, Path out) {
+    List<long[]> v4 = new ArrayList<>();
+    List<long[]> v6 = new ArrayList<>();
+    Map<IpLocation, Integer> locationIndex = new HashMap<>();
+    List<IpLocation> locations = new ArrayList<>();
+    try (BufferedReader reader = Files.newBufferedReader(csv, StandardCharsets.UTF_8)) {
+      String line;
+      int number = 0;
+      while ((line = reader.readLine()) != null) {
+        number++;
+        String[] fields = RangeCsv.fields(line);
+        if (fields == null) {
+          continue;
+        }
+        if (fields.length < 3) {
+          throw new IllegalArgumentException(csv + ":" + number + ": expected start,end,country");
+        }
+        String start = RangeCsv.unquote(fields[0]);
+        String end = RangeCsv.unquote(fields[1]);
+        String country = RangeCsv.unquote(fields[2]).toUpperCase(Locale.ROOT);
+        String city = fields.length > 3 ? RangeCsv.unquote(fields[3]) : "";
+        if (country.isEmpty()) {
+          throw new IllegalArgumentException(csv + ":" + number + ": missing country");
+        }
+        IpLocation location = new IpLocation(country, city.isEmpty() ? null : city);
+        int index =
+            locationIndex.computeIfAbsent(
+                location,
+                l -> {
+                  locations.add(l);
+                  return locations.size() - 1;
+                });
+
+        long startV4 = parseIpv4(start, 0, start.length());
+        long endV4 = parseIpv4(end, 0, end.length());
+        if (startV4 >= 0 && endV4 >= 0) {
+          if (endV4 < startV4) {
+            throw new IllegalArgumentException(csv + ":" + number + ": range ends before start");
+          }
+          v4.add(new long[] {startV4, endV4, index});
+          continue;
+        }
+        long[] startV6 = new long[2];
+        long[] endV6 = new long[2];
+        if (!parseIpv6(start, startV6) || !parseIpv6(end, endV6)) {
+          throw new IllegalArgumentException(
+              csv + ":" + number + ": not an address range of one family: " + start + "," + end);
+        }
+        if (compare(endV6[0], endV6[1], startV6[0], startV6[1]) < 0) {
+          throw new IllegalArgumentException(csv + ":" + number + ": range ends before start");
+        }
+        v6.add(new long[] {startV6[0], startV6[1], endV6[0], endV6[1], index});
+      }
+    } catch (IOException e) {
+      throw new UncheckedIOException("Cannot read IP range file " + csv, e);
+    }
+
+    v4.sort((a, b) -> Long.compare(a[0], b[0]));
+    for (int i = 1; i < v4.size(); i++) {
+      if (v4.get(i)[0] <= v4.get(i - 1)[1]) {
+        throw new IllegalArgumentException(
+            "Overlapping IPv4 ranges in " + csv + " at " + formatIpv4(v4.get(i)[0]));
+      }
+    }
+    v6.sort((a, b) -> compare(a[0], a[1], b[0], b[1]));
+    for (int i = 1; i < v6.size(); i++) {
+      long[] previous = v6.get(i - 1);
+      if (compare(v6.get(i)[0], v6.get(i)[1], previous[2], previous[3]) <= 0) {
+        throw new IllegalArgumentException("Overlapping IPv6 ranges in " + csv);
+      }
+    }
+
+    try {
+      Path target = out.toAbsolutePath();
+      Files.createDirectories(target.getParent());
+      Path temp = Files.createTempFile(target.getParent(), target.getFileName().toString(), ".tmp");
+      try (DataOutputStream data =
+          new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(temp)))) {
+        data.writeInt(MAGIC);
+        data.writeInt(FORMAT_VERSION);
+        data.writeInt(v4.size());
+        data.writeInt(v6.size());
+        data.writeInt(locations.size());
+        data.write(new byte[HEADER_BYTES - 20]);
+        for (long[] range : v4) {
+          data.writeInt((int) range[0]);
+          data.writeInt((int) range[1]);
+          data.writeInt((int) range[2]);
+        }
+        for (long[] range : v6) {
+          data.writeLong(range[0]);
+          data.writeLong(range[1]);
+          data.writeLong(range[2]);
+          data.writeLong(range[3]);
+          data.writeInt((int) range[4]);
+        }
+        for (IpLocation location : locations) {
+          data.writeUTF(location.country());
+          data.writeUTF(location.city() != null ? location.city() : "");
+        }
+      } catch (IOException e) {
+        Files.deleteIfExists(temp);
+        throw e;
+      }
+      Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    } catch (IOException e) {
+      throw new UncheckedIOException("Cannot write IP range table " + out, e);
+    }
+    return v4.size() + v6.size();
+  }
+
+  /**
+   * Location of an IPv4 or IPv6 address literal; IPv4-mapped IPv6 addresses resolve as IPv4.
+   *
+   * @return null when the address is not covered or not a valid literal
+   */
+  public IpLocation find(String address) {
+    if (address == null || address.isEmpty() || locations.length == 0) {
+      return null;
+    }
+    if (address.indexOf(':') < 0) {
+      long ipv4 = parseIpv4(address, 0, address.length());
+      return ipv4 >= 0 ? findV4((int) ipv4) : null;
+    }
+    return findV6(address);
+  }
+
+  @Override
+  public int size() {
+    return v4Count + v6Count;
+  }
+
+  @Override
+  public String getSource() {
+    return source;
+  }
+
+  private IpLocation findV4(int address) {
+    int low = 0;
+    int high = v4Count - 1;
+    int match = -1;
+    // Last range starting at or below the address
+    while (low <= high) {
+      int mid = (low + high) >>> 1;
+      if (Integer.compareUnsigned(buffer.getInt(HEADER_BYTES + mid * V4_RECORD), address) <= 0) {
+        match = mid;
+        low = mid + 1;
+      } else {
+        high = mid - 1;
+      }
+    }
+    if (match < 0) {
+      return null;
+    }
+    int offset = HEADER_BYTES + match * V4_RECORD;
+    if (Integer.compareUnsigned(address, buffer.getInt(offset + 4)) > 0) {
+      return null;
+    }
+    return locations[buffer.getInt(offset + 8)];
+  }
+
+  private IpLocation findV6(String address) {
+    long[] parsed = IPV6_SCRATCH.get();
+    if (!parseIpv6(address, parsed)) {
+      return null;
+    }
+    long high = parsed[0];
+    long low = parsed[1];
+    if (high == 0 && (low >>> 32) == 0xFFFFL) {
+      return findV4((int) low);
+    }
+    int lowIndex = 0;
+    int highIndex = v6Count - 1;
+    int match = -1;
+    while (lowIndex <= highIndex) {
+      int mid = (lowIndex + highIndex) >>> 1;
+      int offset = v6Offset + mid * V6_RECORD;
+      if (compare(buffer.getLong(offset), buffer.getLong(offset + 8), high, low) <= 0) {
+        match = mid;
+        lowIndex = mid + 1;
+      } else {
+        highIndex = mid - 1;
+      }
+    }
+    if (match < 0) {
+      return null;
+    }
+    int offset = v6Offset + match * V6_RECORD;
+    if (compare(high, low, buffer.getLong(offset + 16), buffer.getLong(offset + 24)) > 0) {
+      return null;
+    }
+    return locations[buffer.getInt(offset + 32)];
+  }
+
+  private void validateLocations() {
+    for (int i = 0; i < v4Count; i++) {
+      checkLocation(buffer.getInt(HEADER_BYTES + i * V4_RECORD + 8));
+    }
+    for (int i = 0; i < v6Count; i++) {
+      checkLocation(buffer.getInt(v6Offset + i * V6_RECORD + 32));
+    }
+  }
+
+  private void checkLocation(int index) {
+    if (index < 0 || index >= locations.length) {
+      throw new IllegalArgumentException("Corrupt IP range table, location " + index);
+    }
+  }
+
+  /** The address as an unsigned 32-bit value, or -1 when it is not a dotted quad */
+  static long parseIpv4(CharSequence s, int from, int to) {
+    long address = 0;
+    int octets = 0;
+    int position = from;
+    while (position < to) {
+      int octet = 0;
+      int digits = 0;
+      while (position < to && s.charAt(position) != '.') {
+        char c = s.charAt(position);
+        if (c < '0' || c > '9' || digits == 3) {
+          return -1;
+        }
+        octet = octet * 10 + (c - '0');
+        digits++;
+        position++;
+      }
+      if (digits == 0 || octet > 255) {
+        return -1;
+      }
+      address = (address << 8) | octet;
+      octets++;
+      if (position < to) {
+        position++; // the dot
+        if (position == to) {
+          return -1;
+        }
+      }
+    }
+    return octets == 4 ? address : -1;
+  }
+
+  /**
+   * Writes the high and low halves of an IPv6 literal, including {@code ::} and a dotted IPv4 tail,
+   * into {@code out}.
+   *
+   * @return false when it is not one
+   */
+  static boolean parseIpv6(CharSequence s, long[] out) {
+    int length = s.length();
+    int gap = indexOfGap(s, 0);
+    if (gap >= 0 && indexOfGap(s, gap + 1) >= 0) {
+      return false;
+    }
+    // Groups before and after "::" are accumulated separately, right-aligned
+    long headHigh = 0;
+    long headLow = 0;
+    int headGroups = 0;
+    long tailHigh = 0;
+    long tailLow = 0;
+    int tailGroups = 0;
+    boolean inTail = gap == 0;
+    int position = gap == 0 ? 2 : 0;
+    while (position < length) {
+      int end = position;
+      boolean dotted = false;
+      while (end < length && s.charAt(end) != ':') {
+        dotted |= s.charAt(end) == '.';
+        end++;
+      }
+      if (end == position || (dotted && end != length)) {
+        return false;
+      }
+      int bits;
+      long value;
+      if (dotted) {
+        value = parseIpv4(s, position, end);
+        bits = 32;
+      } else {
+        value = end - position <= 4 ? parseHex(s, position, end) : -1;
+        bits = 16;
+      }
+      if (value < 0) {
+        return false;
+      }
+      if (inTail) {
+        tailHigh = (tailHigh << bits) | (tailLow >>> (64 - bits));
+        tailLow = (tailLow << bits) | value;
+        tailGroups += bits / 16;
+      } else {
+        headHigh = (headHigh << bits) | (headLow >>> (64 - bits));
+        headLow = (headLow << bits) | value;
+        headGroups += bits / 16;
+      }
+      if (headGroups + tailGroups > 8) {
+        return false;
+      }
+      if (end == gap) {
+        inTail = true;
+        position = end + 2;
+      } else if (end < length) {
+        position = end + 1;
+        if (position == length) {
+          return false; // trailing single colon
+        }
+      } else {
+        position = end;
+      }
+    }
+    int missing = 8 - headGroups - tailGroups;
+    if (gap < 0 ? missing != 0 : missing < 1) {
+      return false;
+    }
+    // The groups before "::" move up past the zero groups it stands for
+    int shift = (missing + tailGroups) * 16;
+    out[0] = shiftLeftHigh(headHigh, headLow, shift) | tailHigh;
+    out[1] = shiftLeftLow(headLow, shift) | tailLow;
+    return true;
+  }
+
+  private static int indexOfGap(CharSequence s, int from) {
+    for (int i = from; i < s.length() - 1; i++) {
+      if (s.charAt(i) == ':' && s.charAt(i + 1) == ':') {
+        return i;
+      }
+    }
+    return -1;
+  }
+
+  private static long parseHex(CharSequence s, int from, int to) {
+    long value = 0;
+    for (int i = from; i < to; i++) {
+      int digit = Character.digit(s.charAt(i), 16);
+      if (digit < 0) {
+        return -1;
+      }
+      value = (value << 4) | digit;
+    }
+    return value;
+  }
+
+  private static long shiftLeftHigh(long high, long low, int bits) {
+    if (bits == 0) {
+      return high;
+    }
+    if (bits >= 64) {
+      return bits >= 128 ? 0 : low << (bits - 64);
+    }
+    return (high << bits) | (low >>> (64 - bits));
+  }
+
+  private static long shiftLeftLow(long low, int bits) {
+    return bits >= 64 ? 0 : low << bits;
+  }
+
+  private static int compare(long highA, long lowA, long highB, long lowB) {
+    int high = Long.compareUnsigned(highA, highB);
+    return high != 0 ? high : Long.compareUnsigned(lowA, lowB);
+  }
+
+  private static String formatIpv4(long address) {
+    return ((address >>> 24) & 0xFF)
+        + "."
+        + ((address >>> 16) & 0xFF)
+        + "."
+        + ((address >>> 8) & 0xFF)
+        + "."
+        + (address & 0xFF);
+  }
+}
@@ -0,0 +1,335 @@
+package com.fintech.aifraudservice.service;
+
+import java.util.Arrays;
+
+/**
+ * Bipartite graph from identifiers (device fingerprints, IP addresses, cards) to the users seen
+ * with them, each edge stamped with the minute it was last seen.
+ *
+ * <p>Everything is held in primitive arrays: an identifier is a 64-bit hash in an open-addressing
+ * table and its users form a linked list through parallel edge arrays, about 16 bytes per edge plus
+ * 16 to 32 bytes per identifier. An identifier keeps at most {@code maxUsersPerIdentifier} users,
+ * replacing the least recently seen one when full, so a fan-out count or a neighbourhood read walks
+ * a bounded list. The graph holds at most {@code maxEdges} edges; once full, new edges are dropped
+ * until {@link #expire} frees some. Arrays grow on demand, so an idle graph stays small.
+ *
+ * <p>Two identifiers whose hashes collide share their users; with 64-bit hashes that takes billions
+ * of identifiers to become likely. Thread-safe: the graph is split into independently locked
+ * segments by identifier hash.
+ */
+public final class LinkageGraph {
+
+  private static final int SEGMENTS = 16;
+  private static final int INITIAL_NODES = 1 << 10;
+  private static final int INITIAL_EDGES = 1 << 10;
+  private static final int NONE = -1;
+
+  /** Kinds of identifier shared between accounts */
+  public enum Identifier {
+    DEVICE,
+    IP,
+    CARD
+  }
+
+  private final int maxUsersPerIdentifier;
+  private final Segment[] segments = new Segment[SEGMENTS];
+
+  public LinkageGraph(long maxEdges, int maxUsersPerIdentifier) {
+    if (maxEdges < SEGMENTS || maxEdges > (long) SEGMENTS * (1 << 28)) {
+      throw new IllegalArgumentException(
+          "Linkage max-edges must be between 16 and 2^32: " + maxEdges);
+    }
+    if (maxUsersPerIdentifier < 1 || maxUsersPerIdentifier > 1024) {
+      throw new IllegalArgumentException(
+          "Linkage max-users-per-identifier must be between 1 and 1024: " + maxUsersPerIdentifier);
+    }
+    this.maxUsersPerIdentifier = maxUsersPerIdentifier;
+    for (int i = 0; i < SEGMENTS; i++) {
+      segments[i] = new Segment((int) (maxEdges / SEGMENTS));
+    }
+  }
+
+  public int getMaxUsersPerIdentifier() {
+    return maxUsersPerIdentifier;
+  }
+
+  /**
+   * Records that the user was seen with the identifier at {@code minute}.
+   *
+   * @return false when the identifier is blank or the graph is full
+   */
+  public boolean link(Identifier type, String value, long userId, int minute) {
+    long key = key(type, value);
+    return key != 0 && segment(key).link(key, userId, minute, maxUsersPerIdentifier);
+  }
+
+  /** Number of users seen with the identifier at or after {@code sinceMinute} */
+  public int fanOut(Identifier type, String value, int sinceMinute) {
+    long key = key(type, value);
+    return key != 0 ? segment(key).neighbours(key, sinceMinute, null, 0) : 0;
+  }
+
+  /**
+   * Copies the users seen with the identifier at or after {@code sinceMinute} into {@code into}
+   * from {@code offset}, in no particular order, as many as fit.
+   *
+   * @return number of users copied
+   */
+  public int neighbours(Identifier type, String value, int sinceMinute, long[] into, int offset) {
+    long key = key(type, value);
+    return key != 0 ? segment(key).neighbours(key, sinceMinute, into, offset) : 0;
+  }
+
+  /**
+   * Drops every edge last seen before {@code beforeMinute}, and identifiers left without users.
+   *
+   * @return number of edges dropped
+   */
+  public long expire(int beforeMinute) {
+    long dropped = 0;
+    for (Segment segment : segments) {
+      dropped += segment.expire(beforeMinute);
+    }
+    return dropped;
+  }
+
+  public long edges() {
+    long edges = 0;
+    for (Segment segment : segments) {
+      edges += segment.edges();
+    }
+    return edges;
+  }
+
+  public long identifiers() {
+    long identifiers = 0;
+    for (Segment segment : segments) {
+      identifiers += segment.nodes();
+    }
+    return identifiers;
+  }
+
+  public long maxEdges() {
+    return (long) segments[0].maxEdges * SEGMENTS;
+  }
+
+  private Segment segment(long key) {
+    return segments[(int) (key >>> 60) & (SEGMENTS - 1)];
+  }
+
+  /** FNV-1a over the type and the characters, then a 64-bit finalizer; 0 for a blank value */
+  static long key(Identifier type, String value) {
+    if (value == null || value.isBlank()) {
+      return 0;
+    }
+    long hash = 0xcbf29ce484222325L ^ type.ordinal();
+    for (int i = 0; i < value.length(); i++) {
+      hash = (hash ^ value.charAt(i)) * 0x100000001b3L;
+    }
+    hash ^= hash >>> 33;
+    hash *= 0xff51afd7ed558ccdL;
+    hash ^= hash >>> 33;
+    hash *= 0xc4ceb9fe1a85ec53L;
+    hash ^= hash >>> 33;
+    return hash != 0 ? hash : 1;
+  }
+
+  private static final class Segment {
+    private final int maxEdges;
+
+    // Open-addressing identifier table with linear probing; key 0 marks a free slot
+    private long[] nodeKeys = new long[INITIAL_NODES];
+    private int[] nodeHeads = new int[INITIAL_NODES];
+    private int[] nodeSizes = new int[INITIAL_NODES];
+    private int nodes;
+
+    // Edges of one identifier are linked through edgeNext; free edges form a list from freeEdge
+    private long[] edgeUsers;
+    private int[] edgeSeen;
+    private int[] edgeNext;
+    private int allocatedEdges;
+    private int freeEdge = NONE;
+    private int edges;
+
+    Segment(int maxEdges) {
+      this.maxEdges = maxEdges;
+      int initial = Math.min(INITIAL_EDGES, maxEdges);
+      edgeUsers = new long[initial];
+      edgeSeen = new int[initial];
+      edgeNext = new int[initial];
+    }
+
+    synchronized boolean link(long key, long userId, int minute, int maxUsers) {
+      int slot = find(key);
+      if (nodeKeys[slot] == key) {
+        int oldest = NONE;
+        for (int edge = nodeHeads[slot]; edge != NONE; edge = edgeNext[edge]) {
+          if (edgeUsers[edge] == userId) {
+            edgeSeen[edge] = Math.max(edgeSeen[edge], minute);
+            return true;
+          }
+          if (oldest == NONE || edgeSeen[edge] < edgeSeen[oldest]) {
+            oldest = edge;
+          }
+        }
+        if (nodeSizes[slot] >= maxUsers) {
+          // Full: the least recently seen user makes room
+          edgeUsers[oldest] = userId;
+          edgeSeen[oldest] = minute;
+          return true;
+        }
+        int edge = allocateEdge();
+        if (edge == NONE) {
+          return false;
+        }
+        edgeUsers[edge] = userId;
+        edgeSeen[edge] = minute;
+        edgeNext[edge] = nodeHeads[slot];
+        nodeHeads[slot] = edge;
+        nodeSizes[slot]++;
+        return true;
+      }
+
+      int edge = allocateEdge();
+      if (edge == NONE) {
+        return false;
+      }
+      edgeUsers[edge] = userId;
+      edgeSeen[edge] = minute;
+      edgeNext[edge] = NONE;
+      if ((nodes + 1) * 4 > nodeKeys.length * 3) {
+        rehash(nodeKeys.length * 2);
+        slot = find(key);
+      }
+      nodeKeys[slot] = key;
+      nodeHeads[slot] = edge;
+      nodeSizes[slot] = 1;
+      nodes++;
+      return true;
+    }
+
+    synchronized int neighbours(long key, int sinceMinute, long[] into, int offset) {
+      int slot = find(key);
+      if (nodeKeys[slot] != key) {
+        return 0;
+      }
+      int count = 0;
+      for (int edge = nodeHeads[slot]; edge != NONE; edge = edgeNext[edge]) {
+        if (edgeSeen[edge] < sinceMinute) {
+          continue;
+        }
+        if (into != null) {
+          if (offset + count >= into.length) {
+            break;
+          }
+          into[offset + count] = edgeUsers[edge];
+        }
+        count++;
+      }
+      return count;
+    }
+
+    synchronized long expire(int beforeMinute) {
+      long dropped = 0;
+      int emptied = 0;
+      for (int slot = 0; slot < nodeKeys.length; slot++) {
+        if (nodeKeys[slot] == 0) {
+          continue;
+        }
+        int previous = NONE;
+        int edge = nodeHeads[slot];
+        while (edge != NONE) {
+          int next = edgeNext[edge];
+          if (edgeSeen[edge] < beforeMinute) {
+            if (previous == NONE) {
+              nodeHeads[slot] = next;
+            } else {
+              edgeNext[previous] = next;
+            }
+            freeEdge(edge);
+            nodeSizes[slot]--;
+            dropped++;
+          } else {
+            previous = edge;
+          }
+          edge = next;
+        }
+        if (nodeSizes[slot] == 0) {
+          emptied++;
+        }
+      }
+      if (emptied > 0) {
+        // Rebuilding is simpler than deleting under linear probing, and lets the table shrink
+        nodes -= emptied;
+        int capacity = INITIAL_NODES;
+        while (nodes * 4 > capacity * 3 / 2) {
+          capacity *= 2;
+        }
+        rehash(capacity);
+      }
+      return dropped;
+    }
+
+    synchronized int edges() {
+      return edges;
+    }
+
+    synchronized int nodes() {
+      return nodes;
+    }
+
+    /** Slot holding the key, or the free slot where it would go */
+    private int find(long key) {
+      int mask = nodeKeys.length - 1;
+      int slot = (int) key & mask;
+      while (nodeKeys[slot] != 0 && nodeKeys[slot] != key) {
+        slot = (slot + 1) & mask;
+      }
+      return slot;
+    }
+
+    /** Moves every identifier with users into tables of the given capacity */
+    private void rehash(int capacity) {
+      long[] keys = nodeKeys;
+      int[] heads = nodeHeads;
+      int[] sizes = nodeSizes;
+      nodeKeys = new long[capacity];
+      nodeHeads = new int[capacity];
+      nodeSizes = new int[capacity];
+      for (int i = 0; i < keys.length; i++) {
+        if (keys[i] != 0 && sizes[i] > 0) {
+          int slot = find(keys[i]);
+          nodeKeys[slot] = keys[i];
+          nodeHeads[slot] = heads[i];
+          nodeSizes[slot] = sizes[i];
+        }
+      }
+    }
+
+    private int allocateEdge() {
+      int edge;
+      if (freeEdge != NONE) {
+        edge = freeEdge;
+        freeEdge = edgeNext[edge];
+      } else if (allocatedEdges < maxEdges) {
+        if (allocatedEdges == edgeUsers.length) {
+          int capacity = (int) Math.min((long) edgeUsers.length * 2, maxEdges);
+          edgeUsers = Arrays.copyOf(edgeUsers, capacity);
+          edgeSeen = Arrays.copyOf(edgeSeen, capacity);
+          edgeNext = Arrays.copyOf(edgeNext, capacity);
+        }
+        edge = allocatedEdges++;
+      } else {
+        return NONE;
+      }
+      edges++;
+      return edge;
+    }
+
+    private void freeEdge(int edge) {
+      edgeNext[edge] = freeEdge;
+      freeEdge = edge;
+      edges--;
+    }
+  }
+}
@@ -0,0 +1,205 @@
+package com.fintech.aifraudservice.service;
+
+import com.fintech.aifraudservice.model.TransactionAnalysis;
+import com.fintech.aifraudservice.repository.AnalysisActivityReader;
+import com.fintech.aifraudservice.service.LinkageGraph.Identifier;
+import jakarta.annotation.PostConstruct;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.convert.DurationStyle;
+import org.springframework.context.annotation.DependsOn;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+/**
+ * Which accounts share a device fingerprint, IP address or card, for spotting one device or card
+ * behind many accounts. Every persisted analysis links its user to its identifiers in a {@link
+ * LinkageGraph}; edges not seen again within {@code fraud.detection.linkage.window} are dropped by
+ * a periodic sweep, which also drops the oldest edges when the graph is close to {@code max-edges}.
+ *
+ * <p>Device and IP edges are rebuilt from {@code transaction_analyses} at startup. Card numbers are
+ * not stored with analyses, so card edges (BIN and last four digits) only cover analyses since the
+ * last restart.
+ */
+@Component
+@DependsOn("entityManagerFactory")
+@Slf4j
+public class LinkageGraphIndex implements TransactionAnalysisListener {
+
+  // Share of max-edges kept when the sweep has to drop edges still inside the window
+  private static final double TRIM_RATIO = 0.9;
+
+  // Steps by which the sweep moves its cutoff forward when expiry alone does not free enough
+  private static final int TRIM_STEPS = 8;
+
+  private final AnalysisActivityReader analysisActivityReader;
+  private final LinkageGraph graph;
+  private final int windowMinutes;
+  private final Clock clock;
+  private final ThreadLocal<long[]> scratch;
+
+  @Autowired
+  public LinkageGraphIndex(
+      AnalysisActivityReader analysisActivityReader,
+      @Value("${fraud.detection.linkage.window:30d}") String window,
+      @Value("${fraud.detection.linkage.max-edges:20000000}") long maxEdges,
+      @Value("${fraud.detection.linkage.max-users-per-identifier:64}") int maxUsersPerIdentifier) {
+    this(
+        analysisActivityReader, window, maxEdges, maxUsersPerIdentifier, Clock.systemDefaultZone());
+  }
+
+  LinkageGraphIndex(
+      AnalysisActivityReader analysisActivityReader,
+      String window,
+      long maxEdges,
+      int maxUsersPerIdentifier,
+      Clock clock) {
+    Duration length = DurationStyle.detectAndParse(window);
+    if (length.compareTo(Duration.ofMinutes(1)) < 0) {
+      throw new IllegalArgumentException("Linkage window must be at least one minute: " + window);
+    }
+    this.analysisActivityReader = analysisActivityReader;
+    this.graph = new LinkageGraph(maxEdges, maxUsersPerIdentifier);
+    this.windowMinutes = (int) Math.min(length.toMinutes(), Integer.MAX_VALUE);
+    this.clock = clock;
+    // Room for the users of all three identifiers of a transaction
+    this.scratch = ThreadLocal.withInitial(() -> new long[3 * maxUsersPerIdentifier]);
+  }
+
+  @PostConstruct
+  void seed() {
+    long rows =
+        analysisActivityReader.forEachLinkageSince(
+            toLocalDateTime(clock.millis() - Duration.ofMinutes(windowMinutes).toMillis()),
+            analysis -> link(null, analysis));
+    log.info(
+        "Seeded account linkage graph with {} edges over {} identifiers from {} analyses",
+        graph.edges(),
+        graph.identifiers(),
+        rows);
+  }
+
+  /** Other accounts seen within the window with the request's device, IP address and card */
+  public LinkageSnapshot snapshot(TransactionAnalysisRequest request) {
+    long userId = request.getUserId() != null ? request.getUserId() : Long.MIN_VALUE;
+    String card = cardOf(request);
+    if (request.getDeviceFingerprint() == null && request.getIpAddress() == null && card == null) {
+      return LinkageSnapshot.EMPTY;
+    }
+    int since = minutes(clock.millis()) - windowMinutes;
+    long[] users = scratch.get();
+    int devices =
+        graph.neighbours(Identifier.DEVICE, request.getDeviceFingerprint(), since, users, 0);
+    int ips = graph.neighbours(Identifier.IP, request.getIpAddress(), since, users, devices);
+    int cards = graph.neighbours(Identifier.CARD, card, since, users, devices + ips);
+    if (devices + ips + cards == 0) {
+      return LinkageSnapshot.EMPTY;
+    }
+    int deviceAccounts = others(users, 0, devices, userId);
+    int ipAccounts = others(users, devices, devices + ips, userId);
+    int cardAccounts = others(users, devices + ips, devices + ips + cards, userId);
+
+    // Distinct accounts across the three identifiers
+    int total = devices + ips + cards;
+    Arrays.sort(users, 0, total);
+    int linkedAccounts = 0;
+    for (int i = 0; i < total; i++) {
+      if (users[i] != userId && (i == 0 || users[i] != users[i - 1])) {
+        linkedAccounts++;
+      }
+    }
+    return new LinkageSnapshot(deviceAccounts, ipAccounts, cardAccounts, linkedAccounts);
+  }
+
+  /** Accounts seen with one identifier within the window, in no particular order */
+  public List<Long> accounts(Identifier type, String value) {
+    long[] users = new long[graph.getMaxUsersPerIdentifier()];
+    int count = graph.neighbours(type, value, minutes(clock.millis()) - windowMinutes, users, 0);
+    List<Long> accounts = new ArrayList<>(count);
+    for (int i = 0; i < count; i++) {
+      accounts.add(users[i]);
+    }
+    return accounts;
+  }
+
+  @Override
+  public void onAnalysisSaved(TransactionAnalysisRequest request, TransactionAnalysis analysis) {
+    link(request, analysis);
+  }
+
+  /**
+   * Drops edges not seen within the window and, when the graph is still close to full, the least
+   * recently seen ones, so that new edges can be recorded again.
+   */
+  @Scheduled(fixedDelayString = "${fraud.detection.linkage.sweep-interval-ms:300000}")
+  public void expireEdges() {
+    int now = minutes(clock.millis());
+    long dropped = graph.expire(now - windowMinutes);
+    long target = (long) (graph.maxEdges() * TRIM_RATIO);
+    for (int step = 1; step < TRIM_STEPS && graph.edges() > target; step++) {
+      dropped += graph.expire(now - windowMinutes + windowMinutes / TRIM_STEPS * step);
+    }
+    if (dropped > 0) {
+      log.debug("Expired {} account linkage edges, {} remain", dropped, graph.edges());
+    }
+  }
+
+  long edges() {
+    return graph.edges();
+  }
+
+  private void link(TransactionAnalysisRequest request, TransactionAnalysis analysis) {
+    Long userId = analysis.getUserId();
+    if (userId == null) {
+      return;
+    }
+    int minute = minutes(toEpochMillis(analysis.getCreatedAt()));
+    graph.link(Identifier.DEVICE, analysis.getDeviceFingerprint(), userId, minute);
+    graph.link(Identifier.IP, analysis.getIpAddress(), userId, minute);
+    if (request != null) {
+      graph.link(Identifier.CARD, cardOf(request), userId, minute);
+    }
+  }
+
+  /** BIN and last four digits, which identify a card well enough for linkage; null if incomplete */
+  private static String cardOf(TransactionAnalysisRequest request) {
+    if (request.getCardBin() == null || request.getCardLast4() == null) {
+      return null;
+    }
+    return request.getCardBin() + "*" + request.getCardLast4();
+  }
+
+  private static int others(long[] users, int from, int to, long userId) {
+    int count = 0;
+    for (int i = from; i < to; i++) {
+      if (users[i] != userId) {
+        count++;
+      }
+    }
+    return count;
+  }
+
+  private long toEpochMillis(LocalDateTime dateTime) {
+    if (dateTime == null) {
+      return clock.millis();
+    }
+    return dateTime.atZone(ZoneId.systemDefault()).toInstant().toEpochMilli();
+  }
+
+  private static int minutes(long epochMillis) {
+    return (int) (epochMillis / 60_000L);
+  }
+
+  private static LocalDateTime toLocalDateTime(long epochMillis) {
+    return LocalDateTime.ofInstant(Instant.ofEpochMilli(epochMillis), ZoneId.systemDefault());
+  }
+}
@@ -0,0 +1,18 @@
+package com.fintech.aifraudservice.service;
+
+import lombok.Value;
+
+/**
+ * Other accounts recently seen with a transaction's device, IP address and card, and the number of
+ * distinct accounts across all three. Counts stop at the graph's per-identifier limit.
+ */
+@Value
+public class LinkageSnapshot {
+
+  public static final LinkageSnapshot EMPTY = new LinkageSnapshot(0, 0, 0, 0);
+
+  int deviceAccounts;
+  int ipAccounts;
+  int cardAccounts;
+  int linkedAccounts;
+}
@@ -0,0 +1,239 @@
+package com.fintech.aifraudservice.service;
+
+import com.fintech.aifraudservice.model.TransactionAnalysis;
+import com.fintech.aifraudservice.model.TransactionAnalysis.FraudStatus;
+import com.fintech.aifraudservice.repository.AnalysisActivityReader;
+import jakarta.annotation.PostConstruct;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.convert.DurationStyle;
+import org.springframework.context.annotation.DependsOn;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+/**
+ * Rolling per-merchant aggregates of analyses, declines and reviewer-confirmed fraud, used for the
+ * merchant component of the risk score.
+ *
+ * <p>Each merchant holds three exponentially decayed counters with a half-life of {@code
+ * fraud.detection.merchant-risk.half-life}, so an update or lookup is a hash lookup and a few
+ * multiplications however many merchants are tracked, and a merchant costs a fixed handful of
+ * fields rather than a ring of buckets. The map is bounded by {@code max-merchants}: once full, new
+ * merchants are not tracked until the periodic sweep drops idle merchants and, if still needed, the
+ * least active ones.
+ *
+ * <p>Counters are rebuilt from {@code transaction_analyses} at startup, over four half-lives, and
+ * then follow new analyses and reviewer verdicts. A verdict is counted when it is made; a changed
+ * verdict on the same transaction is only corrected by the next rebuild.
+ */
+@Component
+@DependsOn("entityManagerFactory")
+@Slf4j
+public class MerchantRiskIndex implements TransactionAnalysisListener {
+
+  private static final int SEED_HALF_LIVES = 4;
+
+  // A merchant whose decayed volume is below this has seen no real activity for ~4 half-lives
+  private static final double IDLE_VOLUME = 0.05;
+
+  // Share of the capacity kept when the sweep has to drop active merchants
+  private static final double TRIM_RATIO = 0.9;
+
+  private final AnalysisActivityReader analysisActivityReader;
+  private final long halfLifeMillis;
+  private final double decayPerMilli;
+  private final int maxMerchants;
+  private final Clock clock;
+  private final Map<String, MerchantStats> merchants = new ConcurrentHashMap<>();
+
+  @Autowired
+  public MerchantRiskIndex(
+      AnalysisActivityReader analysisActivityReader,
+      @Value("${fraud.detection.merchant-risk.half-life:7d}") String halfLife,
+      @Value("${fraud.detection.merchant-risk.max-merchants:100000}") int maxMerchants) {
+    this(analysisActivityReader, halfLife, maxMerchants, Clock.systemDefaultZone());
+  }
+
+  MerchantRiskIndex(
+      AnalysisActivityReader analysisActivityReader,
+      String halfLife,
+      int maxMerchants,
+      Clock clock) {
+    Duration length = DurationStyle.detectAndParse(halfLife);
+    if (length.compareTo(Duration.ofMinutes(1)) < 0) {
+      throw new IllegalArgumentException(
+          "Merchant risk half-life must be at least one minute: " + halfLife);
+    }
+    if (maxMerchants < 1) {
+      throw new IllegalArgumentException("max-merchants must be positive: " + maxMerchants);
+    }
+    this.analysisActivityReader = analysisActivityReader;
+    this.halfLifeMillis = length.toMillis();
+    this.decayPerMilli = Math.log(2) / halfLifeMillis;
+    this.maxMerchants = maxMerchants;
+    this.clock = clock;
+  }
+
+  @PostConstruct
+  void seed() {
+    long now = clock.millis();
+    long rows =
+        analysisActivityReader.forEachMerchantActivitySince(
+            toLocalDateTime(now - halfLifeMillis * SEED_HALF_LIVES),
+            analysis ->
+                record(
+                    analysis.getMerchantId(),
+                    analysis.getCreatedAt(),
+                    1,
+                    analysis.getFraudStatus() == FraudStatus.DECLINED ? 1 : 0,
+                    isConfirmedFraud(analysis) ? 1 : 0,
+                    now));
+    log.info("Seeded risk aggregates of {} merchants from {} analyses", merchants.size(), rows);
+  }
+
+  /** Current decayed aggregates of a merchant; empty when it is unknown or not tracked */
+  public MerchantRiskSnapshot snapshot(String merchantId) {
+    if (merchantId == null) {
+      return MerchantRiskSnapshot.EMPTY;
+    }
+    MerchantStats stats = merchants.get(merchantId);
+    return stats != null ? stats.snapshot(clock.millis()) : MerchantRiskSnapshot.EMPTY;
+  }
+
+  @Override
+  public void onAnalysisSaved(TransactionAnalysisRequest request, TransactionAnalysis analysis) {
+    record(
+        analysis.getMerchantId(),
+        analysis.getCreatedAt(),
+        1,
+        analysis.getFraudStatus() == FraudStatus.DECLINED ? 1 : 0,
+        0,
+        clock.millis());
+  }
+
+  @Override
+  public void onAnalysisReviewed(TransactionAnalysis analysis, FraudStatus previousStatus) {
+    boolean declined = analysis.getFraudStatus() == FraudStatus.DECLINED;
+    int declineDelta = declined == (previousStatus == FraudStatus.DECLINED) ? 0 : declined ? 1 : -1;
+    record(
+        analysis.getMerchantId(),
+        analysis.getCreatedAt(),
+        0,
+        declineDelta,
+        isConfirmedFraud(analysis) ? 1 : 0,
+        clock.millis());
+  }
+
+  /**
+   * Drops merchants whose activity has decayed away and, when the map is still close to full, the
+   * least active ones, so that new merchants can be tracked again.
+   */
+  @Scheduled(fixedDelayString = "${fraud.detection.merchant-risk.eviction-interval-ms:300000}")
+  public void evictIdleMerchants() {
+    long now = clock.millis();
+    int before = merchants.size();
+    merchants.values().removeIf(stats -> stats.volumeAt(now) < IDLE_VOLUME);
+    int excess = merchants.size() - (int) (maxMerchants * TRIM_RATIO);
+    if (excess > 0) {
+      merchants.entrySet().stream()
+          .map(entry -> Map.entry(entry.getKey(), entry.getValue().volumeAt(now)))
+          .sorted(Map.Entry.comparingByValue())
+          .limit(excess)
+          .forEach(entry -> merchants.remove(entry.getKey()));
+    }
+    int evicted = before - merchants.size();
+    if (evicted > 0) {
+      log.debug("Evicted {} merchant risk aggregates, {} tracked", evicted, merchants.size());
+    }
+  }
+
+  int trackedMerchants() {
+    return merchants.size();
+  }
+
+  private void record(
+      String merchantId,
+      LocalDateTime createdAt,
+      int volume,
+      int declines,
+      int confirmedFraud,
+      long now) {
+    if (merchantId == null || merchantId.isBlank()) {
+      return;
+    }
+    MerchantStats stats = merchants.get(merchantId);
+    if (stats == null) {
+      if (volume <= 0 || merchants.size() >= maxMerchants) {
+        return;
+      }
+      stats = merchants.computeIfAbsent(merchantId, id -> new MerchantStats(now));
+    }
+    stats.add(toEpochMillis(createdAt, now), volume, declines, confirmedFraud, now);
+  }
+
+  private static boolean isConfirmedFraud(TransactionAnalysis analysis) {
+    return analysis.getReviewedAt() != null && analysis.getFraudStatus() == FraudStatus.DECLINED;
+  }
+
+  private static long toEpochMillis(LocalDateTime dateTime, long now) {
+    if (dateTime == null) {
+      return now;
+    }
+    return dateTime.atZone(ZoneId.systemDefault()).toInstant().toEpochMilli();
+  }
+
+  private static LocalDateTime toLocalDateTime(long epochMillis) {
+    return LocalDateTime.ofInstant(Instant.ofEpochMilli(epochMillis), ZoneId.systemDefault());
+  }
+
+  /** Counters decayed to {@code stampMillis}; decay is applied lazily on each access */
+  private final class MerchantStats {
+    private double volume;
+    private double declines;
+    private double confirmedFraud;
+    private long stampMillis;
+
+    MerchantStats(long now) {
+      this.stampMillis = now;
+    }
+
+    synchronized void add(
+        long eventMillis, int volumeDelta, int declineDelta, int fraudDelta, long now) {
+      decayTo(now);
+      // An event is weighted by its age, so seeded rows count as if they had been recorded live
+      double weight = Math.exp(-decayPerMilli * Math.max(0L, now - eventMillis));
+      volume += volumeDelta * weight;
+      declines = Math.max(0.0, declines + declineDelta * weight);
+      confirmedFraud += fraudDelta * weight;
+    }
+
+    synchronized MerchantRiskSnapshot snapshot(long now) {
+      decayTo(now);
+      return new MerchantRiskSnapshot(volume, declines, confirmedFraud);
+    }
+
+    synchronized double volumeAt(long now) {
+      decayTo(now);
+      return volume;
+    }
+
+    private void decayTo(long now) {
+      if (now <= stampMillis) {
+        return;
+      }
+      double factor = Math.exp(-decayPerMilli * (now - stampMillis));
+      volume *= factor;
+      declines *= factor;
+      confirmedFraud *= factor;
+      stampMillis = now;
+    }
+  }
+}
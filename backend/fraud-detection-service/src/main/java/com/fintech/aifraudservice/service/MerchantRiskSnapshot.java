@@ -0,0 +1,25 @@
+package com.fintech.aifraudservice.service;
+
+import lombok.Value;
+
+/**
+ * Point-in-time view of a merchant's decayed activity: analyses, declines and reviewer-confirmed
+ * fraud, each weighted by age so that an event one half-life old counts half
+ */
+@Value
+public class MerchantRiskSnapshot {
+
+  public static final MerchantRiskSnapshot EMPTY = new MerchantRiskSnapshot(0.0, 0.0, 0.0);
+
+  double volume;
+  double declines;
+  double confirmedFraud;
+
+  public double getDeclineRate() {
+    return volume > 0 ? declines / volume : 0.0;
+  }
+
+  public double getConfirmedFraudRate() {
+    return volume > 0 ? confirmedFraud / volume : 0.0;
+  }
+}
@@ -0,0 +1,25 @@
+package com.fintech.aifraudservice.service;
+
+/** Line parsing shared by the CSV range files of {@link IpRangeTable} and {@link BinRangeTable} */
+final class RangeCsv {
+
+  private RangeCsv() {}
+
+  /** The comma separated fields of a line, or {@code null} for a blank or {@code #} comment line */
+  static String[] fields(String line) {
+    String trimmed = line.trim();
+    if (trimmed.isEmpty() || trimmed.startsWith("#")) {
+      return null;
+    }
+    return trimmed.split(",", -1);
+  }
+
+  /** The field without surrounding whitespace and double quotes */
+  static String unquote(String field) {
+    String trimmed = field.trim();
+    if (trimmed.length() >= 2 && trimmed.startsWith("\"") && trimmed.endsWith("\"")) {
+      return trimmed.substring(1, trimmed.length() - 1).trim();
+    }
+    return trimmed;
+  }
+}
@@ -0,0 +1,11 @@
+package com.fintech.aifraudservice.service;
+
+/** A table of ranges read from a file, as held by {@link ReloadableRangeFile} */
+interface RangeTable {
+
+  /** Number of ranges in the table */
+  int size();
+
+  /** The file the table was read from */
+  String getSource();
+}
@@ -0,0 +1,111 @@
+package com.fintech.aifraudservice.service;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.function.Function;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * A range table read from a file that can be swapped without a restart, as used by {@link
+ * IpGeoLocator} and {@link BinRiskIndex}. A new table is built off to the side and published with a
+ * single volatile write, as rule sets are; a file that fails to load is logged and the previous
+ * table stays active. Until a file is loaded the table is the empty one given.
+ */
+@Slf4j
+final class ReloadableRangeFile<T extends RangeTable> {
+
+  private final String kind;
+  private final Function<Path, T> loader;
+
+  private String location = "";
+
+  private volatile T current;
+
+  private FileTime loadedModifiedTime;
+
+  /**
+   * @param kind what the ranges map, for messages, such as {@code "IP"}
+   * @param loader reads a table from the file, throwing when it cannot be used
+   */
+  ReloadableRangeFile(String kind, T empty, Function<Path, T> loader) {
+    this.kind = kind;
+    this.current = empty;
+    this.loader = loader;
+  }
+
+  /**
+   * Loads the file at {@code location}, if one is configured.
+   *
+   * @throws RuntimeException when the file cannot be used, which is a deployment error rather than
+   *     something to run without
+   */
+  synchronized void init(String location) {
+    this.location = location;
+    if (location.isBlank()) {
+      return;
+    }
+    current = load();
+    log.info("Loaded {} {} ranges from {}", current.size(), kind, location);
+  }
+
+  T current() {
+    return current;
+  }
+
+  /**
+   * Reloads the file and publishes the new table.
+   *
+   * @return the newly published table
+   * @throws IllegalArgumentException when the file does not parse
+   * @throws IllegalStateException when no file is configured or it cannot be read; either way the
+   *     previous table stays active
+   */
+  synchronized T reload() {
+    if (location.isBlank()) {
+      throw new IllegalStateException("No " + kind + " range file configured");
+    }
+    try {
+      current = load();
+    } catch (RuntimeException e) {
+      log.error(
+          "Keeping {} {} ranges from {}, reload failed: {}",
+          current.size(),
+          kind,
+          current.getSource(),
+          e.getMessage());
+      throw e;
+    }
+    log.info("Reloaded {} {} ranges from {}", current.size(), kind, location);
+    return current;
+  }
+
+  /** Reloads when the file changed since it was last read */
+  synchronized void reloadIfChanged() {
+    if (location.isBlank()) {
+      return;
+    }
+    try {
+      FileTime modified = Files.getLastModifiedTime(Path.of(location));
+      if (!modified.equals(loadedModifiedTime)) {
+        reload();
+      }
+    } catch (IOException e) {
+      log.warn("Cannot check {} range file {}: {}", kind, location, e.getMessage());
+    } catch (RuntimeException e) {
+      // Already logged by reload(); the previous table stays active until the file is fixed
+    }
+  }
+
+  private T load() {
+    Path path = Path.of(location);
+    try {
+      // Remembered even if the file does not load, so a bad file is reported once
+      loadedModifiedTime = Files.getLastModifiedTime(path);
+    } catch (IOException e) {
+      throw new IllegalStateException("Cannot read " + kind + " range file " + location, e);
+    }
+    return loader.apply(path);
+  }
+}
@@ -0,0 +1,241 @@
+package com.fintech.aifraudservice.service;
+
+import com.fintech.aifraudservice.model.TransactionAnalysis;
+import com.fintech.aifraudservice.model.TransactionAnalysis.FraudStatus;
+import com.fintech.aifraudservice.model.TransactionAnalysis.RiskLevel;
+import com.fintech.aifraudservice.repository.TransactionAnalysisRepository;
+import jakarta.annotation.PostConstruct;
+import java.time.Clock;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.DependsOn;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+/**
+ * High-risk analyses awaiting review, ordered by risk score (highest first, then oldest id).
+ *
+ * <p>The index holds only id, transaction id and score; it is loaded at startup and then follows
+ * saved and reviewed analyses, so top-N and page reads walk the index and fetch just the rows they
+ * return. Pages are keyed by the last entry's score and id, which stays stable while the queue
+ * changes. Reviewers claim entries for {@code fraud.detection.review-queue.claim-ttl}; a claim is
+ * taken with one atomic map update, so two reviewers never get the same entry.
+ */
+@Component
+@DependsOn("entityManagerFactory")
+@Slf4j
+public class ReviewQueue implements TransactionAnalysisListener {
+
+  private static final Comparator<Entry> ORDER =
+      Comparator.comparingDouble(Entry::riskScore).reversed().thenComparingLong(Entry::id);
+
+  private final NavigableSet<Entry> index = new ConcurrentSkipListSet<>(ORDER);
+  private final Map<String, Entry> entries = new ConcurrentHashMap<>();
+  private final Map<String, Claim> claims = new ConcurrentHashMap<>();
+
+  private final TransactionAnalysisRepository transactionAnalysisRepository;
+  private final Clock clock;
+
+  @Value("${fraud.detection.review-queue.claim-ttl:PT30M}")
+  private Duration claimTtl = Duration.ofMinutes(30);
+
+  @Autowired
+  public ReviewQueue(TransactionAnalysisRepository transactionAnalysisRepository) {
+    this(transactionAnalysisRepository, Clock.systemDefaultZone());
+  }
+
+  ReviewQueue(TransactionAnalysisRepository transactionAnalysisRepository, Clock clock) {
+    this.transactionAnalysisRepository = transactionAnalysisRepository;
+    this.clock = clock;
+  }
+
+  @PostConstruct
+  void load() {
+    List<Object[]> rows = transactionAnalysisRepository.findReviewQueueEntries();
+    for (Object[] row : rows) {
+      add(new Entry((Long) row[0], (String) row[1], (Double) row[2]));
+    }
+    log.info("Loaded review queue with {} transactions", rows.size());
+  }
+
+  @Override
+  public void onAnalysisSaved(TransactionAnalysisRequest request, TransactionAnalysis analysis) {
+    if (awaitsReview(analysis)) {
+      add(new Entry(analysis.getId(), analysis.getTransactionId(), analysis.getRiskScore()));
+    }
+  }
+
+  @Override
+  public void onAnalysisReviewed(TransactionAnalysis analysis, FraudStatus previousStatus) {
+    if (awaitsReview(analysis)) {
+      return;
+    }
+    Entry entry = entries.remove(analysis.getTransactionId());
+    if (entry != null) {
+      index.remove(entry);
+    }
+    claims.remove(analysis.getTransactionId());
+  }
+
+  public int size() {
+    return entries.size();
+  }
+
+  /** One page of the queue and the cursor of the next, {@code null} after the last page */
+  public record Page(List<TransactionAnalysis> items, String nextCursor) {}
+
+  /** The {@code limit} highest-risk analyses awaiting review */
+  public List<TransactionAnalysis> top(int limit) {
+    return limit < 1 ? List.of() : page(null, limit).items();
+  }
+
+  /**
+   * The next {@code limit} index entries after the given cursor, or from the top when it is {@code
+   * null}. Entries reviewed since the index was read are dropped, so a page can be short; the next
+   * cursor continues after the last entry scanned and is {@code null} only when no entries follow.
+   *
+   * @throws IllegalArgumentException when the cursor is malformed or {@code limit} is below 1
+   */
+  public Page page(String cursor, int limit) {
+    if (limit < 1) {
+      throw new IllegalArgumentException("Review queue page limit must be at least 1: " + limit);
+    }
+    NavigableSet<Entry> from = cursor == null ? index : index.tailSet(parseCursor(cursor), false);
+    List<Entry> selected = new ArrayList<>(limit);
+    for (Entry entry : from) {
+      if (selected.size() >= limit) {
+        break;
+      }
+      selected.add(entry);
+    }
+    Entry last = selected.isEmpty() ? null : selected.get(selected.size() - 1);
+    String nextCursor =
+        last != null && index.higher(last) != null ? cursorOf(last.riskScore(), last.id()) : null;
+    return new Page(fetch(selected), nextCursor);
+  }
+
+  /**
+   * Claims up to {@code limit} of the highest-risk unclaimed analyses for a reviewer. Entries the
+   * reviewer already holds are returned again with a renewed claim.
+   */
+  public List<TransactionAnalysis> claim(String reviewer, int limit) {
+    long now = clock.millis();
+    List<Entry> claimed = new ArrayList<>(Math.max(0, limit));
+    for (Entry entry : index) {
+      if (claimed.size() >= limit) {
+        break;
+      }
+      Claim ours = new Claim(reviewer, now + claimTtl.toMillis());
+      Claim winner =
+          claims.compute(
+              entry.transactionId(),
+              (transactionId, existing) ->
+                  existing == null
+                          || existing.expiresAtMillis() <= now
+                          || existing.reviewer().equals(reviewer)
+                      ? ours
+                      : existing);
+      if (winner == ours) {
+        claimed.add(entry);
+      }
+    }
+    return fetch(claimed);
+  }
+
+  /**
+   * Gives a claimed analysis back to the queue.
+   *
+   * @return {@code false} when the reviewer did not hold the claim
+   */
+  public boolean release(String transactionId, String reviewer) {
+    Claim claim = claims.get(transactionId);
+    return claim != null
+        && claim.reviewer().equals(reviewer)
+        && claims.remove(transactionId, claim);
+  }
+
+  /** Reviewer currently holding the analysis, or {@code null} */
+  public String claimedBy(String transactionId) {
+    Claim claim = claims.get(transactionId);
+    return claim != null && claim.expiresAtMillis() > clock.millis() ? claim.reviewer() : null;
+  }
+
+  /** Keyset cursor continuing after the given analysis */
+  public static String cursorOf(TransactionAnalysis analysis) {
+    return cursorOf(analysis.getRiskScore(), analysis.getId());
+  }
+
+  private static String cursorOf(Double riskScore, Long id) {
+    return riskScore + "_" + id;
+  }
+
+  @Scheduled(fixedDelayString = "${fraud.detection.review-queue.claim-sweep-interval-ms:60000}")
+  public void expireClaims() {
+    long now = clock.millis();
+    claims.values().removeIf(claim -> claim.expiresAtMillis() <= now);
+  }
+
+  private void add(Entry entry) {
+    if (entry.id() == null || entry.transactionId() == null || entry.riskScore() == null) {
+      return;
+    }
+    Entry previous = entries.put(entry.transactionId(), entry);
+    if (previous != null) {
+      index.remove(previous);
+    }
+    index.add(entry);
+  }
+
+  /** Loads the rows in index order, dropping any reviewed since the index was read */
+  private List<TransactionAnalysis> fetch(List<Entry> selected) {
+    if (selected.isEmpty()) {
+      return List.of();
+    }
+    Map<Long, TransactionAnalysis> rows =
+        transactionAnalysisRepository
+            .findAllById(selected.stream().map(Entry::id).collect(Collectors.toList()))
+            .stream()
+            .collect(Collectors.toMap(TransactionAnalysis::getId, Function.identity()));
+    List<TransactionAnalysis> result = new ArrayList<>(selected.size());
+    for (Entry entry : selected) {
+      TransactionAnalysis analysis = rows.get(entry.id());
+      if (analysis != null && analysis.getFraudStatus() == FraudStatus.UNDER_REVIEW) {
+        result.add(analysis);
+      }
+    }
+    return result;
+  }
+
+  private static boolean awaitsReview(TransactionAnalysis analysis) {
+    return analysis.getFraudStatus() == FraudStatus.UNDER_REVIEW
+        && (analysis.getRiskLevel() == RiskLevel.HIGH
+            || analysis.getRiskLevel() == RiskLevel.CRITICAL);
+  }
+
+  private static Entry parseCursor(String cursor) {
+    int separator = cursor.lastIndexOf('_');
+    try {
+      return new Entry(
+          Long.parseLong(cursor.substring(separator + 1)),
+          "",
+          Double.parseDouble(cursor.substring(0, separator)));
+    } catch (RuntimeException e) {
+      throw new IllegalArgumentException("Invalid review queue cursor: " + cursor, e);
+    }
+  }
+
+  private record Entry(Long id, String transactionId, Double riskScore) {}
+
+  private record Claim(String reviewer, long expiresAtMillis) {}
+}
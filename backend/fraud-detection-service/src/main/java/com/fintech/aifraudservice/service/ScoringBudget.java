@@ -0,0 +1,142 @@
+package com.fintech.aifraudservice.service;
+
+import jakarta.annotation.PostConstruct;
+import java.time.Duration;
+import java.util.StringJoiner;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Supplier;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.convert.DurationStyle;
+import org.springframework.core.task.AsyncTaskExecutor;
+import org.springframework.core.task.TaskRejectedException;
+import org.springframework.stereotype.Component;
+
+/**
+ * Latency budget of one scoring request. The feature lookups of a transaction share a deadline
+ * taken when they start, {@code fraud.detection.scoring.budget} later. A lookup that fails or has
+ * not answered by the deadline is replaced by its fallback and recorded as degraded, and {@link
+ * FraudScoringKernel} scores a degraded feature with a conservative default rather than as absent.
+ *
+ * <p>Lookups that can block on Redis or the database, the behavior profile and the first velocity
+ * lookup of a user whose window must be seeded, are {@link Deadline#await awaited}: they run on the
+ * bounded {@code fraudLookupExecutor} and the scoring thread waits for them until the deadline at
+ * most; a saturated pool degrades them at once instead of queueing behind stalled calls. A lookup
+ * that times out is left to finish, so its result still reaches the profile cache or velocity
+ * window. Lookups {@link Deadline#call called} inline must only read memory; they run even past the
+ * deadline, since they take microseconds, and only a failure degrades them.
+ */
+@Component
+@Slf4j
+public class ScoringBudget {
+
+  /** Feature lookup that can be degraded */
+  public enum Feature {
+    PROFILE,
+    VELOCITY,
+    IP_LOCATION,
+    MERCHANT,
+    BIN,
+    LINKAGE;
+
+    final int bit = 1 << ordinal();
+  }
+
+  @Autowired private FraudPipelineMetrics fraudPipelineMetrics;
+
+  @Autowired
+  @Qualifier("fraudLookupExecutor")
+  private AsyncTaskExecutor fraudLookupExecutor;
+
+  @Value("${fraud.detection.scoring.budget:50ms}")
+  private String budget;
+
+  private long budgetNanos;
+
+  @PostConstruct
+  void init() {
+    Duration length = DurationStyle.detectAndParse(budget);
+    if (length.isNegative() || length.isZero()) {
+      throw new IllegalStateException("Scoring budget must be positive: " + budget);
+    }
+    budgetNanos = length.toNanos();
+  }
+
+  /** Starts the budget of one transaction's lookups */
+  public Deadline start() {
+    return new Deadline(System.nanoTime() + budgetNanos);
+  }
+
+  /** Names of the degraded features in a bit set from {@link Deadline#degraded()} */
+  public static String describe(int degraded) {
+    StringJoiner names = new StringJoiner(", ");
+    for (Feature feature : Feature.values()) {
+      if ((degraded & feature.bit) != 0) {
+        names.add(feature.name());
+      }
+    }
+    return names.toString();
+  }
+
+  /** Lookups of one transaction against a shared deadline; confined to the scoring thread */
+  public final class Deadline {
+    private final long deadlineNanos;
+    private int degraded;
+
+    private Deadline(long deadlineNanos) {
+      this.deadlineNanos = deadlineNanos;
+    }
+
+    /** Result of a lookup that only reads memory, or the fallback if it fails */
+    public <T> T call(Feature feature, Supplier<T> lookup, T fallback) {
+      try {
+        return lookup.get();
+      } catch (RuntimeException e) {
+        return degrade(feature, fallback, e.toString());
+      }
+    }
+
+    /** Result of a lookup run on the lookup pool, or the fallback if it misses the deadline */
+    public <T> T await(Feature feature, Callable<T> lookup, T fallback) {
+      long remaining = deadlineNanos - System.nanoTime();
+      if (remaining <= 0) {
+        return degrade(feature, fallback, "budget spent");
+      }
+      Future<T> result;
+      try {
+        result = fraudLookupExecutor.submit(lookup);
+      } catch (TaskRejectedException e) {
+        return degrade(feature, fallback, "lookup pool saturated");
+      }
+      try {
+        return result.get(remaining, TimeUnit.NANOSECONDS);
+      } catch (TimeoutException e) {
+        // Not cancelled: queued lookups still warm the cache, and interrupting JDBC is unsafe
+        return degrade(feature, fallback, "timed out");
+      } catch (ExecutionException e) {
+        return degrade(feature, fallback, e.getCause().toString());
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        return degrade(feature, fallback, "interrupted");
+      }
+    }
+
+    /** Bit set of the degraded features, see {@link #describe} */
+    public int degraded() {
+      return degraded;
+    }
+
+    private <T> T degrade(Feature feature, T fallback, String reason) {
+      degraded |= feature.bit;
+      fraudPipelineMetrics.degraded(feature);
+      log.debug("Scoring without {} lookup: {}", feature, reason);
+      return fallback;
+    }
+  }
+}
@@ -0,0 +1,287 @@
+package com.fintech.aifraudservice.service;
+
+import com.fintech.aifraudservice.model.TransactionAnalysis.FraudStatus;
+import com.fintech.aifraudservice.model.TransactionAnalysis.RiskLevel;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Properties;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import lombok.extern.slf4j.Slf4j;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.task.TaskExecutor;
+import org.springframework.stereotype.Component;
+
+/**
+ * Scores live transactions with candidate rule sets and models next to production, without
+ * affecting the production result. Each candidate is a properties file listed in {@code
+ * fraud.detection.shadow.candidates}, named after the file:
+ *
+ * <pre>
+ * weights.velocity=0.35           # rule properties, applied on top of the production rules
+ * rule.country.NG=0.10
+ * shadow.model=/models/r7.model   # optional; "none" scores rule-only, absent uses production's
+ * shadow.blend-weight=0.4         # optional; production's blend weight otherwise
+ * </pre>
+ *
+ * <p>The scoring thread only hands the already resolved features to {@code fraudShadowExecutor};
+ * when its queue is full the comparison is dropped and counted in {@code fraud.shadow.shed}.
+ * Results go to {@code fraud.shadow.score.delta{candidate}} (absolute score difference), {@code
+ * fraud.shadow.decisions{candidate, production, shadow}} and {@code fraud.shadow.latency}, and each
+ * disagreement on the decision is written as one line to the {@code fraud.shadow} logger.
+ *
+ * <p>Candidates are read at startup and compiled over the rules active at that time. Shadow
+ * inference errors are counted per candidate and never reach production.
+ */
+@Component
+@Slf4j
+public class ShadowScoring {
+
+  private static final Logger shadowLog = LoggerFactory.getLogger("fraud.shadow");
+
+  private static final String MODEL_KEY = "shadow.model";
+  private static final String BLEND_WEIGHT_KEY = "shadow.blend-weight";
+  private static final String NO_MODEL = "none";
+
+  // Decisions scoring can produce, see FraudDetectionServiceImpl.decision
+  private static final FraudStatus[] DECISIONS = {
+    FraudStatus.APPROVED, FraudStatus.UNDER_REVIEW, FraudStatus.DECLINED
+  };
+
+  @Autowired private FraudRuleEngine fraudRuleEngine;
+
+  @Autowired private FraudModelService fraudModelService;
+
+  @Autowired private MeterRegistry meterRegistry;
+
+  @Autowired
+  @Qualifier("fraudShadowExecutor")
+  private TaskExecutor fraudShadowExecutor;
+
+  @Value("${fraud.detection.shadow.candidates:}")
+  private String candidateFiles;
+
+  @Value("${fraud.detection.shadow.sample-rate:1.0}")
+  private double sampleRate;
+
+  private List<Candidate> candidates = List.of();
+
+  private Counter shed;
+
+  @PostConstruct
+  void init() {
+    if (sampleRate < 0 || sampleRate > 1) {
+      throw new IllegalStateException("Shadow sample rate must be within [0, 1]: " + sampleRate);
+    }
+    shed =
+        Counter.builder("fraud.shadow.shed")
+            .description("Shadow comparisons dropped because the shadow executor was saturated")
+            .register(meterRegistry);
+    // A candidate that cannot be read is a deployment error, like a broken production rule file
+    List<Candidate> loaded = new ArrayList<>();
+    for (String file : candidateFiles.split(",")) {
+      if (!file.isBlank()) {
+        loaded.add(load(Path.of(file.trim())));
+      }
+    }
+    candidates = List.copyOf(loaded);
+    if (!candidates.isEmpty()) {
+      log.info(
+          "Shadow scoring {} of traffic with candidates {}",
+          sampleRate,
+          candidates.stream().map(candidate -> candidate.name).toList());
+    }
+  }
+
+  public boolean isActive() {
+    return !candidates.isEmpty() && sampleRate > 0;
+  }
+
+  /** Names of the configured candidates */
+  public List<String> candidates() {
+    return candidates.stream().map(candidate -> candidate.name).toList();
+  }
+
+  /**
+   * Queues the transaction for every candidate and returns at once. Called on the scoring thread
+   * with the production result; the context must not be modified afterwards.
+   */
+  public void submit(
+      FraudScoringContext context,
+      double riskScore,
+      double modelProbability,
+      RiskLevel riskLevel,
+      FraudStatus decision) {
+    if (!isActive() || (sampleRate < 1 && ThreadLocalRandom.current().nextDouble() >= sampleRate)) {
+      return;
+    }
+    try {
+      fraudShadowExecutor.execute(
+          () -> compare(context, riskScore, modelProbability, riskLevel, decision));
+    } catch (RejectedExecutionException e) {
+      shed.increment();
+    }
+  }
+
+  private void compare(
+      FraudScoringContext context,
+      double riskScore,
+      double modelProbability,
+      RiskLevel riskLevel,
+      FraudStatus decision) {
+    TransactionAnalysisRequest request = context.getRequest();
+    FraudFeatureVector production = context.getFeatures();
+    for (Candidate candidate : candidates) {
+      long start = System.nanoTime();
+      try {
+        FraudFeatureVector features =
+            production.withRules(request, context.getIpLocation(), candidate.rules);
+        FraudModel model = candidate.inheritsModel ? context.getModel() : candidate.model;
+        double probability;
+        if (model == context.getModel() && features.highRiskCountry == production.highRiskCountry) {
+          // Same model over the same model inputs, production's probability holds
+          probability = modelProbability;
+        } else {
+          probability = model != null ? model.fraudProbability(features) : Double.NaN;
+        }
+        double shadowScore =
+            FraudModelService.blend(
+                candidate.rules.riskScore(features), probability, candidate.blendWeight);
+        RiskLevel shadowLevel = candidate.rules.riskLevel(shadowScore);
+        FraudStatus shadowDecision = FraudDetectionServiceImpl.decision(shadowLevel);
+
+        candidate.delta.record(Math.abs(shadowScore - riskScore));
+        candidate.decisions[index(decision)][index(shadowDecision)].increment();
+        if (shadowDecision != decision) {
+          shadowLog.info(
+              "candidate={} txn={} user={} production={} {} {} shadow={} {} {}",
+              candidate.name,
+              request.getTransactionId(),
+              context.getUserId(),
+              String.format("%.4f", riskScore),
+              riskLevel,
+              decision,
+              String.format("%.4f", shadowScore),
+              shadowLevel,
+              shadowDecision);
+        }
+      } catch (Exception e) {
+        candidate.errors.increment();
+        log.debug("Shadow candidate {} failed: {}", candidate.name, e.getMessage());
+      } finally {
+        candidate.latency.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+      }
+    }
+  }
+
+  private Candidate load(Path file) {
+    Properties properties = new Properties();
+    try (InputStream in = Files.newInputStream(file)) {
+      properties.load(in);
+    } catch (IOException e) {
+      throw new IllegalStateException("Cannot read shadow candidate " + file, e);
+    }
+    String fileName = file.getFileName().toString();
+    int dot = fileName.lastIndexOf('.');
+    String name = dot > 0 ? fileName.substring(0, dot) : fileName;
+
+    String modelPath = (String) properties.remove(MODEL_KEY);
+    String blendWeight = (String) properties.remove(BLEND_WEIGHT_KEY);
+    FraudRuleSet rules = fraudRuleEngine.compileWith(properties);
+    FraudModel model = null;
+    boolean inheritsModel = modelPath == null || modelPath.isBlank();
+    if (!inheritsModel && !modelPath.trim().equalsIgnoreCase(NO_MODEL)) {
+      model = FraudModelService.load(Path.of(modelPath.trim()), name);
+    }
+    double weight =
+        blendWeight != null
+            ? Double.parseDouble(blendWeight.trim())
+            : fraudModelService.getBlendWeight();
+    if (weight < 0 || weight > 1) {
+      throw new IllegalStateException(
+          "Shadow candidate " + name + " blend weight must be within [0, 1]: " + weight);
+    }
+    log.info(
+        "Loaded shadow candidate {} with rule set {} and model {}",
+        name,
+        rules.getVersion(),
+        inheritsModel ? "production" : model != null ? model.getVersion() : NO_MODEL);
+    return new Candidate(name, rules, model, inheritsModel, weight, meterRegistry);
+  }
+
+  private static int index(FraudStatus decision) {
+    for (int i = 0; i < DECISIONS.length; i++) {
+      if (DECISIONS[i] == decision) {
+        return i;
+      }
+    }
+    throw new IllegalArgumentException("Not a scoring decision: " + decision);
+  }
+
+  private static final class Candidate {
+    private final String name;
+    private final FraudRuleSet rules;
+    private final FraudModel model;
+    private final boolean inheritsModel;
+    private final double blendWeight;
+    private final DistributionSummary delta;
+    private final Counter[][] decisions = new Counter[DECISIONS.length][DECISIONS.length];
+    private final Counter errors;
+    private final Timer latency;
+
+    private Candidate(
+        String name,
+        FraudRuleSet rules,
+        FraudModel model,
+        boolean inheritsModel,
+        double blendWeight,
+        MeterRegistry meterRegistry) {
+      this.name = name;
+      this.rules = rules;
+      this.model = model;
+      this.inheritsModel = inheritsModel;
+      this.blendWeight = blendWeight;
+      this.delta =
+          DistributionSummary.builder("fraud.shadow.score.delta")
+              .description("Absolute difference between shadow and production risk scores")
+              .tag("candidate", name)
+              .publishPercentiles(0.5, 0.95, 0.99)
+              .register(meterRegistry);
+      for (FraudStatus production : DECISIONS) {
+        for (FraudStatus shadow : DECISIONS) {
+          decisions[index(production)][index(shadow)] =
+              Counter.builder("fraud.shadow.decisions")
+                  .description("Production and shadow decisions of the same transaction")
+                  .tag("candidate", name)
+                  .tag("production", production.name())
+                  .tag("shadow", shadow.name())
+                  .register(meterRegistry);
+        }
+      }
+      this.errors =
+          Counter.builder("fraud.shadow.errors")
+              .description("Shadow candidate scoring failures")
+              .tag("candidate", name)
+              .register(meterRegistry);
+      this.latency =
+          Timer.builder("fraud.shadow.latency")
+              .description("Time to score one transaction with a shadow candidate")
+              .tag("candidate", name)
+              .register(meterRegistry);
+    }
+  }
+}
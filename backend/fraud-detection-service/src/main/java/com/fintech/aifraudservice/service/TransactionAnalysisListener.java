@@ -0,0 +1,17 @@
+package com.fintech.aifraudservice.service;
+
+import com.fintech.aifraudservice.model.TransactionAnalysis;
+
+/**
+ * Hook for in-memory indexes that must follow every persisted analysis. Implementations are invoked
+ * after the surrounding transaction commits and must be cheap and non-blocking.
+ */
+public interface TransactionAnalysisListener {
+
+  /** Called once an analysis has been persisted */
+  void onAnalysisSaved(TransactionAnalysisRequest request, TransactionAnalysis analysis);
+
+  /** Called once a reviewer has changed the fraud status of an analysis */
+  default void onAnalysisReviewed(
+      TransactionAnalysis analysis, TransactionAnalysis.FraudStatus previousStatus) {}
+}
@@ -0,0 +1,95 @@
+package com.fintech.aifraudservice.service;
+
+import com.fintech.aifraudservice.model.TransactionAnalysis;
+import java.util.List;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.kafka.core.KafkaTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+/**
+ * Fans persisted and reviewed analyses out to the registered {@link TransactionAnalysisListener}s
+ * and to the {@code fraud-analysis-results} topic. When called inside a transaction the work is
+ * deferred until after commit, so listeners never observe rows that were rolled back.
+ */
+@Component
+@Slf4j
+public class TransactionAnalysisPublisher {
+
+  public static final String RESULTS_TOPIC = "fraud-analysis-results";
+
+  @Autowired private KafkaTemplate<String, Object> kafkaTemplate;
+
+  @Autowired(required = false)
+  private List<TransactionAnalysisListener> listeners = List.of();
+
+  @Autowired private FraudPipelineMetrics fraudPipelineMetrics;
+
+  public void analysisSaved(TransactionAnalysisRequest request, TransactionAnalysis analysis) {
+    afterCommit(
+        () -> {
+          for (TransactionAnalysisListener listener : listeners) {
+            long start = System.nanoTime();
+            try {
+              listener.onAnalysisSaved(request, analysis);
+              fraudPipelineMetrics.listener(listener, start);
+            } catch (Exception e) {
+              log.warn(
+                  "Listener {} failed for transaction {}: {}",
+                  listener.getClass().getSimpleName(),
+                  analysis.getTransactionId(),
+                  e.getMessage());
+            }
+          }
+          long sendStart = System.nanoTime();
+          try {
+            kafkaTemplate
+                .send(RESULTS_TOPIC, analysis)
+                .whenComplete(
+                    (result, failure) ->
+                        fraudPipelineMetrics.published(sendStart, failure == null));
+          } catch (Exception e) {
+            fraudPipelineMetrics.published(sendStart, false);
+            // The analysis is already committed; a broker outage must not fail the request
+            log.warn(
+                "Failed to publish analysis for transaction {}: {}",
+                analysis.getTransactionId(),
+                e.getMessage());
+          }
+        });
+  }
+
+  public void analysisReviewed(
+      TransactionAnalysis analysis, TransactionAnalysis.FraudStatus previousStatus) {
+    afterCommit(
+        () -> {
+          for (TransactionAnalysisListener listener : listeners) {
+            try {
+              listener.onAnalysisReviewed(analysis, previousStatus);
+            } catch (Exception e) {
+              log.warn(
+                  "Listener {} failed for review of transaction {}: {}",
+                  listener.getClass().getSimpleName(),
+                  analysis.getTransactionId(),
+                  e.getMessage());
+            }
+          }
+        });
+  }
+
+  private void afterCommit(Runnable action) {
+    if (TransactionSynchronizationManager.isSynchronizationActive()) {
+      TransactionSynchronizationManager.registerSynchronization(
+          new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+              action.run();
+            }
+          });
+    } else {
+      action.run();
+    }
+  }
+}
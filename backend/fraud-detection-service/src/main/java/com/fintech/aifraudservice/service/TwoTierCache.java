@@ -0,0 +1,267 @@
+package com.fintech.aifraudservice.service;
+
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Ticker;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import java.time.Duration;
+import java.util.UUID;
+import java.util.concurrent.Callable;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.cache.Cache;
+import org.springframework.cache.support.AbstractValueAdaptingCache;
+
+/**
+ * A bounded in-process cache in front of a shared remote cache, normally Redis. Reads try the local
+ * tier, then the remote one, and copy remote hits into the local tier; writes go to both. Null
+ * values are cached, so users without a profile do not reach the database on every transaction.
+ *
+ * <p>An eviction is applied to both tiers and announced on the invalidation channel, and every
+ * other instance drops the key from its local tier when the announcement arrives. Announcements are
+ * at most once, so the local time-to-live bounds how long another instance can serve a stale entry.
+ *
+ * <p>A failing remote tier or channel is treated as a miss and skipped for {@code retryInterval}
+ * before it is tried again, so an unreachable Redis costs one failed call per interval instead of
+ * one per read. Hits, misses and evictions are counted per tier as {@code
+ * fraud.profile.cache{cache, tier, result}}; a remote failure counts as {@code error}.
+ */
+@Slf4j
+public class TwoTierCache extends AbstractValueAdaptingCache {
+
+  private static final String ALL_KEYS = "*";
+
+  private final String name;
+  private final com.github.benmanes.caffeine.cache.Cache<Object, Object> local;
+  private final Cache remote;
+  private final Consumer<String> invalidations;
+  private final Function<String, Object> keyParser;
+  private final long retryIntervalNanos;
+  private final Ticker ticker;
+  private final String origin = UUID.randomUUID().toString();
+
+  private volatile long remoteRetryAtNanos;
+
+  private final Counter localHits;
+  private final Counter localMisses;
+  private final Counter localEvictions;
+  private final Counter remoteHits;
+  private final Counter remoteMisses;
+  private final Counter remoteEvictions;
+  private final Counter remoteErrors;
+
+  /**
+   * @param remote the shared tier; null for a local-only cache
+   * @param invalidations publishes invalidation messages to the other instances; null for none
+   * @param keyParser turns the key of an invalidation message back into a cache key
+   */
+  public TwoTierCache(
+      String name,
+      long localMaxSize,
+      Duration localTtl,
+      Cache remote,
+      Consumer<String> invalidations,
+      Function<String, Object> keyParser,
+      Duration retryInterval,
+      MeterRegistry meterRegistry,
+      Ticker ticker) {
+    super(true);
+    this.name = name;
+    this.remote = remote;
+    this.invalidations = invalidations;
+    this.keyParser = keyParser;
+    this.retryIntervalNanos = retryInterval.toNanos();
+    this.ticker = ticker;
+    this.remoteRetryAtNanos = ticker.read();
+    this.localHits = counter(meterRegistry, "local", "hit");
+    this.localMisses = counter(meterRegistry, "local", "miss");
+    this.localEvictions = counter(meterRegistry, "local", "eviction");
+    this.remoteHits = counter(meterRegistry, "remote", "hit");
+    this.remoteMisses = counter(meterRegistry, "remote", "miss");
+    this.remoteEvictions = counter(meterRegistry, "remote", "eviction");
+    this.remoteErrors = counter(meterRegistry, "remote", "error");
+    this.local =
+        Caffeine.newBuilder()
+            .maximumSize(localMaxSize)
+            .expireAfterWrite(localTtl)
+            .ticker(ticker)
+            // Size and time evictions only; explicit invalidations are not counted
+            .evictionListener((key, value, cause) -> localEvictions.increment())
+            .build();
+  }
+
+  @Override
+  public String getName() {
+    return name;
+  }
+
+  @Override
+  public Object getNativeCache() {
+    return local;
+  }
+
+  @Override
+  protected Object lookup(Object key) {
+    Object value = local.getIfPresent(key);
+    if (value != null) {
+      localHits.increment();
+      return value;
+    }
+    localMisses.increment();
+    if (!remoteAvailable()) {
+      return null;
+    }
+    try {
+      ValueWrapper wrapper = remote.get(key);
+      if (wrapper == null) {
+        remoteMisses.increment();
+        return null;
+      }
+      remoteHits.increment();
+      value = toStoreValue(wrapper.get());
+      local.put(key, value);
+      return value;
+    } catch (RuntimeException e) {
+      remoteFailed("read", e);
+      return null;
+    }
+  }
+
+  /**
+   * Value of the key in the local tier, never calling the remote one; null when it is not there. A
+   * hit is counted, a miss is left to the lookup that follows it.
+   */
+  public ValueWrapper getLocal(Object key) {
+    Object value = local.getIfPresent(key);
+    if (value == null) {
+      return null;
+    }
+    localHits.increment();
+    return toValueWrapper(value);
+  }
+
+  /**
+   * Value of the key, loaded and stored in both tiers on a miss. Concurrent misses on one instance
+   * may each load the value.
+   */
+  @Override
+  @SuppressWarnings("unchecked")
+  public <T> T get(Object key, Callable<T> valueLoader) {
+    Object value = lookup(key);
+    if (value != null) {
+      return (T) fromStoreValue(value);
+    }
+    T loaded;
+    try {
+      loaded = valueLoader.call();
+    } catch (Exception e) {
+      throw new ValueRetrievalException(key, valueLoader, e);
+    }
+    put(key, loaded);
+    return loaded;
+  }
+
+  @Override
+  public void put(Object key, Object value) {
+    local.put(key, toStoreValue(value));
+    if (!remoteAvailable()) {
+      return;
+    }
+    try {
+      remote.put(key, value);
+    } catch (RuntimeException e) {
+      remoteFailed("write", e);
+    }
+  }
+
+  @Override
+  public void evict(Object key) {
+    local.invalidate(key);
+    if (remoteAvailable()) {
+      try {
+        remote.evict(key);
+        remoteEvictions.increment();
+      } catch (RuntimeException e) {
+        remoteFailed("evict", e);
+      }
+    }
+    announce(String.valueOf(key));
+  }
+
+  @Override
+  public void clear() {
+    local.invalidateAll();
+    if (remoteAvailable()) {
+      try {
+        remote.clear();
+      } catch (RuntimeException e) {
+        remoteFailed("clear", e);
+      }
+    }
+    announce(ALL_KEYS);
+  }
+
+  /** Applies an invalidation message from the channel to the local tier */
+  public void onInvalidation(String message) {
+    int separator = message.indexOf(' ');
+    if (separator < 0 || message.startsWith(origin + " ")) {
+      return;
+    }
+    String key = message.substring(separator + 1);
+    if (ALL_KEYS.equals(key)) {
+      local.invalidateAll();
+      return;
+    }
+    try {
+      local.invalidate(keyParser.apply(key));
+    } catch (RuntimeException e) {
+      log.warn("Ignoring invalidation of {} cache key {}: {}", name, key, e.getMessage());
+    }
+  }
+
+  long localSize() {
+    local.cleanUp();
+    return local.estimatedSize();
+  }
+
+  private void announce(String key) {
+    // The channel runs over the same Redis as the remote tier
+    if (invalidations == null || !remoteHealthy()) {
+      return;
+    }
+    try {
+      invalidations.accept(origin + " " + key);
+    } catch (RuntimeException e) {
+      remoteFailed("publish", e);
+    }
+  }
+
+  private boolean remoteAvailable() {
+    return remote != null && remoteHealthy();
+  }
+
+  private boolean remoteHealthy() {
+    return ticker.read() - remoteRetryAtNanos >= 0;
+  }
+
+  private void remoteFailed(String operation, RuntimeException e) {
+    remoteErrors.increment();
+    remoteRetryAtNanos = ticker.read() + retryIntervalNanos;
+    log.warn(
+        "Remote {} cache {} failed, using the local tier only for {} ms: {}",
+        name,
+        operation,
+        retryIntervalNanos / 1_000_000,
+        e.getMessage());
+  }
+
+  private Counter counter(MeterRegistry meterRegistry, String tier, String result) {
+    return Counter.builder("fraud.profile.cache")
+        .description("Two-tier cache lookups and evictions")
+        .tag("cache", name)
+        .tag("tier", tier)
+        .tag("result", result)
+        .register(meterRegistry);
+  }
+}
@@ -0,0 +1,530 @@
+package com.fintech.aifraudservice.service;
+
+import com.fintech.aifraudservice.model.ProfileMembership;
+import com.fintech.aifraudservice.model.ProfileMembership.Dimension;
+import com.fintech.aifraudservice.model.TransactionAnalysis;
+import com.fintech.aifraudservice.model.TransactionAnalysis.FraudStatus;
+import com.fintech.aifraudservice.model.UserBehaviorProfile;
+import com.fintech.aifraudservice.repository.UserBehaviorProfileRepository;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Collectors;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.cache.Cache;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+
+/**
+ * Keeps {@link UserBehaviorProfile}s current from the stream of persisted analyses without
+ * rescanning transaction history.
+ *
+ * <p>Amounts use Welford's running mean and variance plus min/max. Daily, weekly and monthly counts
+ * decay exponentially with one, seven and thirty day time constants. Countries, cities, devices,
+ * IPs, merchants, categories and payment methods are tracked with capped, decayed Space-Saving
+ * counters, and the profile membership holds fingerprints of the most frequent values of each
+ * dimension.
+ *
+ * <p>Only legitimate activity is learned: analyses approved when scored, and flagged analyses once
+ * a reviewer marks them as false positives. Observations are coalesced per user and applied on a
+ * schedule, so a busy user costs one UPDATE per flush instead of one per transaction. Flushed users
+ * are evicted from the {@value #PROFILE_CACHE} cache. Across instances the last flush of a profile
+ * wins.
+ *
+ * <p>Pending observations are bounded: users beyond {@code max-pending-users} are not queued, and a
+ * user keeps at most {@code max-pending-observations}, dropping the oldest. A chunk that fails to
+ * flush is split so that a user whose profile cannot be written does not hold back the others; such
+ * a user is dropped after {@code max-flush-attempts} failures of its own. Every dropped observation
+ * is counted in {@code fraud.profile.observations.dropped}.
+ */
+@Component
+@Slf4j
+public class UserBehaviorProfileUpdater implements TransactionAnalysisListener {
+
+  public static final String PROFILE_CACHE = "userBehaviorProfiles";
+
+  static final String COUNTRY = Dimension.COUNTRY.key();
+  static final String CITY = Dimension.CITY.key();
+  static final String DEVICE = Dimension.DEVICE.key();
+  static final String IP = Dimension.IP.key();
+  static final String MERCHANT = Dimension.MERCHANT.key();
+  static final String CATEGORY = Dimension.CATEGORY.key();
+  static final String PAYMENT_METHOD = Dimension.PAYMENT_METHOD.key();
+  static final String HOUR = "hour";
+
+  private static final double MILLIS_PER_DAY = 86_400_000.0;
+  private static final double FREQUENCY_TIME_CONSTANT_DAYS = 30.0;
+  private static final double RISK_SMOOTHING = 0.1;
+
+  // Hours holding at least this share of activity define the typical transaction window
+  private static final double TYPICAL_HOUR_SHARE = 0.05;
+
+  @Autowired private UserBehaviorProfileRepository userBehaviorProfileRepository;
+
+  @Autowired private TransactionTemplate transactionTemplate;
+
+  @Autowired
+  @Qualifier("userBehaviorProfileCache")
+  private ObjectProvider<Cache> profileCache;
+
+  @Value("${fraud.detection.profile.max-frequent-values:10}")
+  private int maxFrequentValues;
+
+  @Value("${fraud.detection.profile.flush-batch-size:500}")
+  private int flushBatchSize;
+
+  @Value("${fraud.detection.profile.min-transactions-for-hours:10}")
+  private int minTransactionsForHours;
+
+  @Value("${fraud.detection.profile.max-pending-users:100000}")
+  private int maxPendingUsers;
+
+  @Value("${fraud.detection.profile.max-pending-observations:1000}")
+  private int maxPendingObservations;
+
+  @Value("${fraud.detection.profile.max-flush-attempts:3}")
+  private int maxFlushAttempts;
+
+  @Autowired private MeterRegistry meterRegistry;
+
+  private final Map<Long, List<ProfileObservation>> pending = new ConcurrentHashMap<>();
+
+  // Failed flushes of users whose chunk failed while other users were written; flush only
+  private final Map<Long, Integer> flushFailures = new HashMap<>();
+
+  private Counter droppedForUsers;
+  private Counter droppedForObservations;
+  private Counter droppedForFailures;
+
+  @PostConstruct
+  void init() {
+    droppedForUsers = droppedCounter("pending-users");
+    droppedForObservations = droppedCounter("pending-observations");
+    droppedForFailures = droppedCounter("flush-failures");
+  }
+
+  @Override
+  public void onAnalysisSaved(TransactionAnalysisRequest request, TransactionAnalysis analysis) {
+    record(request, analysis);
+  }
+
+  /** A flagged transaction a reviewer found legitimate is learned once it is cleared */
+  @Override
+  public void onAnalysisReviewed(TransactionAnalysis analysis, FraudStatus previousStatus) {
+    if (previousStatus != FraudStatus.APPROVED && previousStatus != FraudStatus.FALSE_POSITIVE) {
+      record(null, analysis);
+    }
+  }
+
+  /**
+   * Queues a persisted analysis for its user's next profile flush. Only approved analyses and false
+   * positives are learned, so declined or still unreviewed transactions never become part of what
+   * the user normally does.
+   */
+  public void record(TransactionAnalysisRequest request, TransactionAnalysis analysis) {
+    if (analysis == null || analysis.getUserId() == null || analysis.getAmount() == null) {
+      return;
+    }
+    if (analysis.getFraudStatus() != FraudStatus.APPROVED
+        && analysis.getFraudStatus() != FraudStatus.FALSE_POSITIVE) {
+      return;
+    }
+    enqueue(analysis.getUserId(), List.of(ProfileObservation.of(request, analysis)), false);
+  }
+
+  /**
+   * Adds observations to a user's pending list within the pending limits, ahead of those already
+   * queued when they are older, as after a failed flush
+   */
+  private void enqueue(Long userId, List<ProfileObservation> observations, boolean older) {
+    if (!pending.containsKey(userId) && pending.size() >= maxPendingUsers) {
+      droppedForUsers.increment(observations.size());
+      return;
+    }
+    pending.compute(
+        userId,
+        (id, queued) -> {
+          List<ProfileObservation> list = queued != null ? queued : new ArrayList<>();
+          list.addAll(older ? 0 : list.size(), observations);
+          int excess = list.size() - maxPendingObservations;
+          if (excess > 0) {
+            list.subList(0, excess).clear();
+            droppedForObservations.increment(excess);
+          }
+          return list;
+        });
+  }
+
+  int pendingUsers() {
+    return pending.size();
+  }
+
+  /** Applies all coalesced observations, one transaction per chunk of users */
+  @Scheduled(fixedDelayString = "${fraud.detection.profile.flush-interval-ms:5000}")
+  public synchronized void flush() {
+    if (pending.isEmpty()) {
+      return;
+    }
+    long startTime = System.currentTimeMillis();
+    int users = 0;
+    Map<Long, List<ProfileObservation>> batch = new HashMap<>();
+    for (Long userId : pending.keySet()) {
+      List<ProfileObservation> observations = pending.remove(userId);
+      if (observations == null) {
+        continue;
+      }
+      batch.put(userId, observations);
+      users++;
+      if (batch.size() >= flushBatchSize) {
+        flushBatch(batch);
+        batch = new HashMap<>();
+      }
+    }
+    if (!batch.isEmpty()) {
+      flushBatch(batch);
+    }
+    log.debug(
+        "Flushed behavior profiles of {} users in {} ms",
+        users,
+        System.currentTimeMillis() - startTime);
+  }
+
+  @PreDestroy
+  public void flushOnShutdown() {
+    flush();
+  }
+
+  /**
+   * Writes a chunk of users in one transaction. A chunk that fails is split in two halves written
+   * on their own. While one half of a pair succeeds the failing halves keep being split, so a user
+   * whose profile cannot be written ends up alone; when both halves fail, as they do while the
+   * database is unavailable, their users are queued for the next flush.
+   */
+  private void flushBatch(Map<Long, List<ProfileObservation>> batch) {
+    if (!write(batch)) {
+      split(batch, false);
+    }
+  }
+
+  private void split(Map<Long, List<ProfileObservation>> failed, boolean othersWritten) {
+    if (failed.size() == 1) {
+      requeue(failed, othersWritten);
+      return;
+    }
+    Map<Long, List<ProfileObservation>> first = new HashMap<>();
+    Map<Long, List<ProfileObservation>> second = new HashMap<>();
+    failed.forEach(
+        (userId, observations) ->
+            (first.size() < failed.size() / 2 ? first : second).put(userId, observations));
+    boolean firstWritten = write(first);
+    boolean secondWritten = write(second);
+    if (!firstWritten && !secondWritten && !othersWritten) {
+      requeue(failed, false);
+      return;
+    }
+    if (!firstWritten) {
+      split(first, true);
+    }
+    if (!secondWritten) {
+      split(second, true);
+    }
+  }
+
+  private boolean write(Map<Long, List<ProfileObservation>> batch) {
+    try {
+      transactionTemplate.executeWithoutResult(
+          status -> {
+            Map<Long, UserBehaviorProfile> profiles = new HashMap<>();
+            for (UserBehaviorProfile profile :
+                userBehaviorProfileRepository.findByUserIdIn(batch.keySet())) {
+              profiles.put(profile.getUserId(), profile);
+            }
+            List<UserBehaviorProfile> created = new ArrayList<>();
+            LocalDateTime now = LocalDateTime.now();
+            for (Map.Entry<Long, List<ProfileObservation>> entry : batch.entrySet()) {
+              UserBehaviorProfile profile = profiles.get(entry.getKey());
+              if (profile == null) {
+                profile = new UserBehaviorProfile();
+                profile.setUserId(entry.getKey());
+                created.add(profile);
+              }
+              for (ProfileObservation observation : entry.getValue()) {
+                apply(profile, observation);
+              }
+              profile.setLastAnalysisDate(now);
+            }
+            // Existing profiles are written by dirty checking as batched UPDATEs
+            userBehaviorProfileRepository.saveAll(created);
+          });
+    } catch (RuntimeException e) {
+      log.warn("Failed to flush behavior profiles of {} users: {}", batch.size(), e.getMessage());
+      return false;
+    }
+    batch.keySet().forEach(flushFailures::remove);
+    evictCached(batch.keySet());
+    return true;
+  }
+
+  /**
+   * Queues a failed chunk for the next flush. A user that failed on its own while others were
+   * written is dropped once it has failed {@code max-flush-attempts} times.
+   */
+  private void requeue(Map<Long, List<ProfileObservation>> failed, boolean isolated) {
+    failed.forEach(
+        (userId, observations) -> {
+          if (isolated && flushFailures.merge(userId, 1, Integer::sum) >= maxFlushAttempts) {
+            flushFailures.remove(userId);
+            droppedForFailures.increment(observations.size());
+            log.error(
+                "Dropping {} profile observations of user {} after {} failed flushes",
+                observations.size(),
+                userId,
+                maxFlushAttempts);
+            return;
+          }
+          enqueue(userId, observations, true);
+        });
+    log.warn("Retrying behavior profiles of {} users next flush", failed.size());
+  }
+
+  private Counter droppedCounter(String reason) {
+    return Counter.builder("fraud.profile.observations.dropped")
+        .description("Analyses never applied to their user's behavior profile")
+        .tag("reason", reason)
+        .register(meterRegistry);
+  }
+
+  private void evictCached(Collection<Long> userIds) {
+    Cache cache = profileCache.getIfAvailable();
+    if (cache == null) {
+      return;
+    }
+    try {
+      userIds.forEach(cache::evict);
+    } catch (RuntimeException e) {
+      log.warn("Failed to evict cached behavior profiles: {}", e.getMessage());
+    }
+  }
+
+  /** Folds one observation into a profile */
+  void apply(UserBehaviorProfile profile, ProfileObservation observation) {
+    LocalDateTime previous = profile.getLastTransactionDate();
+    double elapsedDays =
+        previous == null
+            ? 0.0
+            : Math.max(
+                0.0, Duration.between(previous, observation.getTime()).toMillis() / MILLIS_PER_DAY);
+
+    // Amount statistics (Welford)
+    long count = (profile.getTotalTransactions() != null ? profile.getTotalTransactions() : 0) + 1;
+    double amount = observation.getAmount().doubleValue();
+    double mean = profile.getAmountMean() != null ? profile.getAmountMean() : 0.0;
+    double m2 = profile.getAmountM2() != null ? profile.getAmountM2() : 0.0;
+    double delta = amount - mean;
+    mean += delta / count;
+    m2 += delta * (amount - mean);
+    profile.setTotalTransactions(count);
+    profile.setAmountMean(mean);
+    profile.setAmountM2(m2);
+    profile.setAvgTransactionAmount(BigDecimal.valueOf(mean).setScale(2, RoundingMode.HALF_UP));
+    if (profile.getMaxTransactionAmount() == null
+        || observation.getAmount().compareTo(profile.getMaxTransactionAmount()) > 0) {
+      profile.setMaxTransactionAmount(observation.getAmount());
+    }
+    if (profile.getMinTransactionAmount() == null
+        || observation.getAmount().compareTo(profile.getMinTransactionAmount()) < 0) {
+      profile.setMinTransactionAmount(observation.getAmount());
+    }
+
+    // Decayed transaction counts
+    double daily = decay(profile.getDecayedDailyCount(), elapsedDays, 1.0) + 1.0;
+    double weekly = decay(profile.getDecayedWeeklyCount(), elapsedDays, 7.0) + 1.0;
+    double monthly = decay(profile.getDecayedMonthlyCount(), elapsedDays, 30.0) + 1.0;
+    profile.setDecayedDailyCount(daily);
+    profile.setDecayedWeeklyCount(weekly);
+    profile.setDecayedMonthlyCount(monthly);
+    profile.setDailyTransactionCount((int) Math.round(daily));
+    profile.setWeeklyTransactionCount((int) Math.round(weekly));
+    profile.setMonthlyTransactionCount((int) Math.round(monthly));
+
+    if (profile.getFirstTransactionDate() == null
+        || observation.getTime().isBefore(profile.getFirstTransactionDate())) {
+      profile.setFirstTransactionDate(observation.getTime());
+    }
+    if (previous == null || observation.getTime().isAfter(previous)) {
+      profile.setLastTransactionDate(observation.getTime());
+    }
+    ProfileMembership membership =
+        profile.getMembership() != null ? profile.getMembership() : new ProfileMembership();
+    membership.addActiveDay(observation.getTime().getDayOfWeek().getValue());
+
+    // Frequent values, aged by the time since the previous transaction
+    Map<String, Map<String, Double>> counts = copyOf(profile.getFrequencyCounts());
+    if (elapsedDays > 0) {
+      double factor = Math.exp(-elapsedDays / FREQUENCY_TIME_CONSTANT_DAYS);
+      counts.values().forEach(values -> values.replaceAll((value, weight) -> weight * factor));
+    }
+    observe(counts, COUNTRY, observation.getCountry());
+    observe(counts, CITY, observation.getCity());
+    observe(counts, DEVICE, observation.getDevice());
+    observe(counts, IP, observation.getIp());
+    observe(counts, MERCHANT, observation.getMerchant());
+    observe(counts, CATEGORY, observation.getCategory());
+    observe(counts, PAYMENT_METHOD, observation.getPaymentMethod());
+    counts
+        .computeIfAbsent(HOUR, dimension -> new LinkedHashMap<>())
+        .merge(String.valueOf(observation.getTime().getHour()), 1.0, Double::sum);
+    profile.setFrequencyCounts(counts);
+
+    for (Dimension dimension : Dimension.values()) {
+      membership.set(dimension, top(counts, dimension.key()));
+    }
+    profile.setMembership(membership);
+    if (count >= minTransactionsForHours) {
+      updateTypicalHours(profile, counts.get(HOUR));
+    }
+
+    // Smoothed risk history
+    profile.setBaseRiskScore(smooth(profile.getBaseRiskScore(), observation.getRiskScore()));
+    profile.setVelocityRiskScore(
+        smooth(profile.getVelocityRiskScore(), observation.getVelocityScore()));
+    profile.setBehavioralRiskScore(
+        smooth(profile.getBehavioralRiskScore(), observation.getBehavioralScore()));
+  }
+
+  /**
+   * Space-Saving update: a new value in a full dimension takes over the least frequent slot and
+   * inherits its count, so the tracked set stays capped while frequent values keep their slots.
+   */
+  private void observe(Map<String, Map<String, Double>> counts, String dimension, String value) {
+    if (value == null || value.isBlank()) {
+      return;
+    }
+    Map<String, Double> values = counts.computeIfAbsent(dimension, d -> new LinkedHashMap<>());
+    Double current = values.get(value);
+    if (current != null) {
+      values.put(value, current + 1.0);
+      return;
+    }
+    if (values.size() < maxFrequentValues * 2) {
+      values.put(value, 1.0);
+      return;
+    }
+    Map.Entry<String, Double> least =
+        values.entrySet().stream().min(Map.Entry.comparingByValue()).orElseThrow();
+    values.remove(least.getKey());
+    values.put(value, least.getValue() + 1.0);
+  }
+
+  private List<String> top(Map<String, Map<String, Double>> counts, String dimension) {
+    Map<String, Double> values = counts.get(dimension);
+    if (values == null) {
+      return List.of();
+    }
+    return values.entrySet().stream()
+        .sorted(Map.Entry.<String, Double>comparingByValue(Comparator.reverseOrder()))
+        .limit(maxFrequentValues)
+        .map(Map.Entry::getKey)
+        .collect(Collectors.toList());
+  }
+
+  private void updateTypicalHours(UserBehaviorProfile profile, Map<String, Double> hours) {
+    double total = hours.values().stream().mapToDouble(Double::doubleValue).sum();
+    int first = -1;
+    int last = -1;
+    for (int hour = 0; hour < 24; hour++) {
+      if (hours.getOrDefault(String.valueOf(hour), 0.0) >= total * TYPICAL_HOUR_SHARE) {
+        first = first < 0 ? hour : first;
+        last = hour;
+      }
+    }
+    if (first >= 0) {
+      profile.setTypicalStartTime(LocalTime.of(first, 0));
+      profile.setTypicalEndTime(LocalTime.of(last, 59, 59));
+    }
+  }
+
+  private static double decay(Double value, double elapsedDays, double timeConstantDays) {
+    if (value == null) {
+      return 0.0;
+    }
+    return value * Math.exp(-elapsedDays / timeConstantDays);
+  }
+
+  private static Double smooth(Double current, Double value) {
+    if (value == null) {
+      return current;
+    }
+    if (current == null) {
+      return value;
+    }
+    return current + RISK_SMOOTHING * (value - current);
+  }
+
+  private static Map<String, Map<String, Double>> copyOf(Map<String, Map<String, Double>> counts) {
+    Map<String, Map<String, Double>> copy = new LinkedHashMap<>();
+    if (counts != null) {
+      counts.forEach((dimension, values) -> copy.put(dimension, new LinkedHashMap<>(values)));
+    }
+    return copy;
+  }
+
+  /** The parts of an analysis that feed the behavior profile */
+  @Getter
+  @AllArgsConstructor
+  static class ProfileObservation {
+    private final LocalDateTime time;
+    private final BigDecimal amount;
+    private final String country;
+    private final String city;
+    private final String device;
+    private final String ip;
+    private final String merchant;
+    private final String category;
+    private final String paymentMethod;
+    private final Double riskScore;
+    private final Double velocityScore;
+    private final Double behavioralScore;
+
+    static ProfileObservation of(TransactionAnalysisRequest request, TransactionAnalysis analysis) {
+      LocalDateTime time =
+          request != null && request.getTransactionTime() != null
+              ? request.getTransactionTime()
+              : analysis.getCreatedAt() != null ? analysis.getCreatedAt() : LocalDateTime.now();
+      return new ProfileObservation(
+          time,
+          analysis.getAmount(),
+          analysis.getLocationCountry(),
+          analysis.getLocationCity(),
+          analysis.getDeviceFingerprint(),
+          analysis.getIpAddress(),
+          analysis.getMerchantId(),
+          analysis.getMerchantCategory(),
+          analysis.getPaymentMethod(),
+          analysis.getRiskScore(),
+          analysis.getVelocityScore(),
+          analysis.getBehavioralScore());
+    }
+  }
+}
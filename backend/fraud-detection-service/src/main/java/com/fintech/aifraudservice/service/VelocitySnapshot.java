@@ -0,0 +1,44 @@
+package com.fintech.aifraudservice.service;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import lombok.Value;
+
+/** Point-in-time view of a user's transaction velocity over the 1h and 24h windows */
+@Value
+public class VelocitySnapshot {
+
+  public static final VelocitySnapshot EMPTY = new VelocitySnapshot(0L, 0L, 0L, 0L);
+
+  long transactionsLastHour;
+  long transactionsLastDay;
+
+  // Amounts are kept in minor units (cents) to stay exact without BigDecimal arithmetic
+  long amountLastHourCents;
+  long amountLastDayCents;
+
+  /** This snapshot with one more transaction of the given amount in both windows */
+  public VelocitySnapshot plus(BigDecimal amount) {
+    long cents = toCents(amount);
+    return new VelocitySnapshot(
+        transactionsLastHour + 1,
+        transactionsLastDay + 1,
+        amountLastHourCents + cents,
+        amountLastDayCents + cents);
+  }
+
+  public BigDecimal getAmountLastHour() {
+    return BigDecimal.valueOf(amountLastHourCents, 2);
+  }
+
+  public BigDecimal getAmountLastDay() {
+    return BigDecimal.valueOf(amountLastDayCents, 2);
+  }
+
+  static long toCents(BigDecimal amount) {
+    if (amount == null) {
+      return 0L;
+    }
+    return amount.setScale(2, RoundingMode.HALF_UP).unscaledValue().longValue();
+  }
+}
@@ -0,0 +1,271 @@
+package com.fintech.aifraudservice.service;
+
+import com.fintech.aifraudservice.model.TransactionAnalysis;
+import com.fintech.aifraudservice.repository.TransactionAnalysisRepository;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import java.math.BigDecimal;
+import java.time.Clock;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+/**
+ * In-memory per-user sliding windows of transaction counts and amounts.
+ *
+ * <p>Each user keeps two bucketed rings: 13 five-minute buckets for the 1h window and 49 half-hour
+ * buckets for the 24h window. A window is rebuilt from {@code transaction_analyses} the first time
+ * a user is looked up and is then kept current by {@link #record(TransactionAnalysis)}, so velocity
+ * lookups never touch the database. The ring ends at the current, partly elapsed bucket and holds
+ * one bucket more than the window, so it always covers the whole window and may include up to one
+ * bucket of older activity, which errs on the side of a higher velocity.
+ *
+ * <p>The seed query runs without holding the user's window; analyses recorded while it runs are
+ * buffered and merged in, skipping those the query already returned. At most {@code
+ * fraud.detection.velocity.max-users} windows are kept; an evicted user is seeded again on the next
+ * lookup.
+ */
+@Component
+@Slf4j
+public class VelocityWindowAggregator implements TransactionAnalysisListener {
+
+  private static final long HOUR_BUCKET_MILLIS = 5 * 60 * 1000L;
+  // One bucket more than each window, as the newest bucket is only partly elapsed
+  private static final int HOUR_BUCKETS = 13;
+  private static final long DAY_BUCKET_MILLIS = 30 * 60 * 1000L;
+  private static final int DAY_BUCKETS = 49;
+  private static final long DAY_SPAN_MILLIS = DAY_BUCKET_MILLIS * DAY_BUCKETS;
+  private static final long DEFAULT_MAX_USERS = 1_000_000L;
+
+  private final TransactionAnalysisRepository transactionAnalysisRepository;
+  private final Clock clock;
+  private final Cache<Long, UserWindow> windowCache;
+  private final Map<Long, UserWindow> windows;
+
+  @Autowired
+  public VelocityWindowAggregator(
+      TransactionAnalysisRepository transactionAnalysisRepository,
+      @Value("${fraud.detection.velocity.max-users:1000000}") long maxUsers) {
+    this(transactionAnalysisRepository, maxUsers, Clock.systemDefaultZone());
+  }
+
+  VelocityWindowAggregator(
+      TransactionAnalysisRepository transactionAnalysisRepository, Clock clock) {
+    this(transactionAnalysisRepository, DEFAULT_MAX_USERS, clock);
+  }
+
+  VelocityWindowAggregator(
+      TransactionAnalysisRepository transactionAnalysisRepository, long maxUsers, Clock clock) {
+    this.transactionAnalysisRepository = transactionAnalysisRepository;
+    this.clock = clock;
+    this.windowCache = Caffeine.newBuilder().maximumSize(maxUsers).build();
+    this.windows = windowCache.asMap();
+  }
+
+  /** Current 1h/24h velocity for a user, seeding the window from the repository on first use */
+  public VelocitySnapshot snapshot(Long userId) {
+    if (userId == null) {
+      return VelocitySnapshot.EMPTY;
+    }
+    UserWindow window = windows.computeIfAbsent(userId, id -> new UserWindow());
+    synchronized (window) {
+      if (window.seeded) {
+        return window.snapshot(clock.millis());
+      }
+    }
+    seed(userId, window);
+    synchronized (window) {
+      return window.snapshot(clock.millis());
+    }
+  }
+
+  /**
+   * Current velocity of a user whose window is already seeded, or {@code null} when the window
+   * would first have to be seeded from the repository. Never touches the database.
+   */
+  public VelocitySnapshot cached(Long userId) {
+    if (userId == null) {
+      return VelocitySnapshot.EMPTY;
+    }
+    UserWindow window = windows.get(userId);
+    if (window == null) {
+      return null;
+    }
+    synchronized (window) {
+      return window.seeded ? window.snapshot(clock.millis()) : null;
+    }
+  }
+
+  @Override
+  public void onAnalysisSaved(TransactionAnalysisRequest request, TransactionAnalysis analysis) {
+    record(analysis);
+  }
+
+  /**
+   * Adds a persisted analysis to its user's window. Users that have never been looked up are
+   * skipped: their first lookup rebuilds the window from the repository, which already contains the
+   * saved row. Analyses of a user whose seed query is running are buffered until it returns.
+   */
+  public void record(TransactionAnalysis analysis) {
+    if (analysis == null || analysis.getUserId() == null || analysis.getAmount() == null) {
+      return;
+    }
+    UserWindow window = windows.get(analysis.getUserId());
+    if (window == null) {
+      return;
+    }
+    long timestamp = toEpochMillis(analysis.getCreatedAt());
+    long cents = VelocitySnapshot.toCents(analysis.getAmount());
+    synchronized (window) {
+      if (window.seeded) {
+        window.add(timestamp, cents, clock.millis());
+      } else {
+        window.pending.add(new Pending(analysis.getId(), timestamp, cents));
+      }
+    }
+  }
+
+  /** Drops windows with no activity in their 24h ring; they are empty and cheap to rebuild. */
+  @Scheduled(fixedDelayString = "${fraud.detection.velocity.eviction-interval-ms:300000}")
+  public void evictIdleWindows() {
+    long cutoff = clock.millis() - DAY_SPAN_MILLIS;
+    int before = windows.size();
+    windows.values().removeIf(window -> window.lastActivityMillis < cutoff);
+    int evicted = before - windows.size();
+    if (evicted > 0) {
+      log.debug("Evicted {} idle velocity windows", evicted);
+    }
+  }
+
+  int trackedUsers() {
+    windowCache.cleanUp();
+    return windows.size();
+  }
+
+  /**
+   * Fills the window from the repository. The query runs without the window's monitor, so records
+   * for the user are not held up by it; concurrent first lookups may both query, and the first to
+   * finish seeds the window.
+   */
+  private void seed(Long userId, UserWindow window) {
+    long now = clock.millis();
+    LocalDateTime since =
+        LocalDateTime.ofInstant(
+            Instant.ofEpochMilli(now - DAY_SPAN_MILLIS), ZoneId.systemDefault());
+    List<Object[]> rows =
+        transactionAnalysisRepository.findUserTransactionAmountsSince(userId, since);
+    synchronized (window) {
+      if (window.seeded) {
+        return;
+      }
+      now = clock.millis();
+      Set<Long> seededIds = new HashSet<>();
+      for (Object[] row : rows) {
+        window.add(
+            toEpochMillis((LocalDateTime) row[0]),
+            VelocitySnapshot.toCents((BigDecimal) row[1]),
+            now);
+        seededIds.add((Long) row[2]);
+      }
+      // Recorded while the query ran, and committed too late for it
+      for (Pending pending : window.pending) {
+        if (pending.id == null || !seededIds.contains(pending.id)) {
+          window.add(pending.timestamp, pending.cents, now);
+        }
+      }
+      window.pending.clear();
+      window.seeded = true;
+      window.lastActivityMillis = Math.max(window.lastActivityMillis, now);
+    }
+    log.debug("Seeded velocity window for user {} with {} transactions", userId, rows.size());
+  }
+
+  private long toEpochMillis(LocalDateTime dateTime) {
+    if (dateTime == null) {
+      return clock.millis();
+    }
+    return dateTime.atZone(ZoneId.systemDefault()).toInstant().toEpochMilli();
+  }
+
+  /** Both rings of a single user; all access is guarded by the window's monitor. */
+  private static final class UserWindow {
+    private final Ring hour = new Ring(HOUR_BUCKETS, HOUR_BUCKET_MILLIS);
+    private final Ring day = new Ring(DAY_BUCKETS, DAY_BUCKET_MILLIS);
+    private final List<Pending> pending = new ArrayList<>();
+    private boolean seeded;
+    private volatile long lastActivityMillis;
+
+    void add(long timestamp, long cents, long now) {
+      hour.add(timestamp, cents, now);
+      day.add(timestamp, cents, now);
+      lastActivityMillis = Math.max(lastActivityMillis, Math.min(timestamp, now));
+    }
+
+    VelocitySnapshot snapshot(long now) {
+      hour.advance(now);
+      day.advance(now);
+      return new VelocitySnapshot(hour.totalCount, day.totalCount, hour.totalCents, day.totalCents);
+    }
+  }
+
+  /** Analysis recorded before its user's window was seeded */
+  private record Pending(Long id, long timestamp, long cents) {}
+
+  /**
+   * Fixed ring of time buckets with running totals. Buckets are cleared lazily as the head moves
+   * forward, so both adds and reads are O(1) amortised.
+   */
+  private static final class Ring {
+    private final int[] counts;
+    private final long[] cents;
+    private final long bucketMillis;
+    private long head = Long.MIN_VALUE;
+    private long totalCount;
+    private long totalCents;
+
+    Ring(int buckets, long bucketMillis) {
+      this.counts = new int[buckets];
+      this.cents = new long[buckets];
+      this.bucketMillis = bucketMillis;
+    }
+
+    void add(long timestamp, long amountCents, long now) {
+      advance(now);
+      long bucket = Math.min(timestamp, now) / bucketMillis;
+      if (bucket <= head - counts.length) {
+        return; // older than the window
+      }
+      int slot = (int) Math.floorMod(bucket, (long) counts.length);
+      counts[slot]++;
+      cents[slot] += amountCents;
+      totalCount++;
+      totalCents += amountCents;
+    }
+
+    void advance(long now) {
+      long bucket = now / bucketMillis;
+      if (bucket <= head) {
+        return;
+      }
+      long steps = head == Long.MIN_VALUE ? counts.length : Math.min(bucket - head, counts.length);
+      for (long i = 1; i <= steps; i++) {
+        int slot = (int) Math.floorMod(bucket - steps + i, (long) counts.length);
+        totalCount -= counts[slot];
+        totalCents -= cents[slot];
+        counts[slot] = 0;
+        cents[slot] = 0L;
+      }
+      head = bucket;
+    }
+  }
+}
@@ -0,0 +1,421 @@
+package com.fintech.aifraudservice.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fintech.aifraudservice.model.TransactionAnalysis;
+import com.fintech.aifraudservice.repository.TransactionAnalysisBatchWriter;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import java.io.BufferedReader;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.BeanUtils;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.SmartLifecycle;
+import org.springframework.stereotype.Component;
+
+/**
+ * Optional write-behind persistence for single-transaction analyses. When enabled, scored analyses
+ * are handed to a bounded queue and the decision is returned without waiting for the insert; a
+ * flusher thread drains whatever has accumulated and writes it through {@link
+ * TransactionAnalysisBatchWriter} in JDBC batches. Listeners and result publishing run once a row
+ * is stored.
+ *
+ * <p>When the queue stays full for {@code offer-timeout-ms} the caller falls back to a synchronous
+ * save. On shutdown new submissions are refused, in-flight ones finish enqueueing, and the queue is
+ * drained to the database. Rows that cannot be written are appended to a journal file. Journals are
+ * replayed on start, and by the flusher once {@code replay-backoff-ms} has passed without anything
+ * new being journaled; the backoff doubles up to {@code replay-max-backoff-ms} while the database
+ * keeps failing.
+ */
+@Component
+@Slf4j
+public class WriteBehindAnalysisWriter implements SmartLifecycle {
+
+  private static final String JOURNAL_PREFIX = "pending-analyses-";
+  private static final String JOURNAL_SUFFIX = ".jsonl";
+  private static final long IDLE_POLL_MS = 100;
+
+  @Autowired private TransactionAnalysisBatchWriter transactionAnalysisBatchWriter;
+
+  @Autowired private TransactionAnalysisPublisher transactionAnalysisPublisher;
+
+  @Autowired private ObjectMapper objectMapper;
+
+  @Autowired private MeterRegistry meterRegistry;
+
+  @Value("${fraud.detection.persistence.write-behind.enabled:false}")
+  private boolean enabled;
+
+  @Value("${fraud.detection.persistence.write-behind.queue-capacity:10000}")
+  private int queueCapacity;
+
+  @Value("${fraud.detection.persistence.write-behind.max-batch-size:500}")
+  private int maxBatchSize;
+
+  @Value("${fraud.detection.persistence.write-behind.offer-timeout-ms:50}")
+  private long offerTimeoutMs;
+
+  @Value("${fraud.detection.persistence.write-behind.shutdown-timeout-ms:10000}")
+  private long shutdownTimeoutMs;
+
+  @Value("${fraud.detection.persistence.write-behind.journal-dir:data/write-behind}")
+  private String journalDir;
+
+  @Value("${fraud.detection.persistence.write-behind.replay-backoff-ms:1000}")
+  private long replayBackoffMs;
+
+  @Value("${fraud.detection.persistence.write-behind.replay-max-backoff-ms:60000}")
+  private long replayMaxBackoffMs;
+
+  private final AtomicLong journalSequence = new AtomicLong();
+
+  // Submitters share it while they check running and enqueue; stop takes it alone to clear running,
+  // so nothing can land in the queue after the flusher's final drain
+  private final ReadWriteLock submitLock = new ReentrantReadWriteLock();
+
+  private BlockingQueue<PendingAnalysis> queue;
+  private Thread flusher;
+  private volatile boolean running;
+
+  // Guarded by this, like the journal files themselves
+  private boolean journalsPending;
+  private long replayDelayMs;
+  private long nextReplayAt;
+
+  private Timer flushTimer;
+  private Counter flushedRows;
+  private Counter rejectedRows;
+  private Counter journaledRows;
+
+  public boolean isEnabled() {
+    return enabled;
+  }
+
+  /**
+   * Queues an analysis for persistence. The analysis id stays {@code null} until the row is
+   * flushed, and a duplicate transaction id is only detected at flush time, where it is dropped.
+   *
+   * @return {@code false} when write-behind is disabled, stopping or saturated; the caller must
+   *     then persist the analysis itself
+   */
+  public boolean submit(TransactionAnalysisRequest request, TransactionAnalysis analysis) {
+    if (!running) {
+      return false;
+    }
+    // The flusher works on a copy so the caller can keep reading the returned analysis
+    TransactionAnalysis copy = new TransactionAnalysis();
+    BeanUtils.copyProperties(analysis, copy);
+    if (analysis.getFraudIndicators() != null) {
+      copy.setFraudIndicators(new HashMap<>(analysis.getFraudIndicators()));
+    }
+    submitLock.readLock().lock();
+    try {
+      if (!running) {
+        return false;
+      }
+      if (queue.offer(new PendingAnalysis(request, copy), offerTimeoutMs, TimeUnit.MILLISECONDS)) {
+        return true;
+      }
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    } finally {
+      submitLock.readLock().unlock();
+    }
+    rejectedRows.increment();
+    return false;
+  }
+
+  @Override
+  public void start() {
+    if (!enabled || running) {
+      return;
+    }
+    queue = new ArrayBlockingQueue<>(queueCapacity);
+    Gauge.builder("fraud.analysis.write_behind.queue.depth", queue, Collection::size)
+        .description("Analyses waiting to be persisted")
+        .register(meterRegistry);
+    flushTimer =
+        Timer.builder("fraud.analysis.write_behind.flush")
+            .description("Time to persist one write-behind batch")
+            .register(meterRegistry);
+    flushedRows = meterRegistry.counter("fraud.analysis.write_behind.flushed");
+    rejectedRows = meterRegistry.counter("fraud.analysis.write_behind.rejected");
+    journaledRows = meterRegistry.counter("fraud.analysis.write_behind.journaled");
+
+    synchronized (this) {
+      replayDelayMs = replayBackoffMs;
+      nextReplayAt = 0;
+    }
+    replayJournals();
+
+    running = true;
+    flusher = new Thread(this::runFlusher, "analysis-write-behind");
+    flusher.start();
+    log.info(
+        "Write-behind persistence started (capacity {}, max batch {})",
+        queueCapacity,
+        maxBatchSize);
+  }
+
+  @Override
+  public void stop() {
+    submitLock.writeLock().lock();
+    try {
+      if (!running) {
+        return;
+      }
+      running = false;
+    } finally {
+      submitLock.writeLock().unlock();
+    }
+    try {
+      flusher.join(shutdownTimeoutMs);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+    if (flusher.isAlive()) {
+      log.warn("Write-behind flusher did not finish within {} ms", shutdownTimeoutMs);
+      flusher.interrupt();
+    }
+    List<PendingAnalysis> remaining = new ArrayList<>();
+    queue.drainTo(remaining);
+    if (!remaining.isEmpty()) {
+      journal(remaining);
+    }
+  }
+
+  @Override
+  public boolean isRunning() {
+    return running;
+  }
+
+  @Override
+  public int getPhase() {
+    // Start before and stop after the web server and Kafka listeners that feed the queue
+    return SmartLifecycle.DEFAULT_PHASE - 4096;
+  }
+
+  private void runFlusher() {
+    List<PendingAnalysis> batch = new ArrayList<>(maxBatchSize);
+    while (running || !queue.isEmpty()) {
+      if (running && replayDue()) {
+        replayJournals();
+      }
+      try {
+        PendingAnalysis first = queue.poll(IDLE_POLL_MS, TimeUnit.MILLISECONDS);
+        if (first == null) {
+          continue;
+        }
+        batch.add(first);
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        return;
+      }
+      // Whatever queued up during the previous flush goes out in this one
+      queue.drainTo(batch, maxBatchSize - 1);
+      flush(batch);
+      batch.clear();
+    }
+  }
+
+  /**
+   * Whether journals are waiting and the backoff since the last journaled row has passed. The
+   * replay is itself the retry: rows it cannot write are journaled again and push it back further.
+   */
+  private synchronized boolean replayDue() {
+    if (!journalsPending || System.currentTimeMillis() < nextReplayAt) {
+      return false;
+    }
+    journalsPending = false;
+    return true;
+  }
+
+  void flush(List<PendingAnalysis> batch) {
+    flushTimer.record(
+        () -> {
+          List<TransactionAnalysis> analyses =
+              batch.stream().map(PendingAnalysis::getAnalysis).collect(Collectors.toList());
+          List<String> errors;
+          try {
+            errors = transactionAnalysisBatchWriter.insertAll(analyses);
+          } catch (RuntimeException e) {
+            log.error("Write-behind flush of {} analyses failed: {}", batch.size(), e.getMessage());
+            journal(batch);
+            return;
+          }
+
+          List<PendingAnalysis> failed = new ArrayList<>();
+          for (int i = 0; i < batch.size(); i++) {
+            PendingAnalysis pending = batch.get(i);
+            if (errors.get(i) != null) {
+              failed.add(pending);
+              continue;
+            }
+            flushedRows.increment();
+            try {
+              transactionAnalysisPublisher.analysisSaved(
+                  pending.getRequest(), pending.getAnalysis());
+            } catch (RuntimeException e) {
+              log.warn(
+                  "Post-persist handling failed for transaction {}: {}",
+                  pending.getAnalysis().getTransactionId(),
+                  e.getMessage());
+            }
+          }
+          if (!failed.isEmpty()) {
+            journalUnlessStored(failed);
+          }
+        });
+  }
+
+  /** Rows whose transaction id is already stored are duplicates and are dropped */
+  private void journalUnlessStored(List<PendingAnalysis> failed) {
+    Set<String> existing;
+    try {
+      existing =
+          transactionAnalysisBatchWriter.findExistingTransactionIds(
+              failed.stream()
+                  .map(pending -> pending.getAnalysis().getTransactionId())
+                  .collect(Collectors.toList()));
+    } catch (RuntimeException e) {
+      existing = Set.of();
+    }
+    List<PendingAnalysis> retry = new ArrayList<>();
+    for (PendingAnalysis pending : failed) {
+      if (existing.contains(pending.getAnalysis().getTransactionId())) {
+        log.warn(
+            "Dropping duplicate analysis for transaction {}",
+            pending.getAnalysis().getTransactionId());
+      } else {
+        retry.add(pending);
+      }
+    }
+    if (!retry.isEmpty()) {
+      journal(retry);
+    }
+  }
+
+  private synchronized void journal(List<PendingAnalysis> entries) {
+    Path file =
+        Paths.get(
+            journalDir,
+            JOURNAL_PREFIX
+                + System.currentTimeMillis()
+                + "-"
+                + journalSequence.incrementAndGet()
+                + JOURNAL_SUFFIX);
+    try {
+      Files.createDirectories(file.getParent());
+      try (FileOutputStream out = new FileOutputStream(file.toFile())) {
+        writeEntries(out, entries);
+        out.getFD().sync();
+      }
+      journaledRows.increment(entries.size());
+      journalsPending = true;
+      nextReplayAt = System.currentTimeMillis() + replayDelayMs;
+      replayDelayMs = Math.min(replayDelayMs * 2, replayMaxBackoffMs);
+      log.warn("Journaled {} unpersisted analyses to {}", entries.size(), file);
+    } catch (IOException e) {
+      log.error(
+          "Failed to journal analyses for transactions {}: {}",
+          entries.stream()
+              .map(pending -> pending.getAnalysis().getTransactionId())
+              .collect(Collectors.toList()),
+          e.getMessage());
+    }
+  }
+
+  private void writeEntries(OutputStream out, List<PendingAnalysis> entries) throws IOException {
+    for (PendingAnalysis pending : entries) {
+      out.write(objectMapper.writeValueAsBytes(pending));
+      out.write('\n');
+    }
+  }
+
+  /**
+   * Re-submits journaled analyses; failures are journaled again. The backoff is reset once a replay
+   * writes everything.
+   */
+  void replayJournals() {
+    Path dir = Paths.get(journalDir);
+    if (!Files.isDirectory(dir)) {
+      return;
+    }
+    long sequence = journalSequence.get();
+    List<Path> files;
+    try (Stream<Path> listing = Files.list(dir)) {
+      files =
+          listing
+              .filter(path -> path.getFileName().toString().startsWith(JOURNAL_PREFIX))
+              .sorted()
+              .collect(Collectors.toList());
+    } catch (IOException e) {
+      log.error("Failed to list write-behind journal {}: {}", dir, e.getMessage());
+      return;
+    }
+
+    for (Path file : files) {
+      List<PendingAnalysis> entries = new ArrayList<>();
+      try (BufferedReader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+        String line;
+        while ((line = reader.readLine()) != null) {
+          if (!line.isBlank()) {
+            PendingAnalysis pending = objectMapper.readValue(line, PendingAnalysis.class);
+            pending.getAnalysis().setId(null);
+            entries.add(pending);
+          }
+        }
+      } catch (IOException e) {
+        log.error("Skipping unreadable write-behind journal {}: {}", file, e.getMessage());
+        continue;
+      }
+      log.info("Replaying {} journaled analyses from {}", entries.size(), file);
+      for (int from = 0; from < entries.size(); from += maxBatchSize) {
+        flush(entries.subList(from, Math.min(from + maxBatchSize, entries.size())));
+      }
+      try {
+        Files.delete(file);
+      } catch (IOException e) {
+        log.error("Failed to delete replayed journal {}: {}", file, e.getMessage());
+      }
+    }
+    synchronized (this) {
+      if (journalSequence.get() == sequence) {
+        replayDelayMs = replayBackoffMs;
+      }
+    }
+  }
+
+  @Data
+  @NoArgsConstructor
+  @AllArgsConstructor
+  static class PendingAnalysis {
+    private TransactionAnalysisRequest request;
+    private TransactionAnalysis analysis;
+  }
+}
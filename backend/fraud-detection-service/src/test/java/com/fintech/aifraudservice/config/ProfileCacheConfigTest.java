@@ -0,0 +1,54 @@
+package com.fintech.aifraudservice.config;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import com.fintech.aifraudservice.model.ProfileMembership;
+import com.fintech.aifraudservice.model.ProfileMembership.Dimension;
+import com.fintech.aifraudservice.model.UserBehaviorProfile;
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.util.List;
+import java.util.Map;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.redis.serializer.GenericJackson2JsonRedisSerializer;
+
+class ProfileCacheConfigTest {
+
+  @Test
+  void profileSerializer_shouldRoundTripProfilesThroughRedis() {
+    UserBehaviorProfile profile = new UserBehaviorProfile();
+    profile.setId(11L);
+    profile.setUserId(42L);
+    profile.setAvgTransactionAmount(new BigDecimal("81.25"));
+    profile.setAmountMean(81.25);
+    profile.setAmountM2(1_530.5);
+    profile.setDecayedDailyCount(2.75);
+    profile.setTypicalStartTime(LocalTime.of(8, 30));
+    profile.setTypicalEndTime(LocalTime.of(22, 0));
+    profile.setTotalTransactions(57L);
+    profile.setLastTransactionDate(LocalDateTime.of(2024, 3, 4, 10, 15, 30));
+    ProfileMembership membership = new ProfileMembership();
+    membership.set(Dimension.COUNTRY, List.of("US", "CA"));
+    membership.set(Dimension.DEVICE, List.of("device-1"));
+    membership.addActiveDay(1);
+    membership.addActiveDay(6);
+    profile.setMembership(membership);
+    profile.setFrequencyCounts(
+        Map.of(
+            "country", Map.of("US", 12.5, "CA", 3.0),
+            "hour", Map.of("9", 4.25)));
+
+    GenericJackson2JsonRedisSerializer serializer = ProfileCacheConfig.profileSerializer();
+    Object read = serializer.deserialize(serializer.serialize(profile));
+
+    UserBehaviorProfile copy = assertInstanceOf(UserBehaviorProfile.class, read);
+    assertEquals(profile, copy);
+    assertEquals(membership, copy.getMembership());
+    assertTrue(copy.getMembership().contains(Dimension.COUNTRY, "CA"));
+    assertFalse(copy.getMembership().contains(Dimension.COUNTRY, "FR"));
+    assertEquals(membership.getActiveDaysOfWeek(), copy.getMembership().getActiveDaysOfWeek());
+    assertEquals(profile.getFrequencyCounts(), copy.getFrequencyCounts());
+    assertEquals(profile.getAmountStdDev(), copy.getAmountStdDev());
+  }
+}
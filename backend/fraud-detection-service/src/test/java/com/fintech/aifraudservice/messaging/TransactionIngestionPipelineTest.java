@@ -0,0 +1,260 @@
+package com.fintech.aifraudservice.messaging;
+
+import static org.awaitility.Awaitility.await;
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.Mockito.*;
+
+import com.fintech.aifraudservice.config.KafkaIngestionConfig;
+import com.fintech.aifraudservice.service.BatchAnalysisResult;
+import com.fintech.aifraudservice.service.BatchFraudAnalysisService;
+import com.fintech.aifraudservice.service.TransactionAnalysisRequest;
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+import org.apache.kafka.clients.admin.AdminClient;
+import org.apache.kafka.clients.admin.AdminClientConfig;
+import org.apache.kafka.clients.consumer.Consumer;
+import org.apache.kafka.clients.consumer.OffsetAndMetadata;
+import org.apache.kafka.common.TopicPartition;
+import org.apache.kafka.common.serialization.StringDeserializer;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.ImportAutoConfiguration;
+import org.springframework.boot.autoconfigure.kafka.KafkaAutoConfiguration;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.kafka.config.KafkaListenerEndpointRegistry;
+import org.springframework.kafka.core.DefaultKafkaConsumerFactory;
+import org.springframework.kafka.core.KafkaTemplate;
+import org.springframework.kafka.listener.MessageListenerContainer;
+import org.springframework.kafka.test.EmbeddedKafkaBroker;
+import org.springframework.kafka.test.context.EmbeddedKafka;
+import org.springframework.kafka.test.utils.KafkaTestUtils;
+import org.springframework.test.annotation.DirtiesContext;
+
+@SpringBootTest(
+    classes = {KafkaIngestionConfig.class, TransactionEventListener.class},
+    properties = {
+      "spring.kafka.bootstrap-servers=${spring.embedded.kafka.brokers}",
+      "fraud.detection.ingest.group-id=" + TransactionIngestionPipelineTest.GROUP,
+      "spring.kafka.consumer.auto-offset-reset=earliest",
+      "fraud.detection.ingest.enabled=true",
+      "fraud.detection.ingest.topic=" + TransactionIngestionPipelineTest.TOPIC,
+      "fraud.detection.ingest.concurrency=1",
+      "fraud.detection.ingest.retry.backoff-ms=100",
+      "fraud.detection.ingest.retry.max-attempts=3"
+    })
+@ImportAutoConfiguration(KafkaAutoConfiguration.class)
+@EmbeddedKafka(
+    partitions = 2,
+    topics = {
+      TransactionIngestionPipelineTest.TOPIC,
+      TransactionIngestionPipelineTest.TOPIC + ".DLT"
+    })
+@DirtiesContext
+class TransactionIngestionPipelineTest {
+
+  static final String TOPIC = "transaction-events-test";
+  static final String GROUP = "fraud-detection-test";
+
+  @MockBean private BatchFraudAnalysisService batchFraudAnalysisService;
+
+  @Autowired private KafkaTemplate<String, Object> kafkaTemplate;
+
+  @Autowired private EmbeddedKafkaBroker embeddedKafkaBroker;
+
+  @Autowired private KafkaListenerEndpointRegistry kafkaListenerEndpointRegistry;
+
+  private final List<TransactionAnalysisRequest> processed =
+      Collections.synchronizedList(new ArrayList<>());
+
+  @BeforeEach
+  void setUp() {
+    processed.clear();
+  }
+
+  @Test
+  void shouldScoreEventsInPerUserOrderAndCommitOffsetsAfterPersisting() {
+    when(batchFraudAnalysisService.analyzeBatch(anyList()))
+        .thenAnswer(invocation -> succeed(invocation.getArgument(0)));
+
+    for (int i = 0; i < 5; i++) {
+      send(request("order-a-" + i, 1L));
+      send(request("order-b-" + i, 2L));
+    }
+
+    await()
+        .atMost(Duration.ofSeconds(30))
+        .untilAsserted(() -> assertEquals(10L, committedOffsets()));
+    assertEquals(
+        List.of("order-a-0", "order-a-1", "order-a-2", "order-a-3", "order-a-4"),
+        transactionIdsOf(1L));
+    assertEquals(
+        List.of("order-b-0", "order-b-1", "order-b-2", "order-b-3", "order-b-4"),
+        transactionIdsOf(2L));
+  }
+
+  @Test
+  void shouldRedeliverBatchWhenPersistenceFails() throws Exception {
+    AtomicInteger attempts = new AtomicInteger();
+    when(batchFraudAnalysisService.analyzeBatch(anyList()))
+        .thenAnswer(
+            invocation -> {
+              List<TransactionAnalysisRequest> requests = invocation.getArgument(0);
+              if (attempts.getAndIncrement() == 0) {
+                List<BatchAnalysisResult> results = new ArrayList<>();
+                for (int i = 0; i < requests.size(); i++) {
+                  results.add(
+                      BatchAnalysisResult.retryableFailure(
+                          i, requests.get(i).getTransactionId(), "database unavailable"));
+                }
+                return results;
+              }
+              return succeed(requests);
+            });
+    long before = committedOffsets();
+
+    send(request("retry-1", 3L));
+
+    await()
+        .atMost(Duration.ofSeconds(30))
+        .untilAsserted(() -> assertEquals(before + 1, committedOffsets()));
+    assertTrue(attempts.get() >= 2);
+    assertEquals(List.of("retry-1"), transactionIdsOf(3L));
+  }
+
+  @Test
+  void shouldRedeliverMixedBatchFromTheFirstRetryableRecord() throws Exception {
+    // Retryable on its first attempt only, as for a claim still held by another instance
+    Map<String, Integer> failures = new ConcurrentHashMap<>(Map.of("mixed-2", 1));
+    when(batchFraudAnalysisService.analyzeBatch(anyList()))
+        .thenAnswer(invocation -> succeedExcept(invocation.getArgument(0), failures));
+    long before = committedOffsets();
+
+    sendAsOneBatch(request("mixed-1", 4L), request("mixed-2", 4L), request("mixed-3", 4L));
+
+    await()
+        .atMost(Duration.ofSeconds(30))
+        .untilAsserted(() -> assertEquals(before + 3, committedOffsets()));
+    // The record before the failed one was committed and is not scored again; the redelivery
+    // starts at the failed one
+    List<String> scored = transactionIdsOf(4L);
+    assertEquals(1, Collections.frequency(scored, "mixed-1"));
+    assertEquals(List.of("mixed-2", "mixed-3"), scored.subList(scored.size() - 2, scored.size()));
+  }
+
+  @Test
+  void shouldDeadLetterOnlyTheRecordThatKeepsFailing() throws Exception {
+    Map<String, Integer> failures = new ConcurrentHashMap<>(Map.of("poison-2", Integer.MAX_VALUE));
+    when(batchFraudAnalysisService.analyzeBatch(anyList()))
+        .thenAnswer(invocation -> succeedExcept(invocation.getArgument(0), failures));
+    long before = committedOffsets();
+
+    sendAsOneBatch(request("poison-1", 5L), request("poison-2", 5L), request("poison-3", 5L));
+
+    await()
+        .atMost(Duration.ofSeconds(30))
+        .untilAsserted(() -> assertEquals(before + 3, committedOffsets()));
+    List<String> scored = transactionIdsOf(5L);
+    assertEquals(1, Collections.frequency(scored, "poison-1"));
+    assertFalse(scored.contains("poison-2"));
+    assertTrue(scored.contains("poison-3"));
+
+    Map<String, Object> props =
+        KafkaTestUtils.consumerProps("dead-letter-reader", "false", embeddedKafkaBroker);
+    try (Consumer<String, String> consumer =
+        new DefaultKafkaConsumerFactory<>(props, new StringDeserializer(), new StringDeserializer())
+            .createConsumer()) {
+      embeddedKafkaBroker.consumeFromAnEmbeddedTopic(consumer, TOPIC + ".DLT");
+      List<String> deadLetters = new ArrayList<>();
+      KafkaTestUtils.getRecords(consumer, Duration.ofSeconds(10))
+          .forEach(record -> deadLetters.add(record.value()));
+      assertEquals(1, deadLetters.size());
+      assertTrue(deadLetters.get(0).contains("poison-2"));
+    }
+  }
+
+  /** Fails listed transactions as retryable while their failure count lasts */
+  private List<BatchAnalysisResult> succeedExcept(
+      List<TransactionAnalysisRequest> requests, Map<String, Integer> failures) {
+    List<BatchAnalysisResult> results = new ArrayList<>();
+    for (int i = 0; i < requests.size(); i++) {
+      TransactionAnalysisRequest request = requests.get(i);
+      String transactionId = request.getTransactionId();
+      Integer left = failures.get(transactionId);
+      if (left != null && left > 0) {
+        failures.put(transactionId, left - 1);
+        results.add(BatchAnalysisResult.retryableFailure(i, transactionId, "claim in flight"));
+        continue;
+      }
+      processed.add(request);
+      results.add(BatchAnalysisResult.success(i, transactionId, null));
+    }
+    return results;
+  }
+
+  /** Sends while the listener is stopped, so that the records arrive in a single poll */
+  private void sendAsOneBatch(TransactionAnalysisRequest... requests) {
+    MessageListenerContainer container =
+        kafkaListenerEndpointRegistry.getListenerContainer("transactionIngestion");
+    container.stop();
+    for (TransactionAnalysisRequest request : requests) {
+      send(request);
+    }
+    kafkaTemplate.flush();
+    container.start();
+  }
+
+  private List<BatchAnalysisResult> succeed(List<TransactionAnalysisRequest> requests) {
+    processed.addAll(requests);
+    List<BatchAnalysisResult> results = new ArrayList<>();
+    for (int i = 0; i < requests.size(); i++) {
+      results.add(BatchAnalysisResult.success(i, requests.get(i).getTransactionId(), null));
+    }
+    return results;
+  }
+
+  private List<String> transactionIdsOf(Long userId) {
+    synchronized (processed) {
+      return processed.stream()
+          .filter(request -> userId.equals(request.getUserId()))
+          .map(TransactionAnalysisRequest::getTransactionId)
+          .collect(Collectors.toList());
+    }
+  }
+
+  private void send(TransactionAnalysisRequest request) {
+    kafkaTemplate.send(TOPIC, String.valueOf(request.getUserId()), request);
+  }
+
+  private long committedOffsets() throws Exception {
+    try (AdminClient admin =
+        AdminClient.create(
+            Map.of(
+                AdminClientConfig.BOOTSTRAP_SERVERS_CONFIG,
+                embeddedKafkaBroker.getBrokersAsString()))) {
+      Map<TopicPartition, OffsetAndMetadata> offsets =
+          admin.listConsumerGroupOffsets(GROUP).partitionsToOffsetAndMetadata().get();
+      return offsets.values().stream().mapToLong(OffsetAndMetadata::offset).sum();
+    }
+  }
+
+  private static TransactionAnalysisRequest request(String transactionId, Long userId) {
+    TransactionAnalysisRequest request = new TransactionAnalysisRequest();
+    request.setTransactionId(transactionId);
+    request.setUserId(userId);
+    request.setAmount(new BigDecimal("42.00"));
+    request.setCurrency("USD");
+    request.setTransactionType("PURCHASE");
+    request.setPaymentMethod("CARD");
+    return request;
+  }
+}
@@ -0,0 +1,74 @@
+package com.fintech.aifraudservice.model;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fintech.aifraudservice.model.ProfileMembership.Dimension;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Set;
+import org.junit.jupiter.api.Test;
+
+class ProfileMembershipTest {
+
+  @Test
+  void shouldAnswerMembershipPerDimension() {
+    ProfileMembership membership = new ProfileMembership();
+    membership.set(Dimension.COUNTRY, Arrays.asList("US", "CA", "US", null, " "));
+    membership.add(Dimension.DEVICE, "device-1");
+
+    assertEquals(2, membership.size(Dimension.COUNTRY));
+    assertTrue(membership.contains(Dimension.COUNTRY, "CA"));
+    assertFalse(membership.contains(Dimension.COUNTRY, "FR"));
+    assertFalse(membership.contains(Dimension.CITY, "US"));
+    assertTrue(membership.isUnknown(Dimension.COUNTRY, "FR"));
+    assertTrue(membership.isUnknown(Dimension.COUNTRY, null));
+    // An empty dimension has nothing to deviate from
+    assertFalse(membership.isUnknown(Dimension.CITY, "Paris"));
+    assertTrue(membership.contains(Dimension.DEVICE, "device-1"));
+  }
+
+  @Test
+  void shouldRoundTripThroughColumnAndJsonEncodings() throws Exception {
+    ProfileMembership membership = new ProfileMembership();
+    List<String> ips = new ArrayList<>();
+    for (int i = 0; i < 1_000; i++) {
+      ips.add("10.0." + (i / 256) + "." + (i % 256));
+    }
+    membership.set(Dimension.IP, ips);
+    membership.set(Dimension.PAYMENT_METHOD, List.of("CARD", "WALLET"));
+    membership.addActiveDay(1);
+    membership.addActiveDay(7);
+
+    byte[] bytes = membership.toBytes();
+    assertEquals(3 + Dimension.values().length * 2 + 1_002 * 8, bytes.length);
+    ProfileMembership restored = ProfileMembership.fromBytes(bytes);
+    assertEquals(membership, restored);
+    assertTrue(restored.contains(Dimension.IP, "10.0.3.231"));
+    assertEquals(Set.of(1, 7), restored.getActiveDaysOfWeek());
+
+    ObjectMapper mapper = new ObjectMapper();
+    String json = mapper.writeValueAsString(membership);
+    assertEquals(membership, mapper.readValue(json, ProfileMembership.class));
+  }
+
+  @Test
+  void shouldRejectMoreValuesThanTheEncodingCanCount() {
+    ProfileMembership membership = new ProfileMembership();
+    List<String> devices = new ArrayList<>();
+    for (int i = 0; i < ProfileMembership.MAX_VALUES; i++) {
+      devices.add("device-" + i);
+    }
+    membership.set(Dimension.DEVICE, devices);
+    assertEquals(
+        ProfileMembership.MAX_VALUES,
+        ProfileMembership.fromBytes(membership.toBytes()).size(Dimension.DEVICE));
+
+    assertThrows(
+        IllegalArgumentException.class, () -> membership.add(Dimension.DEVICE, "device-extra"));
+    devices.add("device-extra");
+    assertThrows(IllegalArgumentException.class, () -> membership.set(Dimension.DEVICE, devices));
+    assertEquals(ProfileMembership.MAX_VALUES, membership.size(Dimension.DEVICE));
+  }
+}
@@ -0,0 +1,141 @@
+package com.fintech.aifraudservice.repository;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import com.fintech.aifraudservice.model.TransactionAnalysis;
+import com.fintech.aifraudservice.model.TransactionAnalysis.FraudStatus;
+import com.fintech.aifraudservice.model.TransactionAnalysis.RiskLevel;
+import java.math.BigDecimal;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Map;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.test.util.ReflectionTestUtils;
+
+class AnalysisArchiveTest {
+
+  private static final LocalDate DAY = LocalDate.of(2024, 3, 1);
+  private static final int ROWS = 10_000;
+  private static final int USERS = 7;
+
+  @TempDir Path directory;
+
+  private AnalysisArchive archive;
+
+  @BeforeEach
+  void setUp() throws Exception {
+    archive = archive();
+    // Three row groups of one day, a row every 8 seconds
+    Path written = archive.temporaryPath(DAY);
+    try (AnalysisArchiveFile.Writer writer = AnalysisArchiveFile.create(written)) {
+      for (int i = 0; i < ROWS; i++) {
+        writer.append(analysis(i));
+      }
+      writer.finish();
+    }
+    archive.publish(written, archive.segmentPath(DAY, 1, ROWS));
+  }
+
+  @AfterEach
+  void tearDown() {
+    archive.close();
+  }
+
+  @Test
+  void shouldRoundTripEveryColumn() {
+    TransactionAnalysis expected = analysis(4_200);
+    TransactionAnalysis archived =
+        archive
+            .findByDateRange(expected.getCreatedAt(), expected.getCreatedAt(), 0, 10, false)
+            .get(0);
+    assertEquals(expected.getId(), archived.getId());
+    assertEquals(expected.getTransactionId(), archived.getTransactionId());
+    assertEquals(expected.getUserId(), archived.getUserId());
+    assertEquals(expected.getAmount(), archived.getAmount());
+    assertEquals(expected.getCurrency(), archived.getCurrency());
+    assertNull(archived.getMerchantId());
+    assertEquals(expected.getRiskScore(), archived.getRiskScore());
+    assertEquals(RiskLevel.HIGH, archived.getRiskLevel());
+    assertEquals(FraudStatus.DECLINED, archived.getFraudStatus());
+    assertEquals(Map.of("VELOCITY", "0.9"), archived.getFraudIndicators());
+    assertEquals(expected.getCreatedAt(), archived.getCreatedAt());
+    assertEquals(expected.getReviewedAt(), archived.getReviewedAt());
+    assertNull(archived.getAnalysisDurationMs());
+  }
+
+  @Test
+  void shouldPageThroughAUsersRowsFromTheIndex() {
+    assertEquals(ROWS / USERS + 1, archive.countByUserId(3));
+    assertEquals(0, archive.countByUserId(99));
+
+    List<TransactionAnalysis> newest = archive.findByUserId(3, 0, 3, true);
+    assertEquals(List.of(10_000L, 9_993L, 9_986L), ids(newest));
+    // Crosses from the last row group into the one before
+    List<TransactionAnalysis> page = archive.findByUserId(3, 842, 3, true);
+    assertEquals(List.of(4_106L, 4_099L, 4_092L), ids(page));
+    assertEquals(List.of(4L, 11L), ids(archive.findByUserId(3, 0, 2, false)));
+  }
+
+  @Test
+  void shouldCountAndPageADateRangeAcrossRowGroups() {
+    LocalDateTime start = analysis(4_000).getCreatedAt();
+    LocalDateTime end = analysis(8_999).getCreatedAt();
+    assertEquals(5_000, archive.countByDateRange(start, end));
+    assertEquals(
+        ROWS, archive.countByDateRange(DAY.atStartOfDay(), DAY.plusDays(1).atStartOfDay()));
+    assertEquals(0, archive.countByDateRange(DAY.minusDays(2).atStartOfDay(), DAY.atStartOfDay()));
+
+    assertEquals(List.of(4_101L, 4_102L), ids(archive.findByDateRange(start, end, 100, 2, false)));
+    assertEquals(List.of(9_000L, 8_999L), ids(archive.findByDateRange(start, end, 0, 2, true)));
+    assertEquals(List.of(4_001L), ids(archive.findByDateRange(start, end, 4_999, 5, true)));
+  }
+
+  @Test
+  void shouldReopenPublishedSegmentsAndDropUnfinishedOnes() throws Exception {
+    Files.writeString(archive.temporaryPath(DAY.plusDays(1)), "partial");
+    archive.close();
+
+    archive = archive();
+    assertEquals(ROWS / USERS + 1, archive.countByUserId(3));
+    assertFalse(Files.exists(archive.temporaryPath(DAY.plusDays(1))));
+  }
+
+  private AnalysisArchive archive() {
+    AnalysisArchive created = new AnalysisArchive();
+    ReflectionTestUtils.setField(created, "directory", directory.toString());
+    created.init();
+    return created;
+  }
+
+  /** Row {@code i} has id {@code i + 1} and belongs to user {@code i % 7} */
+  private static TransactionAnalysis analysis(int i) {
+    TransactionAnalysis analysis = new TransactionAnalysis();
+    analysis.setId(i + 1L);
+    analysis.setTransactionId("tx-" + i);
+    analysis.setUserId((long) (i % USERS));
+    analysis.setAmount(new BigDecimal("12.50").add(BigDecimal.valueOf(i)));
+    analysis.setCurrency("USD");
+    analysis.setTransactionType("PURCHASE");
+    analysis.setPaymentMethod("CARD");
+    analysis.setRiskScore(i / (double) ROWS);
+    analysis.setRiskLevel(RiskLevel.HIGH);
+    analysis.setFraudStatus(FraudStatus.DECLINED);
+    analysis.setFraudIndicators(Map.of("VELOCITY", "0.9"));
+    analysis.setAnalysisDurationMs(null);
+    LocalDateTime created = DAY.atStartOfDay().plusSeconds(8L * i).plusNanos(123_000);
+    analysis.setCreatedAt(created);
+    analysis.setUpdatedAt(created);
+    analysis.setReviewedAt(created.plusHours(2));
+    return analysis;
+  }
+
+  private static List<Long> ids(List<TransactionAnalysis> analyses) {
+    return analyses.stream().map(TransactionAnalysis::getId).toList();
+  }
+}
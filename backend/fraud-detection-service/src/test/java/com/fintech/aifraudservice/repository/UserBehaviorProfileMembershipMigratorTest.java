@@ -0,0 +1,120 @@
+package com.fintech.aifraudservice.repository;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import com.fintech.aifraudservice.model.FrequencyCountsConverter;
+import com.fintech.aifraudservice.model.ProfileMembership;
+import com.fintech.aifraudservice.model.ProfileMembership.Dimension;
+import java.util.Map;
+import java.util.Set;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabase;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabaseBuilder;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabaseType;
+import org.springframework.test.util.ReflectionTestUtils;
+
+class UserBehaviorProfileMembershipMigratorTest {
+
+  private EmbeddedDatabase database;
+
+  private JdbcTemplate jdbcTemplate;
+
+  private final UserBehaviorProfileMembershipMigrator migrator =
+      new UserBehaviorProfileMembershipMigrator();
+
+  @BeforeEach
+  void setUp() {
+    database =
+        new EmbeddedDatabaseBuilder()
+            .setType(EmbeddedDatabaseType.H2)
+            .generateUniqueName(true)
+            .build();
+    jdbcTemplate = new JdbcTemplate(database);
+    jdbcTemplate.execute(
+        "CREATE TABLE user_behavior_profiles"
+            + " (id BIGINT PRIMARY KEY, membership BLOB, frequency_counts CLOB)");
+    jdbcTemplate.execute("CREATE TABLE user_active_days (profile_id BIGINT, day_of_week INT)");
+    jdbcTemplate.execute(
+        "CREATE TABLE user_known_devices (profile_id BIGINT, device_fingerprint VARCHAR(255))");
+    jdbcTemplate.execute(
+        "CREATE TABLE user_frequent_countries (profile_id BIGINT, country VARCHAR(255))");
+
+    ReflectionTestUtils.setField(migrator, "jdbcTemplate", jdbcTemplate);
+    ReflectionTestUtils.setField(
+        migrator, "namedParameterJdbcTemplate", new NamedParameterJdbcTemplate(database));
+    ReflectionTestUtils.setField(migrator, "enabled", true);
+    ReflectionTestUtils.setField(migrator, "chunkSize", 2);
+  }
+
+  @AfterEach
+  void tearDown() {
+    database.shutdown();
+  }
+
+  @Test
+  void shouldFoldLegacyCollectionTablesIntoMembershipColumn() {
+    for (long id = 1; id <= 5; id++) {
+      jdbcTemplate.update("INSERT INTO user_behavior_profiles (id) VALUES (?)", id);
+      jdbcTemplate.update("INSERT INTO user_known_devices VALUES (?, ?)", id, "device-" + id);
+      jdbcTemplate.update("INSERT INTO user_frequent_countries VALUES (?, 'US')", id);
+    }
+    jdbcTemplate.update("INSERT INTO user_known_devices VALUES (3, 'device-shared')");
+    jdbcTemplate.update("INSERT INTO user_active_days VALUES (3, 2), (3, 6)");
+    // A membership migrated before counts were seeded is kept, its counts are filled in
+    ProfileMembership current = new ProfileMembership();
+    current.add(Dimension.CITY, "Paris");
+    jdbcTemplate.update(
+        "UPDATE user_behavior_profiles SET membership = ? WHERE id = 5", current.toBytes());
+    // Fully migrated profiles are left alone
+    jdbcTemplate.update(
+        "INSERT INTO user_behavior_profiles (id, membership, frequency_counts) VALUES (6, ?, '{}')",
+        current.toBytes());
+    jdbcTemplate.update("INSERT INTO user_known_devices VALUES (6, 'device-6')");
+
+    migrator.afterPropertiesSet();
+
+    ProfileMembership migrated = membership(3);
+    assertEquals(2, migrated.size(Dimension.DEVICE));
+    assertTrue(migrated.contains(Dimension.DEVICE, "device-3"));
+    assertTrue(migrated.contains(Dimension.DEVICE, "device-shared"));
+    assertTrue(migrated.isUnknown(Dimension.DEVICE, "device-1"));
+    assertTrue(migrated.contains(Dimension.COUNTRY, "US"));
+    assertEquals(Set.of(2, 6), migrated.getActiveDaysOfWeek());
+    assertTrue(membership(1).contains(Dimension.DEVICE, "device-1"));
+    assertEquals(current, membership(5));
+    assertEquals(current, membership(6));
+    assertEquals(
+        Map.of(
+            "device", Map.of("device-3", 1.0, "device-shared", 1.0), "country", Map.of("US", 1.0)),
+        frequencyCounts(3));
+    assertEquals(
+        Map.of("device", Map.of("device-5", 1.0), "country", Map.of("US", 1.0)),
+        frequencyCounts(5));
+    assertEquals(Map.of(), frequencyCounts(6));
+    assertEquals(
+        0,
+        jdbcTemplate.queryForObject(
+            "SELECT COUNT(*) FROM user_behavior_profiles"
+                + " WHERE membership IS NULL OR frequency_counts IS NULL",
+            Integer.class));
+  }
+
+  private Map<String, Map<String, Double>> frequencyCounts(long id) {
+    return new FrequencyCountsConverter()
+        .convertToEntityAttribute(
+            jdbcTemplate.queryForObject(
+                "SELECT frequency_counts FROM user_behavior_profiles WHERE id = ?",
+                String.class,
+                id));
+  }
+
+  private ProfileMembership membership(long id) {
+    return ProfileMembership.fromBytes(
+        jdbcTemplate.queryForObject(
+            "SELECT membership FROM user_behavior_profiles WHERE id = ?", byte[].class, id));
+  }
+}
@@ -0,0 +1,128 @@
+package com.fintech.aifraudservice.service;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import com.fintech.aifraudservice.model.TransactionAnalysis;
+import com.fintech.aifraudservice.repository.AnalysisArchive;
+import com.fintech.aifraudservice.repository.AnalysisRetentionStore;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.nio.file.Path;
+import java.sql.Timestamp;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Map;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabase;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabaseBuilder;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabaseType;
+import org.springframework.test.util.ReflectionTestUtils;
+
+class AnalysisArchiverTest {
+
+  @TempDir Path directory;
+
+  private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+  private EmbeddedDatabase database;
+  private JdbcTemplate jdbcTemplate;
+  private AnalysisArchive archive;
+  private AnalysisArchiver archiver;
+
+  @BeforeEach
+  void setUp() {
+    database =
+        new EmbeddedDatabaseBuilder()
+            .setType(EmbeddedDatabaseType.H2)
+            .generateUniqueName(true)
+            .build();
+    jdbcTemplate = new JdbcTemplate(database);
+    jdbcTemplate.execute(
+        "CREATE TABLE transaction_analyses (id BIGINT PRIMARY KEY, transaction_id VARCHAR(255),"
+            + " user_id BIGINT, amount DECIMAL(19, 2), currency VARCHAR(255), merchant_id"
+            + " VARCHAR(255), merchant_category VARCHAR(255), transaction_type VARCHAR(255),"
+            + " payment_method VARCHAR(255), ip_address VARCHAR(255), device_fingerprint"
+            + " VARCHAR(255), location_country VARCHAR(255), location_city VARCHAR(255), risk_score"
+            + " DOUBLE, risk_level VARCHAR(255), fraud_status VARCHAR(255), ml_model_version"
+            + " VARCHAR(255), velocity_score DOUBLE, behavioral_score DOUBLE, geolocation_score"
+            + " DOUBLE, device_score DOUBLE, time_of_day_score DOUBLE, amount_score DOUBLE,"
+            + " merchant_score DOUBLE, card_score DOUBLE, analysis_duration_ms BIGINT, created_at"
+            + " TIMESTAMP, updated_at TIMESTAMP, reviewed_by VARCHAR(255), reviewed_at TIMESTAMP,"
+            + " review_notes VARCHAR(255))");
+    jdbcTemplate.execute(
+        "CREATE TABLE fraud_indicators (analysis_id BIGINT, indicator_name VARCHAR(255),"
+            + " indicator_value VARCHAR(255))");
+
+    AnalysisRetentionStore store = new AnalysisRetentionStore();
+    ReflectionTestUtils.setField(store, "dataSource", database);
+    ReflectionTestUtils.setField(
+        store, "transactionManager", new DataSourceTransactionManager(database));
+    ReflectionTestUtils.setField(store, "fetchSize", 2);
+    archive = new AnalysisArchive();
+    ReflectionTestUtils.setField(archive, "directory", directory.toString());
+    ReflectionTestUtils.invokeMethod(archive, "init");
+    archiver = new AnalysisArchiver();
+    ReflectionTestUtils.setField(archiver, "analysisRetentionStore", store);
+    ReflectionTestUtils.setField(archiver, "analysisArchive", archive);
+    ReflectionTestUtils.setField(archiver, "meterRegistry", meterRegistry);
+    ReflectionTestUtils.setField(archiver, "after", "90d");
+    archiver.init();
+  }
+
+  @AfterEach
+  void tearDown() {
+    ReflectionTestUtils.invokeMethod(archive, "close");
+    database.shutdown();
+  }
+
+  @Test
+  void shouldMoveExpiredAnalysesIntoTheArchive() {
+    // Whole seconds, which the table and the archive both store exactly
+    LocalDateTime old = LocalDate.now().minusDays(200).atTime(10, 0);
+    insert(1, 42, old, "DECLINED");
+    insert(2, 42, old.plusMinutes(5), "APPROVED");
+    insert(3, 7, old.plusDays(3), "FALSE_POSITIVE");
+    // Awaiting review and recent analyses stay in the table
+    insert(4, 42, old.plusMinutes(1), "UNDER_REVIEW");
+    insert(5, 42, LocalDateTime.now().minusDays(1), "APPROVED");
+
+    assertEquals(3, archiver.archiveExpired());
+
+    assertEquals(
+        List.of(4L, 5L),
+        jdbcTemplate.queryForList("SELECT id FROM transaction_analyses ORDER BY id", Long.class));
+    assertEquals(
+        List.of(4L, 5L),
+        jdbcTemplate.queryForList(
+            "SELECT DISTINCT analysis_id FROM fraud_indicators ORDER BY analysis_id", Long.class));
+    assertEquals(2, archive.countByUserId(42));
+    List<TransactionAnalysis> archived = archive.findByUserId(42, 0, 10, true);
+    assertEquals(2L, archived.get(0).getId());
+    assertEquals(Map.of("VELOCITY", "0.8", "DEVICE", "new"), archived.get(1).getFraudIndicators());
+    assertEquals(TransactionAnalysis.FraudStatus.DECLINED, archived.get(1).getFraudStatus());
+    assertEquals(1, archive.countByDateRange(old.plusDays(3), old.plusDays(4)));
+    assertEquals(3.0, meterRegistry.get("fraud.analysis.archived").counter().count(), 0.0);
+
+    // Nothing left to move
+    assertEquals(0, archiver.archiveExpired());
+  }
+
+  private void insert(long id, long userId, LocalDateTime createdAt, String status) {
+    jdbcTemplate.update(
+        "INSERT INTO transaction_analyses (id, transaction_id, user_id, amount, currency,"
+            + " transaction_type, payment_method, risk_score, risk_level, fraud_status,"
+            + " created_at) VALUES (?, ?, ?, 25.00, 'USD', 'PURCHASE', 'CARD', 0.7, 'HIGH', ?, ?)",
+        id,
+        "tx-" + id,
+        userId,
+        status,
+        Timestamp.valueOf(createdAt));
+    jdbcTemplate.update(
+        "INSERT INTO fraud_indicators VALUES (?, 'VELOCITY', '0.8'), (?, 'DEVICE', 'new')", id, id);
+  }
+}
@@ -0,0 +1,146 @@
+package com.fintech.aifraudservice.service;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+import com.fintech.aifraudservice.model.TransactionAnalysis;
+import com.fintech.aifraudservice.repository.TransactionAnalysisRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.test.util.ReflectionTestUtils;
+
+@ExtendWith(MockitoExtension.class)
+class AnalysisDeduplicatorTest {
+
+  @Mock private TransactionAnalysisRepository transactionAnalysisRepository;
+
+  private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+  private final ExecutorService executor = Executors.newFixedThreadPool(4);
+
+  private AnalysisDeduplicator deduplicator;
+
+  @BeforeEach
+  void setUp() {
+    deduplicator = deduplicator();
+  }
+
+  @AfterEach
+  void tearDown() {
+    executor.shutdownNow();
+  }
+
+  @Test
+  void shouldReturnTheExistingAnalysisForARepeatedTransactionId() {
+    AtomicInteger scored = new AtomicInteger();
+    Supplier<TransactionAnalysis> analyze = () -> analysis("tx-1", scored.incrementAndGet());
+
+    TransactionAnalysis first = deduplicator.analyzeOnce("tx-1", analyze);
+    assertSame(first, deduplicator.analyzeOnce("tx-1", analyze));
+    assertEquals(1, scored.get());
+    assertEquals(1.0, duplicates("recent"), 0.0);
+
+    // After a restart only the stored row is left
+    TransactionAnalysis stored = analysis("tx-1", 7);
+    when(transactionAnalysisRepository.findByTransactionId("tx-1")).thenReturn(Optional.of(stored));
+    AnalysisDeduplicator restarted = deduplicator();
+    assertSame(stored, restarted.analyzeOnce("tx-1", analyze));
+    assertSame(stored, restarted.analyzeOnce("tx-1", analyze));
+    assertEquals(1, scored.get());
+    // Once by each instance, on the first analysis of the id
+    verify(transactionAnalysisRepository, times(2)).findByTransactionId("tx-1");
+    assertEquals(1.0, duplicates("database"), 0.0);
+  }
+
+  @Test
+  void shouldCoalesceConcurrentDuplicatesIntoOneAnalysis() throws Exception {
+    CountDownLatch release = new CountDownLatch(1);
+    AtomicInteger scored = new AtomicInteger();
+    Supplier<TransactionAnalysis> analyze =
+        () -> {
+          scored.incrementAndGet();
+          try {
+            release.await();
+          } catch (InterruptedException e) {
+            throw new IllegalStateException(e);
+          }
+          return analysis("tx-2", 1);
+        };
+
+    Future<TransactionAnalysis> leader =
+        executor.submit(() -> deduplicator.analyzeOnce("tx-2", analyze));
+    while (scored.get() == 0) {
+      Thread.onSpinWait();
+    }
+    List<Future<TransactionAnalysis>> duplicates = new ArrayList<>();
+    for (int i = 0; i < 3; i++) {
+      duplicates.add(executor.submit(() -> deduplicator.analyzeOnce("tx-2", analyze)));
+    }
+    while (duplicates("in_flight") < 3) {
+      Thread.onSpinWait();
+    }
+    release.countDown();
+
+    TransactionAnalysis analysis = leader.get(5, TimeUnit.SECONDS);
+    for (Future<TransactionAnalysis> duplicate : duplicates) {
+      assertSame(analysis, duplicate.get(5, TimeUnit.SECONDS));
+    }
+    assertEquals(1, scored.get());
+  }
+
+  @Test
+  void shouldNotRememberFailedAnalyses() {
+    IllegalStateException failure = new IllegalStateException("database unavailable");
+    assertSame(
+        failure,
+        assertThrows(
+            IllegalStateException.class,
+            () ->
+                deduplicator.analyzeOnce(
+                    "tx-3",
+                    () -> {
+                      throw failure;
+                    })));
+
+    // The retry is scored
+    TransactionAnalysis retried = deduplicator.analyzeOnce("tx-3", () -> analysis("tx-3", 2));
+    assertEquals(2L, retried.getId());
+  }
+
+  private AnalysisDeduplicator deduplicator() {
+    AnalysisDeduplicator created = new AnalysisDeduplicator();
+    ReflectionTestUtils.setField(
+        created, "transactionAnalysisRepository", transactionAnalysisRepository);
+    ReflectionTestUtils.setField(created, "meterRegistry", meterRegistry);
+    ReflectionTestUtils.setField(created, "recentIds", 100L);
+    ReflectionTestUtils.setField(created, "ttl", "15m");
+    ReflectionTestUtils.setField(created, "databaseCheck", true);
+    created.init();
+    return created;
+  }
+
+  private double duplicates(String source) {
+    return meterRegistry.get("fraud.analysis.duplicates").tag("source", source).counter().count();
+  }
+
+  private static TransactionAnalysis analysis(String transactionId, long id) {
+    TransactionAnalysis analysis = new TransactionAnalysis();
+    analysis.setId(id);
+    analysis.setTransactionId(transactionId);
+    return analysis;
+  }
+}
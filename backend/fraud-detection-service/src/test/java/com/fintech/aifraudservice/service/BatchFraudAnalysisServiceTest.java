@@ -0,0 +1,261 @@
+package com.fintech.aifraudservice.service;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.Mockito.*;
+
+import com.fintech.aifraudservice.model.TransactionAnalysis;
+import com.fintech.aifraudservice.model.UserBehaviorProfile;
+import com.fintech.aifraudservice.repository.TransactionAnalysisBatchWriter;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import jakarta.validation.Validation;
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.core.task.SyncTaskExecutor;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import org.springframework.test.util.ReflectionTestUtils;
+
+@ExtendWith(MockitoExtension.class)
+class BatchFraudAnalysisServiceTest {
+
+  @Mock private FraudDetectionService fraudDetectionService;
+
+  @Mock private VelocityWindowAggregator velocityWindowAggregator;
+
+  @Mock private TransactionAnalysisBatchWriter transactionAnalysisBatchWriter;
+
+  @Mock private TransactionAnalysisPublisher transactionAnalysisPublisher;
+
+  @Mock private FraudRuleEngine fraudRuleEngine;
+
+  @Mock private FraudModelService fraudModelService;
+
+  @Mock private IpGeoLocator ipGeoLocator;
+
+  @Mock private MerchantRiskIndex merchantRiskIndex;
+
+  @Mock private BinRiskIndex binRiskIndex;
+
+  @Mock private LinkageGraphIndex linkageGraphIndex;
+
+  @InjectMocks private BatchFraudAnalysisService batchFraudAnalysisService;
+
+  private final AnalysisDeduplicator analysisDeduplicator = new AnalysisDeduplicator();
+
+  private final ThreadPoolTaskExecutor lookupExecutor = new ThreadPoolTaskExecutor();
+
+  @BeforeEach
+  void setUp() {
+    FraudPipelineMetrics metrics = new FraudPipelineMetrics();
+    ReflectionTestUtils.setField(metrics, "meterRegistry", new SimpleMeterRegistry());
+    metrics.init();
+    lookupExecutor.initialize();
+    ScoringBudget scoringBudget = new ScoringBudget();
+    ReflectionTestUtils.setField(scoringBudget, "fraudPipelineMetrics", metrics);
+    ReflectionTestUtils.setField(scoringBudget, "fraudLookupExecutor", lookupExecutor);
+    ReflectionTestUtils.setField(scoringBudget, "budget", "200ms");
+    scoringBudget.init();
+    ReflectionTestUtils.setField(batchFraudAnalysisService, "scoringBudget", scoringBudget);
+    ReflectionTestUtils.setField(
+        batchFraudAnalysisService,
+        "validator",
+        Validation.buildDefaultValidatorFactory().getValidator());
+    ReflectionTestUtils.setField(
+        batchFraudAnalysisService, "fraudScoringExecutor", new SyncTaskExecutor());
+    ReflectionTestUtils.setField(analysisDeduplicator, "meterRegistry", new SimpleMeterRegistry());
+    ReflectionTestUtils.setField(analysisDeduplicator, "recentIds", 100L);
+    ReflectionTestUtils.setField(analysisDeduplicator, "ttl", "15m");
+    analysisDeduplicator.init();
+    ReflectionTestUtils.setField(
+        batchFraudAnalysisService, "analysisDeduplicator", analysisDeduplicator);
+    // Not reached by groups whose profile lookup spends the whole budget
+    lenient().when(velocityWindowAggregator.snapshot(any())).thenReturn(VelocitySnapshot.EMPTY);
+    when(fraudDetectionService.scoreTransaction(any()))
+        .thenAnswer(
+            invocation -> {
+              FraudScoringContext context = invocation.getArgument(0);
+              TransactionAnalysis analysis = new TransactionAnalysis();
+              analysis.setTransactionId(context.getRequest().getTransactionId());
+              analysis.setUserId(context.getUserId());
+              analysis.setVelocityScore((double) context.getVelocity().getTransactionsLastHour());
+              return analysis;
+            });
+  }
+
+  @AfterEach
+  void tearDown() {
+    lookupExecutor.shutdown();
+  }
+
+  @Test
+  void analyzeBatch_shouldReturnResultsInInputOrderWithPerItemErrors() {
+    TransactionAnalysis stored = new TransactionAnalysis();
+    stored.setTransactionId("tx-4");
+    when(transactionAnalysisBatchWriter.findExisting(anyList())).thenReturn(Map.of("tx-4", stored));
+    when(transactionAnalysisBatchWriter.insertAll(anyList()))
+        .thenAnswer(
+            invocation -> Arrays.asList(new String[invocation.<List<?>>getArgument(0).size()]));
+
+    TransactionAnalysisRequest invalid = request("tx-2", 2L);
+    invalid.setCurrency(null);
+    List<TransactionAnalysisRequest> requests =
+        List.of(
+            request("tx-1", 1L),
+            invalid,
+            request("tx-3", 1L),
+            request("tx-4", 3L),
+            request("tx-1", 2L));
+
+    List<BatchAnalysisResult> results = batchFraudAnalysisService.analyzeBatch(requests);
+
+    assertEquals(5, results.size());
+    assertTrue(results.get(0).isSuccess());
+    assertEquals("tx-1", results.get(0).getTransactionId());
+    assertFalse(results.get(1).isSuccess());
+    assertTrue(results.get(1).getError().contains("currency"));
+    assertTrue(results.get(2).isSuccess());
+    // A stored analysis is returned as it is, without scoring or publishing it again
+    assertTrue(results.get(3).isSuccess());
+    assertSame(stored, results.get(3).getAnalysis());
+    assertEquals("Duplicate transactionId in batch", results.get(4).getError());
+    verify(transactionAnalysisPublisher, times(2)).analysisSaved(any(), any());
+    verify(fraudDetectionService, times(2)).scoreTransaction(any());
+  }
+
+  @Test
+  void analyzeBatch_shouldLoadProfileOncePerUserAndCarryVelocityWithinGroup() {
+    when(transactionAnalysisBatchWriter.findExisting(anyList())).thenReturn(Map.of());
+    when(transactionAnalysisBatchWriter.insertAll(anyList()))
+        .thenAnswer(
+            invocation -> Arrays.asList(new String[invocation.<List<?>>getArgument(0).size()]));
+
+    List<TransactionAnalysisRequest> requests = new ArrayList<>();
+    for (int i = 0; i < 3; i++) {
+      requests.add(request("tx-" + i, 7L));
+    }
+
+    List<BatchAnalysisResult> results = batchFraudAnalysisService.analyzeBatch(requests);
+
+    verify(fraudDetectionService, times(1)).getUserBehaviorProfile(7L);
+    verify(velocityWindowAggregator, times(1)).snapshot(7L);
+    for (int i = 0; i < 3; i++) {
+      assertEquals((double) i, results.get(i).getAnalysis().getVelocityScore());
+    }
+  }
+
+  @Test
+  void analyzeBatch_shouldScoreGroupConservativelyWhenItsLookupsMissTheBudget() {
+    when(transactionAnalysisBatchWriter.findExisting(anyList())).thenReturn(Map.of());
+    when(transactionAnalysisBatchWriter.insertAll(anyList()))
+        .thenAnswer(
+            invocation -> Arrays.asList(new String[invocation.<List<?>>getArgument(0).size()]));
+    CountDownLatch stall = new CountDownLatch(1);
+    when(fraudDetectionService.getUserBehaviorProfile(7L))
+        .thenAnswer(
+            invocation -> {
+              stall.await(5, TimeUnit.SECONDS);
+              return new UserBehaviorProfile();
+            });
+    when(ipGeoLocator.locate(any())).thenThrow(new IllegalStateException("unmapped"));
+
+    long start = System.nanoTime();
+    List<BatchAnalysisResult> results;
+    try {
+      results =
+          batchFraudAnalysisService.analyzeBatch(
+              List.of(request("tx-slow-1", 7L), request("tx-slow-2", 7L)));
+    } finally {
+      stall.countDown();
+    }
+
+    // Bounded by the budget rather than the stalled profile lookup
+    assertTrue(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start) < 2_000);
+    assertTrue(results.get(0).isSuccess());
+    assertTrue(results.get(1).isSuccess());
+    ArgumentCaptor<FraudScoringContext> contexts =
+        ArgumentCaptor.forClass(FraudScoringContext.class);
+    verify(fraudDetectionService, times(2)).scoreTransaction(contexts.capture());
+    for (FraudScoringContext context : contexts.getAllValues()) {
+      assertFalse(context.hasProfile());
+      assertTrue(context.isDegraded());
+      // The stalled profile lookup spent the budget the velocity lookup had left
+      assertEquals(
+          "PROFILE, VELOCITY, IP_LOCATION", ScoringBudget.describe(context.getFeatures().degraded));
+    }
+  }
+
+  @Test
+  void analyzeBatch_shouldReportPersistenceErrorsPerItem() {
+    when(transactionAnalysisBatchWriter.findExisting(anyList())).thenReturn(Map.of());
+    when(transactionAnalysisBatchWriter.insertAll(anyList()))
+        .thenReturn(Arrays.asList(null, "Persistence failed: boom"));
+
+    List<BatchAnalysisResult> results =
+        batchFraudAnalysisService.analyzeBatch(List.of(request("tx-a", 1L), request("tx-b", 2L)));
+
+    assertTrue(results.get(0).isSuccess());
+    assertEquals("Persistence failed: boom", results.get(1).getError());
+    ArgumentCaptor<TransactionAnalysis> published =
+        ArgumentCaptor.forClass(TransactionAnalysis.class);
+    verify(transactionAnalysisPublisher).analysisSaved(any(), published.capture());
+    assertEquals("tx-a", published.getValue().getTransactionId());
+  }
+
+  @Test
+  void analyzeBatch_shouldNotScoreTransactionsAnalyzedOrInFlightElsewhere() {
+    when(transactionAnalysisBatchWriter.findExisting(anyList())).thenReturn(Map.of());
+    when(transactionAnalysisBatchWriter.insertAll(anyList()))
+        .thenAnswer(
+            invocation -> Arrays.asList(new String[invocation.<List<?>>getArgument(0).size()]));
+    // Returned by a single analysis and still queued for write-behind, so not in the table yet
+    TransactionAnalysis done =
+        analysisDeduplicator.analyzeOnce("tx-done", TransactionAnalysis::new);
+    assertEquals(AnalysisDeduplicator.Claim.CLAIMED, analysisDeduplicator.claim("tx-busy"));
+
+    List<BatchAnalysisResult> results =
+        batchFraudAnalysisService.analyzeBatch(
+            List.of(request("tx-done", 1L), request("tx-busy", 1L), request("tx-new", 1L)));
+
+    assertTrue(results.get(0).isSuccess());
+    assertSame(done, results.get(0).getAnalysis());
+    assertEquals("Transaction is already being analyzed", results.get(1).getError());
+    assertTrue(results.get(1).isRetryable());
+    assertTrue(results.get(2).isSuccess());
+    verify(fraudDetectionService, times(1)).scoreTransaction(any());
+
+    // The batch's own analysis answers a later single request for the id
+    assertSame(
+        results.get(2).getAnalysis(),
+        analysisDeduplicator.analyzeOnce(
+            "tx-new",
+            () -> {
+              throw new AssertionError("scored twice");
+            }));
+    assertEquals(AnalysisDeduplicator.Claim.IN_FLIGHT, analysisDeduplicator.claim("tx-busy"));
+  }
+
+  private static TransactionAnalysisRequest request(String transactionId, Long userId) {
+    TransactionAnalysisRequest request = new TransactionAnalysisRequest();
+    request.setTransactionId(transactionId);
+    request.setUserId(userId);
+    request.setAmount(new BigDecimal("25.00"));
+    request.setCurrency("USD");
+    request.setTransactionType("PURCHASE");
+    request.setPaymentMethod("CARD");
+    return request;
+  }
+}
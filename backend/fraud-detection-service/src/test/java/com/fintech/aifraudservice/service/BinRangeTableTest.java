@@ -0,0 +1,65 @@
+package com.fintech.aifraudservice.service;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import com.fintech.aifraudservice.service.BinRangeTable.BinInfo;
+import com.fintech.aifraudservice.service.BinRangeTable.RiskTier;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class BinRangeTableTest {
+
+  @TempDir Path dir;
+
+  @Test
+  void shouldResolveSixAndEightDigitRanges() throws IOException {
+    BinRangeTable table =
+        table(
+            """
+            # start,end,country,cardType,prepaid,riskTier
+            "400000","409999","us","visa",false,low
+            411111,411111,GB,VISA,true,HIGH
+            52000000,52000049,DE,MASTERCARD,,MEDIUM
+            52000050,52000099,FR
+            """);
+
+    assertEquals(4, table.size());
+    assertEquals(new BinInfo("US", "VISA", false, RiskTier.LOW), table.find("400000"));
+    assertEquals(new BinInfo("US", "VISA", false, RiskTier.LOW), table.find("40999999"));
+    assertEquals(new BinInfo("GB", "VISA", true, RiskTier.HIGH), table.find("411111"));
+    // Longer card number prefixes use their first eight digits
+    assertEquals("GB", table.find("4111119999999").issuerCountry());
+    assertNull(table.find("411112"));
+    assertEquals("DE", table.find("52000049").issuerCountry());
+    assertEquals(new BinInfo("FR", null, false, RiskTier.LOW), table.find("52000050"));
+    // A 6-digit BIN is read as the start of its 8-digit block
+    assertEquals("DE", table.find("520000").issuerCountry());
+    assertSame(table.find("400001"), table.find("405555"));
+
+    for (String invalid : new String[] {"", "41111", "41111a", "4111-11", " 411111"}) {
+      assertNull(table.find(invalid), invalid);
+    }
+    assertNull(table.find(null));
+    assertNull(BinRangeTable.EMPTY.find("411111"));
+  }
+
+  @Test
+  void shouldRejectMalformedAndOverlappingRanges() {
+    assertThrows(
+        IllegalArgumentException.class, () -> table("411111,411111,US\n41111150,41111160,GB\n"));
+    assertThrows(IllegalArgumentException.class, () -> table("411112,411111,US\n"));
+    assertThrows(IllegalArgumentException.class, () -> table("41111,411111,US\n"));
+    assertThrows(
+        IllegalArgumentException.class, () -> table("411111,411111,US,VISA,false,EXTREME\n"));
+    assertThrows(IllegalArgumentException.class, () -> table("411111,411111\n"));
+  }
+
+  private BinRangeTable table(String csv) throws IOException {
+    Path file = Files.createTempFile(dir, "bins", ".csv");
+    Files.writeString(file, csv);
+    return BinRangeTable.load(file);
+  }
+}
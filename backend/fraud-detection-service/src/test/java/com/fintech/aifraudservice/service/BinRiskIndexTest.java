@@ -0,0 +1,52 @@
+package com.fintech.aifraudservice.service;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.time.Instant;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.test.util.ReflectionTestUtils;
+
+class BinRiskIndexTest {
+
+  @TempDir Path dir;
+
+  @Test
+  void shouldReloadChangedRangeFileAndKeepTheTableWhenItIsBroken() throws IOException {
+    Path csv = dir.resolve("bins.csv");
+    Files.writeString(csv, "411111,411111,US,VISA,false,LOW\n");
+    BinRiskIndex index = new BinRiskIndex();
+    ReflectionTestUtils.setField(index, "location", csv.toString());
+    index.init();
+    assertEquals("US", index.find("411111").issuerCountry());
+
+    write(csv, "411111,411111,GB,VISA,true,HIGH\n", 1);
+    index.reloadIfChanged();
+    assertTrue(index.find("411111").prepaid());
+
+    write(csv, "411111,411111,GB\n41111150,41111160,US\n", 2);
+    index.reloadIfChanged();
+    assertEquals("GB", index.find("411111").issuerCountry());
+    assertEquals(1, index.current().size());
+    // An explicit reload reports the failure instead of passing the old table off as new
+    BinRangeTable kept = index.current();
+    assertThrows(IllegalArgumentException.class, index::reload);
+    assertSame(kept, index.current());
+
+    // Unconfigured, nothing resolves and there is nothing to reload
+    BinRiskIndex off = new BinRiskIndex();
+    ReflectionTestUtils.setField(off, "location", "");
+    off.init();
+    assertNull(off.find("411111"));
+    assertThrows(IllegalStateException.class, off::reload);
+  }
+
+  private static void write(Path file, String content, int minutes) throws IOException {
+    Files.writeString(file, content);
+    Files.setLastModifiedTime(file, FileTime.from(Instant.now().plusSeconds(60L * minutes)));
+  }
+}
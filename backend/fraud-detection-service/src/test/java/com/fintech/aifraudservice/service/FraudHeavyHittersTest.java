@@ -0,0 +1,129 @@
+package com.fintech.aifraudservice.service;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+import com.fintech.aifraudservice.model.TransactionAnalysis;
+import com.fintech.aifraudservice.model.TransactionAnalysis.FraudStatus;
+import com.fintech.aifraudservice.repository.AnalysisActivityReader;
+import com.fintech.aifraudservice.service.FraudHeavyHitters.Dimension;
+import com.fintech.aifraudservice.service.HeavyHitterSketch.HeavyHitter;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.List;
+import java.util.function.Consumer;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+@ExtendWith(MockitoExtension.class)
+class FraudHeavyHittersTest {
+
+  @Mock private AnalysisActivityReader analysisActivityReader;
+
+  private MutableClock clock;
+  private FraudHeavyHitters heavyHitters;
+
+  @BeforeEach
+  void setUp() {
+    clock = new MutableClock(Instant.parse("2024-03-01T12:02:00Z"));
+    heavyHitters = new FraudHeavyHitters(analysisActivityReader, "1h,24h", 256, 4, 16, clock);
+  }
+
+  @Test
+  void shouldSeedAndSlideWindows() {
+    when(analysisActivityReader.forEachDeclinedSince(any(), any()))
+        .thenAnswer(
+            invocation -> {
+              Consumer<TransactionAnalysis> consumer = invocation.getArgument(1);
+              consumer.accept(declined("gambling", "NG", now().minusHours(3)));
+              consumer.accept(declined("gambling", "NG", now().minusHours(2)));
+              consumer.accept(declined("electronics", "US", now().minusMinutes(10)));
+              return 3L;
+            });
+    heavyHitters.seed();
+
+    assertEquals(
+        List.of(new HeavyHitter("gambling", 2), new HeavyHitter("electronics", 1)),
+        heavyHitters.top(Dimension.MERCHANT_CATEGORY, "24h", 5));
+    assertEquals(List.of(new HeavyHitter("US", 1)), heavyHitters.top(Dimension.COUNTRY, "1h", 5));
+
+    clock.advance(Duration.ofHours(2));
+    assertTrue(heavyHitters.top(Dimension.COUNTRY, "1h", 5).isEmpty());
+    assertEquals(2, heavyHitters.estimate(Dimension.COUNTRY, "24h", "NG"));
+    assertThrows(
+        IllegalArgumentException.class, () -> heavyHitters.top(Dimension.COUNTRY, "7d", 5));
+  }
+
+  @Test
+  void shouldFollowDeclinesAndReviewerVerdicts() {
+    TransactionAnalysisRequest request = new TransactionAnalysisRequest();
+    request.setCardBin("411111");
+    TransactionAnalysis analysis = declined("travel", "BR", now());
+    heavyHitters.onAnalysisSaved(request, analysis);
+
+    TransactionAnalysis pending = declined("travel", "BR", now());
+    pending.setFraudStatus(FraudStatus.UNDER_REVIEW);
+    heavyHitters.onAnalysisSaved(request, pending);
+    assertEquals(1, heavyHitters.estimate(Dimension.CARD_BIN, "1h", "411111"));
+
+    pending.setFraudStatus(FraudStatus.DECLINED);
+    heavyHitters.onAnalysisReviewed(pending, FraudStatus.UNDER_REVIEW);
+    assertEquals(
+        List.of(new HeavyHitter("travel", 2)),
+        heavyHitters.top(Dimension.of("merchant-category"), "1h", 5));
+
+    analysis.setFraudStatus(FraudStatus.FALSE_POSITIVE);
+    heavyHitters.onAnalysisReviewed(analysis, FraudStatus.DECLINED);
+    assertEquals(1, heavyHitters.estimate(Dimension.COUNTRY, "24h", "BR"));
+    assertEquals(1, heavyHitters.estimate(Dimension.IP_ADDRESS, "24h", "10.0.0.1"));
+  }
+
+  private TransactionAnalysis declined(String category, String country, LocalDateTime createdAt) {
+    TransactionAnalysis analysis = new TransactionAnalysis();
+    analysis.setFraudStatus(FraudStatus.DECLINED);
+    analysis.setMerchantCategory(category);
+    analysis.setLocationCountry(country);
+    analysis.setMerchantId("m-" + category);
+    analysis.setIpAddress("10.0.0.1");
+    analysis.setCreatedAt(createdAt);
+    return analysis;
+  }
+
+  private LocalDateTime now() {
+    return LocalDateTime.ofInstant(clock.instant(), ZoneId.systemDefault());
+  }
+
+  private static final class MutableClock extends Clock {
+    private Instant instant;
+
+    MutableClock(Instant instant) {
+      this.instant = instant;
+    }
+
+    void advance(Duration duration) {
+      instant = instant.plus(duration);
+    }
+
+    @Override
+    public ZoneId getZone() {
+      return ZoneId.systemDefault();
+    }
+
+    @Override
+    public Clock withZone(ZoneId zone) {
+      return this;
+    }
+
+    @Override
+    public Instant instant() {
+      return instant;
+    }
+  }
+}
@@ -0,0 +1,181 @@
+package com.fintech.aifraudservice.service;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.lang.ref.WeakReference;
+import java.math.BigDecimal;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Properties;
+import java.util.Random;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.test.util.ReflectionTestUtils;
+import weka.classifiers.functions.Logistic;
+import weka.core.Attribute;
+import weka.core.DenseInstance;
+import weka.core.Instances;
+import weka.core.SerializationHelper;
+
+class FraudModelServiceTest {
+
+  @TempDir Path modelDir;
+
+  private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+  private final FraudModelService fraudModelService = new FraudModelService();
+
+  @BeforeEach
+  void setUp() {
+    ReflectionTestUtils.setField(fraudModelService, "meterRegistry", meterRegistry);
+    ReflectionTestUtils.setField(fraudModelService, "modelVersion", "v1.0");
+    ReflectionTestUtils.setField(fraudModelService, "blendWeight", 0.5);
+  }
+
+  @Test
+  void shouldLoadModelAndBlendItsProbabilityIntoTheRuleScore() throws Exception {
+    Path modelFile = modelDir.resolve("fraud.model");
+    Instances training = trainingSet();
+    Logistic classifier = new Logistic();
+    classifier.buildClassifier(training);
+    SerializationHelper.writeAll(
+        modelFile.toString(), new Object[] {classifier, new Instances(training, 0)});
+    ReflectionTestUtils.setField(fraudModelService, "modelPath", modelFile.toString());
+
+    fraudModelService.init();
+    FraudModel model = fraudModelService.current();
+    assertNotNull(model);
+    assertEquals(
+        "v1.0+" + FraudRuleSet.DEFAULTS.getVersion(),
+        fraudModelService.versionOf(model, FraudRuleSet.DEFAULTS));
+
+    FraudFeatureVector quiet = features(new BigDecimal("25.00"), 0);
+    FraudFeatureVector burst = features(new BigDecimal("20000.00"), 9);
+    double quietProbability = fraudModelService.fraudProbability(model, quiet);
+    double burstProbability = fraudModelService.fraudProbability(model, burst);
+    assertTrue(quietProbability < 0.5, "quiet " + quietProbability);
+    assertTrue(burstProbability > 0.5, "burst " + burstProbability);
+    assertEquals(
+        0.5 * 0.2 + 0.5 * burstProbability, fraudModelService.blend(0.2, burstProbability));
+
+    // The batch call agrees with single calls, including from another thread's classifier copy
+    double[] batch = fraudModelService.fraudProbabilities(model, List.of(quiet, burst, quiet));
+    assertArrayEquals(new double[] {quietProbability, burstProbability, quietProbability}, batch);
+    double[] fromOtherThread = new double[1];
+    Thread thread =
+        new Thread(() -> fromOtherThread[0] = fraudModelService.fraudProbability(model, burst));
+    thread.start();
+    thread.join();
+    assertEquals(burstProbability, fromOtherThread[0]);
+
+    assertEquals(
+        3, meterRegistry.get("fraud.model.inference").tag("mode", "single").timer().count());
+    assertEquals(
+        1, meterRegistry.get("fraud.model.inference").tag("mode", "batch").timer().count());
+  }
+
+  @Test
+  void shouldScoreWithRulesOnlyWithoutModel() {
+    ReflectionTestUtils.setField(
+        fraudModelService, "modelPath", modelDir.resolve("missing.model").toString());
+    fraudModelService.init();
+
+    assertNull(fraudModelService.current());
+    FraudFeatureVector features = features(new BigDecimal("100.00"), 1);
+    assertTrue(Double.isNaN(fraudModelService.fraudProbability(null, features)));
+    assertEquals(0.42, fraudModelService.blend(0.42, Double.NaN));
+    assertTrue(Double.isNaN(fraudModelService.fraudProbabilities(null, List.of(features))[0]));
+    assertEquals("v1.0+rules-x", fraudModelService.versionOf(null, rulesVersioned("x")));
+  }
+
+  @Test
+  void shouldRejectModelTrainedOnOtherAttributes() throws Exception {
+    ArrayList<Attribute> attributes = new ArrayList<>();
+    attributes.add(new Attribute("amount"));
+    attributes.add(new Attribute("risk_class", List.of(FraudModel.LEGITIMATE, FraudModel.FRAUD)));
+    Instances other = new Instances("other", attributes, 4);
+    other.setClassIndex(1);
+    for (int i = 0; i < 4; i++) {
+      other.add(new DenseInstance(1.0, new double[] {i, i % 2}));
+    }
+    Logistic classifier = new Logistic();
+    classifier.buildClassifier(other);
+    Path modelFile = modelDir.resolve("other.model");
+    SerializationHelper.writeAll(modelFile.toString(), new Object[] {classifier, other});
+
+    assertThrows(IllegalStateException.class, () -> FraudModelService.load(modelFile, "v2"));
+    Files.writeString(modelFile, "not a model");
+    assertThrows(IllegalStateException.class, () -> FraudModelService.load(modelFile, "v2"));
+  }
+
+  @Test
+  void shouldDropThreadCopiesOfReplacedModels() throws Exception {
+    Logistic classifier = new Logistic();
+    classifier.buildClassifier(trainingSet());
+    FraudFeatureVector burst = features(new BigDecimal("20000.00"), 9);
+
+    // A thread's classifier copy refers to its model, which is collectable once the copy is gone
+    FraudModel first = new FraudModel("v1", classifier);
+    double probability = first.fraudProbability(burst);
+    fraudModelService.publish(first);
+    WeakReference<FraudModel> replaced = new WeakReference<>(first);
+    first = null;
+    FraudModel second = new FraudModel("v2", classifier);
+    fraudModelService.publish(second);
+    assertEquals(probability, second.fraudProbability(burst));
+    assertCollected(replaced);
+
+    // Models never published, such as shadow candidates, are evicted once the slots are used up
+    FraudModel candidate = new FraudModel("candidate", classifier);
+    candidate.fraudProbability(burst);
+    WeakReference<FraudModel> evicted = new WeakReference<>(candidate);
+    candidate = null;
+    for (int i = 0; i < FraudModel.SCRATCH_SLOTS; i++) {
+      new FraudModel("candidate-" + i, classifier).fraudProbability(burst);
+    }
+    assertCollected(evicted);
+  }
+
+  private static void assertCollected(WeakReference<?> reference) throws InterruptedException {
+    for (int attempt = 0; attempt < 50 && reference.get() != null; attempt++) {
+      System.gc();
+      Thread.sleep(20);
+    }
+    assertNull(reference.get());
+  }
+
+  /** Fraud whenever a burst of transactions carries a large amount */
+  private static Instances trainingSet() {
+    Random random = new Random(11);
+    Instances training = FraudModel.header(400);
+    double[] row = new double[FraudModel.ATTRIBUTE_COUNT];
+    for (int i = 0; i < 400; i++) {
+      boolean fraud = i % 2 == 0;
+      BigDecimal amount =
+          BigDecimal.valueOf(fraud ? 5_000 + random.nextInt(20_000) : 5 + random.nextInt(300));
+      FraudModel.describe(row, features(amount, fraud ? 6 + random.nextInt(6) : random.nextInt(3)));
+      row[FraudModel.CLASS_INDEX] = fraud ? FraudModel.FRAUD_CLASS : 0;
+      training.add(new DenseInstance(1.0, row.clone()));
+    }
+    return training;
+  }
+
+  private static FraudFeatureVector features(BigDecimal amount, int transactionsLastHour) {
+    TransactionAnalysisRequest request = new TransactionAnalysisRequest();
+    request.setUserId(1L);
+    request.setAmount(amount);
+    VelocitySnapshot velocity =
+        new VelocitySnapshot(transactionsLastHour, transactionsLastHour, 0L, 0L);
+    return new FraudScoringContext(1L, request, null, velocity, null).getFeatures();
+  }
+
+  private static FraudRuleSet rulesVersioned(String version) {
+    Properties properties = new Properties();
+    properties.setProperty("version", version);
+    return FraudRuleSet.compile(properties);
+  }
+}
@@ -0,0 +1,166 @@
+package com.fintech.aifraudservice.service;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import com.fintech.aifraudservice.repository.ReviewedAnalysisReader;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.nio.file.Path;
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.core.task.TaskExecutor;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabase;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabaseBuilder;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabaseType;
+import org.springframework.test.util.ReflectionTestUtils;
+
+class FraudModelTrainerTest {
+
+  @TempDir Path modelDir;
+
+  private EmbeddedDatabase database;
+
+  private JdbcTemplate jdbcTemplate;
+
+  private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+  private final FraudModelService fraudModelService = new FraudModelService();
+
+  private final FraudModelTrainer fraudModelTrainer = new FraudModelTrainer();
+
+  @BeforeEach
+  void setUp() {
+    database =
+        new EmbeddedDatabaseBuilder()
+            .setType(EmbeddedDatabaseType.H2)
+            .generateUniqueName(true)
+            .build();
+    jdbcTemplate = new JdbcTemplate(database);
+    jdbcTemplate.execute(
+        "CREATE TABLE transaction_analyses (id BIGINT PRIMARY KEY, amount DECIMAL(19, 2),"
+            + " velocity_score DOUBLE, behavioral_score DOUBLE, geolocation_score DOUBLE,"
+            + " device_score DOUBLE, amount_score DOUBLE, time_of_day_score DOUBLE,"
+            + " fraud_status VARCHAR(20), reviewed_at TIMESTAMP)");
+
+    ReviewedAnalysisReader reader = new ReviewedAnalysisReader();
+    ReflectionTestUtils.setField(reader, "dataSource", database);
+    ReflectionTestUtils.setField(
+        reader, "transactionManager", new DataSourceTransactionManager(database));
+    ReflectionTestUtils.setField(reader, "fetchSize", 16);
+
+    ReflectionTestUtils.setField(fraudModelService, "meterRegistry", meterRegistry);
+    ReflectionTestUtils.setField(
+        fraudModelService, "modelPath", modelDir.resolve("fraud.model").toString());
+    ReflectionTestUtils.setField(fraudModelService, "modelVersion", "v1.0");
+    ReflectionTestUtils.setField(fraudModelService, "blendWeight", 0.3);
+    fraudModelService.init();
+
+    ReflectionTestUtils.setField(fraudModelTrainer, "reviewedAnalysisReader", reader);
+    ReflectionTestUtils.setField(fraudModelTrainer, "fraudModelService", fraudModelService);
+    ReflectionTestUtils.setField(fraudModelTrainer, "meterRegistry", meterRegistry);
+    ReflectionTestUtils.setField(
+        fraudModelTrainer, "classifierName", "weka.classifiers.functions.Logistic");
+    ReflectionTestUtils.setField(fraudModelTrainer, "classifierOptions", "");
+    ReflectionTestUtils.setField(fraudModelTrainer, "minSamplesPerClass", 20);
+    ReflectionTestUtils.setField(fraudModelTrainer, "maxSamples", 0);
+    fraudModelTrainer.init();
+  }
+
+  @AfterEach
+  void tearDown() {
+    database.shutdown();
+  }
+
+  @Test
+  void shouldTrainOnReviewedRowsAndPublishNextVersion() throws Exception {
+    insertReviews(60);
+    // Unreviewed and still pending rows are not labels
+    jdbcTemplate.update(
+        "INSERT INTO transaction_analyses VALUES (9001, 10, 0, 0, 0, 0, 0, 0, 'DECLINED', NULL)");
+    jdbcTemplate.update(
+        "INSERT INTO transaction_analyses VALUES"
+            + " (9002, 10, 0, 0, 0, 0, 0, 0, 'APPROVED', CURRENT_TIMESTAMP)");
+
+    FraudModelTrainer.TrainingReport report = fraudModelTrainer.train();
+
+    assertEquals("v1.0-r1", report.getVersion());
+    assertEquals(120, report.getSamples());
+    assertEquals(60, report.getFraudSamples());
+    assertEquals(60, report.getLegitimateSamples());
+    FraudModel published = fraudModelService.current();
+    assertEquals("v1.0-r1", published.getVersion());
+    assertEquals(1, meterRegistry.get("fraud.model.training").timer().count());
+
+    // The saved file carries its version across restarts, and the next run bumps it
+    FraudModel reloaded = FraudModelService.load(modelDir.resolve("fraud.model"), "v1.0");
+    assertEquals("v1.0-r1", reloaded.getVersion());
+    ReflectionTestUtils.setField(
+        fraudModelTrainer, "classifierName", "weka.classifiers.bayes.NaiveBayesUpdateable");
+    assertEquals("v1.0-r2", fraudModelTrainer.train().getVersion());
+    assertNotSame(published, fraudModelService.current());
+  }
+
+  @Test
+  void shouldKeepActiveModelWithoutEnoughReviews() throws Exception {
+    insertReviews(10);
+
+    FraudModelTrainer.TrainingReport report = fraudModelTrainer.train();
+
+    assertNull(report.getVersion());
+    assertEquals(20, report.getSamples());
+    assertNull(fraudModelService.current());
+  }
+
+  @Test
+  void shouldRejectOverlappingRuns() throws Exception {
+    CountDownLatch release = new CountDownLatch(1);
+    ReflectionTestUtils.setField(
+        fraudModelTrainer,
+        "fraudTrainingExecutor",
+        (TaskExecutor)
+            task ->
+                new Thread(
+                        () -> {
+                          try {
+                            release.await();
+                          } catch (InterruptedException e) {
+                            Thread.currentThread().interrupt();
+                          }
+                          task.run();
+                        })
+                    .start());
+
+    assertTrue(fraudModelTrainer.retrain());
+    assertFalse(fraudModelTrainer.retrain());
+    release.countDown();
+    while (fraudModelTrainer.isRunning()) {
+      Thread.sleep(10);
+    }
+    assertTrue(fraudModelTrainer.retrain());
+    while (fraudModelTrainer.isRunning()) {
+      Thread.sleep(10);
+    }
+  }
+
+  /** Fraud reviews have high velocity and amount scores, false positives low ones */
+  private void insertReviews(int perClass) {
+    Random random = new Random(5);
+    for (int i = 0; i < perClass * 2; i++) {
+      boolean fraud = i % 2 == 0;
+      double high = fraud ? 0.6 + random.nextDouble() * 0.4 : random.nextDouble() * 0.3;
+      jdbcTemplate.update(
+          "INSERT INTO transaction_analyses VALUES (?, ?, ?, 0.1, 0.0, 0.4, ?, 0.0, ?,"
+              + " CURRENT_TIMESTAMP)",
+          i + 1,
+          fraud ? 9_000 + random.nextInt(5_000) : 20 + random.nextInt(200),
+          high,
+          high,
+          fraud ? "DECLINED" : "FALSE_POSITIVE");
+    }
+  }
+}
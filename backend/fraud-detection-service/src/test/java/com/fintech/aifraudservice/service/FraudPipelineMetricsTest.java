@@ -0,0 +1,76 @@
+package com.fintech.aifraudservice.service;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import com.fintech.aifraudservice.model.TransactionAnalysis.FraudStatus;
+import com.fintech.aifraudservice.model.TransactionAnalysis.RiskLevel;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.util.concurrent.TimeUnit;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+class FraudPipelineMetricsTest {
+
+  private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+  private final FraudPipelineMetrics metrics = new FraudPipelineMetrics();
+
+  @BeforeEach
+  void setUp() {
+    ReflectionTestUtils.setField(metrics, "meterRegistry", meterRegistry);
+    metrics.init();
+  }
+
+  @Test
+  void shouldRegisterEveryMeterUpFrontAndRecordIntoIt() {
+    // Dashboards see zero-valued series before the first transaction
+    assertEquals(
+        0, meterRegistry.get("fraud.analysis.stage").tag("stage", "persist").timer().count());
+    assertEquals(
+        RiskLevel.values().length * FraudStatus.values().length,
+        meterRegistry.get("fraud.analysis.outcomes").counters().size());
+
+    long start = System.nanoTime() - TimeUnit.MILLISECONDS.toNanos(5);
+    metrics.stage(FraudPipelineMetrics.Stage.PERSIST, start);
+    metrics.request(FraudPipelineMetrics.Operation.ANALYZE, start);
+    metrics.profileLookup(start, false);
+    metrics.published(start, true);
+    metrics.outcome(RiskLevel.CRITICAL, FraudStatus.DECLINED);
+    metrics.outcome(RiskLevel.CRITICAL, FraudStatus.DECLINED);
+    metrics.outcome(null, FraudStatus.APPROVED);
+
+    assertTrue(
+        meterRegistry
+                .get("fraud.analysis.stage")
+                .tag("stage", "persist")
+                .timer()
+                .totalTime(TimeUnit.MILLISECONDS)
+            >= 5);
+    assertEquals(
+        1, meterRegistry.get("fraud.analysis.request").tag("operation", "analyze").timer().count());
+    assertEquals(
+        1, meterRegistry.get("fraud.profile.lookup").tag("result", "absent").timer().count());
+    assertEquals(
+        0, meterRegistry.get("fraud.profile.lookup").tag("result", "found").timer().count());
+    assertEquals(
+        1, meterRegistry.get("fraud.kafka.publish").tag("result", "success").timer().count());
+    assertEquals(
+        2.0,
+        meterRegistry
+            .get("fraud.analysis.outcomes")
+            .tag("risk_level", "CRITICAL")
+            .tag("status", "DECLINED")
+            .counter()
+            .count());
+  }
+
+  @Test
+  void shouldTimeListenersBySimpleClassName() {
+    TransactionAnalysisListener listener = (request, analysis) -> {};
+    metrics.listener(listener, System.nanoTime());
+    metrics.listener(listener, System.nanoTime());
+
+    assertEquals(2, meterRegistry.get("fraud.analysis.listener").timer().count());
+  }
+}
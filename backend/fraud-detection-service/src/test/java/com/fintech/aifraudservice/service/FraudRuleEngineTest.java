@@ -0,0 +1,200 @@
+package com.fintech.aifraudservice.service;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import com.fintech.aifraudservice.model.TransactionAnalysis.RiskLevel;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.util.Properties;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.test.util.ReflectionTestUtils;
+
+class FraudRuleEngineTest {
+
+  @TempDir Path rulesDir;
+
+  private Path rulesFile;
+
+  private final FraudRuleEngine fraudRuleEngine = new FraudRuleEngine();
+
+  @BeforeEach
+  void setUp() {
+    rulesFile = rulesDir.resolve("fraud-rules.properties");
+    ReflectionTestUtils.setField(fraudRuleEngine, "location", rulesFile.toString());
+    ReflectionTestUtils.setField(fraudRuleEngine, "velocityWeight", "0.25");
+    ReflectionTestUtils.setField(fraudRuleEngine, "behavioralWeight", "0.20");
+    ReflectionTestUtils.setField(fraudRuleEngine, "geolocationWeight", "0.15");
+    ReflectionTestUtils.setField(fraudRuleEngine, "deviceWeight", "0.15");
+    ReflectionTestUtils.setField(fraudRuleEngine, "amountWeight", "0.15");
+    ReflectionTestUtils.setField(fraudRuleEngine, "timeWeight", "0.10");
+    ReflectionTestUtils.setField(fraudRuleEngine, "merchantWeight", "0.10");
+    ReflectionTestUtils.setField(fraudRuleEngine, "cardWeight", "0.10");
+    ReflectionTestUtils.setField(fraudRuleEngine, "mediumThreshold", "0.3");
+    ReflectionTestUtils.setField(fraudRuleEngine, "highThreshold", "0.6");
+    ReflectionTestUtils.setField(fraudRuleEngine, "criticalThreshold", "0.8");
+    ReflectionTestUtils.setField(fraudRuleEngine, "highRiskCountries", "XX,YY,ZZ");
+  }
+
+  @Test
+  void shouldCompileThresholdsWeightsAndAdjustments() {
+    Properties properties = new Properties();
+    properties.setProperty("threshold.high", "0.5");
+    properties.setProperty("weights.time", "0.5");
+    properties.setProperty("high-risk-countries", "NG, RU");
+    properties.setProperty("rule.country.BR", "0.1");
+    properties.setProperty("rule.category.GAMBLING", "0.25");
+    properties.setProperty("rule.paymentMethod.CARD", "-0.05");
+    FraudRuleSet rules = FraudRuleSet.compile(properties);
+
+    assertEquals(3, rules.getRuleCount());
+    assertEquals(RiskLevel.HIGH, rules.riskLevel(0.55));
+    assertEquals(RiskLevel.MEDIUM, FraudRuleSet.DEFAULTS.riskLevel(0.55));
+    assertTrue(rules.isHighRiskCountry("RU"));
+    assertFalse(rules.isHighRiskCountry("XX"));
+    // Weights are normalized over the components with data: the raised time weight takes 0.5 of
+    // 1.6 with merchant and card data, 0.5 of 1.4 without
+    assertEquals(1.0, FraudRuleSet.DEFAULTS.overallRiskScore(1, 1, 1, 1, 1, 1, 1, 1), 1e-12);
+    assertEquals(1.0, rules.overallRiskScore(1, 1, 1, 1, 1, 1, 1, 1), 1e-12);
+    assertEquals(1.0, rules.overallRiskScore(1, 1, 1, 1, 1, 1, 0, 0, false, false), 1e-12);
+    assertEquals(0.3 * 0.5 / 1.6, rules.overallRiskScore(0, 0, 0, 0, 0, 0.3, 0, 0), 1e-12);
+    assertEquals(
+        0.3 * 0.5 / 1.4, rules.overallRiskScore(0, 0, 0, 0, 0, 0.3, 0, 0, false, false), 1e-12);
+
+    TransactionAnalysisRequest request = new TransactionAnalysisRequest();
+    request.setLocationCountry("BR");
+    request.setMerchantCategory("GAMBLING");
+    request.setPaymentMethod("WALLET");
+    assertEquals(0.35, rules.adjustment(request), 1e-12);
+    assertEquals(1.0, rules.riskScore(1, 1, 1, 1, 1, 1, 1, 1, 0.35), 0.0);
+    assertEquals(0.0, FraudRuleSet.DEFAULTS.adjustment(request), 0.0);
+
+    // Same configuration, same version; any change moves it
+    assertEquals(rules.getVersion(), FraudRuleSet.compile(properties).getVersion());
+    properties.setProperty("rule.country.BR", "0.2");
+    assertNotEquals(rules.getVersion(), FraudRuleSet.compile(properties).getVersion());
+    properties.setProperty("version", "2024-06-01");
+    assertEquals("rules-2024-06-01", FraudRuleSet.compile(properties).getVersion());
+  }
+
+  @Test
+  void shouldRejectInvalidConfiguration() {
+    assertThrows(IllegalArgumentException.class, () -> compile("threshold.high", "0.9"));
+    assertThrows(IllegalArgumentException.class, () -> compile("weights.amount", "-1"));
+    assertThrows(IllegalArgumentException.class, () -> compile("weights.amount", "heavy"));
+    assertThrows(IllegalArgumentException.class, () -> compile("rule.planet.MARS", "0.1"));
+    assertThrows(IllegalArgumentException.class, () -> compile("weights.velocty", "0.3"));
+
+    Properties weightless = new Properties();
+    for (String name :
+        new String[] {
+          "velocity", "behavioral", "geolocation", "device", "amount", "time", "merchant", "card"
+        }) {
+      weightless.setProperty("weights." + name, "0");
+    }
+    assertThrows(IllegalArgumentException.class, () -> FraudRuleSet.compile(weightless));
+    // Requests without merchant or card data would have no weight at all
+    weightless.setProperty("weights.merchant", "0.5");
+    weightless.setProperty("weights.card", "0.5");
+    assertThrows(IllegalArgumentException.class, () -> FraudRuleSet.compile(weightless));
+  }
+
+  @Test
+  void shouldKeepOriginalScoresWithoutMerchantOrCardData() {
+    // Scores and levels as the six original weights gave them before merchant and card scoring
+    assertEquals(
+        0.4,
+        FraudRuleSet.DEFAULTS.overallRiskScore(0.5, 0.4, 0.3, 0.2, 0.6, 0.3, 0, 0, false, false),
+        1e-12);
+    // A new user's burst of late-night transactions: 0.4 velocity, 0.3 behavioral, 0.2 location,
+    // 0.2 device, 0.5 amount and 0.3 time of day
+    TransactionAnalysisRequest request = new TransactionAnalysisRequest();
+    request.setAmount(new BigDecimal("6000.00"));
+    request.setTransactionTime(LocalDateTime.of(2024, 3, 4, 2, 0));
+    request.setMerchantId("m-1");
+    request.setCardBin("411111");
+    double score =
+        FraudRuleSet.DEFAULTS.riskScore(
+            FraudFeatureVector.of(
+                request, null, new VelocitySnapshot(6, 6, 0L, 0L), FraudRuleSet.DEFAULTS));
+    assertEquals(0.325, score, 1e-12);
+    assertEquals(RiskLevel.MEDIUM, FraudRuleSet.DEFAULTS.riskLevel(score));
+    double high =
+        FraudRuleSet.DEFAULTS.overallRiskScore(1, 1, 0.5, 0.5, 0.5, 0, 0, 0, false, false);
+    assertEquals(0.675, high, 1e-12);
+    assertEquals(RiskLevel.HIGH, FraudRuleSet.DEFAULTS.riskLevel(high));
+    double medium =
+        FraudRuleSet.DEFAULTS.overallRiskScore(0, 0.9, 0.4, 0, 0.4, 0.2, 0, 0, false, false);
+    assertEquals(0.32, medium, 1e-12);
+    assertEquals(RiskLevel.MEDIUM, FraudRuleSet.DEFAULTS.riskLevel(medium));
+
+    // Merchant or card data is weighed in beside them, never diluting them when absent
+    assertEquals(
+        (0.4 + 0.10) / 1.1,
+        FraudRuleSet.DEFAULTS.overallRiskScore(0.5, 0.4, 0.3, 0.2, 0.6, 0.3, 1, 0, true, false),
+        1e-12);
+    assertEquals(
+        0.4 / 1.2,
+        FraudRuleSet.DEFAULTS.overallRiskScore(0.5, 0.4, 0.3, 0.2, 0.6, 0.3, 0, 0, true, true),
+        1e-12);
+  }
+
+  @Test
+  void shouldSwapRuleSetWhenFileChangesAndKeepItOnBadReload() throws IOException {
+    write("rule.currency.XBT=0.3\n", 1_000);
+    fraudRuleEngine.init();
+    FraudRuleSet first = fraudRuleEngine.current();
+    assertEquals(1, first.getRuleCount());
+
+    // Unchanged file is not recompiled
+    fraudRuleEngine.reloadIfChanged();
+    assertSame(first, fraudRuleEngine.current());
+
+    write("version=2\nrule.currency.XBT=0.3\nrule.merchant.m-9=0.2\n", 2_000);
+    fraudRuleEngine.reloadIfChanged();
+    FraudRuleSet second = fraudRuleEngine.current();
+    assertEquals("rules-2", second.getVersion());
+    assertEquals(2, second.getRuleCount());
+
+    write("threshold.critical=banana\n", 3_000);
+    fraudRuleEngine.reloadIfChanged();
+    assertSame(second, fraudRuleEngine.current());
+    assertThrows(IllegalArgumentException.class, () -> fraudRuleEngine.reload());
+    assertSame(second, fraudRuleEngine.current());
+  }
+
+  @Test
+  void shouldScoreWithTheRuleSetOfTheContext() {
+    TransactionAnalysisRequest request = new TransactionAnalysisRequest();
+    request.setAmount(new BigDecimal("20000"));
+    request.setCurrency("XBT");
+    Properties properties = new Properties();
+    properties.setProperty("rule.currency.XBT", "0.3");
+    FraudRuleSet rules = FraudRuleSet.compile(properties);
+
+    FraudScoringContext context = new FraudScoringContext(1L, request, null, null, rules);
+    FraudScoringContext defaults = new FraudScoringContext(1L, request, null, null, null);
+
+    assertEquals(
+        FraudRuleSet.DEFAULTS.riskScore(defaults.getFeatures()) + 0.3,
+        rules.riskScore(context.getFeatures()),
+        1e-12);
+  }
+
+  private static FraudRuleSet compile(String key, String value) {
+    Properties properties = new Properties();
+    properties.setProperty(key, value);
+    return FraudRuleSet.compile(properties);
+  }
+
+  private void write(String content, long modifiedMillis) throws IOException {
+    Files.writeString(rulesFile, content);
+    Files.setLastModifiedTime(rulesFile, FileTime.from(Instant.ofEpochMilli(modifiedMillis)));
+  }
+}
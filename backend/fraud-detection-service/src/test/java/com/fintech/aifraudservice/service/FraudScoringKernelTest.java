@@ -0,0 +1,622 @@
+package com.fintech.aifraudservice.service;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import com.fintech.aifraudservice.model.ProfileMembership.Dimension;
+import com.fintech.aifraudservice.model.UserBehaviorProfile;
+import com.fintech.aifraudservice.service.BinRangeTable.BinInfo;
+import com.fintech.aifraudservice.service.BinRangeTable.RiskTier;
+import com.fintech.aifraudservice.service.IpRangeTable.IpLocation;
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.function.Supplier;
+import org.junit.jupiter.api.Test;
+
+class FraudScoringKernelTest {
+
+  private static final List<String> COUNTRIES = List.of("US", "CA", "FR", "XX", "ZZ");
+  private static final List<String> CITIES = List.of("Austin", "Paris", "Toronto");
+  private static final List<String> VALUES = List.of("a", "b", "c", "d");
+
+  @Test
+  void shouldMatchLegacyFormulasForRandomTransactions() {
+    Random random = new Random(42);
+    for (int i = 0; i < 20_000; i++) {
+      TransactionAnalysisRequest request = randomRequest(random);
+      LegacyProfile profile = random.nextInt(4) == 0 ? null : randomProfile(random);
+      VelocitySnapshot velocity =
+          new VelocitySnapshot(
+              random.nextInt(12),
+              random.nextInt(40),
+              0L,
+              random.nextInt(5) == 0 ? 0L : (long) random.nextInt(5_000_000));
+
+      assertParity(request, profile, velocity);
+    }
+  }
+
+  @Test
+  void shouldMatchLegacyRoundingOfAmountToAverageRatio() {
+    LegacyProfile profile = new LegacyProfile();
+    profile.setAvgTransactionAmount(new BigDecimal("10.00"));
+    TransactionAnalysisRequest request = randomRequest(new Random(7));
+
+    request.setAmount(new BigDecimal("100.05"));
+    assertEquals(0.4, behavioralScore(request, profile), 1e-12);
+    assertParity(request, profile, VelocitySnapshot.EMPTY);
+
+    request.setAmount(new BigDecimal("100.04"));
+    assertEquals(0.2, behavioralScore(request, profile), 1e-12);
+    assertParity(request, profile, VelocitySnapshot.EMPTY);
+
+    request.setAmount(new BigDecimal("50.05"));
+    assertEquals(0.2, behavioralScore(request, profile), 1e-12);
+    request.setAmount(new BigDecimal("50.04"));
+    assertEquals(0.0, behavioralScore(request, profile), 1e-12);
+  }
+
+  @Test
+  void shouldReuseFeatureVectorAcrossTransactions() {
+    Random random = new Random(3);
+    FraudFeatureVector features = new FraudFeatureVector();
+    for (int i = 0; i < 1_000; i++) {
+      TransactionAnalysisRequest request = randomRequest(random);
+      UserBehaviorProfile profile = random.nextBoolean() ? null : randomProfile(random);
+      features.load(request, profile, VelocitySnapshot.EMPTY, FraudRuleSet.DEFAULTS);
+
+      assertEquals(
+          FraudRuleSet.DEFAULTS.riskScore(
+              FraudFeatureVector.of(
+                  request, profile, VelocitySnapshot.EMPTY, FraudRuleSet.DEFAULTS)),
+          FraudRuleSet.DEFAULTS.riskScore(features),
+          0.0);
+    }
+  }
+
+  @Test
+  void shouldScoreClaimedLocationAgainstIpLocation() {
+    TransactionAnalysisRequest request = new TransactionAnalysisRequest();
+    request.setLocationCountry("US");
+    request.setLocationCity("Austin");
+    LegacyProfile profile = new LegacyProfile();
+    profile.getMembership().set(Dimension.COUNTRY, Set.of("US"));
+    profile.getMembership().set(Dimension.CITY, Set.of("Austin"));
+
+    assertEquals(0.0, geolocationScore(request, profile, null), 0.0);
+    assertEquals(0.0, geolocationScore(request, profile, new IpLocation("us", "AUSTIN")), 0.0);
+    assertEquals(0.1, geolocationScore(request, profile, new IpLocation("US", "Dallas")), 1e-12);
+    assertEquals(0.3, geolocationScore(request, profile, new IpLocation("CA", "Toronto")), 1e-12);
+    // An IP in a high-risk country behind a claimed low-risk one
+    assertEquals(0.7, geolocationScore(request, profile, new IpLocation("XX", null)), 1e-12);
+    assertEquals(0.5, geolocationScore(request, null, new IpLocation("CA", null)), 1e-12);
+
+    // Without a claimed country only the IP's own risk counts
+    request.setLocationCountry(null);
+    assertEquals(0.4, geolocationScore(request, profile, new IpLocation("XX", null)), 1e-12);
+    assertEquals(0.0, geolocationScore(request, profile, new IpLocation("CA", null)), 0.0);
+  }
+
+  @Test
+  void shouldScoreMerchantDeclineAndFraudRates() {
+    TransactionAnalysisRequest request = new TransactionAnalysisRequest();
+    request.setMerchantId("m-1");
+
+    assertEquals(0.0, merchantScore(request, MerchantRiskSnapshot.EMPTY), 0.0);
+    assertEquals(0.0, merchantScore(request, new MerchantRiskSnapshot(80.0, 0.0, 0.0)), 0.0);
+    // 20 declines in 80 analyses: 2 * 20 / 100
+    assertEquals(0.4, merchantScore(request, new MerchantRiskSnapshot(80.0, 20.0, 0.0)), 1e-12);
+    // 10 of them confirmed as fraud on review: 0.4 + 4 * 10 / 100
+    assertEquals(0.8, merchantScore(request, new MerchantRiskSnapshot(80.0, 20.0, 10.0)), 1e-12);
+    assertEquals(1.0, merchantScore(request, new MerchantRiskSnapshot(80.0, 40.0, 30.0)), 0.0);
+    // A few declines at a merchant with little history stay well below the rate they imply
+    assertEquals(0.2, merchantScore(request, new MerchantRiskSnapshot(5.0, 2.5, 0.0)), 1e-12);
+
+    FraudFeatureVector f =
+        FraudFeatureVector.of(
+            request,
+            null,
+            VelocitySnapshot.EMPTY,
+            FraudRuleSet.DEFAULTS,
+            null,
+            new MerchantRiskSnapshot(80.0, 20.0, 10.0),
+            null,
+            LinkageSnapshot.EMPTY);
+    FraudFeatureVector untracked =
+        FraudFeatureVector.of(request, null, VelocitySnapshot.EMPTY, FraudRuleSet.DEFAULTS);
+    // A tracked merchant adds its weight to the weights with data
+    assertEquals(
+        (FraudRuleSet.DEFAULTS.riskScore(untracked) + 0.8 * 0.10) / 1.1,
+        FraudRuleSet.DEFAULTS.riskScore(f),
+        1e-12);
+  }
+
+  @Test
+  void shouldScoreCardBinRiskAndIssuerCountry() {
+    TransactionAnalysisRequest request = new TransactionAnalysisRequest();
+    request.setCardBin("411111");
+    request.setLocationCountry("US");
+    BinInfo domestic = new BinInfo("US", "VISA", false, RiskTier.LOW);
+
+    assertEquals(0.0, cardScore(request, null, null), 0.0);
+    assertEquals(0.0, cardScore(request, null, domestic), 0.0);
+    assertEquals(
+        0.3, cardScore(request, null, new BinInfo("us", null, false, RiskTier.MEDIUM)), 1e-12);
+    assertEquals(
+        0.8, cardScore(request, null, new BinInfo("US", null, true, RiskTier.HIGH)), 1e-12);
+    // The IP address's country wins over the claimed one
+    assertEquals(0.3, cardScore(request, new IpLocation("GB", null), domestic), 1e-12);
+    assertEquals(0.0, cardScore(request, new IpLocation("GB", null), binFrom("GB")), 0.0);
+    assertEquals(1.0, cardScore(request, null, new BinInfo("NG", null, true, RiskTier.HIGH)), 0.0);
+    // Nothing to compare the issuer with
+    request.setLocationCountry(null);
+    assertEquals(0.0, cardScore(request, null, binFrom("GB")), 0.0);
+  }
+
+  @Test
+  void shouldScoreIdentifiersSharedWithOtherAccounts() {
+    TransactionAnalysisRequest request = new TransactionAnalysisRequest();
+    LegacyProfile profile = new LegacyProfile();
+
+    assertEquals(0.0, deviceScore(request, profile, LinkageSnapshot.EMPTY), 0.0);
+    // A household sharing a device, or a busy IP address, is not a ring
+    assertEquals(0.0, deviceScore(request, profile, new LinkageSnapshot(2, 9, 0, 9)), 0.0);
+    assertEquals(0.3, deviceScore(request, profile, new LinkageSnapshot(3, 0, 0, 3)), 1e-12);
+    assertEquals(0.6, deviceScore(request, profile, new LinkageSnapshot(12, 0, 0, 12)), 1e-12);
+    assertEquals(0.4, deviceScore(request, profile, new LinkageSnapshot(0, 25, 1, 25)), 1e-12);
+    assertEquals(1.0, deviceScore(request, profile, new LinkageSnapshot(12, 30, 4, 40)), 0.0);
+    // Added to the new-user score
+    assertEquals(0.7, deviceScore(request, null, new LinkageSnapshot(0, 0, 3, 3)), 1e-12);
+  }
+
+  @Test
+  void shouldScoreDegradedFeaturesConservatively() {
+    TransactionAnalysisRequest request = new TransactionAnalysisRequest();
+    request.setAmount(new BigDecimal("25.00"));
+    int everything = 0;
+    for (ScoringBudget.Feature feature : ScoringBudget.Feature.values()) {
+      everything |= feature.bit;
+    }
+    FraudScoringContext degraded = context(request, everything);
+    FraudScoringContext resolved = context(request, 0);
+
+    // Missing lookups raise the score instead of reading as nothing to report
+    assertEquals(0.0, FraudScoringKernel.velocityScore(resolved.getFeatures()), 0.0);
+    assertEquals(0.4, FraudScoringKernel.velocityScore(degraded.getFeatures()), 0.0);
+    assertEquals(0.2, FraudScoringKernel.geolocationScore(resolved.getFeatures()), 1e-12);
+    assertEquals(0.5, FraudScoringKernel.geolocationScore(degraded.getFeatures()), 1e-12);
+    assertEquals(0.2, FraudScoringKernel.deviceScore(resolved.getFeatures()), 1e-12);
+    assertEquals(0.5, FraudScoringKernel.deviceScore(degraded.getFeatures()), 1e-12);
+    assertEquals(0.3, FraudScoringKernel.merchantScore(degraded.getFeatures()), 0.0);
+    assertEquals(0.3, FraudScoringKernel.cardScore(degraded.getFeatures()), 0.0);
+    assertTrue(degraded.isDegraded());
+    assertFalse(resolved.isDegraded());
+    // Candidate rule sets see the same degraded features
+    assertEquals(
+        0.4,
+        FraudScoringKernel.velocityScore(
+            degraded.getFeatures().withRules(request, null, FraudRuleSet.DEFAULTS)),
+        0.0);
+    assertEquals(
+        "PROFILE, VELOCITY, IP_LOCATION, MERCHANT, BIN, LINKAGE",
+        ScoringBudget.describe(everything));
+  }
+
+  private static FraudScoringContext context(TransactionAnalysisRequest request, int degraded) {
+    return new FraudScoringContext(
+        1L,
+        request,
+        null,
+        VelocitySnapshot.EMPTY,
+        FraudRuleSet.DEFAULTS,
+        null,
+        null,
+        MerchantRiskSnapshot.EMPTY,
+        null,
+        LinkageSnapshot.EMPTY,
+        degraded);
+  }
+
+  private static double deviceScore(
+      TransactionAnalysisRequest request, UserBehaviorProfile profile, LinkageSnapshot linkage) {
+    return FraudScoringKernel.deviceScore(
+        FraudFeatureVector.of(
+            request,
+            profile,
+            VelocitySnapshot.EMPTY,
+            FraudRuleSet.DEFAULTS,
+            null,
+            MerchantRiskSnapshot.EMPTY,
+            null,
+            linkage));
+  }
+
+  private static BinInfo binFrom(String country) {
+    return new BinInfo(country, "VISA", false, RiskTier.LOW);
+  }
+
+  private static double cardScore(
+      TransactionAnalysisRequest request, IpLocation ipLocation, BinInfo bin) {
+    return FraudScoringKernel.cardScore(
+        FraudFeatureVector.of(
+            request,
+            null,
+            VelocitySnapshot.EMPTY,
+            FraudRuleSet.DEFAULTS,
+            ipLocation,
+            MerchantRiskSnapshot.EMPTY,
+            bin,
+            LinkageSnapshot.EMPTY));
+  }
+
+  private static double merchantScore(
+      TransactionAnalysisRequest request, MerchantRiskSnapshot merchant) {
+    return FraudScoringKernel.merchantScore(
+        FraudFeatureVector.of(
+            request,
+            null,
+            VelocitySnapshot.EMPTY,
+            FraudRuleSet.DEFAULTS,
+            null,
+            merchant,
+            null,
+            LinkageSnapshot.EMPTY));
+  }
+
+  private static double geolocationScore(
+      TransactionAnalysisRequest request, UserBehaviorProfile profile, IpLocation ipLocation) {
+    return FraudScoringKernel.geolocationScore(
+        FraudFeatureVector.of(
+            request,
+            profile,
+            VelocitySnapshot.EMPTY,
+            FraudRuleSet.DEFAULTS,
+            ipLocation,
+            MerchantRiskSnapshot.EMPTY,
+            null,
+            LinkageSnapshot.EMPTY));
+  }
+
+  private static double behavioralScore(
+      TransactionAnalysisRequest request, UserBehaviorProfile profile) {
+    return FraudScoringKernel.behavioralScore(
+        FraudFeatureVector.of(request, profile, VelocitySnapshot.EMPTY, FraudRuleSet.DEFAULTS));
+  }
+
+  private static void assertParity(
+      TransactionAnalysisRequest request, LegacyProfile profile, VelocitySnapshot velocity) {
+    FraudFeatureVector f = FraudFeatureVector.of(request, profile, velocity, FraudRuleSet.DEFAULTS);
+    double v = LegacyScores.velocity(profile, velocity);
+    double b = LegacyScores.behavioral(request, profile);
+    double g = LegacyScores.geolocation(request, profile);
+    double d = LegacyScores.device(request, profile);
+    double a = LegacyScores.amount(request, profile);
+    double t = LegacyScores.timeOfDay(request);
+    String input = describe(request, profile, velocity);
+
+    assertEquals(v, FraudScoringKernel.velocityScore(f), 0.0, input);
+    assertEquals(b, FraudScoringKernel.behavioralScore(f), 0.0, input);
+    assertEquals(g, FraudScoringKernel.geolocationScore(f), 0.0, input);
+    assertEquals(d, FraudScoringKernel.deviceScore(f), 0.0, input);
+    assertEquals(a, FraudScoringKernel.amountScore(f), 0.0, input);
+    assertEquals(t, FraudScoringKernel.timeOfDayScore(f), 0.0, input);
+    // Without merchant or card data the merchant and card weights do not count
+    assertEquals(
+        (v * 0.25) + (b * 0.20) + (g * 0.15) + (d * 0.15) + (a * 0.15) + (t * 0.10),
+        FraudRuleSet.DEFAULTS.riskScore(f),
+        0.0,
+        input);
+  }
+
+  private static TransactionAnalysisRequest randomRequest(Random random) {
+    TransactionAnalysisRequest request = new TransactionAnalysisRequest();
+    request.setTransactionId("tx-" + random.nextInt());
+    request.setUserId(1L);
+    request.setAmount(
+        random.nextInt(20) == 0 ? null : BigDecimal.valueOf(random.nextInt(1_500_000), 2));
+    request.setTransactionTime(
+        random.nextInt(20) == 0
+            ? null
+            : LocalDateTime.of(2024, 1, 1, 0, 0).plusMinutes(random.nextInt(24 * 60)));
+    request.setLocationCountry(pickOrNull(random, COUNTRIES));
+    request.setLocationCity(pickOrNull(random, CITIES));
+    request.setMerchantCategory(pickOrNull(random, VALUES));
+    request.setPaymentMethod(pickOrNull(random, VALUES));
+    request.setDeviceFingerprint(pickOrNull(random, VALUES));
+    request.setIpAddress(pickOrNull(random, VALUES));
+    return request;
+  }
+
+  private static LegacyProfile randomProfile(Random random) {
+    LegacyProfile profile = new LegacyProfile();
+    profile.setUserId(1L);
+    profile.setDailyTransactionCount(random.nextInt(4) == 0 ? null : random.nextInt(30));
+    profile.setAvgTransactionAmount(
+        random.nextInt(4) == 0 ? null : BigDecimal.valueOf(random.nextInt(50_000), 2));
+    profile.setMaxTransactionAmount(
+        random.nextInt(4) == 0 ? null : BigDecimal.valueOf(random.nextInt(500_000), 2));
+    if (random.nextBoolean()) {
+      LocalTime start = LocalTime.of(random.nextInt(12), random.nextInt(60));
+      profile.setTypicalStartTime(start);
+      profile.setTypicalEndTime(start.plusHours(random.nextInt(12)));
+    }
+    profile.setFrequentCountries(randomSet(random, COUNTRIES));
+    profile.setFrequentCities(randomSet(random, CITIES));
+    profile.setFrequentCategories(randomSet(random, VALUES));
+    profile.setPreferredPaymentMethods(randomSet(random, VALUES));
+    profile.setKnownDevices(randomSet(random, VALUES));
+    profile.setKnownIpAddresses(randomSet(random, VALUES));
+    return profile;
+  }
+
+  private static Set<String> randomSet(Random random, List<String> values) {
+    if (random.nextInt(5) == 0) {
+      return null;
+    }
+    Set<String> set = new HashSet<>();
+    for (String value : values) {
+      if (random.nextBoolean()) {
+        set.add(value);
+      }
+    }
+    return set;
+  }
+
+  private static String pickOrNull(Random random, List<String> values) {
+    return random.nextInt(10) == 0 ? null : values.get(random.nextInt(values.size()));
+  }
+
+  private static String describe(
+      TransactionAnalysisRequest request, UserBehaviorProfile profile, VelocitySnapshot velocity) {
+    return request + " / " + profile + " / " + velocity;
+  }
+
+  /** A profile that also keeps the plain value sets the legacy formulas read */
+  private static final class LegacyProfile extends UserBehaviorProfile {
+    private Set<String> frequentCountries;
+    private Set<String> frequentCities;
+    private Set<String> frequentCategories;
+    private Set<String> preferredPaymentMethods;
+    private Set<String> knownDevices;
+    private Set<String> knownIpAddresses;
+
+    Set<String> getFrequentCountries() {
+      return frequentCountries;
+    }
+
+    Set<String> getFrequentCities() {
+      return frequentCities;
+    }
+
+    Set<String> getFrequentCategories() {
+      return frequentCategories;
+    }
+
+    Set<String> getPreferredPaymentMethods() {
+      return preferredPaymentMethods;
+    }
+
+    Set<String> getKnownDevices() {
+      return knownDevices;
+    }
+
+    Set<String> getKnownIpAddresses() {
+      return knownIpAddresses;
+    }
+
+    void setFrequentCountries(Set<String> values) {
+      frequentCountries = membership(Dimension.COUNTRY, values);
+    }
+
+    void setFrequentCities(Set<String> values) {
+      frequentCities = membership(Dimension.CITY, values);
+    }
+
+    void setFrequentCategories(Set<String> values) {
+      frequentCategories = membership(Dimension.CATEGORY, values);
+    }
+
+    void setPreferredPaymentMethods(Set<String> values) {
+      preferredPaymentMethods = membership(Dimension.PAYMENT_METHOD, values);
+    }
+
+    void setKnownDevices(Set<String> values) {
+      knownDevices = membership(Dimension.DEVICE, values);
+    }
+
+    void setKnownIpAddresses(Set<String> values) {
+      knownIpAddresses = membership(Dimension.IP, values);
+    }
+
+    private Set<String> membership(Dimension dimension, Set<String> values) {
+      getMembership().set(dimension, values != null ? values : Set.of());
+      return values;
+    }
+  }
+
+  /** The BigDecimal/collection formulas the kernel replaced, kept verbatim as a reference */
+  private static final class LegacyScores {
+
+    static double velocity(LegacyProfile profile, VelocitySnapshot velocity) {
+      return guarded(
+          () -> {
+            long transactionsLastHour = velocity.getTransactionsLastHour();
+            long transactionsLastDay = velocity.getTransactionsLastDay();
+            BigDecimal amountLastDay = velocity.getAmountLastDay();
+            double velocityScore = 0.0;
+            if (profile != null && profile.getDailyTransactionCount() != null) {
+              double normalDailyCount = profile.getDailyTransactionCount();
+              double normalHourlyCount = normalDailyCount / 24.0;
+              if (transactionsLastHour > normalHourlyCount * 3) {
+                velocityScore += 0.4;
+              } else if (transactionsLastHour > normalHourlyCount * 2) {
+                velocityScore += 0.2;
+              }
+              if (transactionsLastDay > normalDailyCount * 2) {
+                velocityScore += 0.3;
+              }
+            } else {
+              if (transactionsLastHour > 5) velocityScore += 0.4;
+              if (transactionsLastDay > 20) velocityScore += 0.3;
+            }
+            if (profile != null && profile.getAvgTransactionAmount() != null) {
+              BigDecimal normalDailyAmount =
+                  profile
+                      .getAvgTransactionAmount()
+                      .multiply(
+                          BigDecimal.valueOf(
+                              profile.getDailyTransactionCount() != null
+                                  ? profile.getDailyTransactionCount()
+                                  : 5));
+              if (amountLastDay.compareTo(normalDailyAmount.multiply(BigDecimal.valueOf(3))) > 0) {
+                velocityScore += 0.3;
+              }
+            }
+            return Math.min(velocityScore, 1.0);
+          });
+    }
+
+    @SuppressWarnings("deprecation")
+    static double behavioral(TransactionAnalysisRequest request, LegacyProfile profile) {
+      return guarded(
+          () -> {
+            if (profile == null) {
+              return 0.3;
+            }
+            double behavioralScore = 0.0;
+            if (profile.getAvgTransactionAmount() != null) {
+              BigDecimal avgAmount = profile.getAvgTransactionAmount();
+              BigDecimal currentAmount = request.getAmount();
+              double ratio =
+                  currentAmount.divide(avgAmount, 2, BigDecimal.ROUND_HALF_UP).doubleValue();
+              if (ratio > 10) {
+                behavioralScore += 0.4;
+              } else if (ratio > 5) {
+                behavioralScore += 0.2;
+              }
+            }
+            if (profile.getFrequentCategories() != null
+                && !profile.getFrequentCategories().isEmpty()) {
+              if (!profile.getFrequentCategories().contains(request.getMerchantCategory())) {
+                behavioralScore += 0.2;
+              }
+            }
+            if (profile.getPreferredPaymentMethods() != null
+                && !profile.getPreferredPaymentMethods().isEmpty()) {
+              if (!profile.getPreferredPaymentMethods().contains(request.getPaymentMethod())) {
+                behavioralScore += 0.15;
+              }
+            }
+            LocalTime currentTime = request.getTransactionTime().toLocalTime();
+            if (profile.getTypicalStartTime() != null && profile.getTypicalEndTime() != null) {
+              if (currentTime.isBefore(profile.getTypicalStartTime())
+                  || currentTime.isAfter(profile.getTypicalEndTime())) {
+                behavioralScore += 0.25;
+              }
+            }
+            return Math.min(behavioralScore, 1.0);
+          });
+    }
+
+    static double geolocation(TransactionAnalysisRequest request, LegacyProfile profile) {
+      return guarded(
+          () -> {
+            if (profile == null) {
+              return 0.2;
+            }
+            double geoScore = 0.0;
+            if (profile.getFrequentCountries() != null
+                && !profile.getFrequentCountries().isEmpty()) {
+              if (!profile.getFrequentCountries().contains(request.getLocationCountry())) {
+                geoScore += 0.5;
+              }
+            }
+            if (profile.getFrequentCities() != null && !profile.getFrequentCities().isEmpty()) {
+              if (!profile.getFrequentCities().contains(request.getLocationCity())) {
+                geoScore += 0.3;
+              }
+            }
+            Set<String> highRiskCountries = Set.of("XX", "YY", "ZZ");
+            if (highRiskCountries.contains(request.getLocationCountry())) {
+              geoScore += 0.4;
+            }
+            return Math.min(geoScore, 1.0);
+          });
+    }
+
+    static double device(TransactionAnalysisRequest request, LegacyProfile profile) {
+      return guarded(
+          () -> {
+            if (profile == null) {
+              return 0.2;
+            }
+            double deviceScore = 0.0;
+            if (profile.getKnownDevices() != null && !profile.getKnownDevices().isEmpty()) {
+              if (!profile.getKnownDevices().contains(request.getDeviceFingerprint())) {
+                deviceScore += 0.4;
+              }
+            }
+            if (profile.getKnownIpAddresses() != null && !profile.getKnownIpAddresses().isEmpty()) {
+              if (!profile.getKnownIpAddresses().contains(request.getIpAddress())) {
+                deviceScore += 0.3;
+              }
+            }
+            return Math.min(deviceScore, 1.0);
+          });
+    }
+
+    static double amount(TransactionAnalysisRequest request, LegacyProfile profile) {
+      return guarded(
+          () -> {
+            if (profile == null) {
+              BigDecimal amount = request.getAmount();
+              if (amount.compareTo(BigDecimal.valueOf(10000)) > 0) {
+                return 0.8;
+              } else if (amount.compareTo(BigDecimal.valueOf(5000)) > 0) {
+                return 0.5;
+              } else if (amount.compareTo(BigDecimal.valueOf(1000)) > 0) {
+                return 0.2;
+              }
+              return 0.0;
+            }
+            BigDecimal maxAmount = profile.getMaxTransactionAmount();
+            BigDecimal avgAmount = profile.getAvgTransactionAmount();
+            BigDecimal currentAmount = request.getAmount();
+            if (maxAmount != null
+                && currentAmount.compareTo(maxAmount.multiply(BigDecimal.valueOf(2))) > 0) {
+              return 0.8;
+            } else if (maxAmount != null && currentAmount.compareTo(maxAmount) > 0) {
+              return 0.5;
+            } else if (avgAmount != null
+                && currentAmount.compareTo(avgAmount.multiply(BigDecimal.valueOf(5))) > 0) {
+              return 0.4;
+            }
+            return 0.0;
+          });
+    }
+
+    static double timeOfDay(TransactionAnalysisRequest request) {
+      return guarded(
+          () -> {
+            LocalTime currentTime = request.getTransactionTime().toLocalTime();
+            if (currentTime.isAfter(LocalTime.of(23, 0))
+                || currentTime.isBefore(LocalTime.of(6, 0))) {
+              return 0.3;
+            }
+            return 0.0;
+          });
+    }
+
+    private static double guarded(Supplier<Double> score) {
+      try {
+        return score.get();
+      } catch (Exception e) {
+        return 0.0;
+      }
+    }
+  }
+}
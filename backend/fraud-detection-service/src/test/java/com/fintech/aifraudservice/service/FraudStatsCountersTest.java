@@ -0,0 +1,155 @@
+package com.fintech.aifraudservice.service;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+import com.fintech.aifraudservice.model.TransactionAnalysis;
+import com.fintech.aifraudservice.model.TransactionAnalysis.FraudStatus;
+import com.fintech.aifraudservice.model.TransactionAnalysis.RiskLevel;
+import com.fintech.aifraudservice.repository.AnalysisActivityReader;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+@ExtendWith(MockitoExtension.class)
+class FraudStatsCountersTest {
+
+  @Mock private AnalysisActivityReader analysisActivityReader;
+
+  private MutableClock clock;
+  private FraudStatsCounters counters;
+
+  @BeforeEach
+  void setUp() {
+    clock = new MutableClock(Instant.parse("2024-03-01T12:02:00Z"));
+    counters = new FraudStatsCounters(analysisActivityReader, "1h,24h,7d", clock);
+  }
+
+  @Test
+  void shouldSeedFromRepositoryAndExpireByWindow() {
+    when(analysisActivityReader.forEachCreatedSince(any(), any()))
+        .thenAnswer(
+            invocation -> {
+              AnalysisActivityReader.ActivityConsumer consumer = invocation.getArgument(1);
+              consumer.accept(now().minusMinutes(5), FraudStatus.DECLINED, RiskLevel.CRITICAL);
+              consumer.accept(now().minusHours(3), FraudStatus.UNDER_REVIEW, RiskLevel.HIGH);
+              consumer.accept(now().minusDays(3), FraudStatus.APPROVED, RiskLevel.LOW);
+              return 3L;
+            });
+    counters.seed();
+
+    Map<String, Object> stats = counters.stats();
+    assertEquals(1L, stats.get("totalTransactions1h"));
+    assertEquals(1L, stats.get("fraudTransactions1h"));
+    assertEquals(100.0, stats.get("fraudRate1h"));
+    assertEquals(2L, stats.get("totalTransactions24h"));
+    assertEquals(2L, stats.get("highRiskTransactions24h"));
+    assertEquals(50.0, stats.get("fraudRate24h"));
+    assertEquals(3L, stats.get("totalTransactions7d"));
+
+    clock.advance(Duration.ofHours(2));
+    stats = counters.stats();
+    assertEquals(0L, stats.get("totalTransactions1h"));
+    assertEquals(0.0, stats.get("fraudRate1h"));
+    assertEquals(2L, stats.get("totalTransactions24h"));
+
+    clock.advance(Duration.ofDays(7));
+    assertEquals(0L, counters.stats().get("totalTransactions7d"));
+  }
+
+  @Test
+  void shouldFollowSavedAndReviewedAnalyses() {
+    TransactionAnalysis analysis = analysis(FraudStatus.UNDER_REVIEW, RiskLevel.HIGH);
+    counters.onAnalysisSaved(null, analysis);
+    counters.onAnalysisSaved(null, analysis(FraudStatus.APPROVED, RiskLevel.LOW));
+
+    analysis.setFraudStatus(FraudStatus.DECLINED);
+    counters.onAnalysisReviewed(analysis, FraudStatus.UNDER_REVIEW);
+    assertEquals(1L, counters.stats().get("fraudTransactions1h"));
+    assertEquals(50.0, counters.stats().get("fraudRate24h"));
+
+    analysis.setFraudStatus(FraudStatus.FALSE_POSITIVE);
+    counters.onAnalysisReviewed(analysis, FraudStatus.DECLINED);
+    assertEquals(0L, counters.stats().get("fraudTransactions1h"));
+    assertEquals(2L, counters.stats().get("totalTransactions7d"));
+    assertEquals(1L, counters.stats().get("highRiskTransactions7d"));
+  }
+
+  @Test
+  void shouldCountConcurrentWritersExactly() throws InterruptedException {
+    List<Thread> threads = new ArrayList<>();
+    for (int t = 0; t < 8; t++) {
+      threads.add(
+          new Thread(
+              () -> {
+                for (int i = 0; i < 10_000; i++) {
+                  counters.onAnalysisSaved(null, analysis(FraudStatus.DECLINED, RiskLevel.LOW));
+                }
+              }));
+    }
+    threads.forEach(Thread::start);
+    for (Thread thread : threads) {
+      thread.join();
+    }
+
+    assertEquals(80_000L, counters.stats().get("totalTransactions1h"));
+    assertEquals(80_000L, counters.stats().get("fraudTransactions24h"));
+  }
+
+  @Test
+  void shouldRejectWindowsShorterThanAMinute() {
+    assertThrows(
+        IllegalArgumentException.class,
+        () -> new FraudStatsCounters(analysisActivityReader, "1h,30s", clock));
+  }
+
+  private TransactionAnalysis analysis(FraudStatus fraudStatus, RiskLevel riskLevel) {
+    TransactionAnalysis analysis = new TransactionAnalysis();
+    analysis.setFraudStatus(fraudStatus);
+    analysis.setRiskLevel(riskLevel);
+    analysis.setCreatedAt(now());
+    return analysis;
+  }
+
+  private LocalDateTime now() {
+    return LocalDateTime.ofInstant(clock.instant(), ZoneId.systemDefault());
+  }
+
+  private static final class MutableClock extends Clock {
+    private Instant instant;
+
+    MutableClock(Instant instant) {
+      this.instant = instant;
+    }
+
+    void advance(Duration duration) {
+      instant = instant.plus(duration);
+    }
+
+    @Override
+    public ZoneId getZone() {
+      return ZoneId.systemDefault();
+    }
+
+    @Override
+    public Clock withZone(ZoneId zone) {
+      return this;
+    }
+
+    @Override
+    public Instant instant() {
+      return instant;
+    }
+  }
+}
@@ -0,0 +1,61 @@
+package com.fintech.aifraudservice.service;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import com.fintech.aifraudservice.service.HeavyHitterSketch.HeavyHitter;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import org.junit.jupiter.api.Test;
+
+class HeavyHitterSketchTest {
+
+  @Test
+  void shouldFindHeavyHittersInSkewedStream() {
+    HeavyHitterSketch sketch = new HeavyHitterSketch(1024, 4, 32);
+    Map<String, Long> exact = new HashMap<>();
+    Random random = new Random(42);
+    for (int i = 0; i < 50_000; i++) {
+      // Ten keys carry half the traffic, the rest is spread over 5000 keys
+      String key =
+          random.nextBoolean() ? "hot-" + random.nextInt(10) : "cold-" + random.nextInt(5000);
+      sketch.add(key, 1);
+      exact.merge(key, 1L, Long::sum);
+    }
+
+    List<HeavyHitter> top = sketch.top(10);
+    assertEquals(10, top.size());
+    for (HeavyHitter hitter : top) {
+      assertTrue(hitter.key().startsWith("hot-"), hitter.key());
+      long actual = exact.get(hitter.key());
+      assertTrue(hitter.count() >= actual);
+      assertTrue(hitter.count() - actual < 50_000 / 1024 * 3, hitter + " vs " + actual);
+    }
+    assertEquals(exact.get("cold-7"), sketch.estimate("cold-7"), 50_000 / 1024 * 3);
+    assertEquals(50_000, sketch.total());
+  }
+
+  @Test
+  void shouldMergeAndRoundTripAcrossInstances() {
+    HeavyHitterSketch first = new HeavyHitterSketch(256, 4, 8);
+    HeavyHitterSketch second = first.emptyCopy();
+    first.add("DE", 30);
+    first.add("FR", 5);
+    second.add("FR", 40);
+    second.add("NG", 12);
+
+    HeavyHitterSketch received = HeavyHitterSketch.fromBytes(second.toBytes());
+    first.merge(received);
+
+    assertEquals(List.of(new HeavyHitter("FR", 45), new HeavyHitter("DE", 30)), first.top(2));
+    assertEquals(87, first.total());
+
+    first.add("FR", -45);
+    assertEquals("DE", first.top(1).get(0).key());
+    assertThrows(
+        IllegalArgumentException.class, () -> first.merge(new HeavyHitterSketch(512, 4, 8)));
+    assertThrows(
+        IllegalArgumentException.class, () -> HeavyHitterSketch.fromBytes(new byte[] {1, 2}));
+  }
+}
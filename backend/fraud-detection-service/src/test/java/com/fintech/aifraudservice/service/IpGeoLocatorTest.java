@@ -0,0 +1,55 @@
+package com.fintech.aifraudservice.service;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.time.Instant;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.test.util.ReflectionTestUtils;
+
+class IpGeoLocatorTest {
+
+  @TempDir Path dir;
+
+  @Test
+  void shouldReloadChangedRangeFileAndKeepTheTableWhenItIsBroken() throws IOException {
+    Path csv = dir.resolve("ranges.csv");
+    Files.writeString(csv, "10.0.0.0,10.255.255.255,US,Austin\n");
+    IpGeoLocator locator = new IpGeoLocator();
+    ReflectionTestUtils.setField(locator, "location", csv.toString());
+    locator.init();
+    assertTrue(Files.exists(dir.resolve("ranges.csv.bin")));
+    assertEquals("US", locator.locate("10.1.2.3").country());
+
+    IpRangeTable.IpLocation before = locator.locate("10.1.2.3");
+    write(csv, "10.0.0.0,10.255.255.255,CA,Toronto\n", 1);
+    locator.reloadIfChanged();
+    assertEquals("CA", locator.locate("10.1.2.3").country());
+    // The previous table stays readable for scoring threads still holding its locations
+    assertEquals("Austin", before.city());
+
+    write(csv, "10.0.0.0,10.0.0.255,CA\n10.0.0.128,10.0.1.0,US\n", 2);
+    locator.reloadIfChanged();
+    assertEquals("CA", locator.locate("10.1.2.3").country());
+    // An explicit reload reports the failure instead of passing the old table off as new
+    IpRangeTable kept = locator.current();
+    assertThrows(IllegalArgumentException.class, locator::reload);
+    assertSame(kept, locator.current());
+
+    // Unconfigured, nothing resolves and there is nothing to reload
+    IpGeoLocator off = new IpGeoLocator();
+    ReflectionTestUtils.setField(off, "location", "");
+    off.init();
+    assertNull(off.locate("10.1.2.3"));
+    assertThrows(IllegalStateException.class, off::reload);
+  }
+
+  private static void write(Path file, String content, int minutes) throws IOException {
+    Files.writeString(file, content);
+    Files.setLastModifiedTime(file, FileTime.from(Instant.now().plusSeconds(60L * minutes)));
+  }
+}
@@ -0,0 +1,107 @@
+package com.fintech.aifraudservice.service;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import com.fintech.aifraudservice.service.IpRangeTable.IpLocation;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class IpRangeTableTest {
+
+  @TempDir Path dir;
+
+  @Test
+  void shouldResolveIpv4AndIpv6Ranges() throws IOException {
+    IpRangeTable table =
+        table(
+            """
+            # start,end,country,city
+            "1.0.0.0","1.0.0.255","au","Sydney"
+            10.0.0.0,10.255.255.255,US,Austin
+            200.1.2.0,200.1.2.127,BR
+            255.255.255.0,255.255.255.255,ZZ,Edge
+            2001:db8::,2001:db8::ffff:ffff,DE,Berlin
+            2001:db8:0:1::,2001:db8:0:1:ffff:ffff:ffff:ffff,FR,Paris
+            """);
+
+    assertEquals(6, table.size());
+    assertEquals(new IpLocation("AU", "Sydney"), table.find("1.0.0.0"));
+    assertEquals(new IpLocation("AU", "Sydney"), table.find("1.0.0.255"));
+    assertNull(table.find("1.0.1.0"));
+    assertEquals(new IpLocation("US", "Austin"), table.find("10.20.30.40"));
+    assertEquals(new IpLocation("BR", null), table.find("200.1.2.100"));
+    assertNull(table.find("200.1.2.128"));
+    // Upper half of the space compares unsigned
+    assertEquals("ZZ", table.find("255.255.255.255").country());
+    assertNull(table.find("0.0.0.1"));
+
+    assertEquals("DE", table.find("2001:db8::1").country());
+    assertEquals("DE", table.find("2001:0DB8:0000:0000:0000:0000:1234:abcd").country());
+    assertNull(table.find("2001:db8::1:0:0:0"));
+    assertEquals("FR", table.find("2001:db8:0:1:ffff::").country());
+    assertEquals("DE", table.find("2001:db8::10.0.0.1").country());
+    // IPv4-mapped addresses resolve as IPv4
+    assertEquals("US", table.find("::ffff:10.1.1.1").country());
+    assertEquals("US", table.find("::ffff:a01:101").country());
+    assertSame(table.find("10.0.0.1"), table.find("10.9.9.9"));
+
+    for (String invalid :
+        new String[] {
+          "",
+          "10.0.0",
+          "10.0.0.256",
+          "10..0.1",
+          "10.0.0.1.",
+          "ip-7-3",
+          "2001:db8:::1",
+          "2001:db8::1::2",
+          "1:2:3:4:5:6:7:8:9",
+          "1:2:3:4:5:6:7",
+          "2001:db8::12345",
+          ":1::",
+          "2001:db8::1:"
+        }) {
+      assertNull(table.find(invalid), invalid);
+    }
+    assertNull(table.find(null));
+    assertNull(IpRangeTable.EMPTY.find("10.0.0.1"));
+  }
+
+  @Test
+  void shouldRejectOverlappingRangesAndCorruptFiles() throws IOException {
+    assertThrows(
+        IllegalArgumentException.class,
+        () -> table("10.0.0.0,10.0.0.255,US\n10.0.0.128,10.0.1.0,CA\n"));
+    assertThrows(
+        IllegalArgumentException.class,
+        () -> table("2001:db8::,2001:db8::ff,DE\n2001:db8::80,2001:db8::1ff,FR\n"));
+    assertThrows(IllegalArgumentException.class, () -> table("10.0.0.9,10.0.0.1,US\n"));
+    assertThrows(IllegalArgumentException.class, () -> table("10.0.0.0,2001:db8::,US\n"));
+    assertThrows(IllegalArgumentException.class, () -> table("10.0.0.0,10.0.0.1\n"));
+
+    Path compiled = dir.resolve("ranges.bin");
+    IpRangeTable.compile(write("10.0.0.0,10.0.0.255,US,Austin\n"), compiled);
+    byte[] bytes = Files.readAllBytes(compiled);
+    Path truncated = dir.resolve("truncated.bin");
+    Files.write(truncated, Arrays.copyOf(bytes, bytes.length - 3));
+    assertThrows(IllegalArgumentException.class, () -> IpRangeTable.open(truncated));
+    Path text = write("10.0.0.0,10.0.0.255,US,Austin, and more text to pass the header size\n");
+    assertThrows(IllegalArgumentException.class, () -> IpRangeTable.open(text));
+  }
+
+  private IpRangeTable table(String csv) throws IOException {
+    Path compiled = dir.resolve("ranges.bin");
+    IpRangeTable.compile(write(csv), compiled);
+    return IpRangeTable.open(compiled);
+  }
+
+  private Path write(String csv) throws IOException {
+    Path file = Files.createTempFile(dir, "ranges", ".csv");
+    Files.writeString(file, csv);
+    return file;
+  }
+}
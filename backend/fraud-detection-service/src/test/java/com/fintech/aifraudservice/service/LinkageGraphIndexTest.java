@@ -0,0 +1,143 @@
+package com.fintech.aifraudservice.service;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+import com.fintech.aifraudservice.model.TransactionAnalysis;
+import com.fintech.aifraudservice.repository.AnalysisActivityReader;
+import com.fintech.aifraudservice.service.LinkageGraph.Identifier;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.List;
+import java.util.function.Consumer;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+@ExtendWith(MockitoExtension.class)
+class LinkageGraphIndexTest {
+
+  @Mock private AnalysisActivityReader analysisActivityReader;
+
+  private MutableClock clock;
+  private LinkageGraphIndex index;
+
+  @BeforeEach
+  void setUp() {
+    clock = new MutableClock(Instant.parse("2024-03-01T12:00:00Z"));
+    index = new LinkageGraphIndex(analysisActivityReader, "30d", 1_000, 64, clock);
+  }
+
+  @Test
+  void shouldCountOtherAccountsSharingDeviceIpAndCard() {
+    when(analysisActivityReader.forEachLinkageSince(any(), any()))
+        .thenAnswer(
+            invocation -> {
+              Consumer<TransactionAnalysis> consumer = invocation.getArgument(1);
+              for (long user = 1; user <= 4; user++) {
+                consumer.accept(analysis(user, "device-ring", "10.0.0." + user, now()));
+              }
+              // Outside the window by the time of the lookup below
+              consumer.accept(analysis(5L, "device-ring", "10.0.0.5", now().minusDays(29)));
+              return 5L;
+            });
+    index.seed();
+    // Card edges only come from live analyses
+    index.onAnalysisSaved(
+        request(6L, "device-6", "10.0.0.1", "9999"), analysis(6L, "device-6", "10.0.0.1", now()));
+    index.onAnalysisSaved(
+        request(7L, "device-7", null, "9999"), analysis(7L, "device-7", null, now()));
+
+    clock.advance(Duration.ofDays(2));
+    LinkageSnapshot snapshot = index.snapshot(request(1L, "device-ring", "10.0.0.1", "9999"));
+    assertEquals(3, snapshot.getDeviceAccounts());
+    assertEquals(1, snapshot.getIpAccounts());
+    assertEquals(2, snapshot.getCardAccounts());
+    // Users 2, 3, 4 on the device, 6 on both the IP address and the card, and 7 on the card
+    assertEquals(5, snapshot.getLinkedAccounts());
+    assertSame(LinkageSnapshot.EMPTY, index.snapshot(request(1L, "device-new", null, null)));
+    assertEquals(4, index.accounts(Identifier.DEVICE, "device-ring").size());
+    assertEquals(List.of(), index.accounts(Identifier.CARD, "411111*0000"));
+
+    // The sweep drops user 5's stale edges
+    assertEquals(15, index.edges());
+    index.expireEdges();
+    assertEquals(13, index.edges());
+  }
+
+  @Test
+  void shouldTrimOldestEdgesWhenCloseToCapacity() {
+    index = new LinkageGraphIndex(analysisActivityReader, "30d", 160, 64, clock);
+    for (long user = 1; user <= 400; user++) {
+      index.onAnalysisSaved(
+          null, analysis(user, "device-" + user, null, now().minusDays(30 - user % 30)));
+    }
+    assertTrue(index.edges() <= 160);
+    long before = index.edges();
+
+    index.expireEdges();
+    assertTrue(index.edges() <= 144, "kept " + index.edges() + " of " + before);
+    assertTrue(index.edges() > 0);
+    assertThrows(
+        IllegalArgumentException.class,
+        () -> new LinkageGraphIndex(analysisActivityReader, "30s", 160, 64, clock));
+  }
+
+  private TransactionAnalysis analysis(
+      Long userId, String device, String ipAddress, LocalDateTime createdAt) {
+    TransactionAnalysis analysis = new TransactionAnalysis();
+    analysis.setUserId(userId);
+    analysis.setDeviceFingerprint(device);
+    analysis.setIpAddress(ipAddress);
+    analysis.setCreatedAt(createdAt);
+    return analysis;
+  }
+
+  private TransactionAnalysisRequest request(
+      Long userId, String device, String ipAddress, String cardLast4) {
+    TransactionAnalysisRequest request = new TransactionAnalysisRequest();
+    request.setUserId(userId);
+    request.setDeviceFingerprint(device);
+    request.setIpAddress(ipAddress);
+    request.setCardBin(cardLast4 != null ? "411111" : null);
+    request.setCardLast4(cardLast4);
+    return request;
+  }
+
+  private LocalDateTime now() {
+    return LocalDateTime.ofInstant(clock.instant(), ZoneId.systemDefault());
+  }
+
+  private static final class MutableClock extends Clock {
+    private Instant instant;
+
+    MutableClock(Instant instant) {
+      this.instant = instant;
+    }
+
+    void advance(Duration duration) {
+      instant = instant.plus(duration);
+    }
+
+    @Override
+    public ZoneId getZone() {
+      return ZoneId.systemDefault();
+    }
+
+    @Override
+    public Clock withZone(ZoneId zone) {
+      return this;
+    }
+
+    @Override
+    public Instant instant() {
+      return instant;
+    }
+  }
+}
@@ -0,0 +1,67 @@
+package com.fintech.aifraudservice.service;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import com.fintech.aifraudservice.service.LinkageGraph.Identifier;
+import java.util.Arrays;
+import org.junit.jupiter.api.Test;
+
+class LinkageGraphTest {
+
+  @Test
+  void shouldBoundUsersPerIdentifierAndExpireEdges() {
+    LinkageGraph graph = new LinkageGraph(1_000, 4);
+    for (long user = 1; user <= 4; user++) {
+      assertTrue(graph.link(Identifier.DEVICE, "device-1", user, (int) user));
+    }
+    // Seen again: refreshed, not duplicated
+    graph.link(Identifier.DEVICE, "device-1", 1L, 10);
+    // Full: the least recently seen user, 2, makes room
+    graph.link(Identifier.DEVICE, "device-1", 5L, 11);
+    graph.link(Identifier.IP, "device-1", 9L, 11);
+
+    assertEquals(4, graph.fanOut(Identifier.DEVICE, "device-1", 0));
+    assertEquals(3, graph.fanOut(Identifier.DEVICE, "device-1", 4));
+    assertEquals(1, graph.fanOut(Identifier.IP, "device-1", 0));
+    assertEquals(0, graph.fanOut(Identifier.DEVICE, "device-2", 0));
+    assertEquals(0, graph.fanOut(Identifier.DEVICE, null, 0));
+    assertFalse(graph.link(Identifier.DEVICE, " ", 1L, 1));
+
+    long[] users = new long[8];
+    int count = graph.neighbours(Identifier.DEVICE, "device-1", 0, users, 2);
+    assertEquals(4, count);
+    long[] found = Arrays.copyOfRange(users, 2, 2 + count);
+    Arrays.sort(found);
+    assertArrayEquals(new long[] {1, 3, 4, 5}, found);
+    assertEquals(1, graph.neighbours(Identifier.DEVICE, "device-1", 0, users, 7));
+
+    assertEquals(2, graph.expire(10));
+    assertEquals(2, graph.fanOut(Identifier.DEVICE, "device-1", 0));
+    assertEquals(3, graph.edges());
+    assertEquals(3, graph.expire(12));
+    assertEquals(0, graph.edges());
+    assertEquals(0, graph.identifiers());
+  }
+
+  @Test
+  void shouldDropNewEdgesWhenFullAndReuseExpiredOnes() {
+    // One edge per segment
+    LinkageGraph graph = new LinkageGraph(16, 8);
+    int linked = 0;
+    for (int i = 0; i < 10_000; i++) {
+      if (graph.link(Identifier.IP, "10.0.0." + i, i, 1)) {
+        linked++;
+      }
+    }
+    assertEquals(16, linked);
+    assertEquals(16, graph.edges());
+
+    assertEquals(16, graph.expire(2));
+    for (int i = 0; i < 10_000; i++) {
+      graph.link(Identifier.IP, "10.1.0." + i, i, 3);
+    }
+    assertEquals(16, graph.edges());
+    assertEquals(16, graph.identifiers());
+    assertThrows(IllegalArgumentException.class, () -> new LinkageGraph(16, 0));
+  }
+}
@@ -0,0 +1,149 @@
+package com.fintech.aifraudservice.service;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+import com.fintech.aifraudservice.model.TransactionAnalysis;
+import com.fintech.aifraudservice.model.TransactionAnalysis.FraudStatus;
+import com.fintech.aifraudservice.repository.AnalysisActivityReader;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.function.Consumer;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+@ExtendWith(MockitoExtension.class)
+class MerchantRiskIndexTest {
+
+  @Mock private AnalysisActivityReader analysisActivityReader;
+
+  private MutableClock clock;
+  private MerchantRiskIndex index;
+
+  @BeforeEach
+  void setUp() {
+    clock = new MutableClock(Instant.parse("2024-03-01T12:00:00Z"));
+    index = new MerchantRiskIndex(analysisActivityReader, "7d", 3, clock);
+  }
+
+  @Test
+  void shouldSeedDecayedAggregatesAndFollowReviews() {
+    when(analysisActivityReader.forEachMerchantActivitySince(any(), any()))
+        .thenAnswer(
+            invocation -> {
+              Consumer<TransactionAnalysis> consumer = invocation.getArgument(1);
+              // One half-life old: each row counts half
+              consumer.accept(analysis("m-1", FraudStatus.APPROVED, now().minusDays(7)));
+              consumer.accept(analysis("m-1", FraudStatus.DECLINED, now().minusDays(7)));
+              TransactionAnalysis confirmed = analysis("m-1", FraudStatus.DECLINED, now());
+              confirmed.setReviewedAt(now());
+              consumer.accept(confirmed);
+              return 3L;
+            });
+    index.seed();
+
+    MerchantRiskSnapshot seeded = index.snapshot("m-1");
+    assertEquals(2.0, seeded.getVolume(), 1e-9);
+    assertEquals(1.5, seeded.getDeclines(), 1e-9);
+    assertEquals(1.0, seeded.getConfirmedFraud(), 1e-9);
+    assertEquals(0.75, seeded.getDeclineRate(), 1e-9);
+    assertSame(MerchantRiskSnapshot.EMPTY, index.snapshot("m-unknown"));
+    assertSame(MerchantRiskSnapshot.EMPTY, index.snapshot(null));
+
+    TransactionAnalysis pending = analysis("m-1", FraudStatus.UNDER_REVIEW, now());
+    index.onAnalysisSaved(null, pending);
+    pending.setFraudStatus(FraudStatus.DECLINED);
+    pending.setReviewedAt(now());
+    index.onAnalysisReviewed(pending, FraudStatus.UNDER_REVIEW);
+    TransactionAnalysis cleared = analysis("m-1", FraudStatus.DECLINED, now());
+    index.onAnalysisSaved(null, cleared);
+    cleared.setFraudStatus(FraudStatus.FALSE_POSITIVE);
+    cleared.setReviewedAt(now());
+    index.onAnalysisReviewed(cleared, FraudStatus.DECLINED);
+
+    MerchantRiskSnapshot reviewed = index.snapshot("m-1");
+    assertEquals(4.0, reviewed.getVolume(), 1e-9);
+    assertEquals(2.5, reviewed.getDeclines(), 1e-9);
+    assertEquals(2.0, reviewed.getConfirmedFraud(), 1e-9);
+
+    clock.advance(Duration.ofDays(14));
+    assertEquals(1.0, index.snapshot("m-1").getVolume(), 1e-9);
+    assertEquals(0.5, index.snapshot("m-1").getConfirmedFraud(), 1e-9);
+  }
+
+  @Test
+  void shouldBoundTrackedMerchantsAndEvictIdleOnes() {
+    index.onAnalysisSaved(null, analysis("m-1", FraudStatus.APPROVED, now().minusDays(35)));
+    for (int i = 0; i < 3; i++) {
+      index.onAnalysisSaved(null, analysis("m-2", FraudStatus.APPROVED, now()));
+    }
+    index.onAnalysisSaved(null, analysis("m-3", FraudStatus.APPROVED, now()));
+    index.onAnalysisSaved(null, analysis("m-4", FraudStatus.APPROVED, now()));
+    // Full: the fourth merchant is not tracked
+    assertEquals(3, index.trackedMerchants());
+    assertSame(MerchantRiskSnapshot.EMPTY, index.snapshot("m-4"));
+
+    // m-1 has decayed to 1/32 and goes, which makes room again
+    index.evictIdleMerchants();
+    assertEquals(2, index.trackedMerchants());
+    index.onAnalysisSaved(null, analysis("m-4", FraudStatus.APPROVED, now()));
+    index.onAnalysisSaved(null, analysis("m-4", FraudStatus.APPROVED, now()));
+    assertEquals(2.0, index.snapshot("m-4").getVolume(), 1e-9);
+
+    // Still full after idle eviction: the least active merchant is trimmed
+    index.evictIdleMerchants();
+    assertEquals(2, index.trackedMerchants());
+    assertSame(MerchantRiskSnapshot.EMPTY, index.snapshot("m-3"));
+    assertEquals(3.0, index.snapshot("m-2").getVolume(), 1e-9);
+    assertThrows(
+        IllegalArgumentException.class,
+        () -> new MerchantRiskIndex(analysisActivityReader, "30s", 3, clock));
+  }
+
+  private TransactionAnalysis analysis(
+      String merchantId, FraudStatus status, LocalDateTime createdAt) {
+    TransactionAnalysis analysis = new TransactionAnalysis();
+    analysis.setMerchantId(merchantId);
+    analysis.setFraudStatus(status);
+    analysis.setCreatedAt(createdAt);
+    return analysis;
+  }
+
+  private LocalDateTime now() {
+    return LocalDateTime.ofInstant(clock.instant(), ZoneId.systemDefault());
+  }
+
+  private static final class MutableClock extends Clock {
+    private Instant instant;
+
+    MutableClock(Instant instant) {
+      this.instant = instant;
+    }
+
+    void advance(Duration duration) {
+      instant = instant.plus(duration);
+    }
+
+    @Override
+    public ZoneId getZone() {
+      return ZoneId.systemDefault();
+    }
+
+    @Override
+    public Clock withZone(ZoneId zone) {
+      return this;
+    }
+
+    @Override
+    public Instant instant() {
+      return instant;
+    }
+  }
+}
@@ -0,0 +1,153 @@
+package com.fintech.aifraudservice.service;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.anyIterable;
+import static org.mockito.Mockito.*;
+
+import com.fintech.aifraudservice.model.TransactionAnalysis;
+import com.fintech.aifraudservice.model.TransactionAnalysis.FraudStatus;
+import com.fintech.aifraudservice.model.TransactionAnalysis.RiskLevel;
+import com.fintech.aifraudservice.repository.TransactionAnalysisRepository;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import java.util.stream.StreamSupport;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+@ExtendWith(MockitoExtension.class)
+class ReviewQueueTest {
+
+  @Mock private TransactionAnalysisRepository transactionAnalysisRepository;
+
+  private final Map<Long, TransactionAnalysis> rows = new HashMap<>();
+
+  private ReviewQueue reviewQueue;
+
+  @BeforeEach
+  void setUp() {
+    reviewQueue = new ReviewQueue(transactionAnalysisRepository);
+    lenient()
+        .when(transactionAnalysisRepository.findAllById(anyIterable()))
+        .thenAnswer(
+            invocation -> {
+              Iterable<Long> ids = invocation.getArgument(0);
+              return StreamSupport.stream(ids.spliterator(), false)
+                  .map(rows::get)
+                  .collect(Collectors.toList());
+            });
+  }
+
+  @Test
+  void shouldLoadAndServeTopNAndKeysetPages() {
+    List<Object[]> stored = new ArrayList<>();
+    stored.add(new Object[] {1L, "tx-1", 0.65});
+    stored.add(new Object[] {2L, "tx-2", 0.91});
+    stored.add(new Object[] {3L, "tx-3", 0.65});
+    for (Object[] row : stored) {
+      rows.put((Long) row[0], analysis((Long) row[0], (Double) row[2], RiskLevel.HIGH));
+    }
+    when(transactionAnalysisRepository.findReviewQueueEntries()).thenReturn(stored);
+    reviewQueue.load();
+
+    TransactionAnalysis created = analysis(4L, 0.8, RiskLevel.CRITICAL);
+    rows.put(4L, created);
+    reviewQueue.onAnalysisSaved(null, created);
+    reviewQueue.onAnalysisSaved(null, analysis(5L, 0.2, RiskLevel.LOW));
+
+    assertEquals(List.of("tx-2", "tx-4"), ids(reviewQueue.top(2)));
+    ReviewQueue.Page first = reviewQueue.page(null, 2);
+    ReviewQueue.Page second = reviewQueue.page(first.nextCursor(), 2);
+    // Equal scores are ordered by id
+    assertEquals(List.of("tx-1", "tx-3"), ids(second.items()));
+    assertNull(second.nextCursor());
+    assertTrue(reviewQueue.page(ReviewQueue.cursorOf(second.items().get(1)), 2).items().isEmpty());
+    assertThrows(IllegalArgumentException.class, () -> reviewQueue.page("oops", 2));
+    assertThrows(IllegalArgumentException.class, () -> reviewQueue.page(null, 0));
+    assertThrows(IllegalArgumentException.class, () -> reviewQueue.page(null, -1));
+
+    // Reviewed after the index was read: the page is short but pagination goes on
+    rows.get(4L).setFraudStatus(FraudStatus.DECLINED);
+    ReviewQueue.Page skipped = reviewQueue.page(ReviewQueue.cursorOf(rows.get(2L)), 1);
+    assertTrue(skipped.items().isEmpty());
+    assertNotNull(skipped.nextCursor());
+    assertEquals(List.of("tx-1"), ids(reviewQueue.page(skipped.nextCursor(), 1).items()));
+    rows.get(4L).setFraudStatus(FraudStatus.UNDER_REVIEW);
+
+    TransactionAnalysis reviewed = rows.get(2L);
+    reviewed.setFraudStatus(FraudStatus.DECLINED);
+    reviewQueue.onAnalysisReviewed(reviewed, FraudStatus.UNDER_REVIEW);
+    assertEquals(List.of("tx-4", "tx-1", "tx-3"), ids(reviewQueue.top(10)));
+    assertEquals(3, reviewQueue.size());
+  }
+
+  @Test
+  void shouldNeverAssignTheSameTransactionTwice() throws Exception {
+    for (long id = 1; id <= 200; id++) {
+      TransactionAnalysis analysis = analysis(id, 0.6 + id / 1000.0, RiskLevel.HIGH);
+      rows.put(id, analysis);
+      reviewQueue.onAnalysisSaved(null, analysis);
+    }
+
+    ExecutorService reviewers = Executors.newFixedThreadPool(8);
+    Set<String> assigned = ConcurrentHashMap.newKeySet();
+    List<String> duplicates = new ArrayList<>();
+    CountDownLatch start = new CountDownLatch(1);
+    for (int r = 0; r < 8; r++) {
+      String reviewer = "analyst-" + r;
+      reviewers.execute(
+          () -> {
+            try {
+              start.await();
+            } catch (InterruptedException e) {
+              Thread.currentThread().interrupt();
+            }
+            for (TransactionAnalysis claimed : reviewQueue.claim(reviewer, 30)) {
+              if (!assigned.add(claimed.getTransactionId())) {
+                synchronized (duplicates) {
+                  duplicates.add(claimed.getTransactionId());
+                }
+              }
+            }
+          });
+    }
+    start.countDown();
+    reviewers.shutdown();
+    assertTrue(reviewers.awaitTermination(10, TimeUnit.SECONDS));
+
+    assertTrue(duplicates.isEmpty(), "assigned twice: " + duplicates);
+    assertEquals(200, assigned.size());
+
+    // A claim can only be released by its holder, after which others can take it
+    String holder = reviewQueue.claimedBy("tx-200");
+    assertFalse(reviewQueue.release("tx-200", "someone-else"));
+    assertTrue(reviewQueue.release("tx-200", holder));
+    assertEquals(List.of("tx-200"), ids(reviewQueue.claim("late-analyst", 5)));
+  }
+
+  private static List<String> ids(List<TransactionAnalysis> analyses) {
+    return analyses.stream().map(TransactionAnalysis::getTransactionId).toList();
+  }
+
+  private static TransactionAnalysis analysis(Long id, double riskScore, RiskLevel riskLevel) {
+    TransactionAnalysis analysis = new TransactionAnalysis();
+    analysis.setId(id);
+    analysis.setTransactionId("tx-" + id);
+    analysis.setRiskScore(riskScore);
+    analysis.setRiskLevel(riskLevel);
+    analysis.setFraudStatus(
+        riskLevel == RiskLevel.LOW ? FraudStatus.APPROVED : FraudStatus.UNDER_REVIEW);
+    return analysis;
+  }
+}
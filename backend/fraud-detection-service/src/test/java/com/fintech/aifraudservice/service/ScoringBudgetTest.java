@@ -0,0 +1,94 @@
+package com.fintech.aifraudservice.service;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import com.fintech.aifraudservice.service.ScoringBudget.Feature;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import org.springframework.test.util.ReflectionTestUtils;
+
+class ScoringBudgetTest {
+
+  private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+  private final CountDownLatch stall = new CountDownLatch(1);
+
+  private ThreadPoolTaskExecutor executor;
+  private ScoringBudget budget;
+
+  @BeforeEach
+  void setUp() {
+    FraudPipelineMetrics metrics = new FraudPipelineMetrics();
+    ReflectionTestUtils.setField(metrics, "meterRegistry", meterRegistry);
+    metrics.init();
+    executor = new ThreadPoolTaskExecutor();
+    executor.setCorePoolSize(1);
+    executor.setMaxPoolSize(1);
+    executor.setQueueCapacity(0);
+    executor.initialize();
+    budget = new ScoringBudget();
+    ReflectionTestUtils.setField(budget, "fraudPipelineMetrics", metrics);
+    ReflectionTestUtils.setField(budget, "fraudLookupExecutor", executor);
+    ReflectionTestUtils.setField(budget, "budget", "100ms");
+    budget.init();
+  }
+
+  @AfterEach
+  void tearDown() {
+    stall.countDown();
+    executor.shutdown();
+  }
+
+  @Test
+  void shouldReturnLookupsThatAnswerInTime() {
+    ScoringBudget.Deadline deadline = budget.start();
+    assertEquals("profile", deadline.await(Feature.PROFILE, () -> "profile", null));
+    assertEquals("velocity", deadline.call(Feature.VELOCITY, () -> "velocity", "fallback"));
+    assertEquals(0, deadline.degraded());
+    assertEquals(0.0, degradedCount("profile"), 0.0);
+  }
+
+  @Test
+  void shouldFallBackWhenALookupStallsFailsOrFindsThePoolFull() {
+    ScoringBudget.Deadline deadline = budget.start();
+    long start = System.nanoTime();
+    assertNull(deadline.await(Feature.PROFILE, this::stalled, null));
+    long waited = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+    // Bounded by the budget, not by the stalled call
+    assertTrue(waited >= 90 && waited < 2_000, "waited " + waited + " ms");
+
+    // In-memory lookups still run once the budget is spent
+    assertEquals("velocity", deadline.call(Feature.VELOCITY, () -> "velocity", "fallback"));
+    assertEquals(Feature.PROFILE.bit, deadline.degraded());
+
+    // The only lookup thread is still stuck, so the next profile lookup is degraded at once
+    ScoringBudget.Deadline next = budget.start();
+    start = System.nanoTime();
+    assertNull(next.await(Feature.PROFILE, () -> "profile", null));
+    assertTrue(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start) < 90);
+    assertEquals(
+        "fallback",
+        next.call(
+            Feature.LINKAGE,
+            () -> {
+              throw new IllegalStateException("index unavailable");
+            },
+            "fallback"));
+    assertEquals("PROFILE, LINKAGE", ScoringBudget.describe(next.degraded()));
+    assertEquals(2.0, degradedCount("profile"), 0.0);
+    assertEquals(1.0, degradedCount("linkage"), 0.0);
+  }
+
+  private String stalled() throws InterruptedException {
+    stall.await();
+    return "profile";
+  }
+
+  private double degradedCount(String feature) {
+    return meterRegistry.get("fraud.scoring.degraded").tag("feature", feature).counter().count();
+  }
+}
@@ -0,0 +1,137 @@
+package com.fintech.aifraudservice.service;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+import com.fintech.aifraudservice.model.TransactionAnalysis.FraudStatus;
+import com.fintech.aifraudservice.model.TransactionAnalysis.RiskLevel;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Properties;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.core.task.SyncTaskExecutor;
+import org.springframework.core.task.TaskExecutor;
+import org.springframework.core.task.TaskRejectedException;
+import org.springframework.test.util.ReflectionTestUtils;
+
+class ShadowScoringTest {
+
+  @TempDir Path candidatesDir;
+
+  private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+  private final FraudRuleEngine fraudRuleEngine = mock(FraudRuleEngine.class);
+
+  private final FraudModelService fraudModelService = mock(FraudModelService.class);
+
+  private final ShadowScoring shadowScoring = new ShadowScoring();
+
+  @BeforeEach
+  void setUp() {
+    when(fraudRuleEngine.compileWith(any()))
+        .thenAnswer(invocation -> FraudRuleSet.compile(invocation.<Properties>getArgument(0)));
+    when(fraudModelService.getBlendWeight()).thenReturn(0.3);
+    ReflectionTestUtils.setField(shadowScoring, "fraudRuleEngine", fraudRuleEngine);
+    ReflectionTestUtils.setField(shadowScoring, "fraudModelService", fraudModelService);
+    ReflectionTestUtils.setField(shadowScoring, "meterRegistry", meterRegistry);
+    ReflectionTestUtils.setField(shadowScoring, "fraudShadowExecutor", new SyncTaskExecutor());
+    ReflectionTestUtils.setField(shadowScoring, "sampleRate", 1.0);
+  }
+
+  @Test
+  void shouldRecordScoreDeltasAndDecisionDisagreements() throws IOException {
+    Path strict = candidate("strict", "threshold.high=0.3\nrule.country.NG=0.2\n");
+    Path same = candidate("same", "");
+    ReflectionTestUtils.setField(shadowScoring, "candidateFiles", strict + "," + same);
+    shadowScoring.init();
+    assertTrue(shadowScoring.isActive());
+    assertEquals(List.of("strict", "same"), shadowScoring.candidates());
+
+    // New user at night: 0.2 * 0.3 + 0.15 * 0.2 + 0.15 * 0.2 + 0.1 * 0.3 = 0.15
+    FraudScoringContext context = context("NG");
+    double production = context.getRules().riskScore(context.getFeatures());
+    RiskLevel level = context.getRules().riskLevel(production);
+    shadowScoring.submit(
+        context, production, Double.NaN, level, FraudDetectionServiceImpl.decision(level));
+
+    assertEquals(RiskLevel.LOW, level);
+    assertEquals(
+        1,
+        meterRegistry.get("fraud.shadow.score.delta").tag("candidate", "same").summary().count());
+    assertEquals(
+        0.0,
+        meterRegistry.get("fraud.shadow.score.delta").tag("candidate", "same").summary().max(),
+        1e-12);
+    assertEquals(
+        0.2,
+        meterRegistry.get("fraud.shadow.score.delta").tag("candidate", "strict").summary().max(),
+        1e-9);
+    assertEquals(1.0, decisions("same", FraudStatus.APPROVED, FraudStatus.APPROVED), 0.0);
+    // The NG rule lifts it to 0.35, past the candidate's lowered high threshold
+    assertEquals(1.0, decisions("strict", FraudStatus.APPROVED, FraudStatus.UNDER_REVIEW), 0.0);
+    assertEquals(0.0, decisions("strict", FraudStatus.APPROVED, FraudStatus.APPROVED), 0.0);
+  }
+
+  @Test
+  void shouldShedComparisonsWhenTheExecutorIsSaturated() throws IOException {
+    ReflectionTestUtils.setField(
+        shadowScoring, "candidateFiles", candidate("strict", "threshold.high=0.3\n").toString());
+    ReflectionTestUtils.setField(
+        shadowScoring,
+        "fraudShadowExecutor",
+        (TaskExecutor)
+            task -> {
+              throw new TaskRejectedException("queue full");
+            });
+    shadowScoring.init();
+
+    FraudScoringContext context = context("US");
+    assertDoesNotThrow(
+        () -> shadowScoring.submit(context, 0.1, Double.NaN, RiskLevel.LOW, FraudStatus.APPROVED));
+
+    assertEquals(1.0, meterRegistry.get("fraud.shadow.shed").counter().count(), 0.0);
+    assertEquals(
+        0,
+        meterRegistry.get("fraud.shadow.score.delta").tag("candidate", "strict").summary().count());
+
+    // Without candidates nothing is queued at all
+    ShadowScoring idle = new ShadowScoring();
+    assertFalse(idle.isActive());
+    idle.submit(context, 0.1, Double.NaN, RiskLevel.LOW, FraudStatus.APPROVED);
+  }
+
+  private Path candidate(String name, String content) throws IOException {
+    Path file = candidatesDir.resolve(name + ".properties");
+    Files.writeString(file, content);
+    return file;
+  }
+
+  private double decisions(String candidate, FraudStatus production, FraudStatus shadow) {
+    return meterRegistry
+        .get("fraud.shadow.decisions")
+        .tag("candidate", candidate)
+        .tag("production", production.name())
+        .tag("shadow", shadow.name())
+        .counter()
+        .count();
+  }
+
+  private static FraudScoringContext context(String country) {
+    TransactionAnalysisRequest request = new TransactionAnalysisRequest();
+    request.setTransactionId("TX-1");
+    request.setUserId(7L);
+    request.setAmount(new BigDecimal("50.00"));
+    request.setLocationCountry(country);
+    request.setTransactionTime(LocalDateTime.of(2024, 6, 1, 2, 0));
+    return new FraudScoringContext(
+        7L, request, null, VelocitySnapshot.EMPTY, FraudRuleSet.DEFAULTS);
+  }
+}
@@ -0,0 +1,196 @@
+package com.fintech.aifraudservice.service;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import com.github.benmanes.caffeine.cache.Ticker;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.cache.concurrent.ConcurrentMapCache;
+
+class TwoTierCacheTest {
+
+  private MutableTicker ticker;
+  private SimpleMeterRegistry meterRegistry;
+  private FakeRedis redis;
+
+  @BeforeEach
+  void setUp() {
+    ticker = new MutableTicker();
+    meterRegistry = new SimpleMeterRegistry();
+    redis = new FakeRedis();
+  }
+
+  @Test
+  void shouldServeFromLocalThenRemoteTierAndCountEach() {
+    TwoTierCache first = cache(10, meterRegistry);
+    TwoTierCache second = cache(10, new SimpleMeterRegistry());
+    AtomicInteger loads = new AtomicInteger();
+
+    assertEquals("profile-1", first.get(1L, () -> "profile-" + loads.incrementAndGet()));
+    assertEquals("profile-1", first.get(1L, () -> "profile-" + loads.incrementAndGet()));
+    // The other instance finds it in Redis without loading
+    assertEquals("profile-1", second.get(1L, () -> "profile-" + loads.incrementAndGet()));
+    assertEquals(1, loads.get());
+
+    assertEquals(1, count(meterRegistry, "local", "hit"));
+    assertEquals(1, count(meterRegistry, "local", "miss"));
+    assertEquals(1, count(meterRegistry, "remote", "miss"));
+
+    // Users without a profile are cached as well
+    assertNull(first.get(2L, () -> null));
+    assertNotNull(first.get(2L));
+    assertNull(first.get(2L).get());
+  }
+
+  @Test
+  void shouldEvictLocalEntriesBySizeAndTimeToLive() {
+    TwoTierCache cache =
+        new TwoTierCache(
+            "profiles",
+            2,
+            Duration.ofMinutes(5),
+            null,
+            null,
+            Long::valueOf,
+            Duration.ofSeconds(30),
+            meterRegistry,
+            ticker);
+    for (long key = 1; key <= 5; key++) {
+      cache.put(key, "profile-" + key);
+    }
+    assertEquals(2, cache.localSize());
+    assertEquals(3, count(meterRegistry, "local", "eviction"));
+
+    ticker.advance(Duration.ofMinutes(6));
+    assertEquals(0, cache.localSize());
+    assertEquals(5, count(meterRegistry, "local", "eviction"));
+  }
+
+  @Test
+  void shouldDropEvictedKeysOnOtherInstances() {
+    TwoTierCache first = cache(10, meterRegistry);
+    TwoTierCache second = cache(10, new SimpleMeterRegistry());
+    first.put(1L, "profile-1");
+    first.put(2L, "profile-2");
+    assertEquals("profile-1", second.get(1L).get());
+    assertEquals("profile-2", second.get(2L).get());
+
+    first.evict(1L);
+    assertNull(second.get(1L));
+    assertEquals("profile-2", second.get(2L).get());
+    assertEquals(1, count(meterRegistry, "remote", "eviction"));
+
+    second.clear();
+    assertNull(first.get(2L));
+  }
+
+  @Test
+  void shouldFallBackToLocalTierWhileRedisIsDown() {
+    TwoTierCache cache = cache(10, meterRegistry);
+    redis.down = true;
+
+    assertEquals("profile-1", cache.get(1L, () -> "profile-1"));
+    assertEquals("profile-1", cache.get(1L).get());
+    cache.put(2L, "profile-2");
+    // One failure, then Redis is left alone for the retry interval
+    assertEquals(1, count(meterRegistry, "remote", "error"));
+    assertEquals(1, redis.failedCalls.get());
+
+    redis.down = false;
+    ticker.advance(Duration.ofSeconds(31));
+    cache.put(3L, "profile-3");
+    assertEquals("profile-3", redis.get(3L).get());
+  }
+
+  private TwoTierCache cache(long localMaxSize, MeterRegistry registry) {
+    TwoTierCache cache =
+        new TwoTierCache(
+            "profiles",
+            localMaxSize,
+            Duration.ofMinutes(5),
+            redis,
+            redis::publish,
+            Long::valueOf,
+            Duration.ofSeconds(30),
+            registry,
+            ticker);
+    redis.subscribers.add(cache::onInvalidation);
+    return cache;
+  }
+
+  private static double count(MeterRegistry registry, String tier, String result) {
+    return registry
+        .get("fraud.profile.cache")
+        .tag("tier", tier)
+        .tag("result", result)
+        .counter()
+        .count();
+  }
+
+  /** Redis stand-in: one shared map for the remote tier and synchronous pub/sub fan-out */
+  private static final class FakeRedis extends ConcurrentMapCache {
+    private final List<Consumer<String>> subscribers = new CopyOnWriteArrayList<>();
+    private final AtomicInteger failedCalls = new AtomicInteger();
+    private volatile boolean down;
+
+    FakeRedis() {
+      super("redis");
+    }
+
+    @Override
+    public ValueWrapper get(Object key) {
+      check();
+      return super.get(key);
+    }
+
+    @Override
+    public void put(Object key, Object value) {
+      check();
+      super.put(key, value);
+    }
+
+    @Override
+    public void evict(Object key) {
+      check();
+      super.evict(key);
+    }
+
+    @Override
+    public void clear() {
+      check();
+      super.clear();
+    }
+
+    void publish(String message) {
+      check();
+      subscribers.forEach(subscriber -> subscriber.accept(message));
+    }
+
+    private void check() {
+      if (down) {
+        failedCalls.incrementAndGet();
+        throw new IllegalStateException("Redis is down");
+      }
+    }
+  }
+
+  private static final class MutableTicker implements Ticker {
+    private long nanos;
+
+    void advance(Duration duration) {
+      nanos += duration.toNanos();
+    }
+
+    @Override
+    public long read() {
+      return nanos;
+    }
+  }
+}
@@ -0,0 +1,387 @@
+package com.fintech.aifraudservice.service;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.Mockito.*;
+
+import com.fintech.aifraudservice.model.FrequencyCountsConverter;
+import com.fintech.aifraudservice.model.ProfileMembership;
+import com.fintech.aifraudservice.model.ProfileMembership.Dimension;
+import com.fintech.aifraudservice.model.TransactionAnalysis;
+import com.fintech.aifraudservice.model.TransactionAnalysis.FraudStatus;
+import com.fintech.aifraudservice.model.UserBehaviorProfile;
+import com.fintech.aifraudservice.repository.UserBehaviorProfileMembershipMigrator;
+import com.fintech.aifraudservice.repository.UserBehaviorProfileRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.cache.Cache;
+import org.springframework.cache.concurrent.ConcurrentMapCache;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabase;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabaseBuilder;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabaseType;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.TransactionStatus;
+import org.springframework.transaction.support.TransactionTemplate;
+
+@ExtendWith(MockitoExtension.class)
+class UserBehaviorProfileUpdaterTest {
+
+  private static final LocalDateTime START = LocalDateTime.of(2024, 3, 4, 10, 0);
+
+  @Mock private UserBehaviorProfileRepository userBehaviorProfileRepository;
+
+  @Mock private TransactionTemplate transactionTemplate;
+
+  @Mock private ObjectProvider<Cache> profileCache;
+
+  @InjectMocks private UserBehaviorProfileUpdater userBehaviorProfileUpdater;
+
+  private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+  @BeforeEach
+  void setUp() {
+    ReflectionTestUtils.setField(userBehaviorProfileUpdater, "maxFrequentValues", 2);
+    ReflectionTestUtils.setField(userBehaviorProfileUpdater, "flushBatchSize", 500);
+    ReflectionTestUtils.setField(userBehaviorProfileUpdater, "minTransactionsForHours", 3);
+    ReflectionTestUtils.setField(userBehaviorProfileUpdater, "maxPendingUsers", 100);
+    ReflectionTestUtils.setField(userBehaviorProfileUpdater, "maxPendingObservations", 100);
+    ReflectionTestUtils.setField(userBehaviorProfileUpdater, "maxFlushAttempts", 2);
+    ReflectionTestUtils.setField(userBehaviorProfileUpdater, "meterRegistry", meterRegistry);
+    userBehaviorProfileUpdater.init();
+  }
+
+  @Test
+  void shouldTrackRunningAmountStatistics() {
+    UserBehaviorProfile profile = new UserBehaviorProfile();
+    double[] amounts = {10.0, 20.0, 30.0, 45.5};
+    for (int i = 0; i < amounts.length; i++) {
+      userBehaviorProfileUpdater.apply(
+          profile, observation(START.plusMinutes(i), amounts[i], "US", "PURCHASE"));
+    }
+
+    double mean = 26.375;
+    double variance = 0.0;
+    for (double amount : amounts) {
+      variance += (amount - mean) * (amount - mean);
+    }
+    variance /= amounts.length - 1;
+
+    assertEquals(4L, profile.getTotalTransactions());
+    assertEquals(mean, profile.getAmountMean(), 1e-9);
+    assertEquals(Math.sqrt(variance), profile.getAmountStdDev(), 1e-9);
+    assertEquals(new BigDecimal("26.38"), profile.getAvgTransactionAmount());
+    assertEquals(new BigDecimal("10.0"), profile.getMinTransactionAmount());
+    assertEquals(new BigDecimal("45.5"), profile.getMaxTransactionAmount());
+    assertEquals(START, profile.getFirstTransactionDate());
+    assertEquals(START.plusMinutes(3), profile.getLastTransactionDate());
+    assertEquals(LocalDateTime.of(2024, 3, 4, 10, 0).toLocalTime(), profile.getTypicalStartTime());
+  }
+
+  @Test
+  void shouldDecayTransactionCountsWithElapsedTime() {
+    UserBehaviorProfile profile = new UserBehaviorProfile();
+    userBehaviorProfileUpdater.apply(profile, observation(START, 10.0, "US", "PURCHASE"));
+    userBehaviorProfileUpdater.apply(
+        profile, observation(START.plusDays(1), 10.0, "US", "PURCHASE"));
+
+    assertEquals(1.0 + Math.exp(-1.0), profile.getDecayedDailyCount(), 1e-9);
+    assertEquals(1.0 + Math.exp(-1.0 / 7.0), profile.getDecayedWeeklyCount(), 1e-9);
+    assertEquals(1, profile.getDailyTransactionCount());
+    assertEquals(2, profile.getWeeklyTransactionCount());
+    assertEquals(Set.of(1, 2), profile.getMembership().getActiveDaysOfWeek());
+  }
+
+  @Test
+  void shouldKeepOnlyMostFrequentValuesInProfileSets() {
+    UserBehaviorProfile profile = new UserBehaviorProfile();
+    LocalDateTime time = START;
+    for (String country : List.of("US", "US", "US", "US", "CA", "CA", "CA", "FR", "DE", "IT")) {
+      time = time.plusMinutes(1);
+      userBehaviorProfileUpdater.apply(profile, observation(time, 10.0, country, "PURCHASE"));
+    }
+
+    ProfileMembership membership = profile.getMembership();
+    assertEquals(2, membership.size(Dimension.COUNTRY));
+    assertTrue(membership.contains(Dimension.COUNTRY, "US"));
+    assertTrue(membership.contains(Dimension.COUNTRY, "CA"));
+    assertTrue(membership.isUnknown(Dimension.COUNTRY, "IT"));
+    // Capacity is twice the set size, so rare values are tracked but capped
+    assertTrue(profile.getFrequencyCounts().get(UserBehaviorProfileUpdater.COUNTRY).size() <= 4);
+    assertEquals(1, membership.size(Dimension.CATEGORY));
+    assertTrue(membership.contains(Dimension.CATEGORY, "PURCHASE"));
+  }
+
+  @Test
+  void shouldKeepMigratedLegacyValuesAfterTheNextUpdate() {
+    EmbeddedDatabase database =
+        new EmbeddedDatabaseBuilder()
+            .setType(EmbeddedDatabaseType.H2)
+            .generateUniqueName(true)
+            .build();
+    try {
+      JdbcTemplate jdbcTemplate = new JdbcTemplate(database);
+      jdbcTemplate.execute(
+          "CREATE TABLE user_behavior_profiles"
+              + " (id BIGINT PRIMARY KEY, membership BLOB, frequency_counts CLOB)");
+      jdbcTemplate.execute(
+          "CREATE TABLE user_known_devices (profile_id BIGINT, device_fingerprint VARCHAR(255))");
+      jdbcTemplate.execute(
+          "CREATE TABLE user_frequent_countries (profile_id BIGINT, country VARCHAR(255))");
+      jdbcTemplate.update("INSERT INTO user_behavior_profiles (id) VALUES (1)");
+      jdbcTemplate.update("INSERT INTO user_known_devices VALUES (1, 'device-legacy')");
+      jdbcTemplate.update("INSERT INTO user_frequent_countries VALUES (1, 'CA')");
+
+      UserBehaviorProfileMembershipMigrator migrator = new UserBehaviorProfileMembershipMigrator();
+      ReflectionTestUtils.setField(migrator, "jdbcTemplate", jdbcTemplate);
+      ReflectionTestUtils.setField(
+          migrator, "namedParameterJdbcTemplate", new NamedParameterJdbcTemplate(database));
+      ReflectionTestUtils.setField(migrator, "enabled", true);
+      ReflectionTestUtils.setField(migrator, "chunkSize", 500);
+      migrator.afterPropertiesSet();
+
+      UserBehaviorProfile profile = new UserBehaviorProfile();
+      profile.setMembership(
+          ProfileMembership.fromBytes(
+              jdbcTemplate.queryForObject(
+                  "SELECT membership FROM user_behavior_profiles WHERE id = 1", byte[].class)));
+      profile.setFrequencyCounts(
+          new FrequencyCountsConverter()
+              .convertToEntityAttribute(
+                  jdbcTemplate.queryForObject(
+                      "SELECT frequency_counts FROM user_behavior_profiles WHERE id = 1",
+                      String.class)));
+      userBehaviorProfileUpdater.apply(profile, observation(START, 10.0, "US", "PURCHASE"));
+
+      ProfileMembership membership = profile.getMembership();
+      assertTrue(membership.contains(Dimension.DEVICE, "device-legacy"));
+      assertTrue(membership.contains(Dimension.DEVICE, "device-1"));
+      assertTrue(membership.contains(Dimension.COUNTRY, "CA"));
+      assertTrue(membership.contains(Dimension.COUNTRY, "US"));
+    } finally {
+      database.shutdown();
+    }
+  }
+
+  @Test
+  @SuppressWarnings("unchecked")
+  void shouldCoalesceObservationsPerUserIntoOneFlush() {
+    doAnswer(
+            invocation -> {
+              invocation.<Consumer<TransactionStatus>>getArgument(0).accept(null);
+              return null;
+            })
+        .when(transactionTemplate)
+        .executeWithoutResult(any());
+    UserBehaviorProfile existing = new UserBehaviorProfile();
+    existing.setUserId(2L);
+    when(userBehaviorProfileRepository.findByUserIdIn(anyCollection()))
+        .thenReturn(List.of(existing));
+    Cache cache = new ConcurrentMapCache(UserBehaviorProfileUpdater.PROFILE_CACHE);
+    cache.put(2L, existing);
+    when(profileCache.getIfAvailable()).thenReturn(cache);
+
+    for (int i = 0; i < 3; i++) {
+      userBehaviorProfileUpdater.record(null, analysis(1L, "tx-" + i));
+    }
+    userBehaviorProfileUpdater.record(null, analysis(2L, "tx-3"));
+    assertEquals(2, userBehaviorProfileUpdater.pendingUsers());
+
+    userBehaviorProfileUpdater.flush();
+
+    ArgumentCaptor<Collection<Long>> userIds = ArgumentCaptor.forClass(Collection.class);
+    verify(userBehaviorProfileRepository).findByUserIdIn(userIds.capture());
+    assertEquals(Set.of(1L, 2L), Set.copyOf(userIds.getValue()));
+
+    ArgumentCaptor<List<UserBehaviorProfile>> created = ArgumentCaptor.forClass(List.class);
+    verify(userBehaviorProfileRepository).saveAll(created.capture());
+    Map<Long, UserBehaviorProfile> createdByUser =
+        created.getValue().stream()
+            .collect(Collectors.toMap(UserBehaviorProfile::getUserId, profile -> profile));
+    assertEquals(Set.of(1L), createdByUser.keySet());
+    assertEquals(3L, createdByUser.get(1L).getTotalTransactions());
+    assertEquals(1L, existing.getTotalTransactions());
+    assertNull(cache.get(2L));
+    assertEquals(0, userBehaviorProfileUpdater.pendingUsers());
+  }
+
+  @Test
+  @SuppressWarnings("unchecked")
+  void shouldBoundPendingUsersAndObservations() {
+    ReflectionTestUtils.setField(userBehaviorProfileUpdater, "maxPendingUsers", 2);
+    ReflectionTestUtils.setField(userBehaviorProfileUpdater, "maxPendingObservations", 2);
+    for (int i = 0; i < 3; i++) {
+      userBehaviorProfileUpdater.record(null, analysis(1L, "tx-" + i));
+    }
+    userBehaviorProfileUpdater.record(null, analysis(2L, "tx-3"));
+    userBehaviorProfileUpdater.record(null, analysis(3L, "tx-4"));
+
+    assertEquals(2, userBehaviorProfileUpdater.pendingUsers());
+    assertEquals(1.0, dropped("pending-observations"), 0.0);
+    assertEquals(1.0, dropped("pending-users"), 0.0);
+
+    // Only the newest observations of user 1 are left to apply
+    doAnswer(
+            invocation -> {
+              invocation.<Consumer<TransactionStatus>>getArgument(0).accept(null);
+              return null;
+            })
+        .when(transactionTemplate)
+        .executeWithoutResult(any());
+    userBehaviorProfileUpdater.flush();
+    ArgumentCaptor<List<UserBehaviorProfile>> created = ArgumentCaptor.forClass(List.class);
+    verify(userBehaviorProfileRepository).saveAll(created.capture());
+    Map<Long, Long> transactions =
+        created.getValue().stream()
+            .collect(
+                Collectors.toMap(
+                    UserBehaviorProfile::getUserId, UserBehaviorProfile::getTotalTransactions));
+    assertEquals(Map.of(1L, 2L, 2L, 1L), transactions);
+  }
+
+  @Test
+  @SuppressWarnings("unchecked")
+  void shouldIsolateUserWhoseProfileCannotBeWritten() {
+    doAnswer(
+            invocation -> {
+              invocation.<Consumer<TransactionStatus>>getArgument(0).accept(null);
+              return null;
+            })
+        .when(transactionTemplate)
+        .executeWithoutResult(any());
+    when(userBehaviorProfileRepository.findByUserIdIn(anyCollection()))
+        .thenAnswer(
+            invocation -> {
+              if (invocation.<Collection<Long>>getArgument(0).contains(3L)) {
+                throw new IllegalStateException("constraint violation");
+              }
+              return List.of();
+            });
+    Set<Long> written = new HashSet<>();
+    when(userBehaviorProfileRepository.saveAll(anyList()))
+        .thenAnswer(
+            invocation -> {
+              invocation
+                  .<List<UserBehaviorProfile>>getArgument(0)
+                  .forEach(profile -> written.add(profile.getUserId()));
+              return invocation.getArgument(0);
+            });
+    for (long userId = 1; userId <= 8; userId++) {
+      userBehaviorProfileUpdater.record(null, analysis(userId, "tx-" + userId));
+    }
+
+    userBehaviorProfileUpdater.flush();
+
+    // Everyone but the failing user is written in the same flush
+    assertEquals(Set.of(1L, 2L, 4L, 5L, 6L, 7L, 8L), written);
+    assertEquals(1, userBehaviorProfileUpdater.pendingUsers());
+
+    userBehaviorProfileUpdater.record(null, analysis(9L, "tx-9"));
+    userBehaviorProfileUpdater.flush();
+    assertTrue(written.contains(9L));
+    assertEquals(0, userBehaviorProfileUpdater.pendingUsers());
+    assertEquals(1.0, dropped("flush-failures"), 0.0);
+  }
+
+  @Test
+  void shouldRequeueWholeChunkWhileTheDatabaseIsUnavailable() {
+    doThrow(new IllegalStateException("connection refused"))
+        .when(transactionTemplate)
+        .executeWithoutResult(any());
+    for (long userId = 1; userId <= 8; userId++) {
+      userBehaviorProfileUpdater.record(null, analysis(userId, "tx-" + userId));
+    }
+
+    userBehaviorProfileUpdater.flush();
+    userBehaviorProfileUpdater.flush();
+    userBehaviorProfileUpdater.flush();
+
+    // The chunk and its two halves are tried once per flush, and nothing is dropped
+    verify(transactionTemplate, times(9)).executeWithoutResult(any());
+    assertEquals(8, userBehaviorProfileUpdater.pendingUsers());
+    assertEquals(0.0, dropped("flush-failures"), 0.0);
+  }
+
+  @Test
+  @SuppressWarnings("unchecked")
+  void shouldOnlyLearnFromApprovedAnalysesAndClearedFalsePositives() {
+    TransactionAnalysis declined = analysis(1L, "tx-declined");
+    declined.setFraudStatus(FraudStatus.DECLINED);
+    TransactionAnalysis flagged = analysis(2L, "tx-flagged");
+    flagged.setFraudStatus(FraudStatus.UNDER_REVIEW);
+    userBehaviorProfileUpdater.onAnalysisSaved(null, declined);
+    userBehaviorProfileUpdater.onAnalysisSaved(null, flagged);
+    assertEquals(0, userBehaviorProfileUpdater.pendingUsers());
+
+    // Confirmed as fraud on review: still not learned
+    flagged.setFraudStatus(FraudStatus.DECLINED);
+    userBehaviorProfileUpdater.onAnalysisReviewed(flagged, FraudStatus.UNDER_REVIEW);
+    assertEquals(0, userBehaviorProfileUpdater.pendingUsers());
+
+    // Cleared as a false positive: learned once
+    flagged.setFraudStatus(FraudStatus.FALSE_POSITIVE);
+    userBehaviorProfileUpdater.onAnalysisReviewed(flagged, FraudStatus.DECLINED);
+    userBehaviorProfileUpdater.onAnalysisReviewed(flagged, FraudStatus.FALSE_POSITIVE);
+    userBehaviorProfileUpdater.onAnalysisSaved(null, analysis(3L, "tx-approved"));
+    assertEquals(2, userBehaviorProfileUpdater.pendingUsers());
+    Map<Long, List<?>> pending =
+        (Map<Long, List<?>>) ReflectionTestUtils.getField(userBehaviorProfileUpdater, "pending");
+    assertEquals(1, pending.get(2L).size());
+  }
+
+  private double dropped(String reason) {
+    return meterRegistry
+        .get("fraud.profile.observations.dropped")
+        .tag("reason", reason)
+        .counter()
+        .count();
+  }
+
+  private static UserBehaviorProfileUpdater.ProfileObservation observation(
+      LocalDateTime time, double amount, String country, String category) {
+    return new UserBehaviorProfileUpdater.ProfileObservation(
+        time,
+        BigDecimal.valueOf(amount),
+        country,
+        "City",
+        "device-1",
+        "10.0.0.1",
+        "merchant-1",
+        category,
+        "CARD",
+        0.2,
+        0.1,
+        0.3);
+  }
+
+  private static TransactionAnalysis analysis(Long userId, String transactionId) {
+    TransactionAnalysis analysis = new TransactionAnalysis();
+    analysis.setTransactionId(transactionId);
+    analysis.setUserId(userId);
+    analysis.setAmount(new BigDecimal("25.00"));
+    analysis.setLocationCountry("US");
+    analysis.setPaymentMethod("CARD");
+    analysis.setRiskScore(0.1);
+    analysis.setFraudStatus(FraudStatus.APPROVED);
+    return analysis;
+  }
+}
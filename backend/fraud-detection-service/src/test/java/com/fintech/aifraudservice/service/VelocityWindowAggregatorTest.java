@@ -0,0 +1,202 @@
+package com.fintech.aifraudservice.service;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+import com.fintech.aifraudservice.model.TransactionAnalysis;
+import com.fintech.aifraudservice.repository.TransactionAnalysisRepository;
+import java.math.BigDecimal;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+@ExtendWith(MockitoExtension.class)
+class VelocityWindowAggregatorTest {
+
+  @Mock private TransactionAnalysisRepository transactionAnalysisRepository;
+
+  private MutableClock clock;
+  private VelocityWindowAggregator aggregator;
+
+  @BeforeEach
+  void setUp() {
+    clock = new MutableClock(Instant.parse("2024-03-01T12:02:00Z"));
+    aggregator = new VelocityWindowAggregator(transactionAnalysisRepository, clock);
+  }
+
+  @Test
+  void snapshot_shouldSeedFromRepositoryOnlyOnce() {
+    List<Object[]> rows = new ArrayList<>();
+    rows.add(new Object[] {now().minusMinutes(10), new BigDecimal("100.00"), 1L});
+    rows.add(new Object[] {now().minusHours(5), new BigDecimal("50.25"), 2L});
+    when(transactionAnalysisRepository.findUserTransactionAmountsSince(eq(1L), any()))
+        .thenReturn(rows);
+
+    VelocitySnapshot first = aggregator.snapshot(1L);
+    VelocitySnapshot second = aggregator.snapshot(1L);
+
+    assertEquals(1L, first.getTransactionsLastHour());
+    assertEquals(2L, first.getTransactionsLastDay());
+    assertEquals(new BigDecimal("100.00"), first.getAmountLastHour());
+    assertEquals(new BigDecimal("150.25"), first.getAmountLastDay());
+    assertEquals(first, second);
+    verify(transactionAnalysisRepository, times(1)).findUserTransactionAmountsSince(eq(1L), any());
+  }
+
+  @Test
+  void record_shouldUpdateSeededWindowAndExpireOldBuckets() {
+    when(transactionAnalysisRepository.findUserTransactionAmountsSince(eq(2L), any()))
+        .thenReturn(new ArrayList<>());
+    aggregator.snapshot(2L);
+
+    aggregator.record(analysis(2L, "25.00", now()));
+    aggregator.record(analysis(2L, "75.00", now()));
+
+    VelocitySnapshot snapshot = aggregator.snapshot(2L);
+    assertEquals(2L, snapshot.getTransactionsLastHour());
+    assertEquals(new BigDecimal("100.00"), snapshot.getAmountLastDay());
+
+    clock.advance(Duration.ofHours(2));
+    snapshot = aggregator.snapshot(2L);
+    assertEquals(0L, snapshot.getTransactionsLastHour());
+    assertEquals(2L, snapshot.getTransactionsLastDay());
+
+    clock.advance(Duration.ofHours(23));
+    snapshot = aggregator.snapshot(2L);
+    assertEquals(0L, snapshot.getTransactionsLastDay());
+    assertEquals(BigDecimal.valueOf(0L, 2), snapshot.getAmountLastDay());
+  }
+
+  @Test
+  void snapshot_shouldCoverTheWholeWindowMidBucket() {
+    // 12:02, two minutes into the current bucket
+    List<Object[]> rows = new ArrayList<>();
+    rows.add(new Object[] {now().minusMinutes(59), new BigDecimal("10.00"), 1L});
+    rows.add(new Object[] {now().minusHours(23).minusMinutes(59), new BigDecimal("20.00"), 2L});
+    when(transactionAnalysisRepository.findUserTransactionAmountsSince(eq(5L), any()))
+        .thenReturn(rows);
+
+    VelocitySnapshot snapshot = aggregator.snapshot(5L);
+    assertEquals(1L, snapshot.getTransactionsLastHour());
+    assertEquals(2L, snapshot.getTransactionsLastDay());
+  }
+
+  @Test
+  void snapshot_shouldMergeAnalysesRecordedWhileSeeding() {
+    TransactionAnalysis committedInTime = analysis(6L, "10.00", now().minusMinutes(1));
+    committedInTime.setId(11L);
+    TransactionAnalysis committedLate = analysis(6L, "30.00", now());
+    committedLate.setId(12L);
+    when(transactionAnalysisRepository.findUserTransactionAmountsSince(eq(6L), any()))
+        .thenAnswer(
+            invocation -> {
+              // Records arriving while the query runs are not blocked by it
+              aggregator.record(committedInTime);
+              aggregator.record(committedLate);
+              List<Object[]> rows = new ArrayList<>();
+              rows.add(new Object[] {now().minusMinutes(20), new BigDecimal("5.00"), 10L});
+              rows.add(new Object[] {now().minusMinutes(1), new BigDecimal("10.00"), 11L});
+              return rows;
+            });
+
+    VelocitySnapshot snapshot = aggregator.snapshot(6L);
+    assertEquals(3L, snapshot.getTransactionsLastHour());
+    assertEquals(new BigDecimal("45.00"), snapshot.getAmountLastHour());
+  }
+
+  @Test
+  void snapshot_shouldBoundTrackedUsers() {
+    aggregator = new VelocityWindowAggregator(transactionAnalysisRepository, 2, clock);
+    when(transactionAnalysisRepository.findUserTransactionAmountsSince(any(), any()))
+        .thenReturn(new ArrayList<>());
+    for (long userId = 100; userId < 110; userId++) {
+      aggregator.snapshot(userId);
+    }
+
+    assertTrue(aggregator.trackedUsers() <= 2, "tracked " + aggregator.trackedUsers());
+  }
+
+  @Test
+  void cached_shouldOnlyAnswerSeededWindowsWithoutQuerying() {
+    assertNull(aggregator.cached(7L));
+    verifyNoInteractions(transactionAnalysisRepository);
+
+    when(transactionAnalysisRepository.findUserTransactionAmountsSince(eq(7L), any()))
+        .thenReturn(new ArrayList<>());
+    aggregator.snapshot(7L);
+    aggregator.record(analysis(7L, "12.00", now()));
+
+    assertEquals(1L, aggregator.cached(7L).getTransactionsLastHour());
+    verify(transactionAnalysisRepository, times(1)).findUserTransactionAmountsSince(eq(7L), any());
+  }
+
+  @Test
+  void record_shouldIgnoreUsersThatWereNeverLookedUp() {
+    aggregator.record(analysis(3L, "10.00", now()));
+
+    assertEquals(0, aggregator.trackedUsers());
+    verifyNoInteractions(transactionAnalysisRepository);
+  }
+
+  @Test
+  void evictIdleWindows_shouldDropUsersWithoutRecentActivity() {
+    when(transactionAnalysisRepository.findUserTransactionAmountsSince(eq(4L), any()))
+        .thenReturn(new ArrayList<>());
+    aggregator.snapshot(4L);
+
+    clock.advance(Duration.ofHours(25));
+    aggregator.evictIdleWindows();
+
+    assertEquals(0, aggregator.trackedUsers());
+  }
+
+  private LocalDateTime now() {
+    return LocalDateTime.ofInstant(clock.instant(), clock.getZone());
+  }
+
+  private static TransactionAnalysis analysis(Long userId, String amount, LocalDateTime at) {
+    TransactionAnalysis analysis = new TransactionAnalysis();
+    analysis.setUserId(userId);
+    analysis.setAmount(new BigDecimal(amount));
+    analysis.setCreatedAt(at);
+    return analysis;
+  }
+
+  private static final class MutableClock extends Clock {
+    private Instant instant;
+
+    MutableClock(Instant instant) {
+      this.instant = instant;
+    }
+
+    void advance(Duration duration) {
+      instant = instant.plus(duration);
+    }
+
+    @Override
+    public ZoneId getZone() {
+      return ZoneId.systemDefault();
+    }
+
+    @Override
+    public Clock withZone(ZoneId zone) {
+      return this;
+    }
+
+    @Override
+    public Instant instant() {
+      return instant;
+    }
+  }
+}
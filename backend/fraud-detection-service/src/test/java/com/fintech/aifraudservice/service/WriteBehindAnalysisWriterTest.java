@@ -0,0 +1,259 @@
+package com.fintech.aifraudservice.service;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.Mockito.*;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fintech.aifraudservice.model.TransactionAnalysis;
+import com.fintech.aifraudservice.repository.TransactionAnalysisBatchWriter;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Stream;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.ArgumentCaptor;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.dao.DataAccessResourceFailureException;
+import org.springframework.test.util.ReflectionTestUtils;
+
+@ExtendWith(MockitoExtension.class)
+class WriteBehindAnalysisWriterTest {
+
+  @Mock private TransactionAnalysisBatchWriter transactionAnalysisBatchWriter;
+
+  @Mock private TransactionAnalysisPublisher transactionAnalysisPublisher;
+
+  @InjectMocks private WriteBehindAnalysisWriter writeBehindAnalysisWriter;
+
+  @TempDir Path journalDir;
+
+  private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+  @BeforeEach
+  void setUp() {
+    ReflectionTestUtils.setField(writeBehindAnalysisWriter, "enabled", true);
+    ReflectionTestUtils.setField(writeBehindAnalysisWriter, "queueCapacity", 100);
+    ReflectionTestUtils.setField(writeBehindAnalysisWriter, "maxBatchSize", 10);
+    ReflectionTestUtils.setField(writeBehindAnalysisWriter, "offerTimeoutMs", 10L);
+    ReflectionTestUtils.setField(writeBehindAnalysisWriter, "shutdownTimeoutMs", 5000L);
+    ReflectionTestUtils.setField(writeBehindAnalysisWriter, "journalDir", journalDir.toString());
+    ReflectionTestUtils.setField(writeBehindAnalysisWriter, "replayBackoffMs", 1000L);
+    ReflectionTestUtils.setField(writeBehindAnalysisWriter, "replayMaxBackoffMs", 60000L);
+    ReflectionTestUtils.setField(
+        writeBehindAnalysisWriter, "objectMapper", new ObjectMapper().findAndRegisterModules());
+    ReflectionTestUtils.setField(writeBehindAnalysisWriter, "meterRegistry", meterRegistry);
+  }
+
+  @AfterEach
+  void tearDown() {
+    writeBehindAnalysisWriter.stop();
+  }
+
+  @Test
+  void shouldPersistQueuedAnalysesInBatchesAndPublishThem() {
+    List<TransactionAnalysis> written = new ArrayList<>();
+    when(transactionAnalysisBatchWriter.insertAll(anyList()))
+        .thenAnswer(
+            invocation -> {
+              List<TransactionAnalysis> analyses = invocation.getArgument(0);
+              written.addAll(analyses);
+              return Arrays.asList(new String[analyses.size()]);
+            });
+    writeBehindAnalysisWriter.start();
+
+    for (int i = 0; i < 25; i++) {
+      assertTrue(writeBehindAnalysisWriter.submit(request("tx-" + i), analysis("tx-" + i)));
+    }
+    writeBehindAnalysisWriter.stop();
+
+    assertEquals(25, written.size());
+    verify(transactionAnalysisPublisher, times(25)).analysisSaved(any(), any());
+    assertEquals(0.0, meterRegistry.get("fraud.analysis.write_behind.queue.depth").gauge().value());
+    assertTrue(meterRegistry.get("fraud.analysis.write_behind.flush").timer().count() > 0);
+  }
+
+  @Test
+  void shouldJournalUnwrittenAnalysesAndReplayThemOnStart() throws IOException {
+    when(transactionAnalysisBatchWriter.insertAll(anyList()))
+        .thenAnswer(
+            invocation -> {
+              List<TransactionAnalysis> analyses = invocation.getArgument(0);
+              String[] errors = new String[analyses.size()];
+              Arrays.fill(errors, "Persistence failed: connection refused");
+              return Arrays.asList(errors);
+            });
+    when(transactionAnalysisBatchWriter.findExistingTransactionIds(anyList())).thenReturn(Set.of());
+    writeBehindAnalysisWriter.start();
+    assertTrue(writeBehindAnalysisWriter.submit(request("tx-down"), analysis("tx-down")));
+    writeBehindAnalysisWriter.stop();
+
+    assertEquals(1, journalFiles().size());
+    verify(transactionAnalysisPublisher, never()).analysisSaved(any(), any());
+
+    // Database is back; the journal is replayed and removed on the next start
+    reset(transactionAnalysisBatchWriter);
+    when(transactionAnalysisBatchWriter.insertAll(anyList()))
+        .thenAnswer(invocation -> Arrays.asList(new String[1]));
+    writeBehindAnalysisWriter.start();
+
+    @SuppressWarnings("unchecked")
+    ArgumentCaptor<List<TransactionAnalysis>> captor = ArgumentCaptor.forClass(List.class);
+    verify(transactionAnalysisBatchWriter).insertAll(captor.capture());
+    TransactionAnalysis replayed = captor.getValue().get(0);
+    assertEquals("tx-down", replayed.getTransactionId());
+    assertEquals(Map.of("velocity", "high"), replayed.getFraudIndicators());
+    assertNotNull(replayed.getCreatedAt());
+    verify(transactionAnalysisPublisher).analysisSaved(any(), eq(replayed));
+    assertTrue(journalFiles().isEmpty());
+  }
+
+  @Test
+  void shouldReplayJournalsWhileRunningOnceTheDatabaseRecovers() throws Exception {
+    ReflectionTestUtils.setField(writeBehindAnalysisWriter, "replayBackoffMs", 20L);
+    ReflectionTestUtils.setField(writeBehindAnalysisWriter, "replayMaxBackoffMs", 80L);
+    AtomicBoolean down = new AtomicBoolean(true);
+    AtomicInteger failedFlushes = new AtomicInteger();
+    Set<String> written = ConcurrentHashMap.newKeySet();
+    when(transactionAnalysisBatchWriter.insertAll(anyList()))
+        .thenAnswer(
+            invocation -> {
+              if (down.get()) {
+                failedFlushes.incrementAndGet();
+                throw new DataAccessResourceFailureException("connection refused");
+              }
+              List<TransactionAnalysis> analyses = invocation.getArgument(0);
+              analyses.forEach(analysis -> written.add(analysis.getTransactionId()));
+              return Arrays.asList(new String[analyses.size()]);
+            });
+    writeBehindAnalysisWriter.start();
+
+    assertTrue(writeBehindAnalysisWriter.submit(request("tx-down"), analysis("tx-down")));
+    // The journal keeps being retried and rewritten while the database is down
+    while (failedFlushes.get() < 4) {
+      Thread.sleep(10);
+    }
+    assertFalse(journalFiles().isEmpty());
+    assertTrue(written.isEmpty());
+
+    down.set(false);
+    assertTrue(writeBehindAnalysisWriter.submit(request("tx-up"), analysis("tx-up")));
+    long deadline = System.currentTimeMillis() + 5000;
+    while ((!written.contains("tx-down") || !journalFiles().isEmpty())
+        && System.currentTimeMillis() < deadline) {
+      Thread.sleep(10);
+    }
+
+    // Replayed without a restart, and the journal is gone
+    assertEquals(Set.of("tx-down", "tx-up"), written);
+    assertTrue(journalFiles().isEmpty());
+    verify(transactionAnalysisPublisher, times(2)).analysisSaved(any(), any());
+  }
+
+  @Test
+  void shouldPersistOrJournalEverySubmissionAcceptedWhileStopping() throws Exception {
+    // A full queue keeps submitters blocked in offer while stop runs
+    ReflectionTestUtils.setField(writeBehindAnalysisWriter, "queueCapacity", 2);
+    ReflectionTestUtils.setField(writeBehindAnalysisWriter, "offerTimeoutMs", 500L);
+    Set<String> written = ConcurrentHashMap.newKeySet();
+    when(transactionAnalysisBatchWriter.insertAll(anyList()))
+        .thenAnswer(
+            invocation -> {
+              List<TransactionAnalysis> analyses = invocation.getArgument(0);
+              analyses.forEach(analysis -> written.add(analysis.getTransactionId()));
+              Thread.sleep(1);
+              return Arrays.asList(new String[analyses.size()]);
+            });
+    writeBehindAnalysisWriter.start();
+
+    Set<String> accepted = ConcurrentHashMap.newKeySet();
+    ExecutorService submitters = Executors.newFixedThreadPool(4);
+    CountDownLatch accepting = new CountDownLatch(4);
+    for (int t = 0; t < 4; t++) {
+      int thread = t;
+      submitters.execute(
+          () -> {
+            boolean counted = false;
+            for (int i = 0; i < 500; i++) {
+              String transactionId = "tx-" + thread + "-" + i;
+              if (writeBehindAnalysisWriter.submit(
+                  request(transactionId), analysis(transactionId))) {
+                accepted.add(transactionId);
+                if (!counted) {
+                  accepting.countDown();
+                  counted = true;
+                }
+              }
+            }
+          });
+    }
+    // Each submitter is mid-stream when stop clears running
+    assertTrue(accepting.await(5, TimeUnit.SECONDS));
+    writeBehindAnalysisWriter.stop();
+    submitters.shutdown();
+    assertTrue(submitters.awaitTermination(10, TimeUnit.SECONDS));
+
+    // Nothing accepted may be left in the queue once stop has returned
+    assertEquals(accepted, written);
+    assertTrue(journalFiles().isEmpty());
+  }
+
+  @Test
+  void shouldRejectSubmissionsWhenDisabled() {
+    ReflectionTestUtils.setField(writeBehindAnalysisWriter, "enabled", false);
+    writeBehindAnalysisWriter.start();
+
+    assertFalse(writeBehindAnalysisWriter.submit(request("tx-sync"), analysis("tx-sync")));
+    verifyNoInteractions(transactionAnalysisBatchWriter);
+  }
+
+  private List<Path> journalFiles() throws IOException {
+    try (Stream<Path> files = Files.list(journalDir)) {
+      return files.toList();
+    }
+  }
+
+  private static TransactionAnalysisRequest request(String transactionId) {
+    TransactionAnalysisRequest request = new TransactionAnalysisRequest();
+    request.setTransactionId(transactionId);
+    request.setUserId(7L);
+    request.setAmount(new BigDecimal("19.99"));
+    request.setCurrency("USD");
+    request.setTransactionType("PURCHASE");
+    request.setPaymentMethod("CARD");
+    return request;
+  }
+
+  private static TransactionAnalysis analysis(String transactionId) {
+    TransactionAnalysis analysis = new TransactionAnalysis();
+    analysis.setTransactionId(transactionId);
+    analysis.setUserId(7L);
+    analysis.setAmount(new BigDecimal("19.99"));
+    analysis.setRiskScore(0.2);
+    analysis.setRiskLevel(TransactionAnalysis.RiskLevel.LOW);
+    analysis.setFraudStatus(TransactionAnalysis.FraudStatus.APPROVED);
+    analysis.setFraudIndicators(Map.of("velocity", "high"));
+    return analysis;
+  }
+}